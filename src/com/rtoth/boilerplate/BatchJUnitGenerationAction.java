@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Defines an {@link AnAction} which generates "boilerplate" JUnit test cases for every Java source file selected
+ * by the user (recursing into selected directories), without prompting for each class.
+ * <p>
+ * This action is invoked by the user of this plugin.
+ */
+public class BatchJUnitGenerationAction extends AnAction
+{
+    @Override
+    public void update(AnActionEvent event)
+    {
+        VirtualFile[] files = event.getData(PlatformDataKeys.VIRTUAL_FILE_ARRAY);
+        event.getPresentation().setEnabledAndVisible(
+            event.getData(PlatformDataKeys.PROJECT) != null && files != null && files.length > 0);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event)
+    {
+        Project project = event.getData(PlatformDataKeys.PROJECT);
+        VirtualFile[] files = event.getData(PlatformDataKeys.VIRTUAL_FILE_ARRAY);
+        if (project != null && files != null)
+        {
+            new BatchTestGenerator(project).generate(collectSourceFiles(project, files));
+        }
+    }
+
+    /**
+     * Collect the Java source files among the provided files and directories, skipping test sources.
+     *
+     * @param project {@link Project} containing the files. Cannot be {@code null}.
+     * @param files Files and directories selected by the user. Cannot be {@code null}.
+     * @return The Java source files. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static ImmutableList<PsiJavaFile> collectSourceFiles(@NotNull Project project,
+                                                         @NotNull VirtualFile[] files)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+        Preconditions.checkNotNull(files, "files cannot be null.");
+
+        ProjectFileIndex fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        ImmutableList.Builder<PsiJavaFile> sourceFiles = ImmutableList.builder();
+        for (VirtualFile file : files)
+        {
+            VfsUtilCore.iterateChildrenRecursively(
+                file,
+                child -> child.isDirectory() ?
+                    !fileIndex.isInTestSourceContent(child) : fileIndex.isInSourceContent(child),
+                child ->
+                {
+                    if (!child.isDirectory() && !fileIndex.isInTestSourceContent(child))
+                    {
+                        PsiFile psiFile = psiManager.findFile(child);
+                        if (psiFile instanceof PsiJavaFile)
+                        {
+                            sourceFiles.add((PsiJavaFile) psiFile);
+                        }
+                    }
+                    return true;
+                }
+            );
+        }
+        return sourceFiles.build();
+    }
+}
@@ -0,0 +1,708 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates test cases for many source classes at once, in the background.
+ * <p>
+ * Each source class is tested with the rules the user last configured for it through the dialog, or, if it has
+ * never been configured, with the default rules for every testable method. Planning and rendering the test cases
+ * for independent classes runs concurrently on a bounded pool of read actions. The results are then written one
+ * test directory at a time, each in its own short burst on the event dispatch thread, so the directory is created
+ * once and the UI stays responsive between bursts.
+ * <p>
+ * Classes whose tests were already generated with the same rules, and are still present in their test class, are
+ * skipped using the {@link GenerationCache}, so re-running over a module only costs time for what changed. Test
+ * classes which do not exist yet are split into shards, rendered completely while planning and written straight to
+ * disk by a {@link BulkTestFileWriter}, followed by a single refresh of the VFS.
+ * <p>
+ * Source files are processed in chunks sized by a {@link ChunkSizer}: each chunk is planned, written and released
+ * before the next one is planned, so generating tests for a whole project never holds more rendered test cases in
+ * memory than the heap has room for.
+ */
+class BatchTestGenerator
+{
+    /** Number of classes planned concurrently. */
+    private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    /** Maximum number of failures listed when reporting the results to the user. */
+    private static final int MAX_REPORTED_FAILURES = 10;
+
+    /** {@link Project} for which test cases will be generated. */
+    private final Project project;
+
+    /** Generator used to render and write test cases. */
+    private final TestCaseGenerator generator;
+
+    /** Cache of previously rendered test cases. */
+    private final GenerationCache cache;
+
+    /** Number of classes skipped in the current run, because their tests are already up to date. */
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    /**
+     * Create a new {@link BatchTestGenerator} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which test cases will be generated. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    BatchTestGenerator(@NotNull Project project)
+    {
+        this.project = Preconditions.checkNotNull(project, "project cannot be null.");
+        this.generator = new TestCaseGenerator(project);
+        this.cache = GenerationCache.getInstance();
+    }
+
+    /**
+     * Start generating test cases for the provided source files in a background task, and report the results to
+     * the user once done.
+     * <p>
+     * Must be called from the event dispatch thread.
+     *
+     * @param sourceFiles Source files for which test cases should be generated. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFiles} is {@code null}.
+     */
+    void generate(@NotNull List<PsiJavaFile> sourceFiles)
+    {
+        Preconditions.checkNotNull(sourceFiles, "sourceFiles cannot be null.");
+
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        ImmutableList.Builder<SmartPsiElementPointer<PsiJavaFile>> pointers = ImmutableList.builder();
+        for (PsiJavaFile sourceFile : sourceFiles)
+        {
+            pointers.add(pointerManager.createSmartPsiElementPointer(sourceFile));
+        }
+        ImmutableList<SmartPsiElementPointer<PsiJavaFile>> sourcePointers = pointers.build();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Generating Boilerplate JUnit Tests", true)
+        {
+            /** Description of each class which could not be generated. */
+            private final List<String> failures = Collections.synchronizedList(Lists.newArrayList());
+
+            /** Number of classes for which test cases were generated. */
+            private int generated;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator)
+            {
+                generated = BatchTestGenerator.this.run(sourcePointers, indicator, failures);
+            }
+
+            @Override
+            public void onSuccess()
+            {
+                String summary = "Generated test cases for " + generated + " of " + sourcePointers.size() +
+                    " classes" + (unchanged.get() > 0 ? ", " + unchanged.get() + " were already up to date." : ".");
+                if (failures.isEmpty())
+                {
+                    Messages.showInfoMessage(project, summary, "Boilerplate JUnit Generator");
+                }
+                else
+                {
+                    List<String> reported = failures.subList(0, Math.min(failures.size(), MAX_REPORTED_FAILURES));
+                    Messages.showWarningDialog(project, summary + "\n\n" + Joiner.on('\n').join(reported) +
+                        (failures.size() > reported.size() ? "\n..." : ""), "Warning");
+                }
+            }
+        });
+    }
+
+    /**
+     * Generate the test cases for all source files, one chunk at a time, releasing each chunk's planned test cases
+     * before planning the next so memory use stays bounded however many files are selected.
+     * <p>
+     * Chunks are sized by a {@link ChunkSizer} according to the heap's headroom. New test classes are written straight
+     * to disk as each chunk completes, but the VFS is only refreshed once, when the whole run is done.
+     *
+     * @param sourceFiles Source files for which test cases should be generated. Cannot be {@code null}.
+     * @param indicator Progress indicator of the background task. Cannot be {@code null}.
+     * @param failures List to which a description of each class which could not be generated is added. Cannot be
+     *                 {@code null}.
+     * @return The number of classes for which test cases were generated.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws ProcessCanceledException if the user cancelled the task.
+     */
+    private int run(@NotNull List<SmartPsiElementPointer<PsiJavaFile>> sourceFiles,
+                    @NotNull ProgressIndicator indicator, @NotNull List<String> failures)
+    {
+        Preconditions.checkNotNull(sourceFiles, "sourceFiles cannot be null.");
+        Preconditions.checkNotNull(indicator, "indicator cannot be null.");
+        Preconditions.checkNotNull(failures, "failures cannot be null.");
+
+        unchanged.set(0);
+        int generated = 0;
+        ChunkSizer chunkSizer = new ChunkSizer();
+        BulkTestFileWriter bulkWriter = new BulkTestFileWriter();
+        ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE);
+        try
+        {
+            int next = 0;
+            while (next < sourceFiles.size())
+            {
+                int end = Math.min(sourceFiles.size(), next + chunkSizer.startChunk());
+                generated += runChunk(sourceFiles.subList(next, end), pool, bulkWriter, chunkSizer,
+                    new ChunkProgress(indicator, next, end, sourceFiles.size()), failures);
+                next = end;
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+            // Even if cancelled, so whatever was written shows up.
+            bulkWriter.refresh();
+        }
+        return generated;
+    }
+
+    /**
+     * Plan the test cases for a single chunk of source files concurrently, then write brand-new test classes straight
+     * to disk and the remaining test cases one test directory at a time.
+     *
+     * @param sourceFiles Source files in the chunk. Cannot be {@code null}.
+     * @param pool Pool on which the source files are planned. Cannot be {@code null}.
+     * @param bulkWriter Writer for brand-new test classes. Cannot be {@code null}.
+     * @param chunkSizer Sizer to inform once the chunk is planned. Cannot be {@code null}.
+     * @param progress Progress of the chunk within the run. Cannot be {@code null}.
+     * @param failures List to which a description of each class which could not be generated is added. Cannot be
+     *                 {@code null}.
+     * @return The number of classes in the chunk for which test cases were generated.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws ProcessCanceledException if the user cancelled the task.
+     */
+    private int runChunk(@NotNull List<SmartPsiElementPointer<PsiJavaFile>> sourceFiles,
+                         @NotNull ExecutorService pool, @NotNull BulkTestFileWriter bulkWriter,
+                         @NotNull ChunkSizer chunkSizer, @NotNull ChunkProgress progress,
+                         @NotNull List<String> failures)
+    {
+        Preconditions.checkNotNull(sourceFiles, "sourceFiles cannot be null.");
+        Preconditions.checkNotNull(pool, "pool cannot be null.");
+        Preconditions.checkNotNull(bulkWriter, "bulkWriter cannot be null.");
+        Preconditions.checkNotNull(chunkSizer, "chunkSizer cannot be null.");
+        Preconditions.checkNotNull(progress, "progress cannot be null.");
+        Preconditions.checkNotNull(failures, "failures cannot be null.");
+
+        ProgressIndicator indicator = progress.indicator;
+        // Classes in the same source directory share a test directory, so each group is written in one burst.
+        Map<String, List<PlannedClass>> plansByDirectory = Maps.newLinkedHashMap();
+        List<PlannedClass> newTestFiles = Lists.newArrayList();
+        List<Future<Optional<PlannedClass>>> futures = Lists.newArrayList();
+        for (SmartPsiElementPointer<PsiJavaFile> sourceFile : sourceFiles)
+        {
+            futures.add(pool.submit(() -> indicator.isCanceled() ? Optional.<PlannedClass>empty() :
+                ApplicationManager.getApplication().runReadAction(
+                    (ThrowableComputable<Optional<PlannedClass>, TestGenerationException>) () -> plan(sourceFile)
+                )
+            ));
+        }
+        try
+        {
+            for (int i = 0; i < futures.size(); i++)
+            {
+                indicator.checkCanceled();
+                indicator.setText("Planning test cases...");
+                progress.update(0.5 * i / futures.size());
+                try
+                {
+                    futures.get(i).get().ifPresent(plan ->
+                    {
+                        if (!plan.newTestFiles.isEmpty())
+                        {
+                            newTestFiles.add(plan);
+                        }
+                        else
+                        {
+                            plansByDirectory.computeIfAbsent(plan.directoryKey, key -> Lists.newArrayList())
+                                .add(plan);
+                        }
+                    });
+                }
+                catch (ExecutionException ee)
+                {
+                    failures.add(describe(sourceFiles.get(i)) + ": " + ee.getCause().getMessage());
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new ProcessCanceledException();
+                }
+            }
+        }
+        finally
+        {
+            // Don't leave this chunk's remaining tasks running into the next one once cancelled.
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        int planned = newTestFiles.size() + plansByDirectory.values().stream().mapToInt(List::size).sum();
+        chunkSizer.chunkPlanned(planned);
+
+        int generated = 0;
+        int written = 0;
+        TestShardTracker shardTracker = TestShardTracker.getInstance(project);
+        for (PlannedClass plan : newTestFiles)
+        {
+            indicator.checkCanceled();
+            indicator.setText("Writing new test classes...");
+            progress.update(0.5 + 0.5 * written++ / Math.max(1, planned));
+            try
+            {
+                for (BulkTestFileWriter.NewTestFile newTestFile : plan.newTestFiles)
+                {
+                    shardTracker.writtenToDisk(bulkWriter.write(newTestFile), newTestFile.getTestCases().size());
+                }
+                cache.store(plan.cacheKey, plan.testCases);
+                generated++;
+            }
+            catch (IOException ioe)
+            {
+                failures.add(plan.sourceClassName + ": " + ioe.getMessage());
+            }
+        }
+        for (List<PlannedClass> plans : plansByDirectory.values())
+        {
+            indicator.checkCanceled();
+            indicator.setText("Writing test cases...");
+            progress.update(0.5 + 0.5 * written / Math.max(1, planned));
+            int[] succeeded = new int[1];
+            ApplicationManager.getApplication().invokeAndWait(() ->
+            {
+                for (PlannedClass plan : plans)
+                {
+                    try
+                    {
+                        write(plan);
+                        succeeded[0]++;
+                    }
+                    catch (TestGenerationException | RuntimeException e)
+                    {
+                        failures.add(plan.sourceClassName + ": " + e.getMessage());
+                    }
+                }
+            }, ModalityState.defaultModalityState());
+            generated += succeeded[0];
+            written += plans.size();
+        }
+        return generated;
+    }
+
+    /**
+     * Plan and render the test cases for the provided source file.
+     * <p>
+     * Must be called from within a read action.
+     *
+     * @param sourceFilePointer Pointer to the source file. Cannot be {@code null}.
+     * @return The {@link PlannedClass}, or {@link Optional#empty()} if the file does not contain exactly one class,
+     *         has nothing to test, or its tests are already up to date. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFilePointer} is {@code null}.
+     * @throws TestGenerationException if the test cases cannot be rendered.
+     */
+    @NotNull
+    private Optional<PlannedClass> plan(@NotNull SmartPsiElementPointer<PsiJavaFile> sourceFilePointer)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceFilePointer, "sourceFilePointer cannot be null.");
+
+        PsiJavaFile sourceFile = sourceFilePointer.getElement();
+        if (sourceFile == null)
+        {
+            return Optional.empty();
+        }
+        Optional<PsiClass> optionalSourceClass = PsiUtility.getSingleClass(sourceFile);
+        PsiDirectory sourceDirectory = sourceFile.getContainingDirectory();
+        if (!optionalSourceClass.isPresent() || sourceDirectory == null)
+        {
+            return Optional.empty();
+        }
+        PsiClass sourceClass = optionalSourceClass.get();
+        ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules = buildMethodRules(sourceClass);
+        if (methodRules.isEmpty())
+        {
+            return Optional.empty();
+        }
+
+        TestTemplateCache.Templates templates = generator.resolveTemplates(sourceClass);
+        String cacheKey = GenerationCache.computeKey(project, sourceClass, methodRules, templates);
+        Optional<ImmutableList<TestCase>> cached = cache.load(cacheKey);
+        if (cached.isPresent() && GenerationCache.isWritten(sourceClass, cached.get()))
+        {
+            unchanged.incrementAndGet();
+            return Optional.empty();
+        }
+
+        // Cached test cases are unique among themselves, so they can be written to a new test class as they are.
+        PsiClass testClass = PsiUtility.findTestClass(sourceClass).orElse(null);
+        ImmutableList<TestCase> testCases = cached.isPresent() && testClass == null ?
+            cached.get() : generator.renderTestCases(testClass, methodRules, templates);
+
+        ImmutableList<BulkTestFileWriter.NewTestFile> newTestFiles = ImmutableList.of();
+        Optional<Path> testRoot = testClass == null ? PsiUtility.findTestRootPath(sourceFile) : Optional.empty();
+        if (testRoot.isPresent())
+        {
+            newTestFiles = planNewTestFiles(sourceFile, sourceClass, methodRules, testCases, templates, testRoot.get());
+        }
+
+        SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+        return Optional.of(new PlannedClass(
+            sourceClass.getName(),
+            sourceDirectory.getVirtualFile().getUrl(),
+            pointerManager.createSmartPsiElementPointer(sourceClass),
+            testClass != null ? pointerManager.createSmartPsiElementPointer(testClass) : null,
+            testClass != null ? testClass.getContainingFile().getModificationStamp() : -1,
+            methodRules,
+            testCases,
+            templates,
+            cacheKey,
+            newTestFiles
+        ));
+    }
+
+    /**
+     * Plan the shards of a brand-new test class, each split off as {@link TestCaseGenerator#splitIntoShards} would
+     * and rendered completely, ready to be written straight to disk.
+     * <p>
+     * Must be called from within a read action.
+     *
+     * @param sourceFile Source file for which tests are generated. Cannot be {@code null}.
+     * @param sourceClass Class in {@code sourceFile} for which tests are generated. Cannot be {@code null}.
+     * @param methodRules Rules with which the test cases were rendered. Cannot be {@code null}.
+     * @param testCases Test cases rendered against no existing test class. Cannot be {@code null}.
+     * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+     * @param testRoot Test source root in which the shards are written. Cannot be {@code null}.
+     * @return The shards to write, or an empty list if any of their files already exists, in which case the test
+     *         cases have to be written through the PSI. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if the shards cannot be rendered.
+     */
+    @NotNull
+    private ImmutableList<BulkTestFileWriter.NewTestFile> planNewTestFiles(
+        @NotNull PsiJavaFile sourceFile, @NotNull PsiClass sourceClass,
+        @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+        @NotNull ImmutableList<TestCase> testCases, @NotNull TestTemplateCache.Templates templates,
+        @NotNull Path testRoot)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+        Preconditions.checkNotNull(testRoot, "testRoot cannot be null.");
+
+        String packageName = sourceFile.getPackageName();
+        ImmutableList<ImmutableList<TestCase>> shards = generator.splitIntoShards(sourceClass, methodRules, testCases);
+        ImmutableList.Builder<BulkTestFileWriter.NewTestFile> newTestFiles = ImmutableList.builder();
+        for (int shard = 1; shard <= shards.size(); shard++)
+        {
+            String testClassName = TestShardTracker.getShardName(sourceClass.getName() + "Test", shard);
+            if (Files.exists(BulkTestFileWriter.getPath(testRoot, packageName, testClassName)))
+            {
+                return ImmutableList.of();
+            }
+            ImmutableList<TestCase> shardTestCases = shards.get(shard - 1);
+            newTestFiles.add(new BulkTestFileWriter.NewTestFile(testRoot, packageName, testClassName,
+                generator.renderTestFile(sourceFile, testClassName, shardTestCases, templates), shardTestCases));
+        }
+        return newTestFiles.build();
+    }
+
+    /**
+     * Build the rules with which the provided class is tested: the rules stored for each method the user configured
+     * through the dialog, or, if there are none, the default rules for every testable method.
+     * <p>
+     * Methods with unsupported parameter types or stored rules which are no longer valid are skipped. Rules hold no
+     * UI components, so they can be built on any thread. Must be called from within a read action.
+     *
+     * @param sourceClass Class for which to build the rules. Cannot be {@code null}.
+     * @return Mapping of {@link PsiMethod}s to test to their {@link ParameterRule}s. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> buildMethodRules(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        RuleConfigurationStore ruleConfigurationStore = RuleConfigurationStore.getInstance(project);
+        ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> configured = ImmutableMap.builder();
+        ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> defaults = ImmutableMap.builder();
+        for (PsiMethod method : sourceClass.getMethods())
+        {
+            if (!DefaultParameterRules.isTestable(method))
+            {
+                continue;
+            }
+            ImmutableList<ParameterRule> rules;
+            try
+            {
+                rules = DefaultParameterRules.build(method);
+            }
+            catch (IllegalStateException ise)
+            {
+                continue;
+            }
+            Optional<MethodRuleConfiguration> configuration = ruleConfigurationStore.find(sourceClass, method);
+            if (!configuration.isPresent())
+            {
+                defaults.put(method, rules);
+            }
+            else if (configuration.get().applyTo(rules) && rules.stream().allMatch(ParameterRule::isValid))
+            {
+                configured.put(method, rules);
+            }
+        }
+        ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> configuredRules = configured.build();
+        return configuredRules.isEmpty() ? defaults.build() : configuredRules;
+    }
+
+    /**
+     * Write the planned test cases to the shard chosen by the {@link TestShardTracker}, re-rendering them if they
+     * were rendered against a different state of the test class. Test cases for a test class which did not exist yet,
+     * or too many to fit in a single shard, are allocated method by method and spread over as many shards as they
+     * need.
+     * <p>
+     * Must be called from the event dispatch thread, outside of any write action.
+     *
+     * @param plan Planned class to write. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code plan} is {@code null}.
+     * @throws TestGenerationException if the test cases cannot be written.
+     */
+    private void write(@NotNull PlannedClass plan) throws TestGenerationException
+    {
+        Preconditions.checkNotNull(plan, "plan cannot be null.");
+
+        PsiClass sourceClass = plan.sourceClass.getElement();
+        if (sourceClass == null || !plan.methodRules.keySet().stream().allMatch(PsiMethod::isValid))
+        {
+            throw new TestGenerationException("Class was modified during generation, please try again.");
+        }
+
+        int maxMethods = GeneratorSettings.getInstance(project).getMaxTestMethodsPerClass();
+        if (plan.testClass == null || (maxMethods > 0 && plan.testCases.size() > maxMethods))
+        {
+            // A new test class which could not be written straight to disk, or test cases which would overflow any
+            // single shard, split into shards as they are written.
+            cache.store(plan.cacheKey, generator.generateTestCases(sourceClass, plan.methodRules, plan.templates));
+            return;
+        }
+
+        TestShardTracker shardTracker = TestShardTracker.getInstance(project);
+        PsiClass shard = shardTracker.allocate(sourceClass, plan.testCases.size());
+        boolean upToDate = shard.equals(plan.testClass.getElement()) &&
+            shard.getContainingFile().getModificationStamp() == plan.testClassModificationStamp;
+
+        ImmutableList<TestCase> written;
+        if (upToDate)
+        {
+            generator.writeTestCases(shard, plan.testCases, plan.templates);
+            written = plan.testCases;
+        }
+        else
+        {
+            written = generator.createTestCases(shard, plan.methodRules, plan.templates);
+        }
+        shardTracker.written(shard);
+        cache.store(plan.cacheKey, written);
+    }
+
+    /**
+     * Describe the provided source file for reporting a failure.
+     *
+     * @param sourceFilePointer Pointer to the source file. Cannot be {@code null}.
+     * @return Description of the file. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFilePointer} is {@code null}.
+     */
+    @NotNull
+    private static String describe(@NotNull SmartPsiElementPointer<PsiJavaFile> sourceFilePointer)
+    {
+        Preconditions.checkNotNull(sourceFilePointer, "sourceFilePointer cannot be null.");
+
+        return sourceFilePointer.getVirtualFile() != null ?
+            sourceFilePointer.getVirtualFile().getName() : "<deleted file>";
+    }
+
+    /**
+     * Test cases planned for a single source class, ready to be written.
+     */
+    private static final class PlannedClass
+    {
+        /** Name of the source class. */
+        private final String sourceClassName;
+
+        /** Key shared by all classes which are written to the same test directory. */
+        private final String directoryKey;
+
+        /** Pointer to the source class. */
+        private final SmartPsiElementPointer<PsiClass> sourceClass;
+
+        /** Pointer to the test class the test cases were rendered against, or {@code null} if it did not exist. */
+        private final SmartPsiElementPointer<PsiClass> testClass;
+
+        /** Modification stamp of the test class's file when the test cases were rendered. */
+        private final long testClassModificationStamp;
+
+        /** Rules with which the source class is tested. */
+        private final ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules;
+
+        /** Rendered test cases. */
+        private final ImmutableList<TestCase> testCases;
+
+        /** Templates the test cases were rendered with, which are also used to write them. */
+        private final TestTemplateCache.Templates templates;
+
+        /** Key under which the written test cases are cached. */
+        private final String cacheKey;
+
+        /** Shards of a new test class to write straight to disk, or empty if it is written through the PSI. */
+        private final ImmutableList<BulkTestFileWriter.NewTestFile> newTestFiles;
+
+        /**
+         * Create a new {@link PlannedClass}.
+         *
+         * @param sourceClassName Name of the source class. Cannot be {@code null}.
+         * @param directoryKey Key shared by all classes which are written to the same test directory. Cannot be
+         *                     {@code null}.
+         * @param sourceClass Pointer to the source class. Cannot be {@code null}.
+         * @param testClass Pointer to the test class the test cases were rendered against, or {@code null}.
+         * @param testClassModificationStamp Modification stamp of the test class's file when rendered.
+         * @param methodRules Rules with which the source class is tested. Cannot be {@code null}.
+         * @param testCases Rendered test cases. Cannot be {@code null}.
+         * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+         * @param cacheKey Key under which the written test cases are cached. Cannot be {@code null}.
+         * @param newTestFiles Shards of a new test class to write straight to disk, or an empty list. Cannot be
+         *                     {@code null}.
+         *
+         * @throws NullPointerException if any parameter other than {@code testClass} is {@code null}.
+         */
+        private PlannedClass(@NotNull String sourceClassName, @NotNull String directoryKey,
+                             @NotNull SmartPsiElementPointer<PsiClass> sourceClass,
+                             @Nullable SmartPsiElementPointer<PsiClass> testClass, long testClassModificationStamp,
+                             @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+                             @NotNull ImmutableList<TestCase> testCases,
+                             @NotNull TestTemplateCache.Templates templates, @NotNull String cacheKey,
+                             @NotNull ImmutableList<BulkTestFileWriter.NewTestFile> newTestFiles)
+        {
+            this.sourceClassName = Preconditions.checkNotNull(sourceClassName, "sourceClassName cannot be null.");
+            this.directoryKey = Preconditions.checkNotNull(directoryKey, "directoryKey cannot be null.");
+            this.sourceClass = Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+            this.testClass = testClass;
+            this.testClassModificationStamp = testClassModificationStamp;
+            this.methodRules = Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+            this.testCases = Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+            this.templates = Preconditions.checkNotNull(templates, "templates cannot be null.");
+            this.cacheKey = Preconditions.checkNotNull(cacheKey, "cacheKey cannot be null.");
+            this.newTestFiles = Preconditions.checkNotNull(newTestFiles, "newTestFiles cannot be null.");
+        }
+    }
+
+    /**
+     * Maps the progress within a single chunk onto the progress of the whole run.
+     */
+    private static final class ChunkProgress
+    {
+        /** Progress indicator of the background task. */
+        private final ProgressIndicator indicator;
+
+        /** Index of the chunk's first source file. */
+        private final int start;
+
+        /** Index after the chunk's last source file. */
+        private final int end;
+
+        /** Number of source files in the whole run. */
+        private final int total;
+
+        /**
+         * Create a new {@link ChunkProgress}.
+         *
+         * @param indicator Progress indicator of the background task. Cannot be {@code null}.
+         * @param start Index of the chunk's first source file.
+         * @param end Index after the chunk's last source file.
+         * @param total Number of source files in the whole run.
+         *
+         * @throws NullPointerException if {@code indicator} is {@code null}.
+         */
+        private ChunkProgress(@NotNull ProgressIndicator indicator, int start, int end, int total)
+        {
+            this.indicator = Preconditions.checkNotNull(indicator, "indicator cannot be null.");
+            this.start = start;
+            this.end = end;
+            this.total = total;
+        }
+
+        /**
+         * Update the indicator's fraction.
+         *
+         * @param fraction Fraction of the chunk which is done, between 0 and 1.
+         */
+        private void update(double fraction)
+        {
+            indicator.setFraction((start + fraction * (end - start)) / Math.max(1, total));
+        }
+    }
+}
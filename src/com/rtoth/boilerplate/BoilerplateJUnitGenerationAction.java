@@ -25,6 +25,7 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.LangDataKeys;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.psi.PsiClass;
@@ -37,11 +38,13 @@ import java.util.Optional;
  * Defines an {@link AnAction} which generates "boilerplate" JUnit test cases for
  * the Java file selected by the user based on input provided by the user.
  * <p>
- * This action is invoked by the user of this plugin.
+ * This action is invoked by the user of this plugin. It stays available while the project is being indexed, in which
+ * case types are taken from the source as written, imports are fully qualified and only shortened once indexing has
+ * finished.
  */
 // TODO: Figure out why Ctrl+Z doesn't work
 // TODO: Figure out why keyboard shortcut doesn't work
-public class BoilerplateJUnitGenerationAction extends AnAction
+public class BoilerplateJUnitGenerationAction extends AnAction implements DumbAware
 {
     @Override
     public void actionPerformed(AnActionEvent event)
@@ -65,24 +68,13 @@ public class BoilerplateJUnitGenerationAction extends AnAction
                     if (optionalSourceClass.isPresent())
                     {
                         PsiClass sourceClass = optionalSourceClass.get();
-                        // TODO: If we have to create the directory or file, it just exits without displaying the dialog...
-                        Optional<PsiClass> optionalTestClass = PsiUtility.findOrCreateTestClass(sourceClass);
-                        if (optionalTestClass.isPresent())
+                        // Only touch the test class once the user has accepted, so previewing from the dialog
+                        // never creates any files.
+                        GetTestMethodsDialog dialog = new GetTestMethodsDialog(sourceClass);
+                        if (dialog.showAndGet())
                         {
-                            PsiClass testClass = optionalTestClass.get();
-                            GetTestMethodsDialog dialog = new GetTestMethodsDialog(sourceClass);
-                            if (dialog.showAndGet())
-                            {
-                                TestCaseGenerator generator = new TestCaseGenerator(project);
-                                generator.createTestCases(testClass, dialog.getSelectedMethodRules());
-                            }
-                        }
-                        else
-                        {
-                            // TODO: Probably not best to be throwing exceptions in here just to catch
-                            //       them below... log a message explicitly instead?
-                            throw new TestGenerationException("Error finding or generating test class for " +
-                                sourceClass.getName());
+                            TestCaseGenerator generator = new TestCaseGenerator(project);
+                            generator.generateTestCases(sourceClass, dialog.getSelectedMethodRules());
                         }
                     }
                     else
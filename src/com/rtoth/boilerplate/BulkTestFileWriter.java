@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes brand-new test classes straight to disk, bypassing the PSI and VFS, and refreshes the VFS once for all of
+ * them.
+ * <p>
+ * Creating files through {@link com.intellij.psi.PsiDirectory#add} fires PSI and VFS events and triggers indexing
+ * and highlighting for every single file, which dominates generating tests for thousands of classes. Files written
+ * here are only picked up by the single asynchronous refresh issued by {@link #refresh()}, so they must not be
+ * needed through the PSI before then. Existing files are never touched; they always go through the PSI.
+ */
+class BulkTestFileWriter
+{
+    /** Paths of all files written since the last refresh. */
+    private final List<Path> written = Lists.newArrayList();
+
+    /**
+     * Get the path of the file of the test class with the provided name.
+     *
+     * @param testRoot Test source root containing the class, e.g. {@code src/test/java}. Cannot be {@code null}.
+     * @param packageName Package of the test class, or an empty string for the default package. Cannot be
+     *                    {@code null}.
+     * @param className Simple name of the test class. Cannot be {@code null}.
+     * @return The path of the test class's file. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static Path getPath(@NotNull Path testRoot, @NotNull String packageName, @NotNull String className)
+    {
+        Preconditions.checkNotNull(testRoot, "testRoot cannot be null.");
+        Preconditions.checkNotNull(packageName, "packageName cannot be null.");
+        Preconditions.checkNotNull(className, "className cannot be null.");
+
+        Path path = testRoot;
+        if (!packageName.isEmpty())
+        {
+            for (String directoryName : packageName.split("\\."))
+            {
+                path = path.resolve(directoryName);
+            }
+        }
+        return path.resolve(className + ".java");
+    }
+
+    /**
+     * Write the provided test class and record its test cases in the {@link TestImpactManifest}.
+     *
+     * @param testFile Test class to write. Cannot be {@code null}.
+     * @return The path of the written file. Never {@code null}.
+     *
+     * @throws IOException if the file cannot be written, including if it already exists.
+     * @throws NullPointerException if {@code testFile} is {@code null}.
+     */
+    @NotNull
+    Path write(@NotNull NewTestFile testFile) throws IOException
+    {
+        Preconditions.checkNotNull(testFile, "testFile cannot be null.");
+
+        Path path = getPath(testFile.testRoot, testFile.packageName, testFile.className);
+        Files.createDirectories(path.getParent());
+        // Never overwrite a file which appeared after planning, it may contain tests the user wrote.
+        try (Writer writer = Files.newBufferedWriter(path, Charsets.UTF_8, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE))
+        {
+            writer.write(testFile.text);
+        }
+        written.add(path);
+        TestCaseGenerator.updateManifest(testFile.testRoot,
+            testFile.packageName.isEmpty() ? testFile.className : testFile.packageName + "." + testFile.className,
+            testFile.testCases);
+        return path;
+    }
+
+    /**
+     * Asynchronously refresh the VFS for every file written since the last refresh, in a single refresh of the
+     * closest directories the VFS already knows.
+     */
+    void refresh()
+    {
+        if (written.isEmpty())
+        {
+            return;
+        }
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        Set<VirtualFile> roots = Sets.newLinkedHashSet();
+        for (Path path : written)
+        {
+            VirtualFile known = null;
+            for (Path ancestor = path.getParent(); known == null && ancestor != null; ancestor = ancestor.getParent())
+            {
+                known = fileSystem.findFileByIoFile(ancestor.toFile());
+            }
+            if (known != null)
+            {
+                roots.add(known);
+            }
+        }
+        written.clear();
+        VfsUtil.markDirtyAndRefresh(true, true, true, roots.toArray(new VirtualFile[roots.size()]));
+    }
+
+    /**
+     * Complete source of a new test class, rendered by {@link TestCaseGenerator#renderTestFile} and ready to be
+     * written.
+     */
+    static final class NewTestFile
+    {
+        /** Test source root in which the class is written, e.g. {@code src/test/java}. */
+        private final Path testRoot;
+
+        /** Package of the test class, or an empty string for the default package. */
+        private final String packageName;
+
+        /** Simple name of the test class. */
+        private final String className;
+
+        /** Complete source of the test class. */
+        private final String text;
+
+        /** Test cases contained in the test class. */
+        private final ImmutableList<TestCase> testCases;
+
+        /**
+         * Create a new {@link NewTestFile}.
+         *
+         * @param testRoot Test source root in which the class is written. Cannot be {@code null}.
+         * @param packageName Package of the test class, or an empty string for the default package. Cannot be
+         *                    {@code null}.
+         * @param className Simple name of the test class. Cannot be {@code null}.
+         * @param text Complete source of the test class. Cannot be {@code null}.
+         * @param testCases Test cases contained in the test class. Cannot be {@code null}.
+         *
+         * @throws NullPointerException if any parameter is {@code null}.
+         */
+        NewTestFile(@NotNull Path testRoot, @NotNull String packageName, @NotNull String className,
+                    @NotNull String text, @NotNull ImmutableList<TestCase> testCases)
+        {
+            this.testRoot = Preconditions.checkNotNull(testRoot, "testRoot cannot be null.");
+            this.packageName = Preconditions.checkNotNull(packageName, "packageName cannot be null.");
+            this.className = Preconditions.checkNotNull(className, "className cannot be null.");
+            this.text = Preconditions.checkNotNull(text, "text cannot be null.");
+            this.testCases = Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+        }
+
+        /**
+         * Get the test cases contained in the test class.
+         *
+         * @return The test cases contained in the test class. Never {@code null}.
+         */
+        @NotNull
+        ImmutableList<TestCase> getTestCases()
+        {
+            return testCases;
+        }
+    }
+}
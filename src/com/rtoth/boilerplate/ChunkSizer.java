@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Sizes the chunks in which a batch generation plans and writes classes, so the memory held by planned but not yet
+ * written classes stays within the heap's headroom, however many classes are generated.
+ * <p>
+ * Before each chunk, the headroom is read from the {@link MemoryMXBean}, and the chunk is sized so its planned
+ * classes are expected to take at most {@link #HEADROOM_FRACTION} of it. The expected size of a planned class starts
+ * at {@link #INITIAL_BYTES_PER_CLASS} and follows the growth of the used heap observed while planning each chunk.
+ * This is only an estimate, as the garbage collector may run at any time, which is why it is smoothed and the chunk
+ * size is bounded on both sides.
+ */
+final class ChunkSizer
+{
+    /** Smallest chunk, so the planning pool always has work for every thread. */
+    static final int MIN_CHUNK_SIZE = 8;
+
+    /** Largest chunk, so progress is flushed to disk regularly even when memory is plentiful. */
+    static final int MAX_CHUNK_SIZE = 512;
+
+    /** Fraction of the heap's headroom which the classes of a single chunk may use. */
+    private static final double HEADROOM_FRACTION = 0.25;
+
+    /** Expected memory used by a planned class until the first chunk has been measured. */
+    private static final long INITIAL_BYTES_PER_CLASS = 512 * 1024;
+
+    /** Weight of the latest measurement in the expected memory used by a planned class. */
+    private static final double SMOOTHING = 0.5;
+
+    /** Bean reporting heap usage. */
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    /** Expected memory used by a planned class, in bytes. */
+    private double bytesPerClass = INITIAL_BYTES_PER_CLASS;
+
+    /** Heap usage when the current chunk started, in bytes. */
+    private long usedAtStart;
+
+    /**
+     * Start a new chunk.
+     *
+     * @return The number of classes the chunk should contain, between {@link #MIN_CHUNK_SIZE} and
+     *         {@link #MAX_CHUNK_SIZE}.
+     */
+    int startChunk()
+    {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        usedAtStart = heap.getUsed();
+        // The maximum is undefined on some VMs, in which case only the committed heap is known to be available.
+        long limit = heap.getMax() >= 0 ? heap.getMax() : heap.getCommitted();
+        long headroom = Math.max(0, limit - heap.getUsed());
+        long chunkSize = (long) (headroom * HEADROOM_FRACTION / bytesPerClass);
+        return (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+    }
+
+    /**
+     * Record that the classes of the current chunk have been planned and are all held in memory.
+     *
+     * @param plannedClasses Number of classes planned in the current chunk. Cannot be negative.
+     *
+     * @throws IllegalArgumentException if {@code plannedClasses} is negative.
+     */
+    void chunkPlanned(int plannedClasses)
+    {
+        Preconditions.checkArgument(plannedClasses >= 0, "plannedClasses cannot be negative.");
+
+        long growth = memory.getHeapMemoryUsage().getUsed() - usedAtStart;
+        // A collection during the chunk hides its growth, in which case the measurement says nothing.
+        if (plannedClasses > 0 && growth > 0)
+        {
+            bytesPerClass = SMOOTHING * growth / plannedClasses + (1 - SMOOTHING) * bytesPerClass;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounds on how the running time of an invocation may grow with the size of its collection arguments, checked by
+ * {@link ScalingGuard} tests.
+ */
+enum ComplexityBound
+{
+    /** No scaling tests are generated. */
+    NONE("Off", ""),
+
+    /** Running time may grow linearly with the size. */
+    LINEAR("Linear", "scalesLinearly"),
+
+    /** Running time may grow like {@code n log n}, e.g. when sorting. */
+    N_LOG_N("n log n", "scalesNLogN");
+
+    /** Factor by which the measured ratio may exceed the bound, absorbing timer resolution and cache effects. */
+    private static final double TOLERANCE = 3.0;
+
+    /** Human readable name of this bound. */
+    private final String humanReadable;
+
+    /** Suffix of the names of tests checking this bound. */
+    private final String testNameSuffix;
+
+    /**
+     * Create a new {@link ComplexityBound}.
+     *
+     * @param humanReadable Human readable name of the bound. Cannot be {@code null}.
+     * @param testNameSuffix Suffix of the names of tests checking the bound. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    ComplexityBound(@NotNull String humanReadable, @NotNull String testNameSuffix)
+    {
+        this.humanReadable = Preconditions.checkNotNull(humanReadable, "humanReadable cannot be null.");
+        this.testNameSuffix = Preconditions.checkNotNull(testNameSuffix, "testNameSuffix cannot be null.");
+    }
+
+    /**
+     * Get the suffix of the names of tests checking this bound, e.g. {@code scalesLinearly}.
+     *
+     * @return The suffix of the test names. Never {@code null}.
+     */
+    @NotNull
+    String getTestNameSuffix()
+    {
+        return testNameSuffix;
+    }
+
+    /**
+     * Get the largest ratio allowed between the running time at {@code scale * size} and at {@code size}, including
+     * the {@link #TOLERANCE}. A quadratic implementation exceeds this for any {@code scale} of 10 or more.
+     *
+     * @param size Smaller of the two sizes. Must be greater than 1.
+     * @param scale Factor between the two sizes. Must be greater than 1.
+     * @return The largest allowed ratio.
+     *
+     * @throws IllegalArgumentException if {@code size} or {@code scale} is not greater than 1.
+     * @throws IllegalStateException if this is {@link #NONE}.
+     */
+    double getMaxRatio(int size, int scale)
+    {
+        Preconditions.checkArgument(size > 1, "size must be greater than 1.");
+        Preconditions.checkArgument(scale > 1, "scale must be greater than 1.");
+
+        switch (this)
+        {
+            case LINEAR:
+            {
+                return scale * TOLERANCE;
+            }
+            case N_LOG_N:
+            {
+                return scale * (Math.log((double) size * scale) / Math.log(size)) * TOLERANCE;
+            }
+            default:
+            {
+                throw new IllegalStateException("No ratio for " + this);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return humanReadable;
+    }
+}
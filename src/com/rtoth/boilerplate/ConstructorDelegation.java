@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionStatement;
+import com.intellij.psi.PsiKeyword;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Result of following a constructor's chain of {@code this(...)} calls to the canonical constructor which does the
+ * actual work, and of mapping each of the constructor's parameters to the canonical parameter it is passed through
+ * to.
+ * <p>
+ * Results are cached on the constructor until the next PSI modification, so classes with many telescoping
+ * constructors only walk each chain once.
+ */
+final class ConstructorDelegation
+{
+    /** Marker cached for constructors which do not delegate. */
+    private static final ConstructorDelegation NONE = new ConstructorDelegation(null, new int[0]);
+
+    /** Canonical constructor at the end of the chain, or {@code null} for {@link #NONE}. */
+    private final PsiMethod canonicalConstructor;
+
+    /**
+     * For each parameter of the analyzed constructor, the index of the canonical parameter to which it is passed
+     * unchanged, or {@code -1} if it is not.
+     */
+    private final int[] canonicalParameterIndices;
+
+    /**
+     * Create a new {@link ConstructorDelegation}.
+     *
+     * @param canonicalConstructor Canonical constructor at the end of the chain.
+     * @param canonicalParameterIndices Index of the canonical parameter for each parameter of the analyzed
+     *                                  constructor, or {@code -1}.
+     */
+    private ConstructorDelegation(@Nullable PsiMethod canonicalConstructor, @NotNull int[] canonicalParameterIndices)
+    {
+        this.canonicalConstructor = canonicalConstructor;
+        this.canonicalParameterIndices = canonicalParameterIndices;
+    }
+
+    /**
+     * Analyze the delegation chain of the provided constructor.
+     *
+     * @param constructor Constructor to analyze. Cannot be {@code null}.
+     * @return The {@link ConstructorDelegation} of {@code constructor}, or {@link Optional#empty()} if it is not a
+     *         constructor, does not start with a {@code this(...)} call or the project is being indexed. Never
+     *         {@code null}.
+     *
+     * @throws NullPointerException if {@code constructor} is {@code null}.
+     */
+    @NotNull
+    static Optional<ConstructorDelegation> analyze(@NotNull PsiMethod constructor)
+    {
+        Preconditions.checkNotNull(constructor, "constructor cannot be null.");
+
+        // Following this(...) calls needs resolution, which is not possible while indexing, so nothing is pruned then.
+        if (!constructor.isConstructor() || DumbService.isDumb(constructor.getProject()))
+        {
+            return Optional.empty();
+        }
+        ConstructorDelegation delegation = CachedValuesManager.getCachedValue(constructor, () ->
+            CachedValueProvider.Result.create(compute(constructor), PsiModificationTracker.MODIFICATION_COUNT)
+        );
+        return delegation == NONE ? Optional.empty() : Optional.of(delegation);
+    }
+
+    /**
+     * Get the canonical constructor at the end of the delegation chain.
+     *
+     * @return The canonical constructor. Never {@code null}.
+     */
+    @NotNull
+    PsiMethod getCanonicalConstructor()
+    {
+        return canonicalConstructor;
+    }
+
+    /**
+     * Get the index of the canonical constructor's parameter to which the provided parameter of the analyzed
+     * constructor is passed unchanged.
+     *
+     * @param parameterIndex Index of the parameter of the analyzed constructor.
+     * @return The index of the canonical parameter, or {@code -1} if the parameter is not passed through unchanged
+     *         (e.g. it is transformed, or ignored).
+     */
+    int getCanonicalParameterIndex(int parameterIndex)
+    {
+        return parameterIndex >= 0 && parameterIndex < canonicalParameterIndices.length ?
+            canonicalParameterIndices[parameterIndex] : -1;
+    }
+
+    /**
+     * Follow the delegation chain of the provided constructor.
+     *
+     * @param constructor Constructor to analyze. Cannot be {@code null}.
+     * @return The {@link ConstructorDelegation} of {@code constructor}, or {@link #NONE} if it does not delegate.
+     *         Never {@code null}.
+     *
+     * @throws NullPointerException if {@code constructor} is {@code null}.
+     */
+    @NotNull
+    private static ConstructorDelegation compute(@NotNull PsiMethod constructor)
+    {
+        Preconditions.checkNotNull(constructor, "constructor cannot be null.");
+
+        int[] indices = new int[constructor.getParameterList().getParametersCount()];
+        for (int i = 0; i < indices.length; i++)
+        {
+            indices[i] = i;
+        }
+
+        // Recursive constructor invocations do not compile, but may be present while the user is typing.
+        Set<PsiMethod> visited = Sets.newHashSet(constructor);
+        PsiMethod current = constructor;
+        PsiMethodCallExpression thisCall = findThisCall(current);
+        while (thisCall != null)
+        {
+            PsiMethod target = thisCall.resolveMethod();
+            if (target == null || !visited.add(target))
+            {
+                return NONE;
+            }
+            int[] targetIndices = new int[indices.length];
+            Arrays.fill(targetIndices, -1);
+            PsiExpression[] arguments = thisCall.getArgumentList().getExpressions();
+            for (int argument = 0; argument < arguments.length; argument++)
+            {
+                int currentIndex = getParameterIndex(current, arguments[argument]);
+                for (int i = 0; i < indices.length; i++)
+                {
+                    if (currentIndex >= 0 && indices[i] == currentIndex)
+                    {
+                        targetIndices[i] = argument;
+                    }
+                }
+            }
+            indices = targetIndices;
+            current = target;
+            thisCall = findThisCall(current);
+        }
+        return current == constructor ? NONE : new ConstructorDelegation(current, indices);
+    }
+
+    /**
+     * Find the {@code this(...)} call which starts the body of the provided constructor.
+     *
+     * @param constructor Constructor to search. Cannot be {@code null}.
+     * @return The {@code this(...)} call, or {@code null} if the constructor does not start with one.
+     *
+     * @throws NullPointerException if {@code constructor} is {@code null}.
+     */
+    @Nullable
+    private static PsiMethodCallExpression findThisCall(@NotNull PsiMethod constructor)
+    {
+        Preconditions.checkNotNull(constructor, "constructor cannot be null.");
+
+        PsiCodeBlock body = constructor.getBody();
+        if (body == null)
+        {
+            return null;
+        }
+        PsiStatement[] statements = body.getStatements();
+        if (statements.length == 0 || !(statements[0] instanceof PsiExpressionStatement))
+        {
+            return null;
+        }
+        PsiExpression expression = ((PsiExpressionStatement) statements[0]).getExpression();
+        if (expression instanceof PsiMethodCallExpression &&
+            PsiKeyword.THIS.equals(((PsiMethodCallExpression) expression).getMethodExpression().getText()))
+        {
+            return (PsiMethodCallExpression) expression;
+        }
+        return null;
+    }
+
+    /**
+     * Get the index of the parameter of the provided constructor which the provided argument refers to directly.
+     *
+     * @param constructor Constructor whose parameters are checked. Cannot be {@code null}.
+     * @param argument Argument of a {@code this(...)} call. Cannot be {@code null}.
+     * @return The index of the parameter, or {@code -1} if the argument is not simply a reference to a parameter.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static int getParameterIndex(@NotNull PsiMethod constructor, @NotNull PsiExpression argument)
+    {
+        Preconditions.checkNotNull(constructor, "constructor cannot be null.");
+        Preconditions.checkNotNull(argument, "argument cannot be null.");
+
+        if (argument instanceof PsiReferenceExpression)
+        {
+            PsiElement resolved = ((PsiReferenceExpression) argument).resolve();
+            if (resolved instanceof PsiParameter && resolved.getParent() == constructor.getParameterList())
+            {
+                return constructor.getParameterList().getParameterIndex((PsiParameter) resolved);
+            }
+        }
+        return -1;
+    }
+}
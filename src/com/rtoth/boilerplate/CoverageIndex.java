@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiBlockStatement;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiIfStatement;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiNewExpression;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.PsiThrowStatement;
+import com.intellij.psi.util.PsiTreeUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Answers whether an argument check of a source method is already exercised by the project's existing tests,
+ * according to the JaCoCo XML report configured in {@link GeneratorSettings#getCoverageReportPath()}.
+ * <p>
+ * A check is a top level {@code if} statement of the method's body whose condition references the parameter and
+ * whose then branch starts by throwing the expected exception. It counts as covered if both of its branches were
+ * taken and the {@code throw} was executed. Checks made through calls, e.g. {@code Preconditions.checkNotNull}, are
+ * indistinguishable from any other call by line coverage and are therefore never considered covered. Line coverage
+ * does not record which value took a branch either, so a covered check only stands in for a generated test when that
+ * test is the only one of its parameter expecting the exception.
+ * <p>
+ * The report is read once and kept until the configured path or the report file changes. Source files which have
+ * been modified since the report was written are never considered covered, as its line numbers may be stale.
+ */
+public class CoverageIndex
+{
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getInstance(CoverageIndex.class);
+
+    /** Project whose coverage is indexed. */
+    private final Project project;
+
+    /** Settings containing the path of the report. */
+    private final GeneratorSettings settings;
+
+    /** Path of the currently loaded report, or {@code null} if none has been loaded. */
+    private Path reportPath;
+
+    /** Modification time of the currently loaded report, in milliseconds. */
+    private long reportModified;
+
+    /** Currently loaded report, or {@code null} if none has been loaded or it could not be read. */
+    private JacocoReport report;
+
+    /**
+     * Create a new {@link CoverageIndex}.
+     *
+     * @param project {@link Project} whose coverage is indexed. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    public CoverageIndex(@NotNull Project project)
+    {
+        this.project = Preconditions.checkNotNull(project, "project cannot be null.");
+        this.settings = GeneratorSettings.getInstance(project);
+    }
+
+    /**
+     * Get the {@link CoverageIndex} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which to get the index. Cannot be {@code null}.
+     * @return The {@link CoverageIndex} for {@code project}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    @NotNull
+    static CoverageIndex getInstance(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        return ServiceManager.getService(project, CoverageIndex.class);
+    }
+
+    /**
+     * Check whether every check of the provided parameter which throws the provided exception is already covered by
+     * existing tests.
+     * <p>
+     * Must be called from within a read action.
+     *
+     * @param method Method whose checks are examined. Cannot be {@code null}.
+     * @param parameterIndex Index of the checked parameter.
+     * @param expectedException Exception thrown by the checks. Cannot be {@code null}.
+     * @return {@code true} if the method has at least one such check and all of them are covered, {@code false}
+     *         otherwise, including when no report is configured or it cannot be used for the method's file.
+     *
+     * @throws IndexOutOfBoundsException if {@code parameterIndex} is not a valid parameter index.
+     * @throws NullPointerException if {@code method} or {@code expectedException} is {@code null}.
+     */
+    boolean isCheckCovered(@NotNull PsiMethod method, int parameterIndex,
+                           @NotNull Class<? extends Exception> expectedException)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+        Preconditions.checkNotNull(expectedException, "expectedException cannot be null.");
+        PsiParameter parameter = method.getParameterList().getParameters()[parameterIndex];
+
+        PsiCodeBlock body = method.getBody();
+        PsiFile file = method.getContainingFile();
+        if (body == null || !(file instanceof PsiJavaFile) || DumbService.isDumb(project))
+        {
+            return false;
+        }
+        VirtualFile virtualFile = file.getVirtualFile();
+        Document document = PsiDocumentManager.getInstance(project).getDocument(file);
+        if (virtualFile == null || document == null || FileDocumentManager.getInstance().isDocumentUnsaved(document))
+        {
+            return false;
+        }
+        JacocoReport currentReport = getReport(virtualFile.getTimeStamp());
+        if (currentReport == null)
+        {
+            return false;
+        }
+
+        PsiJavaFile javaFile = (PsiJavaFile) file;
+        String packagePath = javaFile.getPackageName().replace('.', '/');
+        String sourcePath = packagePath.isEmpty() ? javaFile.getName() : packagePath + "/" + javaFile.getName();
+        boolean found = false;
+        for (PsiStatement statement : body.getStatements())
+        {
+            if (!(statement instanceof PsiIfStatement))
+            {
+                continue;
+            }
+            PsiIfStatement ifStatement = (PsiIfStatement) statement;
+            PsiThrowStatement throwStatement = getLeadingThrow(ifStatement.getThenBranch());
+            PsiExpression condition = ifStatement.getCondition();
+            if (throwStatement == null || condition == null || !references(condition, parameter) ||
+                !isThrowOf(throwStatement, expectedException))
+            {
+                continue;
+            }
+            found = true;
+            if (!currentReport.isFullyBranched(sourcePath, getLine(document, condition)) ||
+                !currentReport.isCovered(sourcePath, getLine(document, throwStatement)))
+            {
+                return false;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the modification time of the configured report, which decides which checks are considered covered.
+     *
+     * @return The modification time of the report, in milliseconds, or {@code -1} if none is configured or it does
+     *         not exist.
+     */
+    long getReportModificationTime()
+    {
+        Path path = getReportPath();
+        if (path == null)
+        {
+            return -1;
+        }
+        try
+        {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Get the path of the configured report, resolved against the project's base directory.
+     *
+     * @return The path of the report, or {@code null} if none is configured.
+     */
+    @Nullable
+    private Path getReportPath()
+    {
+        String configuredPath = settings.getCoverageReportPath();
+        if (configuredPath.isEmpty())
+        {
+            return null;
+        }
+        Path path = Paths.get(configuredPath);
+        if (!path.isAbsolute() && project.getBasePath() != null)
+        {
+            path = Paths.get(project.getBasePath()).resolve(path);
+        }
+        return path;
+    }
+
+    /**
+     * Get the configured report, reading it again if the configured path or the report file has changed.
+     *
+     * @param sourceModified Modification time of the source file being examined, in milliseconds.
+     * @return The configured report, or {@code null} if none is configured, it cannot be read or it is older than
+     *         the source file.
+     */
+    @Nullable
+    private synchronized JacocoReport getReport(long sourceModified)
+    {
+        Path path = getReportPath();
+        if (path == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (!path.equals(reportPath) || modified != reportModified)
+            {
+                reportPath = path;
+                reportModified = modified;
+                report = null;
+                report = JacocoReport.read(path);
+            }
+        }
+        catch (IOException e)
+        {
+            // Keep the failed path and time, so a broken report is not read again until it changes.
+            LOG.info("Unable to read coverage report " + path, e);
+        }
+        return report != null && sourceModified <= reportModified ? report : null;
+    }
+
+    /**
+     * Get the {@code throw} statement with which the provided branch starts.
+     *
+     * @param branch Branch to examine. Can be {@code null}.
+     * @return The leading {@code throw} statement, or {@code null} if the branch does not start with one.
+     */
+    @Nullable
+    private static PsiThrowStatement getLeadingThrow(@Nullable PsiStatement branch)
+    {
+        if (branch instanceof PsiBlockStatement)
+        {
+            PsiStatement[] statements = ((PsiBlockStatement) branch).getCodeBlock().getStatements();
+            branch = statements.length > 0 ? statements[0] : null;
+        }
+        return branch instanceof PsiThrowStatement ? (PsiThrowStatement) branch : null;
+    }
+
+    /**
+     * Check whether the provided {@code throw} statement throws a new instance of the provided exception.
+     *
+     * @param throwStatement Statement to examine. Cannot be {@code null}.
+     * @param exception Exception which should be thrown. Cannot be {@code null}.
+     * @return {@code true} if a new {@code exception} is thrown, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code throwStatement} or {@code exception} is {@code null}.
+     */
+    private static boolean isThrowOf(@NotNull PsiThrowStatement throwStatement,
+                                     @NotNull Class<? extends Exception> exception)
+    {
+        Preconditions.checkNotNull(throwStatement, "throwStatement cannot be null.");
+        Preconditions.checkNotNull(exception, "exception cannot be null.");
+
+        PsiExpression thrown = throwStatement.getException();
+        if (!(thrown instanceof PsiNewExpression))
+        {
+            return false;
+        }
+        PsiJavaCodeReferenceElement classReference = ((PsiNewExpression) thrown).getClassReference();
+        return classReference != null && (exception.getName().equals(classReference.getQualifiedName()) ||
+            exception.getSimpleName().equals(classReference.getReferenceName()));
+    }
+
+    /**
+     * Check whether the provided expression references the provided parameter.
+     *
+     * @param expression Expression to examine. Cannot be {@code null}.
+     * @param parameter Parameter which should be referenced. Cannot be {@code null}.
+     * @return {@code true} if {@code expression} references {@code parameter}, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code expression} or {@code parameter} is {@code null}.
+     */
+    private static boolean references(@NotNull PsiExpression expression, @NotNull PsiParameter parameter)
+    {
+        Preconditions.checkNotNull(expression, "expression cannot be null.");
+        Preconditions.checkNotNull(parameter, "parameter cannot be null.");
+
+        for (PsiReferenceExpression reference :
+            PsiTreeUtil.collectElementsOfType(expression, PsiReferenceExpression.class))
+        {
+            if (reference.isReferenceTo(parameter))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the line on which the provided element starts.
+     *
+     * @param document Document containing the element. Cannot be {@code null}.
+     * @param element Element whose line to get. Cannot be {@code null}.
+     * @return The line number, starting at 1 as in coverage reports.
+     *
+     * @throws NullPointerException if {@code document} or {@code element} is {@code null}.
+     */
+    private static int getLine(@NotNull Document document, @NotNull PsiElement element)
+    {
+        Preconditions.checkNotNull(document, "document cannot be null.");
+        Preconditions.checkNotNull(element, "element cannot be null.");
+
+        return document.getLineNumber(element.getTextRange().getStartOffset()) + 1;
+    }
+}
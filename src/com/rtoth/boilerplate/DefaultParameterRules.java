@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.intellij.psi.PsiEllipsisType;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.util.PsiUtil;
+import com.rtoth.boilerplate.parameters.ContainerParameterRule;
+import com.rtoth.boilerplate.parameters.IntegerParameterRule;
+import com.rtoth.boilerplate.parameters.ObjectParameterRule;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+import com.rtoth.boilerplate.parameters.StringParameterRule;
+import com.rtoth.boilerplate.parameters.SyntaxOnlyTypes;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Decides which methods can be tested and builds the {@link ParameterRule}s they start out with, shared by the
+ * interactive dialog and batch generation.
+ */
+final class DefaultParameterRules
+{
+    /**
+     * Private constructor for utility class.
+     */
+    private DefaultParameterRules()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Check whether test cases can be generated for the provided method.
+     *
+     * @param method {@link PsiMethod} to check. Cannot be {@code null}.
+     * @return {@code true} if {@code method} is visible to tests, has a body and has at least one parameter,
+     *         {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code method} is {@code null}.
+     */
+    static boolean isTestable(@NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        return PsiUtil.getAccessLevel(method.getModifierList()) != PsiUtil.ACCESS_LEVEL_PRIVATE &&
+            !method.hasModifierProperty(PsiModifier.ABSTRACT) &&
+            method.getParameterList().getParametersCount() > 0;
+    }
+
+    /**
+     * Build the list of default {@link ParameterRule}s for the provided method.
+     *
+     * @param method {@link PsiMethod} for which to build the default parameter rules. Cannot be {@code null}.
+     * @return An {@link ImmutableList} of default {@link ParameterRule}s for {@code method}. Never {@code null}, and
+     *         will always contain exactly the number of parameters defined for the method in the correct order.
+     *
+     * @throws IllegalStateException if any of the method's parameters has an unsupported type.
+     * @throws NullPointerException if {@code method} is {@code null}.
+     */
+    @NotNull
+    static ImmutableList<ParameterRule> build(@NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        ImmutableList.Builder<ParameterRule> rulesBuilder = ImmutableList.builder();
+        for (PsiParameter parameter : method.getParameterList().getParameters())
+        {
+            PsiType type = parameter.getType();
+            // Varargs are tested by passing an array explicitly.
+            if (type instanceof PsiEllipsisType)
+            {
+                type = ((PsiEllipsisType) type).toArrayType();
+            }
+            String name = parameter.getName();
+            if (name != null)
+            {
+                if (type instanceof PsiPrimitiveType)
+                {
+                    // TODO: Make this handle more primitives!
+                    if (type.equals(PsiType.INT))
+                    {
+                        rulesBuilder.add(new IntegerParameterRule(name));
+                    }
+                    else
+                    {
+                        throw new IllegalStateException("This functionality cannot currently be used on a class " +
+                            "containing an unsupported parameter type: " + type.getPresentableText());
+                    }
+                }
+                else if (SyntaxOnlyTypes.getCanonicalText(type).equals("java.lang.String"))
+                {
+                    rulesBuilder.add(new StringParameterRule(type, name));
+                }
+                else if (ContainerParameterRule.isSupported(type))
+                {
+                    rulesBuilder.add(new ContainerParameterRule(type, name));
+                }
+                else
+                {
+                    rulesBuilder.add(new ObjectParameterRule(type, name));
+                }
+            }
+            else
+            {
+                throw new IllegalStateException("Unexpected error retrieving method parameter information. " +
+                    "Parameter of type " + type.getPresentableText() + " on method " + method.getName() +
+                    " has a null name.");
+            }
+        }
+
+        return rulesBuilder.build();
+    }
+}
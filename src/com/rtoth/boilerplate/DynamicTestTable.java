@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.intellij.openapi.util.text.StringUtil;
+import com.rtoth.boilerplate.parameters.ParameterInitializer;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Renders the invalid argument tests of one constructor as a static table with one row per test, plus a single
+ * JUnit 5 {@code @TestFactory} which lazily streams a {@code DynamicTest} for each row, e.g.
+ * <pre>
+ *     private static final Object[][] CONSTRUCTOR_INVALID_ARGUMENTS_CASES =
+ *     {
+ *         {"nullName_throwsNullPointerException", null, 0, NullPointerException.class},
+ *         {"countLessThan0_throwsIllegalArgumentException", "test", -1, IllegalArgumentException.class},
+ *     };
+ *
+ *     &#64;TestFactory
+ *     &#64;SuppressWarnings("unchecked")
+ *     Stream&lt;DynamicTest&gt; constructor_invalidArguments()
+ *     {
+ *         return Arrays.stream(CONSTRUCTOR_INVALID_ARGUMENTS_CASES).map(row -&gt; DynamicTest.dynamicTest(
+ *             (String) row[0],
+ *             () -&gt; assertThrows((Class&lt;? extends Throwable&gt;) row[3],
+ *                 () -&gt; new Foo((String) row[1], (int) row[2]))));
+ *     }
+ * </pre>
+ * The generated source therefore grows by one line per test rather than by one method per test.
+ */
+final class DynamicTestTable
+{
+    /** Text preceding the argument list of the invocation, e.g. {@code new Foo}. */
+    private final String invocationTarget;
+
+    /** {@link ParameterRule}s for each parameter of the constructor under test. */
+    private final List<ParameterRule> parameterRules;
+
+    /** Rendered rows of the table, each on its own line. */
+    private final StringBuilder rows = new StringBuilder();
+
+    /**
+     * Create a new, empty {@link DynamicTestTable}.
+     *
+     * @param invocationTarget Text preceding the argument list of the invocation, e.g. {@code new Foo}. Cannot be
+     *                         {@code null}.
+     * @param parameterRules {@link ParameterRule}s for each parameter of the constructor under test. Cannot be
+     *                       {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    DynamicTestTable(@NotNull String invocationTarget, @NotNull List<ParameterRule> parameterRules)
+    {
+        this.invocationTarget = Preconditions.checkNotNull(invocationTarget, "invocationTarget cannot be null.");
+        this.parameterRules = Preconditions.checkNotNull(parameterRules, "parameterRules cannot be null.");
+    }
+
+    /**
+     * Get the name of the table read by the provided test factory, e.g. {@code CONSTRUCTOR_INVALID_ARGUMENTS_CASES}
+     * for {@code constructor_invalidArguments}.
+     *
+     * @param factoryName Name of the test factory method. Cannot be {@code null}.
+     * @return The name of the table. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code factoryName} is {@code null}.
+     */
+    @NotNull
+    static String getTableName(@NotNull String factoryName)
+    {
+        Preconditions.checkNotNull(factoryName, "factoryName cannot be null.");
+
+        StringBuilder tableName = new StringBuilder(factoryName.length() + 8);
+        for (int i = 0; i < factoryName.length(); i++)
+        {
+            char c = factoryName.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && Character.isLowerCase(factoryName.charAt(i - 1)))
+            {
+                tableName.append('_');
+            }
+            tableName.append(Character.toUpperCase(c));
+        }
+        return tableName.append("_CASES").toString();
+    }
+
+    /**
+     * Add a row expecting the provided exception when the parameter of {@code invalidRule} receives
+     * {@code invalidInitializer} and every other parameter its first valid value.
+     *
+     * @param description Name of the dynamic test. Cannot be {@code null}.
+     * @param invalidRule Rule of the parameter which receives {@code invalidInitializer}. Cannot be {@code null}.
+     * @param invalidInitializer Invalid value for {@code invalidRule}'s parameter. Cannot be {@code null}.
+     * @param expectedException Exception expected from the constructor. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    void addRow(@NotNull String description, @NotNull ParameterRule invalidRule,
+                @NotNull ParameterInitializer invalidInitializer, @NotNull Class<? extends Exception> expectedException)
+    {
+        Preconditions.checkNotNull(description, "description cannot be null.");
+        Preconditions.checkNotNull(invalidRule, "invalidRule cannot be null.");
+        Preconditions.checkNotNull(invalidInitializer, "invalidInitializer cannot be null.");
+        Preconditions.checkNotNull(expectedException, "expectedException cannot be null.");
+
+        rows.append("    {\"").append(StringUtil.escapeStringCharacters(description)).append('"');
+        for (ParameterRule rule : parameterRules)
+        {
+            rows.append(", ").append(rule.equals(invalidRule) ?
+                invalidInitializer.getInitializerText() :
+                rule.getValidInitializers().get(0).getInitializerText());
+        }
+        rows.append(", ").append(expectedException.getCanonicalName()).append(".class},\n");
+    }
+
+    /**
+     * Check whether any rows have been added.
+     *
+     * @return {@code true} if no rows have been added, {@code false} otherwise.
+     */
+    boolean isEmpty()
+    {
+        return rows.length() == 0;
+    }
+
+    /**
+     * Render the table and the test factory streaming from it.
+     * <p>
+     * Types are fully qualified, so they are shortened into imports when the test case is written.
+     *
+     * @param factoryName Name of the test factory method. Cannot be {@code null}.
+     * @param tableName Name of the table, see {@link #getTableName}. Cannot be {@code null}.
+     * @return The rendered test case. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    TestCase render(@NotNull String factoryName, @NotNull String tableName)
+    {
+        Preconditions.checkNotNull(factoryName, "factoryName cannot be null.");
+        Preconditions.checkNotNull(tableName, "tableName cannot be null.");
+
+        StringBuilder text = new StringBuilder(rows.length() + 512);
+        text.append("private static final Object[][] ").append(tableName).append(" =\n{\n")
+            .append(rows)
+            .append("};\n\n")
+            .append("@org.junit.jupiter.api.TestFactory\n")
+            .append("@SuppressWarnings(\"unchecked\")\n")
+            .append("java.util.stream.Stream<org.junit.jupiter.api.DynamicTest> ").append(factoryName).append("()\n")
+            .append("{\n")
+            .append("    return java.util.Arrays.stream(").append(tableName)
+            .append(").map(row -> org.junit.jupiter.api.DynamicTest.dynamicTest(\n")
+            .append("        (String) row[0],\n")
+            .append("        () -> assertThrows((Class<? extends Throwable>) row[").append(parameterRules.size() + 1)
+            .append("],\n            () -> ").append(invocationTarget).append('(');
+        for (int i = 0; i < parameterRules.size(); i++)
+        {
+            if (i > 0)
+            {
+                text.append(", ");
+            }
+            text.append('(').append(parameterRules.get(i).getTypeText())
+                .append(") row[").append(i + 1).append(']');
+        }
+        text.append("))));\n}");
+        return new TestCase(factoryName, text.toString());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Defines an {@link AnAction} which exports a {@link GenerationPlan} for every Java source file selected by the user
+ * (recursing into selected directories), so its tests can be generated by other processes through the
+ * {@link ShardedGenerationStarter}.
+ * <p>
+ * Each class is planned with the same rules the {@link BatchTestGenerator} would use for it. This action is invoked
+ * by the user of this plugin.
+ */
+public class ExportGenerationPlanAction extends AnAction
+{
+    @Override
+    public void update(AnActionEvent event)
+    {
+        VirtualFile[] files = event.getData(PlatformDataKeys.VIRTUAL_FILE_ARRAY);
+        event.getPresentation().setEnabledAndVisible(
+            event.getData(PlatformDataKeys.PROJECT) != null && files != null && files.length > 0);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event)
+    {
+        Project project = event.getData(PlatformDataKeys.PROJECT);
+        VirtualFile[] files = event.getData(PlatformDataKeys.VIRTUAL_FILE_ARRAY);
+        if (project == null || files == null)
+        {
+            return;
+        }
+        VirtualFileWrapper target = FileChooserFactory.getInstance()
+            .createSaveFileDialog(new FileSaverDescriptor("Export Generation Plan",
+                "Plan of the selected classes, for generating their tests in other processes", "plan"), project)
+            .save(project.getBaseDir(), "boilerplate.plan");
+        if (target == null)
+        {
+            return;
+        }
+
+        List<PsiJavaFile> sourceFiles = BatchJUnitGenerationAction.collectSourceFiles(project, files);
+        BatchTestGenerator batchTestGenerator = new BatchTestGenerator(project);
+        try
+        {
+            int exported = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                (ThrowableComputable<Integer, IOException>) () ->
+                {
+                    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+                    int count = 0;
+                    try (Writer writer = Files.newBufferedWriter(target.getFile().toPath(), Charsets.UTF_8))
+                    {
+                        GenerationPlan.writeHeader(writer);
+                        for (int i = 0; i < sourceFiles.size(); i++)
+                        {
+                            indicator.checkCanceled();
+                            indicator.setFraction((double) i / sourceFiles.size());
+                            PsiJavaFile sourceFile = sourceFiles.get(i);
+                            // One short read action per class, so a large selection never blocks writers for long.
+                            Optional<GenerationPlan> plan = ApplicationManager.getApplication().runReadAction(
+                                (Computable<Optional<GenerationPlan>>) () -> plan(batchTestGenerator, sourceFile));
+                            if (plan.isPresent())
+                            {
+                                plan.get().writeTo(writer);
+                                count++;
+                            }
+                        }
+                    }
+                    return count;
+                },
+                "Exporting Generation Plan", true, project);
+            Messages.showInfoMessage(project, "Exported " + exported + " of " + sourceFiles.size() +
+                " classes to " + target.getFile().getPath() + ".", "Boilerplate JUnit Generator");
+        }
+        catch (IOException ioe)
+        {
+            Messages.showWarningDialog(project, "Unable to export generation plan: " + ioe.getMessage(), "Warning");
+        }
+    }
+
+    /**
+     * Plan the class in the provided source file.
+     * <p>
+     * Must be called from within a read action.
+     *
+     * @param batchTestGenerator Generator whose rules are planned. Cannot be {@code null}.
+     * @param sourceFile Source file to plan. Cannot be {@code null}.
+     * @return {@link Optional} containing the plan, or {@link Optional#empty()} if the file does not contain exactly
+     *         one named class or the class has nothing to test. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    private static Optional<GenerationPlan> plan(@NotNull BatchTestGenerator batchTestGenerator,
+                                                 @NotNull PsiJavaFile sourceFile)
+    {
+        Preconditions.checkNotNull(batchTestGenerator, "batchTestGenerator cannot be null.");
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+
+        if (!sourceFile.isValid())
+        {
+            return Optional.empty();
+        }
+        Optional<PsiClass> sourceClass = PsiUtility.getSingleClass(sourceFile);
+        if (!sourceClass.isPresent() || sourceClass.get().getQualifiedName() == null)
+        {
+            return Optional.empty();
+        }
+        ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules =
+            batchTestGenerator.buildMethodRules(sourceClass.get());
+        return methodRules.isEmpty() ?
+            Optional.empty() : Optional.of(GenerationPlan.capture(sourceClass.get(), methodRules));
+    }
+}
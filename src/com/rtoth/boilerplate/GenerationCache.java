@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.rtoth.boilerplate.parameters.ParameterInitializer;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Content addressed cache of the test cases rendered for source classes, so repeated batch and headless runs skip
+ * classes which have not changed since they were last generated.
+ * <p>
+ * Results are keyed by a hash of everything the rendered text depends on: {@link #GENERATOR_VERSION}, the
+ * {@link GeneratorSettings#getFingerprint() settings}, the class's name, time budget and constructor signatures
+ * (which the receiver factory depends on), and the text and rule configuration of every planned method. Editing
+ * anything else in the class, or any other class, therefore keeps the result.
+ * <p>
+ * Each result is stored in its own file under {@code <system path>/boilerplate-cache}, followed by a checksum which
+ * is verified whenever it is read; corrupt results are deleted and treated as missing. Once the cache exceeds
+ * {@link #MAX_CACHE_BYTES}, the least recently used results are evicted.
+ */
+public class GenerationCache
+{
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getInstance(GenerationCache.class);
+
+    /** Version of the rendered output, to be incremented whenever a change to the generator changes it. */
+    static final int GENERATOR_VERSION = 1;
+
+    /** Maximum total size of all cached results, in bytes. */
+    static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    /** First {@code int} of every cached result, identifying the file format. */
+    private static final int MAGIC = 0x4250_4A43;
+
+    /** Extension of cached result files. */
+    private static final String EXTENSION = ".bin";
+
+    /** Directory containing the cached results. */
+    private final Path directory;
+
+    /** Size of each cached result mapped by key, least recently used first, or {@code null} until first used. */
+    private LinkedHashMap<String, Long> entries;
+
+    /** Total size of all cached results, in bytes. */
+    private long totalBytes;
+
+    /**
+     * Create a new {@link GenerationCache} in the IDE's system directory.
+     */
+    public GenerationCache()
+    {
+        this.directory = Paths.get(PathManager.getSystemPath(), "boilerplate-cache");
+    }
+
+    /**
+     * Get the {@link GenerationCache} of the application.
+     *
+     * @return The {@link GenerationCache}. Never {@code null}.
+     */
+    @NotNull
+    static GenerationCache getInstance()
+    {
+        return ServiceManager.getService(GenerationCache.class);
+    }
+
+    /**
+     * Compute the key of the test cases rendered for the provided class and rules under the project's current
+     * settings, including the template set automatic detection resolves to and the age of the coverage report.
+     * <p>
+     * Must be called from within a read action.
+     *
+     * @param project {@link Project} containing the class. Cannot be {@code null}.
+     * @param sourceClass {@link PsiClass} for which test cases are rendered. Cannot be {@code null}.
+     * @param methodRules Mapping of the {@link PsiMethod}s to test to their {@link ParameterRule}s. Cannot be
+     *                    {@code null}.
+     * @param templates Templates resolved for {@code sourceClass} (see {@link TestCaseGenerator#resolveTemplates}).
+     *                  Cannot be {@code null}.
+     * @return The key, as a hexadecimal string. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static String computeKey(@NotNull Project project, @NotNull PsiClass sourceClass,
+                             @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+                             @NotNull TestTemplateCache.Templates templates)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+
+        // The settings only name the template set and the coverage report, so what they resolve to is hashed too.
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+            .putInt(GENERATOR_VERSION)
+            .putString(GeneratorSettings.getInstance(project).getFingerprint(), Charsets.UTF_8)
+            .putString(templates.getTemplateSet().name(), Charsets.UTF_8)
+            .putLong(CoverageIndex.getInstance(project).getReportModificationTime())
+            .putString(String.valueOf(sourceClass.getQualifiedName()), Charsets.UTF_8)
+            .putInt(RuleConfigurationStore.getInstance(project).getTimeoutBudget(sourceClass));
+        for (PsiMethod constructor : sourceClass.getConstructors())
+        {
+            hasher.putString(PsiUtility.getSignature(constructor), Charsets.UTF_8);
+        }
+        for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> methodEntry : methodRules.entrySet())
+        {
+            // The body matters as well, for delegating constructors and checks which are already covered, and so
+            // does the canonical constructor they delegate to, which need not be tested itself.
+            hasher.putString(methodEntry.getKey().getText(), Charsets.UTF_8);
+            Optional<ConstructorDelegation> delegation = ConstructorDelegation.analyze(methodEntry.getKey());
+            if (delegation.isPresent())
+            {
+                hasher.putString(delegation.get().getCanonicalConstructor().getText(), Charsets.UTF_8);
+            }
+            // Hash what the rules render rather than their configuration, which is resolved against the project,
+            // e.g. the registered instance factories.
+            for (ParameterRule rule : methodEntry.getValue())
+            {
+                hasher.putString(rule.getTypeText(), Charsets.UTF_8).putByte((byte) 0);
+                for (ParameterInitializer initializer : rule.getValidInitializers())
+                {
+                    hasher.putString(initializer.getDescription(), Charsets.UTF_8).putByte((byte) 0)
+                        .putString(initializer.getInitializerText(), Charsets.UTF_8).putByte((byte) 0);
+                }
+                for (Map.Entry<ParameterInitializer, Class<? extends Exception>> invalidInitializer :
+                    rule.getInvalidInitializers().entrySet())
+                {
+                    hasher.putString(invalidInitializer.getKey().getDescription(), Charsets.UTF_8).putByte((byte) 0)
+                        .putString(invalidInitializer.getKey().getInitializerText(), Charsets.UTF_8).putByte((byte) 0)
+                        .putString(invalidInitializer.getValue().getName(), Charsets.UTF_8).putByte((byte) 0);
+                }
+                hasher.putString(rule.getValueGeneratorText("random"), Charsets.UTF_8).putByte((byte) 1);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Check whether every one of the provided test cases is still present in the test class of the provided source
+     * class, across all of its shards.
+     * <p>
+     * Must be called from within a read action.
+     *
+     * @param sourceClass Source class whose test class to check. Cannot be {@code null} and must be defined in a
+     *                    valid {@link PsiJavaFile}.
+     * @param testCases Test cases which should be present. Cannot be {@code null}.
+     * @return {@code true} if a method or field with each test case's name exists, {@code false} otherwise.
+     *
+     * @throws IllegalArgumentException if {@code sourceClass} is not defined in a valid {@link PsiJavaFile}.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    static boolean isWritten(@NotNull PsiClass sourceClass, @NotNull List<TestCase> testCases)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        Optional<PsiClass> testClass = PsiUtility.findTestClass(sourceClass);
+        PsiDirectory testDirectory =
+            testClass.isPresent() ? testClass.get().getContainingFile().getContainingDirectory() : null;
+        if (testDirectory == null)
+        {
+            return testCases.isEmpty();
+        }
+        Set<String> names = Sets.newHashSet();
+        String baseTestClassName = testClass.get().getName();
+        // Shards may have gaps, e.g. if a lower shard was deleted, so every file in the directory is checked.
+        for (PsiFile shardFile : testDirectory.getFiles())
+        {
+            if (!(shardFile instanceof PsiJavaFile) ||
+                !TestShardTracker.isShardName(baseTestClassName, FileUtil.getNameWithoutExtension(shardFile.getName())))
+            {
+                continue;
+            }
+            for (PsiClass shardClass : ((PsiJavaFile) shardFile).getClasses())
+            {
+                for (PsiMethod method : shardClass.getMethods())
+                {
+                    names.add(method.getName());
+                }
+                for (PsiField field : shardClass.getFields())
+                {
+                    names.add(field.getName());
+                }
+            }
+        }
+        return testCases.stream().allMatch(testCase -> names.contains(testCase.getName()));
+    }
+
+    /**
+     * Load the test cases cached under the provided key.
+     *
+     * @param key Key computed by {@link #computeKey}. Cannot be {@code null}.
+     * @return {@link Optional} containing the cached test cases, or {@link Optional#empty()} if none are cached or
+     *         the cached result is corrupt. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code key} is {@code null}.
+     */
+    @NotNull
+    synchronized Optional<ImmutableList<TestCase>> load(@NotNull String key)
+    {
+        Preconditions.checkNotNull(key, "key cannot be null.");
+
+        if (!getEntries().containsKey(key))
+        {
+            return Optional.empty();
+        }
+        Path file = directory.resolve(key + EXTENSION);
+        try
+        {
+            ImmutableList<TestCase> testCases = decode(Files.readAllBytes(file));
+            if (testCases == null)
+            {
+                LOG.info("Discarding corrupt generation cache entry " + file);
+                remove(key);
+                return Optional.empty();
+            }
+            // The modification time doubles as the access time, so recency survives restarts.
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            // Reading an access ordered map marks the entry as most recently used.
+            entries.get(key);
+            return Optional.of(testCases);
+        }
+        catch (IOException ioe)
+        {
+            LOG.info("Unable to read generation cache entry " + file, ioe);
+            remove(key);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cache the provided test cases under the provided key, evicting the least recently used results if the cache
+     * grows too large.
+     * <p>
+     * Failing to write the cache only makes later runs slower, so it is logged rather than reported.
+     *
+     * @param key Key computed by {@link #computeKey}. Cannot be {@code null}.
+     * @param testCases Test cases to cache. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    synchronized void store(@NotNull String key, @NotNull List<TestCase> testCases)
+    {
+        Preconditions.checkNotNull(key, "key cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        getEntries();
+        Path file = directory.resolve(key + EXTENSION);
+        try
+        {
+            byte[] encoded = encode(testCases);
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, encoded);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Long previous = entries.remove(key);
+            totalBytes += encoded.length - (previous != null ? previous : 0);
+            entries.put(key, (long) encoded.length);
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > MAX_CACHE_BYTES && eldest.hasNext())
+            {
+                Map.Entry<String, Long> entry = eldest.next();
+                Files.deleteIfExists(directory.resolve(entry.getKey() + EXTENSION));
+                totalBytes -= entry.getValue();
+                eldest.remove();
+            }
+        }
+        catch (IOException ioe)
+        {
+            LOG.info("Unable to write generation cache entry " + file, ioe);
+        }
+    }
+
+    /**
+     * Get the size of each cached result, indexing the cache directory the first time it is needed.
+     *
+     * @return The size of each cached result mapped by key, least recently used first. Never {@code null}.
+     */
+    @NotNull
+    private LinkedHashMap<String, Long> getEntries()
+    {
+        if (entries == null)
+        {
+            entries = new LinkedHashMap<>(16, 0.75f, true);
+            totalBytes = 0;
+            Map<Path, FileTime> modified = Maps.newHashMap();
+            List<Path> files = Lists.newArrayList();
+            if (Files.isDirectory(directory))
+            {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION))
+                {
+                    for (Path file : stream)
+                    {
+                        modified.put(file, Files.getLastModifiedTime(file));
+                        files.add(file);
+                    }
+                }
+                catch (IOException ioe)
+                {
+                    LOG.info("Unable to index generation cache " + directory, ioe);
+                }
+            }
+            files.sort(Comparator.comparing(modified::get));
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                long size = file.toFile().length();
+                entries.put(name.substring(0, name.length() - EXTENSION.length()), size);
+                totalBytes += size;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Remove the result cached under the provided key.
+     *
+     * @param key Key of the result to remove. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code key} is {@code null}.
+     */
+    private void remove(@NotNull String key)
+    {
+        Preconditions.checkNotNull(key, "key cannot be null.");
+
+        Long size = entries.remove(key);
+        totalBytes -= size != null ? size : 0;
+        try
+        {
+            Files.deleteIfExists(directory.resolve(key + EXTENSION));
+        }
+        catch (IOException ioe)
+        {
+            LOG.info("Unable to delete generation cache entry " + key, ioe);
+        }
+    }
+
+    /**
+     * Encode the provided test cases, followed by a checksum of the encoding.
+     *
+     * @param testCases Test cases to encode. Cannot be {@code null}.
+     * @return The encoded test cases. Never {@code null}.
+     *
+     * @throws IOException never, as the test cases are encoded in memory.
+     * @throws NullPointerException if {@code testCases} is {@code null}.
+     */
+    @NotNull
+    private static byte[] encode(@NotNull List<TestCase> testCases) throws IOException
+    {
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeInt(testCases.size());
+        for (TestCase testCase : testCases)
+        {
+            writeString(payload, testCase.getName());
+            writeString(payload, testCase.getText());
+            writeString(payload, testCase.getSubject() != null ? testCase.getSubject() : "");
+        }
+        byte[] encodedPayload = payloadBytes.toByteArray();
+
+        ByteArrayOutputStream encodedBytes = new ByteArrayOutputStream(encodedPayload.length + 20);
+        DataOutputStream encoded = new DataOutputStream(encodedBytes);
+        encoded.writeInt(MAGIC);
+        encoded.writeInt(encodedPayload.length);
+        encoded.write(encodedPayload);
+        encoded.writeLong(Hashing.murmur3_128().hashBytes(encodedPayload).asLong());
+        return encodedBytes.toByteArray();
+    }
+
+    /**
+     * Decode test cases encoded by {@link #encode}, verifying their checksum.
+     *
+     * @param encodedBytes Encoded test cases. Cannot be {@code null}.
+     * @return The decoded test cases, or {@code null} if {@code encodedBytes} is corrupt.
+     *
+     * @throws NullPointerException if {@code encodedBytes} is {@code null}.
+     */
+    @Nullable
+    private static ImmutableList<TestCase> decode(@NotNull byte[] encodedBytes)
+    {
+        Preconditions.checkNotNull(encodedBytes, "encodedBytes cannot be null.");
+
+        try
+        {
+            DataInputStream encoded = new DataInputStream(new ByteArrayInputStream(encodedBytes));
+            int payloadLength = encoded.readInt() == MAGIC ? encoded.readInt() : -1;
+            if (payloadLength < 0 || payloadLength != encodedBytes.length - 16)
+            {
+                return null;
+            }
+            byte[] encodedPayload = new byte[payloadLength];
+            encoded.readFully(encodedPayload);
+            if (encoded.readLong() != Hashing.murmur3_128().hashBytes(encodedPayload).asLong())
+            {
+                return null;
+            }
+
+            DataInputStream payload = new DataInputStream(new ByteArrayInputStream(encodedPayload));
+            int count = payload.readInt();
+            ImmutableList.Builder<TestCase> testCases = ImmutableList.builder();
+            for (int i = 0; i < count; i++)
+            {
+                TestCase testCase = new TestCase(readString(payload), readString(payload));
+                String subject = readString(payload);
+                testCases.add(subject.isEmpty() ? testCase : testCase.withSubject(subject));
+            }
+            return testCases.build();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Write a string of any length as its UTF-8 length followed by its UTF-8 bytes.
+     *
+     * @param out Stream to which the string is written. Cannot be {@code null}.
+     * @param value String to write. Cannot be {@code null}.
+     *
+     * @throws IOException if the string cannot be written.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String value) throws IOException
+    {
+        Preconditions.checkNotNull(out, "out cannot be null.");
+        Preconditions.checkNotNull(value, "value cannot be null.");
+
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString}.
+     *
+     * @param in Stream from which the string is read. Cannot be {@code null}.
+     * @return The string. Never {@code null}.
+     *
+     * @throws IOException if the string cannot be read.
+     * @throws NullPointerException if {@code in} is {@code null}.
+     */
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException
+    {
+        Preconditions.checkNotNull(in, "in cannot be null.");
+
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot of the methods selected for a single source class and the {@link ParameterRule} configuration of each,
+ * which can be handed to another process to generate the class's tests there.
+ * <p>
+ * Plans are streamed as text, a header line naming the format version followed by one line per class:
+ * <pre>
+ *     # boilerplate-plan 1
+ *     com.package.name.Class&#9;&lt;method&gt;&#9;&lt;method&gt;...
+ * </pre>
+ * where each {@code <method>} is a {@link MethodRuleConfiguration} in its encoded form. Any tool can therefore
+ * produce plans, and a plan can be read one class at a time regardless of its size.
+ * <p>
+ * A plan is split across {@code n} processes by giving shard {@code i} every class for which
+ * {@link #isInShard isInShard(i, n)} holds. The split only depends on the class names, so every process agrees on it
+ * without coordination, and the shards stay the same when classes are added to or removed from the plan.
+ */
+final class GenerationPlan
+{
+    /** Version of the format written by {@link #writeHeader}. */
+    static final int FORMAT_VERSION = 1;
+
+    /** Prefix of the header line, followed by the format version. */
+    private static final String HEADER_PREFIX = "# boilerplate-plan ";
+
+    /** Separates the class name and the method configurations of a record. */
+    private static final char RECORD_SEPARATOR = '\t';
+
+    /** Qualified name of the planned class. */
+    private final String classQualifiedName;
+
+    /** Configurations of the planned methods. */
+    private final ImmutableList<MethodRuleConfiguration> methods;
+
+    /**
+     * Create a new {@link GenerationPlan}.
+     *
+     * @param classQualifiedName Qualified name of the planned class. Cannot be {@code null}.
+     * @param methods Configurations of the planned methods, all defined by the planned class. Cannot be
+     *                {@code null}.
+     *
+     * @throws IllegalArgumentException if any method is not defined by the planned class.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    GenerationPlan(@NotNull String classQualifiedName, @NotNull ImmutableList<MethodRuleConfiguration> methods)
+    {
+        this.classQualifiedName =
+            Preconditions.checkNotNull(classQualifiedName, "classQualifiedName cannot be null.");
+        this.methods = Preconditions.checkNotNull(methods, "methods cannot be null.");
+        Preconditions.checkArgument(
+            methods.stream().allMatch(method -> method.getClassQualifiedName().equals(classQualifiedName)),
+            "methods must all be defined by " + classQualifiedName + ".");
+    }
+
+    /**
+     * Create a new {@link GenerationPlan} capturing the current configuration of the provided rules.
+     *
+     * @param sourceClass {@link PsiClass} being planned. Cannot be {@code null} and must have a qualified name.
+     * @param methodRules Mapping of the {@link PsiMethod}s to test in {@code sourceClass} to their
+     *                    {@link ParameterRule}s. Cannot be {@code null}.
+     * @return A new {@link GenerationPlan}. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code sourceClass} has no qualified name.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static GenerationPlan capture(@NotNull PsiClass sourceClass,
+                                  @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+        String classQualifiedName = sourceClass.getQualifiedName();
+        Preconditions.checkArgument(classQualifiedName != null, "sourceClass must have a qualified name.");
+
+        ImmutableList.Builder<MethodRuleConfiguration> methods = ImmutableList.builder();
+        for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> methodEntry : methodRules.entrySet())
+        {
+            methods.add(MethodRuleConfiguration.capture(classQualifiedName,
+                PsiUtility.getSignature(methodEntry.getKey()), methodEntry.getValue()));
+        }
+        return new GenerationPlan(classQualifiedName, methods.build());
+    }
+
+    /**
+     * Write the header which must precede the records of a plan.
+     *
+     * @param writer Writer to which the header is written. Cannot be {@code null}.
+     *
+     * @throws IOException if the header cannot be written.
+     * @throws NullPointerException if {@code writer} is {@code null}.
+     */
+    static void writeHeader(@NotNull Writer writer) throws IOException
+    {
+        Preconditions.checkNotNull(writer, "writer cannot be null.");
+
+        writer.write(HEADER_PREFIX + FORMAT_VERSION + "\n");
+    }
+
+    /**
+     * Read a plan, one class at a time.
+     * <p>
+     * The header is read immediately, the records only as the returned stream is consumed. Malformed records are
+     * skipped. Closing the stream does not close {@code reader}.
+     *
+     * @param reader Reader positioned at the start of the plan. Cannot be {@code null}.
+     * @return Stream of the plan's records. Never {@code null}.
+     *
+     * @throws IOException if the header cannot be read, or the plan is of an unsupported format version.
+     * @throws NullPointerException if {@code reader} is {@code null}.
+     */
+    @NotNull
+    static Stream<GenerationPlan> read(@NotNull BufferedReader reader) throws IOException
+    {
+        Preconditions.checkNotNull(reader, "reader cannot be null.");
+
+        String header = reader.readLine();
+        if (header == null || !header.startsWith(HEADER_PREFIX))
+        {
+            throw new IOException("Not a generation plan.");
+        }
+        if (!header.substring(HEADER_PREFIX.length()).trim().equals(String.valueOf(FORMAT_VERSION)))
+        {
+            throw new IOException("Unsupported generation plan version " +
+                header.substring(HEADER_PREFIX.length()).trim() + ", expected " + FORMAT_VERSION + ".");
+        }
+        return reader.lines()
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .map(GenerationPlan::decode)
+            .filter(Optional::isPresent)
+            .map(Optional::get);
+    }
+
+    /**
+     * Decode a single record.
+     *
+     * @param record Record to decode. Cannot be {@code null}.
+     * @return {@link Optional} containing the decoded plan, or {@link Optional#empty()} if {@code record} is
+     *         malformed. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code record} is {@code null}.
+     */
+    @NotNull
+    private static Optional<GenerationPlan> decode(@NotNull String record)
+    {
+        Preconditions.checkNotNull(record, "record cannot be null.");
+
+        List<String> fields = Splitter.on(RECORD_SEPARATOR).splitToList(record);
+        String classQualifiedName = fields.get(0);
+        ImmutableList.Builder<MethodRuleConfiguration> methods = ImmutableList.builder();
+        for (String encoded : fields.subList(1, fields.size()))
+        {
+            Optional<MethodRuleConfiguration> method = MethodRuleConfiguration.decode(encoded);
+            if (!method.isPresent() || !method.get().getClassQualifiedName().equals(classQualifiedName))
+            {
+                return Optional.empty();
+            }
+            methods.add(method.get());
+        }
+        return classQualifiedName.isEmpty() ?
+            Optional.empty() : Optional.of(new GenerationPlan(classQualifiedName, methods.build()));
+    }
+
+    /**
+     * Write this plan as a single record.
+     *
+     * @param writer Writer to which the record is written, after the header. Cannot be {@code null}.
+     *
+     * @throws IOException if the record cannot be written.
+     * @throws NullPointerException if {@code writer} is {@code null}.
+     */
+    void writeTo(@NotNull Writer writer) throws IOException
+    {
+        Preconditions.checkNotNull(writer, "writer cannot be null.");
+
+        StringBuilder record = new StringBuilder(classQualifiedName);
+        for (MethodRuleConfiguration method : methods)
+        {
+            record.append(RECORD_SEPARATOR).append(method.encode());
+        }
+        writer.write(record.append('\n').toString());
+    }
+
+    /**
+     * Check whether this plan belongs to the provided shard.
+     *
+     * @param shard Index of the shard, starting at 0.
+     * @param shardCount Total number of shards.
+     * @return {@code true} if the shard should generate this plan, {@code false} otherwise.
+     *
+     * @throws IllegalArgumentException if {@code shardCount} is &lt; 1 or {@code shard} is not in
+     *                                  {@code [0, shardCount)}.
+     */
+    boolean isInShard(int shard, int shardCount)
+    {
+        Preconditions.checkArgument(shardCount >= 1, "shardCount must be >= 1.");
+        Preconditions.checkArgument(shard >= 0 && shard < shardCount, "shard must be in [0, shardCount).");
+
+        // A fixed hash rather than String.hashCode, so the split cannot change between JVMs.
+        return Math.floorMod(Hashing.murmur3_32().hashString(classQualifiedName, Charsets.UTF_8).asInt(),
+            shardCount) == shard;
+    }
+
+    /**
+     * Build the rules of the planned methods of the provided class.
+     * <p>
+     * Methods which no longer exist, whose parameters have changed or whose configuration is no longer valid are
+     * skipped, as are methods listed more than once after their first occurrence. Must be called from within a read
+     * action.
+     *
+     * @param sourceClass The planned class. Cannot be {@code null}.
+     * @return Mapping of the planned {@link PsiMethod}s to their {@link ParameterRule}s, in plan order. Never
+     *         {@code null}, but may be empty.
+     *
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> buildMethodRules(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        // Classes with compile errors may define the same signature twice, in which case the first one is planned.
+        Map<String, PsiMethod> sourceMethods = Maps.newHashMap();
+        for (PsiMethod method : sourceClass.getMethods())
+        {
+            sourceMethods.putIfAbsent(PsiUtility.getSignature(method), method);
+        }
+
+        ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> methodRules = ImmutableMap.builder();
+        // Plans may be written by any tool, so a signature listed twice must not fail the whole class.
+        Set<String> plannedSignatures = Sets.newHashSet();
+        for (MethodRuleConfiguration configuration : methods)
+        {
+            if (!plannedSignatures.add(configuration.getMethodSignature()))
+            {
+                continue;
+            }
+            PsiMethod method = sourceMethods.get(configuration.getMethodSignature());
+            if (method == null || !DefaultParameterRules.isTestable(method))
+            {
+                continue;
+            }
+            ImmutableList<ParameterRule> rules;
+            try
+            {
+                rules = DefaultParameterRules.build(method);
+            }
+            catch (IllegalStateException ise)
+            {
+                continue;
+            }
+            if (configuration.applyTo(rules) && rules.stream().allMatch(ParameterRule::isValid))
+            {
+                methodRules.put(method, rules);
+            }
+        }
+        return methodRules.build();
+    }
+
+    /**
+     * Get the qualified name of the planned class.
+     *
+     * @return The qualified name of the planned class. Never {@code null}.
+     */
+    @NotNull
+    String getClassQualifiedName()
+    {
+        return classQualifiedName;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.options.ConfigurationException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.ui.components.JBScrollPane;
+import com.rtoth.boilerplate.templates.TemplateVariable;
+
+import org.jetbrains.annotations.Nls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
+
+/**
+ * Settings page for the project's {@link GeneratorSettings}.
+ */
+public class GeneratorConfigurable implements Configurable
+{
+    /** Project whose settings are edited by this page. */
+    private final Project project;
+
+    /** Settings edited by this page. */
+    private final GeneratorSettings settings;
+
+    /** Combo box containing the selected {@link TestTemplateSet}. */
+    private final ComboBox<TestTemplateSet> templateSet = new ComboBox<>(TestTemplateSet.values());
+
+    /** Text area containing the custom invalid argument template. */
+    private final JTextArea customInvalidArgumentTemplate = new JTextArea(8, 80);
+
+    /** Text area containing the custom imports. */
+    private final JTextArea customImports = new JTextArea(3, 80);
+
+    /** Check box indicating whether JUnit 5 test classes run their tests concurrently. */
+    private final JCheckBox concurrentExecution =
+        new JCheckBox("Run JUnit 5 tests concurrently (@Execution(ExecutionMode.CONCURRENT))");
+
+    /** Check box indicating whether JUnit 5 constructor tests are generated as a table driven test factory. */
+    private final JCheckBox testFactory =
+        new JCheckBox("Generate JUnit 5 constructor tests as a @TestFactory streaming from a table of arguments");
+
+    /** Combo box containing the bound checked by scaling tests. */
+    private final ComboBox<ComplexityBound> complexityBound = new ComboBox<>(ComplexityBound.values());
+
+    /** Spinner containing the smaller size of scaling tests. */
+    private final JSpinner scalingBaseSize = new JSpinner(new SpinnerNumberModel(
+        GeneratorSettings.MIN_SCALING_SIZE, GeneratorSettings.MIN_SCALING_SIZE, GeneratorSettings.MAX_SCALING_SIZE,
+        100));
+
+    /** Spinner containing the number of cases per property based test. */
+    private final JSpinner propertyCases = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 1000));
+
+    /** Field containing the path of the JaCoCo XML report of existing tests. */
+    private final TextFieldWithBrowseButton coverageReportPath = new TextFieldWithBrowseButton();
+
+    /** Spinner containing the maximum number of test methods per test class. */
+    private final JSpinner maxTestMethodsPerClass = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 100));
+
+    /**
+     * Create a new {@link GeneratorConfigurable}.
+     *
+     * @param project {@link Project} whose settings are edited. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    public GeneratorConfigurable(@NotNull Project project)
+    {
+        this.project = Preconditions.checkNotNull(project, "project cannot be null.");
+        this.settings = GeneratorSettings.getInstance(project);
+    }
+
+    @Nls
+    @Override
+    public String getDisplayName()
+    {
+        return "Boilerplate JUnit Generator";
+    }
+
+    @Nullable
+    @Override
+    public String getHelpTopic()
+    {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public JComponent createComponent()
+    {
+        Font monospaced = new Font(Font.MONOSPACED, Font.PLAIN, customInvalidArgumentTemplate.getFont().getSize());
+        customInvalidArgumentTemplate.setFont(monospaced);
+        customImports.setFont(monospaced);
+        templateSet.addActionListener(e -> updateEnabled());
+        coverageReportPath.addBrowseFolderListener("JaCoCo XML Report",
+            "Coverage of the existing tests, e.g. build/reports/jacoco/test/jacocoTestReport.xml", project,
+            FileChooserDescriptorFactory.createSingleFileNoJarsDescriptor()
+                .withFileFilter(file -> "xml".equalsIgnoreCase(file.getExtension())));
+
+        // TODO: Better layout here.
+        JPanel panel = new JPanel(new GridBagLayout());
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.anchor = GridBagConstraints.LINE_START;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.weightx = 1.0;
+        constraints.gridx = 0;
+        constraints.gridy = 0;
+        panel.add(new JLabel("Test templates:"), constraints);
+        constraints.gridy++;
+        panel.add(templateSet, constraints);
+        constraints.gridy++;
+        panel.add(concurrentExecution, constraints);
+        constraints.gridy++;
+        panel.add(testFactory, constraints);
+        constraints.gridy++;
+        panel.add(new JLabel("Custom invalid argument template (variables: " +
+            Arrays.stream(TemplateVariable.values())
+                .map(variable -> "${" + variable.getTemplateName() + "}")
+                .collect(Collectors.joining(", ")) + "):"), constraints);
+        constraints.gridy++;
+        panel.add(new JBScrollPane(customInvalidArgumentTemplate), constraints);
+        constraints.gridy++;
+        panel.add(new JLabel("Custom imports (one per line, e.g. 'static org.junit.Assert.fail'):"), constraints);
+        constraints.gridy++;
+        panel.add(new JBScrollPane(customImports), constraints);
+        constraints.gridy++;
+        panel.add(new JLabel("Max test methods per test class, spilling into <Name>Test_2, ... (0 = unlimited):"),
+            constraints);
+        constraints.gridy++;
+        constraints.fill = GridBagConstraints.NONE;
+        panel.add(maxTestMethodsPerClass, constraints);
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.gridy++;
+        panel.add(new JLabel("Scaling tests for array and collection parameters, run at N and " +
+            ScalingGuard.SCALE + "N elements:"), constraints);
+        constraints.gridy++;
+        constraints.fill = GridBagConstraints.NONE;
+        panel.add(complexityBound, constraints);
+        constraints.gridy++;
+        panel.add(new JLabel("N:"), constraints);
+        constraints.gridy++;
+        panel.add(scalingBaseSize, constraints);
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.gridy++;
+        panel.add(new JLabel("Random cases per seeded property based test of valid arguments (0 = no property tests):"),
+            constraints);
+        constraints.gridy++;
+        constraints.fill = GridBagConstraints.NONE;
+        panel.add(propertyCases, constraints);
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        constraints.gridy++;
+        panel.add(new JLabel("JaCoCo XML report of existing tests, to skip invalid argument tests whose checks are " +
+            "already covered (empty = off):"), constraints);
+        constraints.gridy++;
+        panel.add(coverageReportPath, constraints);
+
+        // Push everything to the top.
+        constraints.gridy++;
+        constraints.weighty = 1.0;
+        panel.add(new JPanel(), constraints);
+
+        reset();
+        return panel;
+    }
+
+    @Override
+    public boolean isModified()
+    {
+        // The text areas only show the built-in templates unless the custom templates are selected.
+        return getSelectedTemplateSet() != settings.getTemplateSet() ||
+            getMaxTestMethodsPerClass() != settings.getMaxTestMethodsPerClass() ||
+            concurrentExecution.isSelected() != settings.isConcurrentExecution() ||
+            testFactory.isSelected() != settings.isTestFactory() ||
+            complexityBound.getSelectedItem() != settings.getComplexityBound() ||
+            getScalingBaseSize() != settings.getScalingBaseSize() ||
+            getPropertyCases() != settings.getPropertyCases() ||
+            !coverageReportPath.getText().trim().equals(settings.getCoverageReportPath()) ||
+            (getSelectedTemplateSet() == TestTemplateSet.CUSTOM &&
+                (!customInvalidArgumentTemplate.getText().equals(settings.getCustomInvalidArgumentTemplate()) ||
+                    !customImports.getText().equals(settings.getCustomImports())));
+    }
+
+    @Override
+    public void apply() throws ConfigurationException
+    {
+        // Validate before changing anything, so broken templates are never saved.
+        GeneratorSettings candidate = new GeneratorSettings();
+        copyTo(candidate);
+        try
+        {
+            TestTemplateCache.compile(candidate);
+        }
+        catch (TestGenerationException tge)
+        {
+            throw new ConfigurationException(tge.getMessage());
+        }
+        copyTo(settings);
+    }
+
+    @Override
+    public void reset()
+    {
+        templateSet.setSelectedItem(settings.getTemplateSet());
+        customInvalidArgumentTemplate.setText(settings.getCustomInvalidArgumentTemplate());
+        customImports.setText(settings.getCustomImports());
+        maxTestMethodsPerClass.setValue(settings.getMaxTestMethodsPerClass());
+        concurrentExecution.setSelected(settings.isConcurrentExecution());
+        testFactory.setSelected(settings.isTestFactory());
+        complexityBound.setSelectedItem(settings.getComplexityBound());
+        scalingBaseSize.setValue(settings.getScalingBaseSize());
+        propertyCases.setValue(settings.getPropertyCases());
+        coverageReportPath.setText(settings.getCoverageReportPath());
+        updateEnabled();
+    }
+
+    @Override
+    public void disposeUIResources()
+    {
+        // Nothing to dispose, all components are owned by this page.
+    }
+
+    /**
+     * Copy the values currently entered on this page to the provided settings.
+     *
+     * @param target Settings to which the values are copied. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code target} is {@code null}.
+     */
+    private void copyTo(@NotNull GeneratorSettings target)
+    {
+        Preconditions.checkNotNull(target, "target cannot be null.");
+
+        target.setTemplateSet(getSelectedTemplateSet());
+        target.setMaxTestMethodsPerClass(getMaxTestMethodsPerClass());
+        target.setConcurrentExecution(concurrentExecution.isSelected());
+        target.setTestFactory(testFactory.isSelected());
+        target.setComplexityBound((ComplexityBound) complexityBound.getSelectedItem());
+        target.setScalingBaseSize(getScalingBaseSize());
+        target.setPropertyCases(getPropertyCases());
+        target.setCoverageReportPath(coverageReportPath.getText());
+        if (getSelectedTemplateSet() == TestTemplateSet.CUSTOM)
+        {
+            target.setCustomInvalidArgumentTemplate(customInvalidArgumentTemplate.getText());
+            target.setCustomImports(customImports.getText());
+        }
+    }
+
+    /**
+     * Get the currently selected {@link TestTemplateSet}.
+     *
+     * @return The currently selected {@link TestTemplateSet}. Never {@code null}.
+     */
+    @NotNull
+    private TestTemplateSet getSelectedTemplateSet()
+    {
+        return (TestTemplateSet) templateSet.getSelectedItem();
+    }
+
+    /**
+     * Get the currently entered maximum number of test methods per test class.
+     *
+     * @return The currently entered maximum number of test methods per test class, or {@code 0} if unlimited.
+     */
+    private int getMaxTestMethodsPerClass()
+    {
+        return ((Number) maxTestMethodsPerClass.getValue()).intValue();
+    }
+
+    /**
+     * Get the currently entered smaller size of scaling tests.
+     *
+     * @return The currently entered smaller size of scaling tests.
+     */
+    private int getScalingBaseSize()
+    {
+        return ((Number) scalingBaseSize.getValue()).intValue();
+    }
+
+    /**
+     * Get the currently entered number of cases per property based test.
+     *
+     * @return The currently entered number of cases per property based test, or {@code 0} if none.
+     */
+    private int getPropertyCases()
+    {
+        return ((Number) propertyCases.getValue()).intValue();
+    }
+
+    /**
+     * Enable the custom template fields only while {@link TestTemplateSet#CUSTOM} is selected, and show the
+     * selected built-in templates otherwise.
+     */
+    private void updateEnabled()
+    {
+        TestTemplateSet selected = getSelectedTemplateSet();
+        boolean custom = selected == TestTemplateSet.CUSTOM;
+        boolean junit5 = selected == TestTemplateSet.JUNIT5 || selected == TestTemplateSet.AUTOMATIC;
+        concurrentExecution.setEnabled(junit5);
+        testFactory.setEnabled(junit5);
+        customInvalidArgumentTemplate.setEditable(custom);
+        customImports.setEditable(custom);
+        if (!custom)
+        {
+            customInvalidArgumentTemplate.setText(selected.getInvalidArgumentTemplate());
+            customImports.setText(Joiner.on('\n').join(selected.getImports()));
+        }
+        else
+        {
+            customInvalidArgumentTemplate.setText(settings.getCustomInvalidArgumentTemplate());
+            customImports.setText(settings.getCustomImports());
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Project level settings controlling how test cases are generated.
+ */
+@State(name = "BoilerplateGeneratorSettings", storages = @Storage("boilerplateJUnitGenerator.xml"))
+public class GeneratorSettings implements PersistentStateComponent<GeneratorSettings.State>
+{
+    /** Smallest base size of scaling tests, below which constant costs dominate the timings. */
+    static final int MIN_SCALING_SIZE = 100;
+
+    /** Largest base size of scaling tests, so the large size cannot overflow. */
+    static final int MAX_SCALING_SIZE = 1000000;
+
+    /** Persisted state of these settings. */
+    private State state = new State();
+
+    /** Incremented every time these settings change, so derived data can be cached. */
+    private volatile long modificationCount;
+
+    /**
+     * Get the {@link GeneratorSettings} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which to get the settings. Cannot be {@code null}.
+     * @return The {@link GeneratorSettings} for {@code project}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    @NotNull
+    static GeneratorSettings getInstance(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        return ServiceManager.getService(project, GeneratorSettings.class);
+    }
+
+    @NotNull
+    @Override
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(State state)
+    {
+        this.state = state;
+        modificationCount++;
+    }
+
+    /**
+     * Get the number of times these settings have changed.
+     *
+     * @return The number of times these settings have changed.
+     */
+    long getModificationCount()
+    {
+        return modificationCount;
+    }
+
+    /**
+     * Get the selected {@link TestTemplateSet}.
+     *
+     * @return The selected {@link TestTemplateSet}. Never {@code null}.
+     */
+    @NotNull
+    synchronized TestTemplateSet getTemplateSet()
+    {
+        try
+        {
+            return TestTemplateSet.valueOf(state.templateSet);
+        }
+        catch (IllegalArgumentException | NullPointerException e)
+        {
+            return TestTemplateSet.JUNIT4;
+        }
+    }
+
+    /**
+     * Set the selected {@link TestTemplateSet}.
+     *
+     * @param templateSet The selected {@link TestTemplateSet}. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code templateSet} is {@code null}.
+     */
+    synchronized void setTemplateSet(@NotNull TestTemplateSet templateSet)
+    {
+        state.templateSet = Preconditions.checkNotNull(templateSet, "templateSet cannot be null.").name();
+        modificationCount++;
+    }
+
+    /**
+     * Get the user's template for a test which expects an exception for an invalid argument, used with
+     * {@link TestTemplateSet#CUSTOM}.
+     *
+     * @return The user's invalid argument template. Never {@code null}.
+     */
+    @NotNull
+    synchronized String getCustomInvalidArgumentTemplate()
+    {
+        return state.customInvalidArgumentTemplate != null ?
+            state.customInvalidArgumentTemplate : TestTemplateSet.CUSTOM.getInvalidArgumentTemplate();
+    }
+
+    /**
+     * Set the user's template for a test which expects an exception for an invalid argument.
+     *
+     * @param template The user's invalid argument template. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code template} is {@code null}.
+     */
+    synchronized void setCustomInvalidArgumentTemplate(@NotNull String template)
+    {
+        state.customInvalidArgumentTemplate = Preconditions.checkNotNull(template, "template cannot be null.");
+        modificationCount++;
+    }
+
+    /**
+     * Get the imports needed by the user's templates, one per line, used with {@link TestTemplateSet#CUSTOM}.
+     *
+     * @return The imports needed by the user's templates. Never {@code null}.
+     */
+    @NotNull
+    synchronized String getCustomImports()
+    {
+        return state.customImports != null ?
+            state.customImports : Joiner.on('\n').join(TestTemplateSet.CUSTOM.getImports());
+    }
+
+    /**
+     * Set the imports needed by the user's templates, one per line.
+     *
+     * @param imports The imports needed by the user's templates. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code imports} is {@code null}.
+     */
+    synchronized void setCustomImports(@NotNull String imports)
+    {
+        state.customImports = Preconditions.checkNotNull(imports, "imports cannot be null.");
+        modificationCount++;
+    }
+
+    /**
+     * Get the maximum number of test methods per generated test class, beyond which test cases spill into additional
+     * shards ({@code <Name>Test_2}, {@code <Name>Test_3}, ...).
+     *
+     * @return The maximum number of test methods per test class, or {@code 0} if unlimited.
+     */
+    synchronized int getMaxTestMethodsPerClass()
+    {
+        return Math.max(0, state.maxTestMethodsPerClass);
+    }
+
+    /**
+     * Set the maximum number of test methods per generated test class.
+     *
+     * @param maxTestMethodsPerClass The maximum number of test methods per test class, or {@code 0} if unlimited.
+     *                               Cannot be negative.
+     *
+     * @throws IllegalArgumentException if {@code maxTestMethodsPerClass} is negative.
+     */
+    synchronized void setMaxTestMethodsPerClass(int maxTestMethodsPerClass)
+    {
+        Preconditions.checkArgument(maxTestMethodsPerClass >= 0, "maxTestMethodsPerClass cannot be negative.");
+        state.maxTestMethodsPerClass = maxTestMethodsPerClass;
+        modificationCount++;
+    }
+
+    /**
+     * Get whether JUnit 5 test classes are annotated with {@code @Execution(ExecutionMode.CONCURRENT)}.
+     *
+     * @return {@code true} if JUnit 5 test classes run their tests concurrently, {@code false} otherwise.
+     */
+    synchronized boolean isConcurrentExecution()
+    {
+        return state.concurrentExecution;
+    }
+
+    /**
+     * Set whether JUnit 5 test classes are annotated with {@code @Execution(ExecutionMode.CONCURRENT)}.
+     *
+     * @param concurrentExecution {@code true} if JUnit 5 test classes run their tests concurrently.
+     */
+    synchronized void setConcurrentExecution(boolean concurrentExecution)
+    {
+        state.concurrentExecution = concurrentExecution;
+        modificationCount++;
+    }
+
+    /**
+     * Get whether constructor tests are generated as a JUnit 5 {@code @TestFactory} which streams dynamic tests from
+     * a table of invalid arguments, rather than as one test method per invalid argument.
+     *
+     * @return {@code true} if JUnit 5 constructor tests are generated from a table, {@code false} otherwise.
+     */
+    synchronized boolean isTestFactory()
+    {
+        return state.testFactory;
+    }
+
+    /**
+     * Set whether constructor tests are generated as a JUnit 5 {@code @TestFactory} which streams dynamic tests from
+     * a table of invalid arguments.
+     *
+     * @param testFactory {@code true} if JUnit 5 constructor tests are generated from a table.
+     */
+    synchronized void setTestFactory(boolean testFactory)
+    {
+        state.testFactory = testFactory;
+        modificationCount++;
+    }
+
+    /**
+     * Get the bound checked by scaling tests of methods taking arrays or collections.
+     *
+     * @return The bound checked by scaling tests, or {@link ComplexityBound#NONE} if none are generated. Never
+     *         {@code null}.
+     */
+    @NotNull
+    synchronized ComplexityBound getComplexityBound()
+    {
+        try
+        {
+            return ComplexityBound.valueOf(state.complexityBound);
+        }
+        catch (IllegalArgumentException | NullPointerException e)
+        {
+            return ComplexityBound.NONE;
+        }
+    }
+
+    /**
+     * Set the bound checked by scaling tests of methods taking arrays or collections.
+     *
+     * @param complexityBound The bound checked by scaling tests, or {@link ComplexityBound#NONE} if none should be
+     *                        generated. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code complexityBound} is {@code null}.
+     */
+    synchronized void setComplexityBound(@NotNull ComplexityBound complexityBound)
+    {
+        state.complexityBound = Preconditions.checkNotNull(complexityBound, "complexityBound cannot be null.").name();
+        modificationCount++;
+    }
+
+    /**
+     * Get the smaller of the two sizes at which scaling tests run, the larger being {@link ScalingGuard#SCALE} times
+     * as large.
+     *
+     * @return The smaller size of scaling tests, always between {@link #MIN_SCALING_SIZE} and
+     *         {@link #MAX_SCALING_SIZE}.
+     */
+    synchronized int getScalingBaseSize()
+    {
+        return Math.min(MAX_SCALING_SIZE, Math.max(MIN_SCALING_SIZE, state.scalingBaseSize));
+    }
+
+    /**
+     * Set the smaller of the two sizes at which scaling tests run.
+     *
+     * @param scalingBaseSize The smaller size of scaling tests. Must be between {@link #MIN_SCALING_SIZE} and
+     *                        {@link #MAX_SCALING_SIZE}.
+     *
+     * @throws IllegalArgumentException if {@code scalingBaseSize} is out of range.
+     */
+    synchronized void setScalingBaseSize(int scalingBaseSize)
+    {
+        Preconditions.checkArgument(scalingBaseSize >= MIN_SCALING_SIZE && scalingBaseSize <= MAX_SCALING_SIZE,
+            "scalingBaseSize must be between " + MIN_SCALING_SIZE + " and " + MAX_SCALING_SIZE + ".");
+        state.scalingBaseSize = scalingBaseSize;
+        modificationCount++;
+    }
+
+    /**
+     * Get the number of random cases run by the property based test generated for each method.
+     *
+     * @return The number of cases per property based test, or {@code 0} if none are generated.
+     */
+    synchronized int getPropertyCases()
+    {
+        return Math.max(0, state.propertyCases);
+    }
+
+    /**
+     * Set the number of random cases run by the property based test generated for each method.
+     *
+     * @param propertyCases The number of cases per property based test, or {@code 0} if none should be generated.
+     *                      Cannot be negative.
+     *
+     * @throws IllegalArgumentException if {@code propertyCases} is negative.
+     */
+    synchronized void setPropertyCases(int propertyCases)
+    {
+        Preconditions.checkArgument(propertyCases >= 0, "propertyCases cannot be negative.");
+        state.propertyCases = propertyCases;
+        modificationCount++;
+    }
+
+    /**
+     * Get the path of the JaCoCo XML report used to skip invalid argument tests whose checks are already covered.
+     *
+     * @return The path of the report, absolute or relative to the project's base directory, or an empty string if
+     *         coverage is not used. Never {@code null}.
+     */
+    @NotNull
+    synchronized String getCoverageReportPath()
+    {
+        return Strings.nullToEmpty(state.coverageReportPath).trim();
+    }
+
+    /**
+     * Set the path of the JaCoCo XML report used to skip invalid argument tests whose checks are already covered.
+     *
+     * @param coverageReportPath The path of the report, absolute or relative to the project's base directory, or an
+     *                           empty string if coverage should not be used. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code coverageReportPath} is {@code null}.
+     */
+    synchronized void setCoverageReportPath(@NotNull String coverageReportPath)
+    {
+        Preconditions.checkNotNull(coverageReportPath, "coverageReportPath cannot be null.");
+        state.coverageReportPath = coverageReportPath.trim();
+        modificationCount++;
+    }
+
+    /**
+     * Get a fingerprint of every setting which affects the text of rendered test cases, so results rendered under
+     * different settings are never mistaken for each other.
+     *
+     * @return The fingerprint. Never {@code null}.
+     */
+    @NotNull
+    synchronized String getFingerprint()
+    {
+        return Joiner.on('\u0000').useForNull("").join(state.templateSet, state.customInvalidArgumentTemplate,
+            state.customImports, state.testFactory, state.complexityBound, state.scalingBaseSize,
+            state.propertyCases, state.coverageReportPath);
+    }
+
+    /**
+     * Persisted state of {@link GeneratorSettings}.
+     */
+    public static class State
+    {
+        /** Name of the selected {@link TestTemplateSet}. */
+        public String templateSet = TestTemplateSet.AUTOMATIC.name();
+
+        /** User's invalid argument template, or {@code null} to use the default. */
+        public String customInvalidArgumentTemplate;
+
+        /** User's imports, one per line, or {@code null} to use the default. */
+        public String customImports;
+
+        /** Maximum number of test methods per test class, or {@code 0} if unlimited. */
+        public int maxTestMethodsPerClass;
+
+        /** Whether JUnit 5 test classes are annotated to run their tests concurrently. */
+        public boolean concurrentExecution;
+
+        /** Whether JUnit 5 constructor tests are generated as a {@code @TestFactory} streaming from a table. */
+        public boolean testFactory;
+
+        /** Name of the {@link ComplexityBound} checked by scaling tests. */
+        public String complexityBound = ComplexityBound.NONE.name();
+
+        /** Smaller of the two sizes at which scaling tests run. */
+        public int scalingBaseSize = 1000;
+
+        /** Number of random cases per property based test, or {@code 0} if none are generated. */
+        public int propertyCases;
+
+        /** Path of the JaCoCo XML report of existing tests, or empty if coverage is not used. */
+        public String coverageReportPath = "";
+    }
+}
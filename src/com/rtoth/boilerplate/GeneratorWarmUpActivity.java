@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Warms up the generator in the background once a project has been opened and indexed, so the first generation in
+ * a session is as fast as the ones after it.
+ * <p>
+ * This resolves the classes needed by the generated imports, and runs a tiny generation against a synthetic class
+ * which never becomes part of the project, which loads and initializes the generator's classes and caches along the
+ * way.
+ */
+public class GeneratorWarmUpActivity implements StartupActivity, DumbAware
+{
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getInstance(GeneratorWarmUpActivity.class);
+
+    /** Source of the synthetic class, covering constructors, static and instance methods and each default rule. */
+    private static final String WARM_UP_CLASS_TEXT =
+        "public class BoilerplateWarmUp\n" +
+        "{\n" +
+        "    public BoilerplateWarmUp(String text, int count, Object other) {}\n" +
+        "    public BoilerplateWarmUp(String text) { this(text, 0, null); }\n" +
+        "    public static BoilerplateWarmUp of(String text) { return null; }\n" +
+        "    public void accept(Object other) {}\n" +
+        "}";
+
+    @Override
+    public void runActivity(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        if (ApplicationManager.getApplication().isUnitTestMode())
+        {
+            return;
+        }
+        DumbService.getInstance(project).runWhenSmart(() ->
+            ApplicationManager.getApplication().executeOnPooledThread(() ->
+                ApplicationManager.getApplication().runReadAction(() ->
+                {
+                    if (!project.isDisposed())
+                    {
+                        warmUp(project);
+                    }
+                })
+            )
+        );
+    }
+
+    /**
+     * Warm up the generator for the provided project.
+     * <p>
+     * Must be called from within a read action. Failures are only logged, as they will be reported properly the
+     * first time the user generates test cases.
+     *
+     * @param project {@link Project} for which to warm up. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    private static void warmUp(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        try
+        {
+            PsiFile file = PsiFileFactory.getInstance(project)
+                .createFileFromText("BoilerplateWarmUp.java", JavaFileType.INSTANCE, WARM_UP_CLASS_TEXT);
+            PsiClass warmUpClass = ((PsiJavaFile) file).getClasses()[0];
+
+            // Rules hold no UI components, so building them off the event dispatch thread is safe.
+            ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> methodRules = ImmutableMap.builder();
+            for (PsiMethod method : warmUpClass.getMethods())
+            {
+                if (DefaultParameterRules.isTestable(method))
+                {
+                    methodRules.put(method, DefaultParameterRules.build(method));
+                }
+            }
+
+            TestCaseGenerator generator = new TestCaseGenerator(project);
+            // The warm-up class is not in any module, so the templates are chosen from the whole project.
+            TestTemplateCache.Templates templates = TestTemplateCache.getInstance(project).getTemplates(null);
+            ImmutableList<TestCase> testCases = generator.renderTestCases(null, methodRules.build(), templates);
+            // Resolves every required import, the main cost of the first generation.
+            generator.renderImports(null, testCases, templates);
+            StringBuilder classBody = new StringBuilder();
+            for (TestCase testCase : testCases)
+            {
+                classBody.append(testCase.getText()).append('\n');
+            }
+            JavaPsiFacade.getElementFactory(project).createClassFromText(classBody.toString(), null);
+        }
+        catch (TestGenerationException | RuntimeException e)
+        {
+            LOG.info("Unable to warm up test case generation: " + e.getMessage());
+        }
+    }
+}
@@ -24,36 +24,41 @@ package com.rtoth.boilerplate;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.ValidationInfo;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiParameter;
-import com.intellij.psi.PsiPrimitiveType;
 import com.intellij.psi.PsiType;
-import com.intellij.psi.util.PsiUtil;
-import com.rtoth.boilerplate.parameters.IntegerParameterRule;
-import com.rtoth.boilerplate.parameters.ObjectParameterRule;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.rtoth.boilerplate.parameters.ParameterRule;
-import com.rtoth.boilerplate.parameters.StringParameterRule;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.awt.BorderLayout;
 import java.awt.CardLayout;
+import java.awt.FlowLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.util.Map;
 
+import javax.swing.Action;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JSpinner;
 import javax.swing.JSplitPane;
+import javax.swing.SpinnerNumberModel;
 
 /**
  * Dialog box which prompts the user for input on which methods to test and how to test them.
@@ -67,14 +72,29 @@ class GetTestMethodsDialog extends DialogWrapper
     private static final String EMPTY_CARD_ID = "EMPTY_CARD";
 
     /** Message to display when a method has no configurable parameters. */
-    private static final JLabel NO_CONFIGURABLE_PARAMETERS =
-        new JLabel("No configurable parameters right now.\nThe developers are working on this :)");
+    private static final String NO_CONFIGURABLE_PARAMETERS =
+        "No configurable parameters right now.\nThe developers are working on this :)";
 
-    /** Methods available for the user to configure mapped by a check box indicating whether they have been selected. */
-    private final ImmutableMap<JCheckBox, PsiMethod> availableMethods;
+    /**
+     * Methods available for the user to configure mapped by a check box indicating whether they have been selected.
+     * Only pointers are kept, so an open (or leaked) dialog never keeps a stale PSI tree alive.
+     */
+    private final ImmutableMap<JCheckBox, SmartPsiElementPointer<PsiMethod>> availableMethods;
+
+    /** Configurable parameter rules for each of the {@code availableMethods}, mapped by the same check box. */
+    private final ImmutableMap<JCheckBox, ImmutableList<ParameterRule>> parameterRules;
+
+    /** {@link Project} containing the {@code sourceClass}. */
+    private final Project project;
+
+    /** {@link PsiClass} for which this dialog is configuring test methods. */
+    private final SmartPsiElementPointer<PsiClass> sourceClass;
 
-    /** Configurable parameter rules for each of the {@code availableMethods}. */
-    private final ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> parameterRules;
+    /** Store used to restore and save the rule configurations made through this dialog. */
+    private final RuleConfigurationStore ruleConfigurationStore;
+
+    /** Spinner containing the time budget of valid construction tests, in milliseconds. */
+    private final JSpinner timeoutBudget;
 
     /** ID of the currently selected card display. */
     private String selectedCardId = EMPTY_CARD_ID;
@@ -92,24 +112,42 @@ class GetTestMethodsDialog extends DialogWrapper
             Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.")
                 .getProject()
         );
+        this.project = sourceClass.getProject();
+        SmartPointerManager smartPointerManager = SmartPointerManager.getInstance(project);
+        this.sourceClass = smartPointerManager.createSmartPsiElementPointer(sourceClass);
+        this.ruleConfigurationStore = RuleConfigurationStore.getInstance(project);
 
-        ImmutableMap.Builder<JCheckBox, PsiMethod> availableMethodsBuilder = ImmutableMap.builder();
-        ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> parameterRulesBuilder =
+        ImmutableMap.Builder<JCheckBox, SmartPsiElementPointer<PsiMethod>> availableMethodsBuilder =
             ImmutableMap.builder();
+        ImmutableMap.Builder<JCheckBox, ImmutableList<ParameterRule>> parameterRulesBuilder = ImmutableMap.builder();
         for (PsiMethod method : sourceClass.getMethods())
         {
-            // TODO: Update this once non-constructor methods are handled.
-            if (PsiUtil.getAccessLevel(method.getModifierList()) != PsiUtil.ACCESS_LEVEL_PRIVATE &&
-                method.isConstructor() && method.getParameterList().getParametersCount() > 0)
+            if (DefaultParameterRules.isTestable(method))
             {
+                ImmutableList<ParameterRule> rules;
+                try
+                {
+                    rules = DefaultParameterRules.build(method);
+                }
+                catch (IllegalStateException ise)
+                {
+                    // Methods with unsupported parameter types are left out, as in batch generation.
+                    continue;
+                }
+                // Methods configured previously start out selected with their previous configuration.
+                boolean restored = ruleConfigurationStore.find(sourceClass, method)
+                    .map(configuration -> configuration.applyTo(rules))
+                    .orElse(false);
                 JCheckBox checkBox = new JCheckBox(getPresentableMethodSignature(method));
-                checkBox.setSelected(false);
-                availableMethodsBuilder.put(checkBox, method);
-                parameterRulesBuilder.put(method, buildDefaultParameterRules(method));
+                checkBox.setSelected(restored);
+                availableMethodsBuilder.put(checkBox, smartPointerManager.createSmartPsiElementPointer(method));
+                parameterRulesBuilder.put(checkBox, rules);
             }
         }
         this.availableMethods = availableMethodsBuilder.build();
         this.parameterRules = parameterRulesBuilder.build();
+        this.timeoutBudget = new JSpinner(
+            new SpinnerNumberModel(ruleConfigurationStore.getTimeoutBudget(sourceClass), 0, Integer.MAX_VALUE, 10));
 
         init();
         setTitle(DIALOG_DESCRIPTION);
@@ -126,13 +164,12 @@ class GetTestMethodsDialog extends DialogWrapper
         parameterRuleCards.add(new JLabel("Select a method to configure."), EMPTY_CARD_ID);
 
         int rowIndex = 0;
-        for (Map.Entry<JCheckBox, PsiMethod> methodEntry : availableMethods.entrySet())
+        for (Map.Entry<JCheckBox, ImmutableList<ParameterRule>> methodEntry : parameterRules.entrySet())
         {
-            final PsiMethod method = methodEntry.getValue();
-            final String methodSignature = getPresentableMethodSignature(method);
             final JCheckBox methodCheckBox = methodEntry.getKey();
+            final String methodSignature = methodCheckBox.getText();
             final JButton methodConfigureButton = new JButton("->");
-            methodConfigureButton.setEnabled(false);
+            methodConfigureButton.setEnabled(methodCheckBox.isSelected());
 
             GridBagConstraints constraints = new GridBagConstraints();
             constraints.gridx = 0;
@@ -148,17 +185,17 @@ class GetTestMethodsDialog extends DialogWrapper
 
             // TODO: Better layout here.
             JPanel card = new JPanel(new GridLayout(0, 1));
-            ImmutableList<ParameterRule> rules = parameterRules.get(method);
+            ImmutableList<ParameterRule> rules = methodEntry.getValue();
             if (!rules.isEmpty())
             {
                 for (ParameterRule rule : rules)
                 {
-                    card.add(rule.getUiComponent());
+                    card.add(rule.createUiComponent());
                 }
             }
             else
             {
-                card.add(NO_CONFIGURABLE_PARAMETERS);
+                card.add(new JLabel(NO_CONFIGURABLE_PARAMETERS));
             }
             parameterRuleCards.add(card, methodSignature);
 
@@ -210,8 +247,51 @@ class GetTestMethodsDialog extends DialogWrapper
         cardLayout.show(parameterRuleCards, EMPTY_CARD_ID);
         selectedCardId = EMPTY_CARD_ID;
 
-        return new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
-            methodSelection, parameterRuleCards);
+        JPanel timeoutPanel = new JPanel(new FlowLayout(FlowLayout.LEADING));
+        timeoutPanel.add(new JLabel("Valid construction timeout per constructor call (ms, 0 = no timeout test):"));
+        timeoutPanel.add(timeoutBudget);
+
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.add(new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+            methodSelection, parameterRuleCards), BorderLayout.CENTER);
+        centerPanel.add(timeoutPanel, BorderLayout.SOUTH);
+        return centerPanel;
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createLeftSideActions()
+    {
+        return new Action[] {
+            new DialogWrapperAction("Preview...")
+            {
+                @Override
+                protected void doAction(ActionEvent e)
+                {
+                    ValidationInfo validationInfo = doValidate();
+                    if (validationInfo != null)
+                    {
+                        setErrorText(validationInfo.message);
+                        return;
+                    }
+                    setErrorText(null);
+                    PsiClass currentSourceClass = sourceClass.getElement();
+                    if (currentSourceClass == null)
+                    {
+                        setErrorText("The class no longer exists.");
+                        return;
+                    }
+                    try
+                    {
+                        new TestCasePreview(project).show(currentSourceClass, getSelectedMethodRules());
+                    }
+                    catch (TestGenerationException tge)
+                    {
+                        Messages.showWarningDialog(getContentPanel(), tge.getMessage(), "Warning");
+                    }
+                }
+            }
+        };
     }
 
     @Override
@@ -219,12 +299,12 @@ class GetTestMethodsDialog extends DialogWrapper
     {
         boolean valid = true;
         boolean anySelected = false;
-        for (Map.Entry<JCheckBox, PsiMethod> entry : availableMethods.entrySet())
+        for (Map.Entry<JCheckBox, ImmutableList<ParameterRule>> entry : parameterRules.entrySet())
         {
             if (entry.getKey().isSelected())
             {
                 anySelected = true;
-                ImmutableList<ParameterRule> rules = parameterRules.get(entry.getValue());
+                ImmutableList<ParameterRule> rules = entry.getValue();
                 if (rules != null)
                 {
                     for (ParameterRule rule : rules)
@@ -254,12 +334,39 @@ class GetTestMethodsDialog extends DialogWrapper
         return null;
     }
 
+    @Override
+    protected void doOKAction()
+    {
+        PsiClass currentSourceClass = sourceClass.getElement();
+        if (currentSourceClass != null)
+        {
+            for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> entry : getSelectedMethodRules().entrySet())
+            {
+                ruleConfigurationStore.store(currentSourceClass, entry.getKey(), entry.getValue());
+            }
+            // Forget methods which were deselected, otherwise they would start out selected again next time.
+            for (Map.Entry<JCheckBox, SmartPsiElementPointer<PsiMethod>> entry : availableMethods.entrySet())
+            {
+                PsiMethod method = entry.getValue().getElement();
+                if (!entry.getKey().isSelected() && method != null)
+                {
+                    ruleConfigurationStore.remove(currentSourceClass, method);
+                }
+            }
+            ruleConfigurationStore.setTimeoutBudget(currentSourceClass,
+                ((Number) timeoutBudget.getValue()).intValue());
+        }
+        super.doOKAction();
+    }
+
     /**
      * Get the method rules configured by the user.
      * <p>
      * Note: This method should only be called after this dialog has be displayed and submitted successfully. i.e.
      *       it should only be called after invoking {@link #showAndGet()} returns {@code true}. Failing to do so will
      *       result in this method returning un-initialized data.
+     * <p>
+     * Methods which have been deleted since this dialog was opened are left out.
      *
      * @return Mapping of {@link PsiMethod}s to test in the source file to {@link ParameterRule}s which indicate how
      *         each of the method's parameters should be tested. Never {@code null} but may be empty. The list of
@@ -270,65 +377,15 @@ class GetTestMethodsDialog extends DialogWrapper
     ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> getSelectedMethodRules()
     {
         ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> builder = ImmutableMap.builder();
-        availableMethods.entrySet().stream().filter(entry -> entry.getKey().isSelected()).forEach(entry ->
-            builder.put(entry.getValue(), parameterRules.get(entry.getValue())));
-
-        return builder.build();
-    }
-
-    /**
-     * Build the list of default {@link ParameterRule}s for the provided method.
-     *
-     * @param method {@link PsiMethod} for which to build the default parameter rules. Cannot be {@code null}.
-     * @return An {@link ImmutableList} of default {@link ParameterRule}s for {@code method}. Never {@code null}, and
-     *         will always contain exactly the number of parameters defined for the method in the correct order.
-     *
-     * @throws NullPointerException if {@code method} is {@code null}.
-     */
-    @NotNull
-    private ImmutableList<ParameterRule> buildDefaultParameterRules(@NotNull PsiMethod method)
-    {
-        Preconditions.checkNotNull(method, "method cannot be null.");
-
-        ImmutableList.Builder<ParameterRule> rulesBuilder = ImmutableList.builder();
-        for (PsiParameter parameter : method.getParameterList().getParameters())
+        for (Map.Entry<JCheckBox, SmartPsiElementPointer<PsiMethod>> entry : availableMethods.entrySet())
         {
-            PsiType type = parameter.getType();
-            String name = parameter.getName();
-            if (name != null)
+            PsiMethod method = entry.getValue().getElement();
+            if (entry.getKey().isSelected() && method != null)
             {
-                if (type instanceof PsiPrimitiveType)
-                {
-                    // TODO: Make this handle more primitives!
-                    if (type.equals(PsiType.INT))
-                    {
-                        rulesBuilder.add(new IntegerParameterRule(name));
-                    }
-                    else
-                    {
-                        throw new IllegalStateException("This functionality cannot currently be used on a class " +
-                            "containing an unsupported parameter type: " + type.getPresentableText());
-                    }
-                }
-                else if (type.getCanonicalText().equals("java.lang.String"))
-                {
-                    rulesBuilder.add(new StringParameterRule(type, name));
-                }
-                else
-                {
-                    // TODO: What if it's an array? or something else?
-                    rulesBuilder.add(new ObjectParameterRule(type, name));
-                }
-            }
-            else
-            {
-                throw new IllegalStateException("Unexpected error retrieving method parameter information. " +
-                    "Parameter of type " + type.getPresentableText() + " on method " + method.getName() +
-                    " has a null name.");
+                builder.put(method, parameterRules.get(entry.getKey()));
             }
         }
-
-        return rulesBuilder.build();
+        return builder.build();
     }
 
     /**
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import org.jetbrains.annotations.NotNull;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Line coverage read from a JaCoCo XML report.
+ * <p>
+ * The report is streamed, and only the {@code <line>} elements of each {@code <sourcefile>} are kept, packed into a
+ * sorted {@code int} array per source file, so even reports of large projects stay small in memory.
+ */
+final class JacocoReport
+{
+    /** Number of {@code int}s stored per line: line number, covered instructions, missed and covered branches. */
+    private static final int LINE_STRIDE = 4;
+
+    /** Packed lines sorted by line number, mapped by source path, e.g. {@code com/foo/Bar.java}. */
+    private final ImmutableMap<String, int[]> sourceFiles;
+
+    /**
+     * Create a new {@link JacocoReport}.
+     *
+     * @param sourceFiles Packed lines sorted by line number, mapped by source path. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFiles} is {@code null}.
+     */
+    private JacocoReport(@NotNull ImmutableMap<String, int[]> sourceFiles)
+    {
+        this.sourceFiles = Preconditions.checkNotNull(sourceFiles, "sourceFiles cannot be null.");
+    }
+
+    /**
+     * Read the JaCoCo XML report at the provided path.
+     *
+     * @param path Path of the XML report. Cannot be {@code null}.
+     * @return The coverage read from the report. Never {@code null}.
+     *
+     * @throws IOException if the report cannot be read or is not a valid XML report.
+     * @throws NullPointerException if {@code path} is {@code null}.
+     */
+    @NotNull
+    static JacocoReport read(@NotNull Path path) throws IOException
+    {
+        Preconditions.checkNotNull(path, "path cannot be null.");
+
+        ReportHandler handler = new ReportHandler();
+        try (InputStream in = Files.newInputStream(path))
+        {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setValidating(false);
+            factory.setNamespaceAware(false);
+            // Reports reference report.dtd, which is neither needed nor available offline.
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(in, handler);
+        }
+        catch (ParserConfigurationException | SAXException e)
+        {
+            throw new IOException("Invalid JaCoCo XML report " + path + ": " + e.getMessage(), e);
+        }
+        return new JacocoReport(ImmutableMap.copyOf(handler.sourceFiles));
+    }
+
+    /**
+     * Check whether any instruction of the provided line was executed.
+     *
+     * @param sourcePath Path of the source file relative to its source root, e.g. {@code com/foo/Bar.java}. Cannot be
+     *                   {@code null}.
+     * @param line Line number, starting at 1.
+     * @return {@code true} if the line was executed, {@code false} if it was not or is not in the report.
+     *
+     * @throws NullPointerException if {@code sourcePath} is {@code null}.
+     */
+    boolean isCovered(@NotNull String sourcePath, int line)
+    {
+        int index = find(sourcePath, line);
+        return index >= 0 && sourceFiles.get(sourcePath)[index + 1] > 0;
+    }
+
+    /**
+     * Check whether every branch of the provided line was taken.
+     *
+     * @param sourcePath Path of the source file relative to its source root, e.g. {@code com/foo/Bar.java}. Cannot be
+     *                   {@code null}.
+     * @param line Line number, starting at 1.
+     * @return {@code true} if the line has branches and all of them were taken, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code sourcePath} is {@code null}.
+     */
+    boolean isFullyBranched(@NotNull String sourcePath, int line)
+    {
+        int index = find(sourcePath, line);
+        if (index < 0)
+        {
+            return false;
+        }
+        int[] lines = sourceFiles.get(sourcePath);
+        return lines[index + 2] == 0 && lines[index + 3] > 0;
+    }
+
+    /**
+     * Find the packed entry of the provided line.
+     *
+     * @param sourcePath Path of the source file relative to its source root. Cannot be {@code null}.
+     * @param line Line number, starting at 1.
+     * @return Index of the entry's first {@code int}, or {@code -1} if the line is not in the report.
+     *
+     * @throws NullPointerException if {@code sourcePath} is {@code null}.
+     */
+    private int find(@NotNull String sourcePath, int line)
+    {
+        Preconditions.checkNotNull(sourcePath, "sourcePath cannot be null.");
+
+        int[] lines = sourceFiles.get(sourcePath);
+        if (lines == null)
+        {
+            return -1;
+        }
+        int low = 0;
+        int high = lines.length / LINE_STRIDE - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int middleLine = lines[middle * LINE_STRIDE];
+            if (middleLine < line)
+            {
+                low = middle + 1;
+            }
+            else if (middleLine > line)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle * LINE_STRIDE;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the {@code <line>} elements of every {@code <sourcefile>} while the report is streamed.
+     */
+    private static final class ReportHandler extends DefaultHandler
+    {
+        /** Packed lines mapped by source path. */
+        private final Map<String, int[]> sourceFiles = Maps.newHashMap();
+
+        /** Lines of the current source file, as {@link #LINE_STRIDE} {@code int}s each. */
+        private final List<int[]> lines = Lists.newArrayList();
+
+        /** Path of the current package, e.g. {@code com/foo}. */
+        private String packageName = "";
+
+        /** Path of the current source file, or {@code null} outside of a {@code <sourcefile>}. */
+        private String sourcePath;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            switch (qName)
+            {
+                case "package":
+                {
+                    packageName = attributes.getValue("name");
+                    break;
+                }
+                case "sourcefile":
+                {
+                    String name = attributes.getValue("name");
+                    sourcePath = packageName == null || packageName.isEmpty() ? name : packageName + "/" + name;
+                    lines.clear();
+                    break;
+                }
+                case "line":
+                {
+                    if (sourcePath != null)
+                    {
+                        lines.add(new int[] {
+                            parse(attributes.getValue("nr")),
+                            parse(attributes.getValue("ci")),
+                            parse(attributes.getValue("mb")),
+                            parse(attributes.getValue("cb"))
+                        });
+                    }
+                    break;
+                }
+                default:
+                {
+                    // Counters and class level data are not needed.
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            if ("sourcefile".equals(qName) && sourcePath != null)
+            {
+                lines.sort((a, b) -> Integer.compare(a[0], b[0]));
+                int[] packed = new int[lines.size() * LINE_STRIDE];
+                for (int i = 0; i < lines.size(); i++)
+                {
+                    System.arraycopy(lines.get(i), 0, packed, i * LINE_STRIDE, LINE_STRIDE);
+                }
+                sourceFiles.put(sourcePath, packed);
+                sourcePath = null;
+            }
+        }
+
+        /**
+         * Parse a numeric attribute.
+         *
+         * @param value Value of the attribute. Can be {@code null} if it is missing.
+         * @return The parsed value, or {@code 0} if it is missing or not a number.
+         */
+        private static int parse(String value)
+        {
+            Integer parsed = value != null ? Ints.tryParse(value) : null;
+            return parsed != null ? parsed : 0;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Snapshot of the {@link ParameterRule} configuration made by the user for a single method of a source class.
+ * <p>
+ * Configurations are encoded into a single compact line of the form:
+ * <pre>
+ *     com.package.name.Class|Class(java.lang.String,int)|2|disallowNull=true,disallowBlank=false;constraint=ANY
+ * </pre>
+ * i.e. the class's qualified name, the method signature, the number of parameters and the configuration of each
+ * parameter in order.
+ */
+final class MethodRuleConfiguration
+{
+    /** Separates the top level fields of an encoded configuration. */
+    private static final char FIELD_SEPARATOR = '|';
+
+    /** Separates the configurations of individual parameters. */
+    private static final char PARAMETER_SEPARATOR = ';';
+
+    /** Separates the entries of a single parameter's configuration. */
+    private static final char ENTRY_SEPARATOR = ',';
+
+    /** Separates the key and value of a single configuration entry. */
+    private static final char KEY_VALUE_SEPARATOR = '=';
+
+    /** Qualified name of the class defining the configured method. */
+    private final String classQualifiedName;
+
+    /** Signature of the configured method, as returned by {@link PsiUtility#getSignature}. */
+    private final String methodSignature;
+
+    /** Configuration of each of the method's parameters, in order. */
+    private final ImmutableList<ImmutableMap<String, String>> parameterConfigurations;
+
+    /**
+     * Create a new {@link MethodRuleConfiguration}.
+     *
+     * @param classQualifiedName Qualified name of the class defining the configured method. Cannot be {@code null}.
+     * @param methodSignature Signature of the configured method. Cannot be {@code null}.
+     * @param parameterConfigurations Configuration of each of the method's parameters, in order. Cannot be
+     *                                {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    MethodRuleConfiguration(@NotNull String classQualifiedName, @NotNull String methodSignature,
+                            @NotNull ImmutableList<ImmutableMap<String, String>> parameterConfigurations)
+    {
+        this.classQualifiedName =
+            Preconditions.checkNotNull(classQualifiedName, "classQualifiedName cannot be null.");
+        this.methodSignature = Preconditions.checkNotNull(methodSignature, "methodSignature cannot be null.");
+        this.parameterConfigurations =
+            Preconditions.checkNotNull(parameterConfigurations, "parameterConfigurations cannot be null.");
+    }
+
+    /**
+     * Create a new {@link MethodRuleConfiguration} capturing the current configuration of the provided rules.
+     *
+     * @param classQualifiedName Qualified name of the class defining the configured method. Cannot be {@code null}.
+     * @param methodSignature Signature of the configured method. Cannot be {@code null}.
+     * @param rules {@link ParameterRule}s for each of the method's parameters, in order. Cannot be {@code null}.
+     * @return A new {@link MethodRuleConfiguration}. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static MethodRuleConfiguration capture(@NotNull String classQualifiedName, @NotNull String methodSignature,
+                                           @NotNull List<ParameterRule> rules)
+    {
+        Preconditions.checkNotNull(rules, "rules cannot be null.");
+
+        ImmutableList.Builder<ImmutableMap<String, String>> configurations = ImmutableList.builder();
+        for (ParameterRule rule : rules)
+        {
+            configurations.add(rule.getConfiguration());
+        }
+        return new MethodRuleConfiguration(classQualifiedName, methodSignature, configurations.build());
+    }
+
+    /**
+     * Decode a configuration previously encoded through {@link #encode()}.
+     *
+     * @param encoded Encoded configuration. Cannot be {@code null}.
+     * @return {@link Optional} containing the decoded configuration, or {@link Optional#empty()} if {@code encoded}
+     *         is malformed. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code encoded} is {@code null}.
+     */
+    @NotNull
+    static Optional<MethodRuleConfiguration> decode(@NotNull String encoded)
+    {
+        Preconditions.checkNotNull(encoded, "encoded cannot be null.");
+
+        List<String> fields = Splitter.on(FIELD_SEPARATOR).limit(4).splitToList(encoded);
+        if (fields.size() != 4)
+        {
+            return Optional.empty();
+        }
+
+        int parameterCount;
+        try
+        {
+            parameterCount = Integer.parseInt(fields.get(2));
+        }
+        catch (NumberFormatException nfe)
+        {
+            return Optional.empty();
+        }
+
+        ImmutableList.Builder<ImmutableMap<String, String>> configurations = ImmutableList.builder();
+        if (parameterCount > 0)
+        {
+            List<String> parameters = Splitter.on(PARAMETER_SEPARATOR).splitToList(fields.get(3));
+            if (parameters.size() != parameterCount)
+            {
+                return Optional.empty();
+            }
+            for (String parameter : parameters)
+            {
+                ImmutableMap.Builder<String, String> configuration = ImmutableMap.builder();
+                for (String entry : Splitter.on(ENTRY_SEPARATOR).omitEmptyStrings().split(parameter))
+                {
+                    int separatorIndex = entry.indexOf(KEY_VALUE_SEPARATOR);
+                    if (separatorIndex < 1)
+                    {
+                        return Optional.empty();
+                    }
+                    configuration.put(entry.substring(0, separatorIndex), entry.substring(separatorIndex + 1));
+                }
+                configurations.add(configuration.build());
+            }
+        }
+
+        return Optional.of(new MethodRuleConfiguration(fields.get(0), fields.get(1), configurations.build()));
+    }
+
+    /**
+     * Encode this configuration into a single compact line.
+     *
+     * @return The encoded configuration. Never {@code null}.
+     */
+    @NotNull
+    String encode()
+    {
+        StringBuilder encoded = new StringBuilder(classQualifiedName)
+            .append(FIELD_SEPARATOR).append(methodSignature)
+            .append(FIELD_SEPARATOR).append(parameterConfigurations.size())
+            .append(FIELD_SEPARATOR);
+        boolean firstParameter = true;
+        for (ImmutableMap<String, String> configuration : parameterConfigurations)
+        {
+            if (!firstParameter)
+            {
+                encoded.append(PARAMETER_SEPARATOR);
+            }
+            boolean firstEntry = true;
+            for (Map.Entry<String, String> entry : configuration.entrySet())
+            {
+                if (!firstEntry)
+                {
+                    encoded.append(ENTRY_SEPARATOR);
+                }
+                encoded.append(entry.getKey()).append(KEY_VALUE_SEPARATOR).append(entry.getValue());
+                firstEntry = false;
+            }
+            firstParameter = false;
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Apply this configuration to the provided rules.
+     *
+     * @param rules {@link ParameterRule}s for each of the method's parameters, in order. Cannot be {@code null}.
+     * @return {@code true} if the configuration was applied, {@code false} if it does not match {@code rules} (e.g.
+     *         the method's parameters have changed since the configuration was captured).
+     *
+     * @throws NullPointerException if {@code rules} is {@code null}.
+     */
+    boolean applyTo(@NotNull List<ParameterRule> rules)
+    {
+        Preconditions.checkNotNull(rules, "rules cannot be null.");
+
+        if (rules.size() != parameterConfigurations.size())
+        {
+            return false;
+        }
+        for (int i = 0; i < rules.size(); i++)
+        {
+            rules.get(i).applyConfiguration(parameterConfigurations.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Get the qualified name of the class defining the configured method.
+     *
+     * @return The qualified name of the class defining the configured method. Never {@code null}.
+     */
+    @NotNull
+    String getClassQualifiedName()
+    {
+        return classQualifiedName;
+    }
+
+    /**
+     * Get the signature of the configured method.
+     *
+     * @return The signature of the configured method. Never {@code null}.
+     */
+    @NotNull
+    String getMethodSignature()
+    {
+        return methodSignature;
+    }
+}
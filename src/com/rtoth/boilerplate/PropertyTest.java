@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Renders a seeded property based test, which invokes the method under test with many random combinations of valid
+ * arguments drawn from each rule's {@link ParameterRule#getValueGeneratorText value generator}, and expects none of
+ * them to throw, e.g.
+ * <pre>
+ *     &#64;Test
+ *     void constructor_validArguments_property()
+ *     {
+ *         LongStream.range(0, 1000).forEach(caseIndex -&gt;
+ *         {
+ *             Random caseRandom = new Random(-5738261402283910562L + caseIndex);
+ *             int count = (int) (0L + (long) (caseRandom.nextDouble() * 2147483648L));
+ *             String name = (char) ('a' + caseRandom.nextInt(26)) + ...;
+ *             try
+ *             {
+ *                 new Foo(count, name);
+ *             }
+ *             catch (RuntimeException caseFailure)
+ *             {
+ *                 throw new AssertionError("Case " + caseIndex + " failed for count=" + count + ", name=" + name,
+ *                     caseFailure);
+ *             }
+ *         });
+ *     }
+ * </pre>
+ * Cases are streamed one at a time while the test runs, so the generated source does not grow with their number.
+ * Every case draws from its own {@link java.util.Random}, seeded from the signature of the method under test and
+ * the index of the case, so a failing case is reproduced on every run.
+ */
+final class PropertyTest
+{
+    /** Name of the variable holding the index of the current case. */
+    private static final String CASE_INDEX = "caseIndex";
+
+    /** Name of the variable holding the {@link java.util.Random} of the current case. */
+    private static final String CASE_RANDOM = "caseRandom";
+
+    /**
+     * Private constructor for utility class.
+     */
+    private PropertyTest()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Render a property based test of the provided invocation.
+     *
+     * @param testName Name of the test method. Cannot be {@code null}.
+     * @param invocationTarget Text preceding the argument list of the invocation, e.g. {@code new Foo}. Cannot be
+     *                         {@code null}.
+     * @param parameterRules {@link ParameterRule}s for each parameter of the method under test. Cannot be
+     *                       {@code null}.
+     * @param seed Seed of the first case.
+     * @param cases Number of cases to run. Must be positive.
+     * @param junit5 Whether to render a JUnit 5 test, or a JUnit 4 test otherwise.
+     * @return The rendered test case. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code cases} is not positive.
+     * @throws NullPointerException if {@code testName}, {@code invocationTarget} or {@code parameterRules} is
+     *                              {@code null}.
+     */
+    @NotNull
+    static TestCase render(@NotNull String testName, @NotNull String invocationTarget,
+                           @NotNull List<ParameterRule> parameterRules, long seed, int cases, boolean junit5)
+    {
+        Preconditions.checkNotNull(testName, "testName cannot be null.");
+        Preconditions.checkNotNull(invocationTarget, "invocationTarget cannot be null.");
+        Preconditions.checkNotNull(parameterRules, "parameterRules cannot be null.");
+        Preconditions.checkArgument(cases > 0, "cases must be positive.");
+
+        StringBuilder arrange = new StringBuilder();
+        StringBuilder invocation = new StringBuilder(invocationTarget).append('(');
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < parameterRules.size(); i++)
+        {
+            ParameterRule rule = parameterRules.get(i);
+            arrange.append("        ").append(rule.getTypeText())
+                .append(' ').append(rule.getName())
+                .append(" = ").append(rule.getValueGeneratorText(CASE_RANDOM)).append(";\n");
+            if (i > 0)
+            {
+                invocation.append(", ");
+                description.append(" + \", ");
+            }
+            else
+            {
+                description.append(" + \" ");
+            }
+            invocation.append(rule.getName());
+            description.append(rule.getName()).append("=\" + ").append(rule.getName());
+        }
+        invocation.append(')');
+
+        StringBuilder text = new StringBuilder(1024);
+        text.append(junit5 ? "@org.junit.jupiter.api.Test\nvoid " : "@org.junit.Test\npublic void ")
+            .append(testName).append("()\n")
+            .append("{\n")
+            .append("    java.util.stream.LongStream.range(0, ").append(cases).append(").forEach(")
+            .append(CASE_INDEX).append(" ->\n")
+            .append("    {\n")
+            .append("        java.util.Random ").append(CASE_RANDOM).append(" = new java.util.Random(")
+            .append(seed).append("L + ").append(CASE_INDEX).append(");\n")
+            .append(arrange)
+            .append("        try\n")
+            .append("        {\n")
+            .append("            ").append(invocation).append(";\n")
+            .append("        }\n")
+            .append("        catch (RuntimeException caseFailure)\n")
+            .append("        {\n")
+            .append("            throw new AssertionError(\"Case \" + ").append(CASE_INDEX).append(" + \" failed for\"")
+            .append(description).append(", caseFailure);\n")
+            .append("        }\n")
+            .append("    });\n")
+            .append('}');
+        return new TestCase(testName, text.toString());
+    }
+}
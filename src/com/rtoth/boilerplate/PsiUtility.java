@@ -26,23 +26,41 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
 import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.rtoth.boilerplate.parameters.SyntaxOnlyTypes;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.EmptyStackException;
 import java.util.List;
 import java.util.Optional;
 import java.util.Stack;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -69,7 +87,7 @@ final class PsiUtility
      * @throws NullPointerException if {@code file} is {@code null}.
      */
     @NotNull
-    static Optional<PsiClass> getSingleClass(@NotNull PsiJavaFile file) throws TestGenerationException
+    static Optional<PsiClass> getSingleClass(@NotNull PsiJavaFile file)
     {
         Preconditions.checkNotNull(file, "file cannot be null.");
 
@@ -84,6 +102,36 @@ final class PsiUtility
         return Optional.ofNullable(singleClass);
     }
 
+    /**
+     * Get a stable, unambiguous signature for the provided method, e.g. {@code Foo(java.lang.String,int)}.
+     * <p>
+     * Unlike a presentable signature this uses canonical parameter types and omits parameter names, so it can be
+     * used to identify the method across sessions.
+     *
+     * @param method {@link PsiMethod} for which to get the signature. Cannot be {@code null}.
+     * @return The signature of {@code method}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code method} is {@code null}.
+     */
+    @NotNull
+    static String getSignature(@NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        StringBuilder signatureBuilder = new StringBuilder(method.getName()).append('(');
+        boolean first = true;
+        for (PsiParameter parameter : method.getParameterList().getParameters())
+        {
+            if (!first)
+            {
+                signatureBuilder.append(',');
+            }
+            signatureBuilder.append(SyntaxOnlyTypes.getCanonicalText(parameter.getType()));
+            first = false;
+        }
+        return signatureBuilder.append(')').toString();
+    }
+
     /**
      * Find or create the test class associated with the provided source class.
      * <p>
@@ -111,114 +159,221 @@ final class PsiUtility
         PsiFile sourceFile = sourceClass.getContainingFile();
         Preconditions.checkArgument(sourceFile != null && sourceFile instanceof PsiJavaFile,
             "sourceClass must be defined in a valid java file.");
-        final Project project = sourceClass.getProject();
 
         PsiClass testClass = null;
 
         Optional<PsiDirectory> optionalTestDirectory = findOrCreateTestDirectory((PsiJavaFile) sourceFile);
         if (optionalTestDirectory.isPresent())
         {
-            final PsiDirectory testDirectory = optionalTestDirectory.get();
-            final String testClassName = sourceClass.getName() + "Test";
-            PsiFile testFile = testDirectory.findFile(testClassName + ".java");
-            if (testFile != null && testFile instanceof PsiJavaFile)
-            {
-                PsiClass[] classes = ((PsiJavaFile) testFile).getClasses();
-                if (classes.length == 1)
-                {
-                    testClass = classes[0];
-                }
-            }
-            else
-            {
-                final PsiElementFactory psiElementFactory = JavaPsiFacade.getElementFactory(project);
-                testClass = WriteCommandAction.runWriteCommandAction(
-                    project,
-                    (Computable<PsiClass>) () ->
-                    {
-                        PsiClass newClass = psiElementFactory.createClass(testClassName);
-                        testDirectory.add(newClass);
-                        return newClass;
-                    }
-                );
-            }
+            testClass = findOrCreateTestClass(optionalTestDirectory.get(), sourceClass.getName() + "Test")
+                .orElse(null);
         }
 
         return Optional.ofNullable(testClass);
     }
 
     /**
-     * Find or create the test directory associated with the provided source file.
+     * Find or create the test class with the provided name in the provided test directory.
+     *
+     * @param testDirectory {@link PsiDirectory} in which to find or create the test class. Cannot be {@code null}.
+     * @param testClassName Name of the test class. Cannot be {@code null}.
+     * @return {@link Optional} containing the found or created {@link PsiClass}, or {@link Optional#empty()} if the
+     *         test file exists but does not contain exactly one class. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static Optional<PsiClass> findOrCreateTestClass(@NotNull PsiDirectory testDirectory,
+                                                    @NotNull String testClassName)
+    {
+        Preconditions.checkNotNull(testDirectory, "testDirectory cannot be null.");
+        Preconditions.checkNotNull(testClassName, "testClassName cannot be null.");
+        final Project project = testDirectory.getProject();
+
+        PsiClass testClass = null;
+
+        PsiFile testFile = testDirectory.findFile(testClassName + ".java");
+        if (testFile != null && testFile instanceof PsiJavaFile)
+        {
+            testClass = getSingleClass((PsiJavaFile) testFile).orElse(null);
+        }
+        else
+        {
+            final PsiElementFactory psiElementFactory = JavaPsiFacade.getElementFactory(project);
+            testClass = WriteCommandAction.runWriteCommandAction(
+                project,
+                (Computable<PsiClass>) () ->
+                    (PsiClass) testDirectory.add(psiElementFactory.createClass(testClassName))
+            );
+        }
+
+        return Optional.ofNullable(testClass);
+    }
+
+    /**
+     * Find the existing test class associated with the provided source class, without creating anything.
      * <p>
      * As implemented, this only works for directory layouts in the standard maven format:
      * <pre>
      *     src/main/java/com/package/name/File.java
      *     src/test/java/com/package/name/FileTest.java
      * </pre>
-     * <p>
-     * TODO: Make this more robust -- handle more formats
      *
-     * @param sourceFile Source file for which to locate the associated test directory. Cannot be {@code null} and must
-     *                   be a source file.
+     * @param sourceClass Source class for which to find the test class. Cannot be {@code null} and must be defined in
+     *                    a valid {@link PsiJavaFile}.
+     * @return {@link Optional} containing the {@link PsiClass} pointing to the test class associated with
+     *         {@code sourceClass} or {@link Optional#empty()} if it does not exist yet. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code sourceClass} is not defined in a valid {@link PsiJavaFile}.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    static Optional<PsiClass> findTestClass(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        PsiFile sourceFile = sourceClass.getContainingFile();
+        Preconditions.checkArgument(sourceFile != null && sourceFile instanceof PsiJavaFile,
+            "sourceClass must be defined in a valid java file.");
+
+        return findTestDirectory((PsiJavaFile) sourceFile)
+            .flatMap(testDirectory -> findTestClass(testDirectory, sourceClass.getName() + "Test"));
+    }
+
+    /**
+     * Find the existing test class with the provided name in the provided test directory, without creating anything.
+     *
+     * @param testDirectory {@link PsiDirectory} in which to find the test class. Cannot be {@code null}.
+     * @param testClassName Name of the test class. Cannot be {@code null}.
+     * @return {@link Optional} containing the found {@link PsiClass}, or {@link Optional#empty()} if the test file
+     *         does not exist or does not contain exactly one class. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static Optional<PsiClass> findTestClass(@NotNull PsiDirectory testDirectory, @NotNull String testClassName)
+    {
+        Preconditions.checkNotNull(testDirectory, "testDirectory cannot be null.");
+        Preconditions.checkNotNull(testClassName, "testClassName cannot be null.");
+
+        PsiFile testFile = testDirectory.findFile(testClassName + ".java");
+        if (testFile instanceof PsiJavaFile)
+        {
+            return getSingleClass((PsiJavaFile) testFile);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Find the existing test directory associated with the provided source file, without creating anything.
+     *
+     * @param sourceFile Source file for which to find the associated test directory. Cannot be {@code null}.
      * @return {@link Optional} containing the {@link PsiDirectory} pointing to the test directory associated with
-     *         {@code sourceFile} or {@link Optional#empty()} if {@code sourceFile} is not a source file in a known
-     *         directory structure, or there was a problem creating the test directory. Never {@code null}.
+     *         {@code sourceFile} or {@link Optional#empty()} if it does not exist yet, or {@code sourceFile} is not a
+     *         source file in a known directory structure. Never {@code null}.
      *
      * @throws NullPointerException if {@code sourceFile} is {@code null}.
      */
     @NotNull
-    private static Optional<PsiDirectory> findOrCreateTestDirectory(@NotNull PsiJavaFile sourceFile)
+    static Optional<PsiDirectory> findTestDirectory(@NotNull PsiJavaFile sourceFile)
     {
         Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
 
-        Stack<String> directoriesInOrder = new Stack<>();
-        directoriesInOrder.add("src");
-        directoriesInOrder.add("main");
-        directoriesInOrder.add("java");
-        String packageName = sourceFile.getPackageName();
-        final List<String> packageNameDirectories = Arrays.asList(packageName.split("\\."));
-        directoriesInOrder.addAll(packageNameDirectories);
+        Optional<PsiDirectory> optionalSourceRoot = findSourceRoot(sourceFile);
+        if (!optionalSourceRoot.isPresent())
+        {
+            return Optional.empty();
+        }
+        PsiDirectory testDirectory = optionalSourceRoot.get();
+        for (String subDirectoryName : getTestDirectoryTree(sourceFile))
+        {
+            testDirectory = testDirectory.findSubdirectory(subDirectoryName);
+            if (testDirectory == null)
+            {
+                break;
+            }
+        }
+        return Optional.ofNullable(testDirectory);
+    }
 
-        // TODO: Can this be simplified/cleaned up?
+    /**
+     * Find the element on the test side which is closest to the test class of the provided source class, without
+     * creating anything: the test class itself if it exists, otherwise the deepest existing directory on the way to
+     * it, e.g. {@code src/test/java}.
+     * <p>
+     * Tests are compiled in the module of their test directory, which may differ from the module of the source
+     * class, so this is the element from which the test framework should be chosen.
+     *
+     * @param sourceClass Source class whose tests are generated. Cannot be {@code null} and must be defined in a valid
+     *                    {@link PsiJavaFile}.
+     * @return The closest element on the test side, or the file defining {@code sourceClass} if no test directory
+     *         exists yet or it is not in a known directory structure. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code sourceClass} is not defined in a valid {@link PsiJavaFile}.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    static PsiElement findTestContext(@NotNull PsiClass sourceClass)
+    {
+        Optional<PsiClass> testClass = findTestClass(sourceClass);
+        if (testClass.isPresent())
+        {
+            return testClass.get();
+        }
 
-        PsiDirectory sourceRoot = null;
-        PsiDirectory directory = sourceFile.getContainingDirectory();
-        if (directory != null)
+        PsiJavaFile sourceFile = (PsiJavaFile) sourceClass.getContainingFile();
+        PsiElement context = sourceFile;
+        Optional<PsiDirectory> optionalSourceRoot = findSourceRoot(sourceFile);
+        if (optionalSourceRoot.isPresent())
         {
-            while (directory != null)
+            PsiDirectory testDirectory = optionalSourceRoot.get();
+            for (String subDirectoryName : getTestDirectoryTree(sourceFile))
             {
-                try
-                {
-                    String expected = directoriesInOrder.pop();
-                    if (!directory.getName().equals(expected))
-                    {
-                        break;
-                    }
-                    else if (directoriesInOrder.isEmpty())
-                    {
-                        sourceRoot = directory;
-                        break;
-                    }
-                    directory = directory.getParentDirectory();
-                }
-                catch (EmptyStackException ese)
+                testDirectory = testDirectory.findSubdirectory(subDirectoryName);
+                if (testDirectory == null)
                 {
                     break;
                 }
+                context = testDirectory;
             }
         }
+        return context;
+    }
+
+    /**
+     * Find or create the test directory associated with the provided source file.
+     * <p>
+     * As implemented, this only works for directory layouts in the standard maven format:
+     * <pre>
+     *     src/main/java/com/package/name/File.java
+     *     src/test/java/com/package/name/FileTest.java
+     * </pre>
+     * <p>
+     * TODO: Make this more robust -- handle more formats
+     *
+     * @param sourceFile Source file for which to locate the associated test directory. Cannot be {@code null} and must
+     *                   be a source file.
+     * @return {@link Optional} containing the {@link PsiDirectory} pointing to the test directory associated with
+     *         {@code sourceFile} or {@link Optional#empty()} if {@code sourceFile} is not a source file in a known
+     *         directory structure, or there was a problem creating the test directory. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFile} is {@code null}.
+     */
+    @NotNull
+    static Optional<PsiDirectory> findOrCreateTestDirectory(@NotNull PsiJavaFile sourceFile)
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
 
         PsiDirectory result = null;
-        if (sourceRoot != null)
+        Optional<PsiDirectory> optionalSourceRoot = findSourceRoot(sourceFile);
+        if (optionalSourceRoot.isPresent())
         {
-            final PsiDirectory root = sourceRoot;
+            final PsiDirectory root = optionalSourceRoot.get();
+            final List<String> testDirectoryTree = getTestDirectoryTree(sourceFile);
             result = ApplicationManager.getApplication().runWriteAction(
                 (Computable<PsiDirectory>) () ->
                 {
                     PsiDirectory testDirectory = root;
 
-                    List<String> testDirectoryTree = Lists.newArrayList("test", "java");
-                    testDirectoryTree.addAll(packageNameDirectories);
                     for (String subDirectoryName : testDirectoryTree)
                     {
                         PsiDirectory subDirectory = testDirectory.findSubdirectory(subDirectoryName);
@@ -241,17 +396,124 @@ final class PsiUtility
     }
 
     /**
-     * Add the provided elements to the provided root element.
+     * Find the path of the test source root for the provided source file, e.g. {@code src/test/java}, without
+     * creating anything.
+     *
+     * @param sourceFile Source file for which to locate the test source root. Cannot be {@code null}.
+     * @return {@link Optional} containing the path of the test source root, which may not exist yet, or
+     *         {@link Optional#empty()} if {@code sourceFile} is not in a known directory structure on the local file
+     *         system. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFile} is {@code null}.
+     */
+    @NotNull
+    static Optional<Path> findTestRootPath(@NotNull PsiJavaFile sourceFile)
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+
+        Optional<PsiDirectory> optionalSourceRoot = findSourceRoot(sourceFile);
+        if (!optionalSourceRoot.isPresent() || !optionalSourceRoot.get().getVirtualFile().isInLocalFileSystem())
+        {
+            return Optional.empty();
+        }
+        Path testRoot = Paths.get(optionalSourceRoot.get().getVirtualFile().getPath());
+        List<String> testDirectoryTree = getTestDirectoryTree(sourceFile);
+        // The tree ends with the package's directories, which are below the root.
+        int packageDepth = sourceFile.getPackageName().split("\\.").length;
+        for (String directoryName : testDirectoryTree.subList(0, testDirectoryTree.size() - packageDepth))
+        {
+            testRoot = testRoot.resolve(directoryName);
+        }
+        return Optional.of(testRoot);
+    }
+
+    /**
+     * Find the directory containing both the main and test source trees for the provided source file, i.e. the
+     * {@code src} directory in the standard maven format.
+     *
+     * @param sourceFile Source file for which to locate the source root. Cannot be {@code null}.
+     * @return {@link Optional} containing the {@link PsiDirectory} pointing to the source root of {@code sourceFile}
+     *         or {@link Optional#empty()} if {@code sourceFile} is not in a known directory structure. Never
+     *         {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFile} is {@code null}.
+     */
+    @NotNull
+    private static Optional<PsiDirectory> findSourceRoot(@NotNull PsiJavaFile sourceFile)
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+
+        Stack<String> directoriesInOrder = new Stack<>();
+        directoriesInOrder.add("src");
+        directoriesInOrder.add("main");
+        directoriesInOrder.add("java");
+        directoriesInOrder.addAll(Arrays.asList(sourceFile.getPackageName().split("\\.")));
+
+        // TODO: Can this be simplified/cleaned up?
+
+        PsiDirectory sourceRoot = null;
+        PsiDirectory directory = sourceFile.getContainingDirectory();
+        while (directory != null)
+        {
+            try
+            {
+                String expected = directoriesInOrder.pop();
+                if (!directory.getName().equals(expected))
+                {
+                    break;
+                }
+                else if (directoriesInOrder.isEmpty())
+                {
+                    sourceRoot = directory;
+                    break;
+                }
+                directory = directory.getParentDirectory();
+            }
+            catch (EmptyStackException ese)
+            {
+                break;
+            }
+        }
+
+        return Optional.ofNullable(sourceRoot);
+    }
+
+    /**
+     * Get the names of the directories leading from the source root to the test directory for the provided source
+     * file, e.g. {@code [test, java, com, package, name]}.
+     *
+     * @param sourceFile Source file for which to get the test directory tree. Cannot be {@code null}.
+     * @return The names of the directories leading to the test directory, in order. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFile} is {@code null}.
+     */
+    @NotNull
+    private static List<String> getTestDirectoryTree(@NotNull PsiJavaFile sourceFile)
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+
+        List<String> testDirectoryTree = Lists.newArrayList("test", "java");
+        testDirectoryTree.addAll(Arrays.asList(sourceFile.getPackageName().split("\\.")));
+        return testDirectoryTree;
+    }
+
+    /**
+     * Add the provided elements to the provided root element, preserving their order.
+     * <p>
+     * This must be called from within a write action.
      *
      * @param root {@link PsiElement} to which elements should be added. Cannot be {@code null}.
      * @param toAdd {@link PsiElement}s to add to {@code root}. Cannot be {@code null}.
      * @param after Optional {@link PsiElement} after which all elements should be added. Can be {@code null} if none
      *              is desired.
+     * @return The elements which were actually inserted into {@code root}, in order. Never {@code null}.
      *
      * @throws IllegalArgumentException if {@code after} is not a child of {@code root}.
      * @throws NullPointerException if {@code root} or {@code toAdd} is {@code null}.
      */
-    static void addElements(@NotNull PsiElement root, @NotNull ImmutableList<PsiElement> toAdd, PsiElement after)
+    @NotNull
+    static ImmutableList<PsiElement> addElements(@NotNull PsiElement root, @NotNull ImmutableList<PsiElement> toAdd,
+                                                 PsiElement after)
     {
         Preconditions.checkNotNull(root, "root cannot be null.");
         Preconditions.checkNotNull(toAdd, "toAdd cannot be null.");
@@ -261,23 +523,161 @@ final class PsiUtility
                 "after must be a child of root.");
         }
 
-        final Project project = root.getProject();
-        WriteCommandAction.runWriteCommandAction(
-            project,
-            () ->
+        ImmutableList.Builder<PsiElement> added = ImmutableList.builder();
+        PsiElement anchor = after;
+        for (PsiElement element : toAdd)
+        {
+            if (anchor != null)
             {
-                for (PsiElement element : toAdd)
+                anchor = root.addAfter(element, anchor);
+            }
+            else
+            {
+                anchor = root.add(element);
+            }
+            added.add(anchor);
+        }
+        return added.build();
+    }
+
+    /**
+     * Shorten class references in, and reformat, exactly the provided freshly inserted elements.
+     * <p>
+     * Adjacent elements (separated only by whitespace) are merged into a single range, so each contiguous block of
+     * inserted code is reformatted once. The cost is proportional to the size of the inserted code, not to the size
+     * of {@code file}. While the project is being indexed, only reformatting happens immediately and shortening is
+     * queued until indexing has finished, along with binding any class names which could not be qualified without
+     * resolving them (see {@link SyntaxOnlyTypes}). This must be called from within a write action.
+     *
+     * @param file {@link PsiFile} containing the inserted elements. Cannot be {@code null}.
+     * @param inserted Elements which were inserted into {@code file}. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    static void reformatInserted(@NotNull PsiFile file, @NotNull List<PsiElement> inserted)
+    {
+        Preconditions.checkNotNull(file, "file cannot be null.");
+        Preconditions.checkNotNull(inserted, "inserted cannot be null.");
+
+        Project project = file.getProject();
+        // Shortening has to resolve every reference, so while indexing it is left until indexing has finished. The
+        // fully qualified code is valid in the meantime.
+        boolean dumb = DumbService.isDumb(project);
+        JavaCodeStyleManager javaCodeStyleManager = JavaCodeStyleManager.getInstance(project);
+        List<TextRange> ranges = Lists.newArrayList();
+        for (PsiElement element : inserted)
+        {
+            PsiElement shortened = dumb ? element : javaCodeStyleManager.shortenClassReferences(element);
+            if (shortened.isValid())
+            {
+                ranges.add(shortened.getTextRange());
+            }
+        }
+        ranges.sort(Comparator.comparingInt(TextRange::getStartOffset));
+
+        CharSequence contents = file.getViewProvider().getContents();
+        List<TextRange> merged = Lists.newArrayList();
+        for (TextRange range : ranges)
+        {
+            TextRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && isWhitespace(contents, last.getEndOffset(), range.getStartOffset()))
+            {
+                merged.set(merged.size() - 1, last.union(range));
+            }
+            else
+            {
+                merged.add(range);
+            }
+        }
+
+        // Reformat from the end of the file backwards so earlier ranges stay valid.
+        CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+        for (TextRange range : Lists.reverse(merged))
+        {
+            codeStyleManager.reformatRange(file, range.getStartOffset(), range.getEndOffset());
+        }
+
+        if (dumb)
+        {
+            SmartPointerManager pointerManager = SmartPointerManager.getInstance(project);
+            List<SmartPsiElementPointer<PsiElement>> pointers = inserted.stream()
+                .filter(PsiElement::isValid)
+                .map(pointerManager::createSmartPsiElementPointer)
+                .collect(Collectors.toList());
+            DumbService.getInstance(project).runWhenSmart(() ->
+                WriteCommandAction.runWriteCommandAction(project, () ->
                 {
-                    if (after != null)
+                    List<PsiElement> elements = pointers.stream()
+                        .map(SmartPsiElementPointer::getElement)
+                        .filter(element -> element != null && element.isValid())
+                        .collect(Collectors.toList());
+                    if (file.isValid() && !elements.isEmpty())
                     {
-                        root.addAfter(element, after);
+                        elements.forEach(PsiUtility::bindUnresolvedClassReferences);
+                        reformatInserted(file, elements);
                     }
-                    else
-                    {
-                        root.add(element);
-                    }
-                }
+                })
+            );
+        }
+    }
+
+    /**
+     * Bind every unqualified class reference in the provided element which does not resolve to the only class in its
+     * resolve scope with that name, adding an import for it. References with no or several candidates are left as
+     * they are.
+     * <p>
+     * This must be called from within a write action, once the project has been indexed.
+     *
+     * @param element {@link PsiElement} whose class references to bind. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code element} is {@code null}.
+     */
+    private static void bindUnresolvedClassReferences(@NotNull PsiElement element)
+    {
+        Preconditions.checkNotNull(element, "element cannot be null.");
+
+        PsiShortNamesCache shortNamesCache = PsiShortNamesCache.getInstance(element.getProject());
+        GlobalSearchScope scope = element.getResolveScope();
+        // Innermost references first, since binding a reference may replace the references nested in it.
+        List<PsiJavaCodeReferenceElement> references =
+            Lists.newArrayList(PsiTreeUtil.findChildrenOfType(element, PsiJavaCodeReferenceElement.class));
+        for (PsiJavaCodeReferenceElement reference : Lists.reverse(references))
+        {
+            String name = reference.getReferenceName();
+            if (reference instanceof PsiReferenceExpression || !reference.isValid() || reference.isQualified() ||
+                name == null || reference.resolve() != null)
+            {
+                continue;
             }
-        );
+            PsiClass[] candidates = shortNamesCache.getClassesByName(name, scope);
+            if (candidates.length == 1)
+            {
+                reference.bindToElement(candidates[0]);
+            }
+        }
+    }
+
+    /**
+     * Get whether the provided region of text contains only whitespace.
+     *
+     * @param text Text to check. Cannot be {@code null}.
+     * @param start Start offset (inclusive) of the region.
+     * @param end End offset (exclusive) of the region. May be less than {@code start} for overlapping ranges.
+     * @return {@code true} if the region contains only whitespace, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code text} is {@code null}.
+     */
+    private static boolean isWhitespace(@NotNull CharSequence text, int start, int end)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+
+        for (int i = start; i < end; i++)
+        {
+            if (!Character.isWhitespace(text.charAt(i)))
+            {
+                return false;
+            }
+        }
+        return true;
     }
 }
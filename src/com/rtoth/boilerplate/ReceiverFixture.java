@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.util.PsiUtil;
+import com.rtoth.boilerplate.parameters.InstanceFactoryRegistry;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Renders the shared factory method which creates the receiver for tests of instance methods, e.g.
+ * <pre>
+ *     private static Foo createFoo()
+ *     {
+ *         return new Foo(0, "test");
+ *     }
+ * </pre>
+ * The factory is rendered once per test class and called from every instance method test, so no test shares
+ * mutable state with another.
+ */
+final class ReceiverFixture
+{
+    /**
+     * Private constructor for utility class.
+     */
+    private ReceiverFixture()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Get the name of the factory method creating receivers of the provided class.
+     *
+     * @param sourceClass {@link PsiClass} whose instances are created. Cannot be {@code null}.
+     * @return The name of the factory method. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    static String getFactoryMethodName(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        return "create" + sourceClass.getName();
+    }
+
+    /**
+     * Render the factory method creating receivers of the provided class.
+     *
+     * @param sourceClass {@link PsiClass} whose instances are created. Cannot be {@code null}.
+     * @return The rendered factory method. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    static TestCase render(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        String name = getFactoryMethodName(sourceClass);
+        String text = "private static " + sourceClass.getName() + " " + name + "()\n" +
+            "{\n" +
+            "    return " + renderConstruction(sourceClass) + ";\n" +
+            "}";
+        return new TestCase(name, text);
+    }
+
+    /**
+     * Render an expression creating a valid instance of the provided class, using its simplest accessible
+     * constructor with real instances of its parameters where possible, or a mock if it cannot be constructed
+     * directly.
+     *
+     * @param sourceClass {@link PsiClass} to create. Cannot be {@code null}.
+     * @return The rendered expression. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    private static String renderConstruction(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        if (sourceClass.isInterface() || sourceClass.hasModifierProperty(PsiModifier.ABSTRACT))
+        {
+            return "mock(" + sourceClass.getName() + ".class)";
+        }
+
+        PsiMethod[] constructors = sourceClass.getConstructors();
+        if (constructors.length == 0)
+        {
+            return "new " + sourceClass.getName() + "()";
+        }
+
+        PsiMethod simplest = null;
+        for (PsiMethod constructor : constructors)
+        {
+            if (PsiUtil.getAccessLevel(constructor.getModifierList()) != PsiUtil.ACCESS_LEVEL_PRIVATE &&
+                (simplest == null || constructor.getParameterList().getParametersCount() <
+                    simplest.getParameterList().getParametersCount()))
+            {
+                simplest = constructor;
+            }
+        }
+        if (simplest == null)
+        {
+            return "mock(" + sourceClass.getName() + ".class)";
+        }
+
+        StringBuilder construction = new StringBuilder("new ").append(sourceClass.getName()).append('(');
+        boolean first = true;
+        for (PsiParameter parameter : simplest.getParameterList().getParameters())
+        {
+            if (!first)
+            {
+                construction.append(", ");
+            }
+            construction.append(InstanceFactoryRegistry.getInstanceText(parameter.getType()));
+            first = false;
+        }
+        return construction.append(')').toString();
+    }
+}
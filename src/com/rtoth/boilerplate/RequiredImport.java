@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElementFactory;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiImportStatementBase;
+import com.intellij.psi.PsiImportStaticStatement;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.search.GlobalSearchScope;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An import needed to support generated test cases.
+ */
+final class RequiredImport
+{
+    /** Prefix identifying a static import in the text form of an import. */
+    private static final String STATIC_PREFIX = "static ";
+
+    /** Qualified name of the imported class. */
+    private final String qualifiedClassName;
+
+    /** Name of the statically imported member, or {@code null} for a regular class import. */
+    private final String staticMember;
+
+    /**
+     * Create a new {@link RequiredImport}.
+     *
+     * @param qualifiedClassName Qualified name of the imported class. Cannot be {@code null}.
+     * @param staticMember Name of the statically imported member. Can be {@code null} for a regular class import.
+     *
+     * @throws NullPointerException if {@code qualifiedClassName} is {@code null}.
+     */
+    private RequiredImport(@NotNull String qualifiedClassName, @Nullable String staticMember)
+    {
+        this.qualifiedClassName =
+            Preconditions.checkNotNull(qualifiedClassName, "qualifiedClassName cannot be null.");
+        this.staticMember = staticMember;
+    }
+
+    /**
+     * Parse a {@link RequiredImport} from its text form, i.e. the text of an import statement without the
+     * {@code import} keyword and semi-colon, e.g. {@code org.junit.Test} or
+     * {@code static org.mockito.Mockito.mock}.
+     *
+     * @param text Text form of the import. Cannot be {@code null}.
+     * @return The parsed {@link RequiredImport}. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code text} is not a valid import.
+     * @throws NullPointerException if {@code text} is {@code null}.
+     */
+    @NotNull
+    static RequiredImport parse(@NotNull String text)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+
+        String trimmed = text.trim();
+        if (trimmed.startsWith(STATIC_PREFIX))
+        {
+            String member = trimmed.substring(STATIC_PREFIX.length()).trim();
+            int separator = member.lastIndexOf('.');
+            Preconditions.checkArgument(separator > 0 && separator < member.length() - 1,
+                "Invalid static import: %s", text);
+            return new RequiredImport(member.substring(0, separator), member.substring(separator + 1));
+        }
+        Preconditions.checkArgument(!trimmed.isEmpty() && !trimmed.endsWith("."), "Invalid import: %s", text);
+        return new RequiredImport(trimmed, null);
+    }
+
+    /**
+     * Resolve the imported class in the provided {@link Project}.
+     *
+     * @param project {@link Project} in which to resolve the imported class. Cannot be {@code null}.
+     * @return The imported {@link PsiClass}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     * @throws TestGenerationException if the imported class is not on the project's classpath.
+     */
+    @NotNull
+    PsiClass resolve(@NotNull Project project) throws TestGenerationException
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        PsiClass importedClass = JavaPsiFacade.getInstance(project)
+            .findClass(qualifiedClassName, GlobalSearchScope.allScope(project));
+        if (importedClass == null)
+        {
+            throw new TestGenerationException("Please add " + qualifiedClassName + " to the project's classpath " +
+                "before proceeding.");
+        }
+        return importedClass;
+    }
+
+    /**
+     * Create the import statement for this import.
+     * <p>
+     * While the project is being indexed, the statement is created from its text without checking that the imported
+     * class exists.
+     *
+     * @param project {@link Project} in which to resolve the imported class. Cannot be {@code null}.
+     * @param psiElementFactory Factory used to create the statement. Cannot be {@code null}.
+     * @return The import statement. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if the imported class is not on the project's classpath.
+     */
+    @NotNull
+    PsiImportStatementBase createStatement(@NotNull Project project, @NotNull PsiElementFactory psiElementFactory)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+        Preconditions.checkNotNull(psiElementFactory, "psiElementFactory cannot be null.");
+
+        if (DumbService.isDumb(project))
+        {
+            // The class cannot be resolved while indexing, so parse the statement from its text instead.
+            PsiJavaFile parsed = (PsiJavaFile) PsiFileFactory.getInstance(project)
+                .createFileFromText("_Dummy_.java", JavaFileType.INSTANCE, getText());
+            PsiImportList importList = parsed.getImportList();
+            if (importList == null || importList.getAllImportStatements().length != 1)
+            {
+                throw new TestGenerationException("Unable to create import statement: " + getText());
+            }
+            return importList.getAllImportStatements()[0];
+        }
+        PsiClass importedClass = resolve(project);
+        return staticMember != null ?
+            psiElementFactory.createImportStaticStatement(importedClass, staticMember) :
+            psiElementFactory.createImportStatement(importedClass);
+    }
+
+    /**
+     * Get whether this import is already present in the provided file.
+     *
+     * @param file {@link PsiJavaFile} to check. Can be {@code null}, in which case the import is not present.
+     * @return {@code true} if this import is already present in {@code file}, {@code false} otherwise.
+     */
+    boolean isPresentIn(@Nullable PsiJavaFile file)
+    {
+        PsiImportList importList = file != null ? file.getImportList() : null;
+        if (importList == null)
+        {
+            return false;
+        }
+        if (staticMember == null)
+        {
+            return importList.findSingleClassImportStatement(qualifiedClassName) != null;
+        }
+        boolean dumb = DumbService.isDumb(importList.getProject());
+        for (PsiImportStaticStatement statement : importList.getImportStaticStatements())
+        {
+            if (dumb)
+            {
+                // Compare the text of the statement, as its target class cannot be resolved while indexing.
+                PsiJavaCodeReferenceElement reference = statement.getImportReference();
+                String importedText = reference != null ? reference.getText().replaceAll("\\s", "") : "";
+                if (importedText.equals(statement.isOnDemand() ?
+                    qualifiedClassName : qualifiedClassName + "." + staticMember))
+                {
+                    return true;
+                }
+                continue;
+            }
+            PsiClass targetClass = statement.resolveTargetClass();
+            if (targetClass != null && qualifiedClassName.equals(targetClass.getQualifiedName()) &&
+                (statement.isOnDemand() || staticMember.equals(statement.getReferenceName())))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the source text of this import statement.
+     *
+     * @return The source text of this import statement. Never {@code null}.
+     */
+    @NotNull
+    String getText()
+    {
+        return staticMember != null ?
+            "import static " + qualifiedClassName + "." + staticMember + ";" :
+            "import " + qualifiedClassName + ";";
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        RequiredImport that = (RequiredImport) o;
+        return qualifiedClassName.equals(that.qualifiedClassName) &&
+            (staticMember != null ? staticMember.equals(that.staticMember) : that.staticMember == null);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * qualifiedClassName.hashCode() + (staticMember != null ? staticMember.hashCode() : 0);
+    }
+}
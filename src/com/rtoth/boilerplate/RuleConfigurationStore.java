@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Project level store of the {@link ParameterRule} configurations made by the user, so they can be reused the next
+ * time test cases are generated for the same methods.
+ * <p>
+ * Configurations are persisted in their compact encoded form (see {@link MethodRuleConfiguration}) keyed by a hash
+ * of the class's qualified name and the method's signature. They are only decoded when first requested, and only a
+ * bounded number of decoded configurations are kept in memory.
+ * <p>
+ * The store also keeps the time budget of the valid construction tests chosen for each class (see
+ * {@link TimeoutGuard}).
+ */
+@State(name = "BoilerplateRuleConfigurations", storages = @Storage("boilerplateJUnitGenerator.xml"))
+public class RuleConfigurationStore implements PersistentStateComponent<RuleConfigurationStore.State>
+{
+    /** Maximum number of decoded configurations to keep in memory. */
+    private static final int MAX_DECODED_CONFIGURATIONS = 256;
+
+    /** Persisted state of this store. */
+    private State state = new State();
+
+    /** Most recently used decoded configurations mapped by key, in access order. */
+    private final Map<String, MethodRuleConfiguration> decodedConfigurations =
+        new LinkedHashMap<String, MethodRuleConfiguration>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MethodRuleConfiguration> eldest)
+            {
+                return size() > MAX_DECODED_CONFIGURATIONS;
+            }
+        };
+
+    /**
+     * Get the {@link RuleConfigurationStore} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which to get the store. Cannot be {@code null}.
+     * @return The {@link RuleConfigurationStore} for {@code project}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    @NotNull
+    static RuleConfigurationStore getInstance(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        return ServiceManager.getService(project, RuleConfigurationStore.class);
+    }
+
+    @NotNull
+    @Override
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(State state)
+    {
+        this.state = state;
+        decodedConfigurations.clear();
+    }
+
+    /**
+     * Find the stored configuration for the provided method.
+     *
+     * @param sourceClass {@link PsiClass} defining {@code method}. Cannot be {@code null}.
+     * @param method {@link PsiMethod} for which to find the stored configuration. Cannot be {@code null}.
+     * @return {@link Optional} containing the stored configuration for {@code method}, or {@link Optional#empty()}
+     *         if none has been stored. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    Optional<MethodRuleConfiguration> find(@NotNull PsiClass sourceClass, @NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        return find(String.valueOf(sourceClass.getQualifiedName()), PsiUtility.getSignature(method));
+    }
+
+    /**
+     * Find the stored configuration for the method with the provided signature.
+     *
+     * @param classQualifiedName Qualified name of the class defining the method. Cannot be {@code null}.
+     * @param methodSignature Signature of the method, as returned by {@link PsiUtility#getSignature}. Cannot be
+     *                        {@code null}.
+     * @return {@link Optional} containing the stored configuration for the method, or {@link Optional#empty()} if
+     *         none has been stored. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    synchronized Optional<MethodRuleConfiguration> find(@NotNull String classQualifiedName,
+                                                        @NotNull String methodSignature)
+    {
+        String key = getKey(classQualifiedName, methodSignature);
+
+        MethodRuleConfiguration configuration = decodedConfigurations.get(key);
+        if (configuration == null)
+        {
+            String encoded = state.configurations.get(key);
+            if (encoded != null)
+            {
+                Optional<MethodRuleConfiguration> decoded = MethodRuleConfiguration.decode(encoded);
+                // Guard against (extremely unlikely) hash collisions as well as malformed entries.
+                if (decoded.isPresent() &&
+                    decoded.get().getClassQualifiedName().equals(classQualifiedName) &&
+                    decoded.get().getMethodSignature().equals(methodSignature))
+                {
+                    configuration = decoded.get();
+                    decodedConfigurations.put(key, configuration);
+                }
+            }
+        }
+        return Optional.ofNullable(configuration);
+    }
+
+    /**
+     * Store the current configuration of the provided rules for the provided method, replacing any previously
+     * stored configuration.
+     *
+     * @param sourceClass {@link PsiClass} defining {@code method}. Cannot be {@code null}.
+     * @param method {@link PsiMethod} for which to store the configuration. Cannot be {@code null}.
+     * @param rules {@link ParameterRule}s for each of {@code method}'s parameters, in order. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    void store(@NotNull PsiClass sourceClass, @NotNull PsiMethod method, @NotNull List<ParameterRule> rules)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(method, "method cannot be null.");
+        Preconditions.checkNotNull(rules, "rules cannot be null.");
+
+        store(MethodRuleConfiguration.capture(String.valueOf(sourceClass.getQualifiedName()),
+            PsiUtility.getSignature(method), rules));
+    }
+
+    /**
+     * Store the provided configuration, replacing any previously stored configuration for the same method.
+     *
+     * @param configuration Configuration to store. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code configuration} is {@code null}.
+     */
+    synchronized void store(@NotNull MethodRuleConfiguration configuration)
+    {
+        Preconditions.checkNotNull(configuration, "configuration cannot be null.");
+
+        String key = getKey(configuration.getClassQualifiedName(), configuration.getMethodSignature());
+        state.configurations.put(key, configuration.encode());
+        decodedConfigurations.put(key, configuration);
+    }
+
+    /**
+     * Remove the stored configuration for the provided method, if any, so it is no longer selected or generated by
+     * default.
+     *
+     * @param sourceClass {@link PsiClass} defining {@code method}. Cannot be {@code null}.
+     * @param method {@link PsiMethod} for which to remove the configuration. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    synchronized void remove(@NotNull PsiClass sourceClass, @NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        String key = getKey(String.valueOf(sourceClass.getQualifiedName()), PsiUtility.getSignature(method));
+        state.configurations.remove(key);
+        decodedConfigurations.remove(key);
+    }
+
+    /**
+     * Get the time budget of the valid construction tests generated for the provided class.
+     *
+     * @param sourceClass {@link PsiClass} under test. Cannot be {@code null}.
+     * @return The budget for a single construction in milliseconds, or {@code 0} if no timeout guarded tests should
+     *         be generated.
+     *
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    int getTimeoutBudget(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        return getTimeoutBudget(String.valueOf(sourceClass.getQualifiedName()));
+    }
+
+    /**
+     * Get the time budget of the valid construction tests generated for the class with the provided name.
+     *
+     * @param classQualifiedName Qualified name of the class under test. Cannot be {@code null}.
+     * @return The budget for a single construction in milliseconds, or {@code 0} if no timeout guarded tests should
+     *         be generated.
+     *
+     * @throws NullPointerException if {@code classQualifiedName} is {@code null}.
+     */
+    synchronized int getTimeoutBudget(@NotNull String classQualifiedName)
+    {
+        Preconditions.checkNotNull(classQualifiedName, "classQualifiedName cannot be null.");
+
+        Integer budget = state.timeoutBudgets.get(classQualifiedName);
+        return budget != null ? Math.max(0, budget) : 0;
+    }
+
+    /**
+     * Set the time budget of the valid construction tests generated for the provided class.
+     *
+     * @param sourceClass {@link PsiClass} under test. Cannot be {@code null}.
+     * @param budgetMillis The budget for a single construction in milliseconds, or {@code 0} if no timeout guarded
+     *                     tests should be generated. Cannot be negative.
+     *
+     * @throws IllegalArgumentException if {@code budgetMillis} is negative.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    synchronized void setTimeoutBudget(@NotNull PsiClass sourceClass, int budgetMillis)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkArgument(budgetMillis >= 0, "budgetMillis cannot be negative.");
+
+        String classQualifiedName = String.valueOf(sourceClass.getQualifiedName());
+        if (budgetMillis > 0)
+        {
+            state.timeoutBudgets.put(classQualifiedName, budgetMillis);
+        }
+        else
+        {
+            state.timeoutBudgets.remove(classQualifiedName);
+        }
+    }
+
+    /**
+     * Get the key under which the configuration for the provided method is stored.
+     *
+     * @param classQualifiedName Qualified name of the class defining the method. Cannot be {@code null}.
+     * @param methodSignature Signature of the method. Cannot be {@code null}.
+     * @return The key under which the configuration is stored. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    private static String getKey(@NotNull String classQualifiedName, @NotNull String methodSignature)
+    {
+        Preconditions.checkNotNull(classQualifiedName, "classQualifiedName cannot be null.");
+        Preconditions.checkNotNull(methodSignature, "methodSignature cannot be null.");
+
+        return Hashing.murmur3_128()
+            .hashString(classQualifiedName + '#' + methodSignature, Charsets.UTF_8)
+            .toString();
+    }
+
+    /**
+     * Persisted state of a {@link RuleConfigurationStore}.
+     */
+    public static class State
+    {
+        /** Encoded {@link MethodRuleConfiguration}s mapped by key. */
+        public Map<String, String> configurations = new TreeMap<>();
+
+        /** Time budgets of valid construction tests in milliseconds, mapped by qualified class name. */
+        public Map<String, Integer> timeoutBudgets = new TreeMap<>();
+    }
+}
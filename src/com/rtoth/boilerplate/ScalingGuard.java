@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.rtoth.boilerplate.parameters.ContainerParameterRule;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders a test which checks that the running time of an invocation grows no faster than a {@link ComplexityBound}
+ * with the size of its array and collection arguments, e.g.
+ * <pre>
+ *     &#64;Test
+ *     void constructor_scalesLinearly()
+ *     {
+ *         List&lt;String&gt; itemsSmall = new ArrayList&lt;&gt;(Collections.nCopies(1000, "test"));
+ *         List&lt;String&gt; itemsLarge = new ArrayList&lt;&gt;(Collections.nCopies(10000, "test"));
+ *         ... warm up, then keep the fastest of a few timed runs at each size, consuming every result ...
+ *         if (ratio &gt; 30.0)
+ *         {
+ *             throw new AssertionError(...);
+ *         }
+ *     }
+ * </pre>
+ * Every scalable argument is built at a base size and at {@link #SCALE} times that size, all other arguments use
+ * their first valid value. Tests of instance methods also time the creation of the receiver, which only lowers the
+ * measured ratio.
+ * <p>
+ * Each timed run repeats the invocation until the small size takes at least {@link #MIN_MEASURED_NANOS}, so fast
+ * invocations are not lost in timer resolution, and every returned value is folded into a checksum reported on
+ * failure, so the JIT cannot eliminate the invocations as dead code.
+ */
+final class ScalingGuard
+{
+    /** Factor between the small and the large size. */
+    static final int SCALE = 10;
+
+    /** Number of invocations at each size before timing. */
+    private static final int WARM_UP_ITERATIONS = 10;
+
+    /** Number of timed invocations at each size, of which the fastest is kept. */
+    private static final int TIMED_ITERATIONS = 5;
+
+    /** Shortest duration of a timed run at the small size, in nanoseconds. */
+    private static final long MIN_MEASURED_NANOS = 1_000_000L;
+
+    /** Largest number of repetitions of the invocation within a single timed run. */
+    private static final int MAX_REPETITIONS = 1 << 16;
+
+    /**
+     * Private constructor for utility class.
+     */
+    private ScalingGuard()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Check whether a scaling test can be rendered for the provided parameters, i.e. whether at least one of them
+     * accepts valid values at both sizes.
+     *
+     * @param parameterRules {@link ParameterRule}s for each parameter of the method under test. Cannot be
+     *                       {@code null}.
+     * @param baseSize Smaller of the two sizes.
+     * @return {@code true} if a scaling test can be rendered, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code parameterRules} is {@code null}.
+     */
+    static boolean canRender(@NotNull List<ParameterRule> parameterRules, int baseSize)
+    {
+        Preconditions.checkNotNull(parameterRules, "parameterRules cannot be null.");
+
+        for (ParameterRule rule : parameterRules)
+        {
+            if (getScalable(rule, baseSize) != null)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Render a test which checks the scaling of the provided invocation.
+     *
+     * @param testName Name of the test method. Cannot be {@code null}.
+     * @param invocationTarget Text preceding the argument list of the invocation, e.g. {@code new Foo}. Cannot be
+     *                         {@code null}.
+     * @param parameterRules {@link ParameterRule}s for each parameter of the method under test, of which at least
+     *                       one must be scalable, see {@link #canRender}. Cannot be {@code null}.
+     * @param bound Bound to check. Cannot be {@code null} or {@link ComplexityBound#NONE}.
+     * @param baseSize Smaller of the two sizes. Must be greater than 1.
+     * @param returnsValue Whether the invocation returns a value, which is then consumed so it is not optimized away.
+     * @param junit5 Whether to render a JUnit 5 test, or a JUnit 4 test otherwise.
+     * @return The rendered test case. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code bound} is {@link ComplexityBound#NONE}, {@code baseSize} is not
+     *                                  greater than 1 or no parameter is scalable.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static TestCase render(@NotNull String testName, @NotNull String invocationTarget,
+                           @NotNull List<ParameterRule> parameterRules, @NotNull ComplexityBound bound, int baseSize,
+                           boolean returnsValue, boolean junit5)
+    {
+        Preconditions.checkNotNull(testName, "testName cannot be null.");
+        Preconditions.checkNotNull(invocationTarget, "invocationTarget cannot be null.");
+        Preconditions.checkNotNull(bound, "bound cannot be null.");
+        Preconditions.checkArgument(bound != ComplexityBound.NONE, "bound cannot be NONE.");
+        Preconditions.checkArgument(canRender(parameterRules, baseSize), "No parameter is scalable.");
+
+        StringBuilder arrange = new StringBuilder();
+        StringBuilder smallInvocation = new StringBuilder(invocationTarget).append('(');
+        StringBuilder largeInvocation = new StringBuilder(invocationTarget).append('(');
+        for (int i = 0; i < parameterRules.size(); i++)
+        {
+            ParameterRule rule = parameterRules.get(i);
+            String type = rule.getTypeText();
+            if (i > 0)
+            {
+                smallInvocation.append(", ");
+                largeInvocation.append(", ");
+            }
+            ContainerParameterRule scalable = getScalable(rule, baseSize);
+            if (scalable != null)
+            {
+                arrange.append("    ").append(type).append(' ').append(rule.getName()).append("Small = ")
+                    .append(scalable.getInitializerTextOfSize(baseSize)).append(";\n");
+                arrange.append("    ").append(type).append(' ').append(rule.getName()).append("Large = ")
+                    .append(scalable.getInitializerTextOfSize(baseSize * SCALE)).append(";\n");
+                smallInvocation.append(rule.getName()).append("Small");
+                largeInvocation.append(rule.getName()).append("Large");
+            }
+            else
+            {
+                arrange.append("    ").append(type).append(' ').append(rule.getName()).append(" = ")
+                    .append(rule.getValidInitializers().get(0).getInitializerText()).append(";\n");
+                smallInvocation.append(rule.getName());
+                largeInvocation.append(rule.getName());
+            }
+        }
+        smallInvocation.append(')');
+        largeInvocation.append(')');
+        String smallStatement = consume(smallInvocation, returnsValue);
+        String largeStatement = consume(largeInvocation, returnsValue);
+
+        StringBuilder text = new StringBuilder(1024);
+        text.append(junit5 ? "@org.junit.jupiter.api.Test\nvoid " : "@org.junit.Test\npublic void ")
+            .append(testName).append("()\n")
+            .append("{\n")
+            .append(arrange)
+            .append("    int sink = 0;\n")
+            .append("    for (int i = 0; i < ").append(WARM_UP_ITERATIONS).append("; i++)\n")
+            .append("    {\n")
+            .append("        ").append(smallStatement).append('\n')
+            .append("        ").append(largeStatement).append('\n')
+            .append("    }\n")
+            .append("    int repetitions = 1;\n")
+            .append("    while (true)\n")
+            .append("    {\n")
+            .append("        long start = System.nanoTime();\n")
+            .append("        for (int r = 0; r < repetitions; r++)\n")
+            .append("        {\n")
+            .append("            ").append(smallStatement).append('\n')
+            .append("        }\n")
+            .append("        if (System.nanoTime() - start >= ").append(MIN_MEASURED_NANOS)
+            .append("L || repetitions >= ").append(MAX_REPETITIONS).append(")\n")
+            .append("        {\n")
+            .append("            break;\n")
+            .append("        }\n")
+            .append("        repetitions *= 2;\n")
+            .append("    }\n")
+            .append("    long small = Long.MAX_VALUE;\n")
+            .append("    long large = Long.MAX_VALUE;\n")
+            .append("    for (int i = 0; i < ").append(TIMED_ITERATIONS).append("; i++)\n")
+            .append("    {\n")
+            .append("        long start = System.nanoTime();\n")
+            .append("        for (int r = 0; r < repetitions; r++)\n")
+            .append("        {\n")
+            .append("            ").append(smallStatement).append('\n')
+            .append("        }\n")
+            .append("        small = Math.min(small, System.nanoTime() - start);\n")
+            .append("        start = System.nanoTime();\n")
+            .append("        for (int r = 0; r < repetitions; r++)\n")
+            .append("        {\n")
+            .append("            ").append(largeStatement).append('\n')
+            .append("        }\n")
+            .append("        large = Math.min(large, System.nanoTime() - start);\n")
+            .append("    }\n")
+            .append("    double ratio = (double) large / Math.max(1L, small);\n")
+            .append("    if (ratio > ").append(String.format(Locale.ROOT, "%.1f", bound.getMaxRatio(baseSize, SCALE)))
+            .append(")\n")
+            .append("    {\n")
+            .append("        throw new AssertionError(\"").append(SCALE).append("x larger input took \" + ratio + ")
+            .append("\"x longer, expected ").append(bound.toString()).append(" growth (checksum \" + sink + \")\");\n")
+            .append("    }\n")
+            .append('}');
+        return new TestCase(testName, text.toString());
+    }
+
+    /**
+     * Render the provided invocation as a statement which consumes its result, if it returns one.
+     *
+     * @param invocation Invocation to render. Cannot be {@code null}.
+     * @param returnsValue Whether the invocation returns a value.
+     * @return The statement, e.g. {@code sink += java.util.Objects.hashCode(new Foo(items));}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code invocation} is {@code null}.
+     */
+    @NotNull
+    private static String consume(@NotNull CharSequence invocation, boolean returnsValue)
+    {
+        Preconditions.checkNotNull(invocation, "invocation cannot be null.");
+
+        return returnsValue ? "sink += java.util.Objects.hashCode(" + invocation + ");" : invocation + ";";
+    }
+
+    /**
+     * Get the provided rule as a {@link ContainerParameterRule} if it accepts valid values at both sizes.
+     *
+     * @param rule Rule to check. Cannot be {@code null}.
+     * @param baseSize Smaller of the two sizes.
+     * @return {@code rule} if it is scalable, {@code null} otherwise.
+     *
+     * @throws NullPointerException if {@code rule} is {@code null}.
+     */
+    @Nullable
+    private static ContainerParameterRule getScalable(@NotNull ParameterRule rule, int baseSize)
+    {
+        Preconditions.checkNotNull(rule, "rule cannot be null.");
+
+        if (rule instanceof ContainerParameterRule)
+        {
+            ContainerParameterRule containerRule = (ContainerParameterRule) rule;
+            if (containerRule.isValidSize(baseSize) && containerRule.isValidSize(baseSize * SCALE))
+            {
+                return containerRule;
+            }
+        }
+        return null;
+    }
+}
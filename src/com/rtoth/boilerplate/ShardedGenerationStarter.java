@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationStarterEx;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Generates the tests of one shard of a {@link GenerationPlan} without a user interface, so generation for a large
+ * code base can be spread across build agents, or across processes on one machine:
+ * <pre>
+ *     idea boilerplate-generate &lt;project directory&gt; &lt;plan file&gt; [&lt;shard&gt; &lt;shard count&gt;]
+ * </pre>
+ * Shard {@code i} of {@code n} (starting at 0, and defaulting to the only shard) generates exactly the classes for
+ * which {@link GenerationPlan#isInShard} holds, so running every shard once generates every class in the plan
+ * exactly once. Classes whose tests are already up to date according to the {@link GenerationCache} are skipped.
+ * Processes on the same machine must each be given their own {@code idea.config.path} and {@code idea.system.path}.
+ * <p>
+ * The process exits with status {@code 0} if every class of the shard was generated, {@code 1} if any class failed
+ * and {@code 2} if the arguments are invalid.
+ */
+public class ShardedGenerationStarter extends ApplicationStarterEx
+{
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getInstance(ShardedGenerationStarter.class);
+
+    /** Name of the command selecting this starter. */
+    private static final String COMMAND_NAME = "boilerplate-generate";
+
+    @Override
+    public String getCommandName()
+    {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public boolean isHeadless()
+    {
+        return true;
+    }
+
+    @Override
+    public void premain(String[] args)
+    {
+        // Nothing to prepare, the arguments are validated once the application has started.
+    }
+
+    @Override
+    public void main(String[] args)
+    {
+        // The first argument is always the command name.
+        Integer shard = args.length == 5 ? Ints.tryParse(args[3]) : Integer.valueOf(0);
+        Integer shardCount = args.length == 5 ? Ints.tryParse(args[4]) : Integer.valueOf(1);
+        if ((args.length != 3 && args.length != 5) || shard == null || shardCount == null || shardCount < 1 ||
+            shard < 0 || shard >= shardCount)
+        {
+            System.err.println("Usage: " + COMMAND_NAME + " <project directory> <plan file> [<shard> <shard count>]");
+            System.err.println("  where 0 <= shard < shard count");
+            System.exit(2);
+        }
+
+        int exitCode;
+        try
+        {
+            exitCode = run(args[1], args[2], shard, shardCount);
+        }
+        catch (Exception e)
+        {
+            System.err.println(COMMAND_NAME + " failed: " + e.getMessage());
+            LOG.warn(COMMAND_NAME + " failed", e);
+            exitCode = 1;
+        }
+        if (exitCode != 0)
+        {
+            System.exit(exitCode);
+        }
+        ApplicationManagerEx.getApplicationEx().exit(true, true);
+    }
+
+    /**
+     * Open the project and generate the tests of the provided shard of the plan.
+     *
+     * @param projectPath Path of the project directory. Cannot be {@code null}.
+     * @param planPath Path of the plan. Cannot be {@code null}.
+     * @param shard Index of the shard to generate, starting at 0.
+     * @param shardCount Total number of shards.
+     * @return The exit status of the process.
+     *
+     * @throws Exception if the project cannot be opened or the plan cannot be read.
+     * @throws NullPointerException if {@code projectPath} or {@code planPath} is {@code null}.
+     */
+    private static int run(@NotNull String projectPath, @NotNull String planPath, int shard, int shardCount)
+        throws Exception
+    {
+        Preconditions.checkNotNull(projectPath, "projectPath cannot be null.");
+        Preconditions.checkNotNull(planPath, "planPath cannot be null.");
+
+        // Opening a project without a user interface indexes it before returning, so no dumb mode handling is needed.
+        Project project = ProjectManager.getInstance().loadAndOpenProject(projectPath);
+        if (project == null)
+        {
+            System.err.println("Unable to open project " + projectPath);
+            return 1;
+        }
+
+        int planned = 0;
+        int generated = 0;
+        int unchanged = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(planPath), Charsets.UTF_8);
+             Stream<GenerationPlan> plans = GenerationPlan.read(reader))
+        {
+            TestCaseGenerator generator = new TestCaseGenerator(project);
+            GenerationCache cache = GenerationCache.getInstance();
+            JavaPsiFacade psiFacade = JavaPsiFacade.getInstance(project);
+            GlobalSearchScope scope = GlobalSearchScope.projectScope(project);
+            Iterator<GenerationPlan> iterator = plans.iterator();
+            while (iterator.hasNext())
+            {
+                GenerationPlan plan = iterator.next();
+                if (!plan.isInShard(shard, shardCount))
+                {
+                    continue;
+                }
+                planned++;
+                try
+                {
+                    PsiClass sourceClass = psiFacade.findClass(plan.getClassQualifiedName(), scope);
+                    if (sourceClass == null)
+                    {
+                        throw new TestGenerationException("Class not found.");
+                    }
+                    ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules =
+                        plan.buildMethodRules(sourceClass);
+                    TestTemplateCache.Templates templates = generator.resolveTemplates(sourceClass);
+                    String cacheKey = GenerationCache.computeKey(project, sourceClass, methodRules, templates);
+                    Optional<ImmutableList<TestCase>> cached = cache.load(cacheKey);
+                    if (cached.isPresent() && GenerationCache.isWritten(sourceClass, cached.get()))
+                    {
+                        unchanged++;
+                    }
+                    else if (!methodRules.isEmpty())
+                    {
+                        cache.store(cacheKey, generator.generateTestCases(sourceClass, methodRules, templates));
+                    }
+                    generated++;
+                }
+                catch (TestGenerationException | RuntimeException e)
+                {
+                    System.err.println(plan.getClassQualifiedName() + ": " + e.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            FileDocumentManager.getInstance().saveAllDocuments();
+            ProjectUtil.closeAndDispose(project);
+        }
+
+        System.out.println("Generated test cases for " + generated + " of " + planned + " classes in shard " +
+            shard + " of " + shardCount + ", " + unchanged + " of them already up to date.");
+        return generated == planned ? 0 : 1;
+    }
+}
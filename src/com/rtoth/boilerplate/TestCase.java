@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A single test case planned by the {@link TestCaseGenerator}, rendered as Java source text.
+ */
+final class TestCase
+{
+    /** Name of the test method. */
+    private final String name;
+
+    /** Full source text of the test method, including annotations and any fields declared alongside it. */
+    private final String text;
+
+    /** Source member exercised by the test, as built by {@link TestImpactManifest#getSubject}, or {@code null}. */
+    private final String subject;
+
+    /**
+     * Create a new {@link TestCase} which is not attributed to any source member.
+     *
+     * @param name Name of the test method. Cannot be {@code null}.
+     * @param text Full source text of the test method, including annotations. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    TestCase(@NotNull String name, @NotNull String text)
+    {
+        this(name, text, null);
+    }
+
+    /**
+     * Create a new {@link TestCase}.
+     *
+     * @param name Name of the test method. Cannot be {@code null}.
+     * @param text Full source text of the test method, including annotations. Cannot be {@code null}.
+     * @param subject Source member exercised by the test, or {@code null} for helpers such as receiver factories.
+     *
+     * @throws NullPointerException if {@code name} or {@code text} is {@code null}.
+     */
+    private TestCase(@NotNull String name, @NotNull String text, @Nullable String subject)
+    {
+        this.name = Preconditions.checkNotNull(name, "name cannot be null.");
+        this.text = Preconditions.checkNotNull(text, "text cannot be null.");
+        this.subject = subject;
+    }
+
+    /**
+     * Get a copy of this test case attributed to the provided source member.
+     *
+     * @param subject Source member exercised by the test, as built by {@link TestImpactManifest#getSubject}. Cannot
+     *                be {@code null}.
+     * @return The attributed copy. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code subject} is {@code null}.
+     */
+    @NotNull
+    TestCase withSubject(@NotNull String subject)
+    {
+        return new TestCase(name, text, Preconditions.checkNotNull(subject, "subject cannot be null."));
+    }
+
+    /**
+     * Get the name of the test method.
+     *
+     * @return The name of the test method. Never {@code null}.
+     */
+    @NotNull
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Get the full source text of the test method, including annotations.
+     *
+     * @return The full source text of the test method. Never {@code null}.
+     */
+    @NotNull
+    String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Get the source member exercised by the test.
+     *
+     * @return The source member, as built by {@link TestImpactManifest#getSubject}, or {@code null} if the test case
+     *         is a helper which is not attributed to any member.
+     */
+    @Nullable
+    String getSubject()
+    {
+        return subject;
+    }
+}
@@ -21,38 +21,75 @@
  */
 package com.rtoth.boilerplate;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiClass;
-import com.intellij.psi.PsiCodeBlock;
-import com.intellij.psi.PsiDeclarationStatement;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.PsiImportList;
 import com.intellij.psi.PsiJavaFile;
-import com.intellij.psi.PsiLocalVariable;
+import com.intellij.psi.PsiMember;
 import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiModifierList;
 import com.intellij.psi.PsiType;
-import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.PsiTreeUtil;
 import com.rtoth.boilerplate.parameters.ParameterInitializer;
 import com.rtoth.boilerplate.parameters.ParameterRule;
+import com.rtoth.boilerplate.templates.TemplateVariable;
+import com.rtoth.boilerplate.templates.TestTemplate;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Generates JUnit test cases for the provided Java class based on input from the user.
  */
 class TestCaseGenerator
 {
+    /** Logger for this class. */
+    private static final Logger LOG = Logger.getInstance(TestCaseGenerator.class);
+
+    /** Import of {@code Mockito.mock}, used by initializers of parameters which cannot be constructed for real. */
+    private static final RequiredImport MOCKITO_MOCK = RequiredImport.parse("static org.mockito.Mockito.mock");
+
+    /** Pattern matching a call of the statically imported {@code mock}. */
+    private static final Pattern MOCK_CALL = Pattern.compile("\\bmock\\(");
+
+    /** Annotation selecting the JUnit 5 execution mode of a test class. */
+    static final String EXECUTION_ANNOTATION = "org.junit.jupiter.api.parallel.Execution";
+
+    /** Execution mode running the tests of a class concurrently. */
+    static final String CONCURRENT_MODE = "org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT";
+
     /**
      * {@link Project} for which test cases will be generated.
      */
@@ -77,6 +114,224 @@ class TestCaseGenerator
         this.psiElementFactory = JavaPsiFacade.getElementFactory(project);
     }
 
+    /**
+     * Resolve the templates with which tests of the provided source class are rendered, written and cached.
+     * <p>
+     * The templates are chosen from the test side (see {@link PsiUtility#findTestContext}), since the tests are
+     * compiled against the test module's classpath, and are resolved once per generation so every test case, import
+     * and annotation of that generation uses the same framework. Must be called from within a read action.
+     *
+     * @param sourceClass {@link PsiClass} for which tests are generated. Cannot be {@code null} and must be defined in
+     *                    a valid {@link PsiJavaFile}.
+     * @return The compiled templates. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code sourceClass} is not defined in a valid {@link PsiJavaFile}.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     * @throws TestGenerationException if the configured templates are malformed.
+     */
+    @NotNull
+    TestTemplateCache.Templates resolveTemplates(@NotNull PsiClass sourceClass) throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        return TestTemplateCache.getInstance(project).getTemplates(PsiUtility.findTestContext(sourceClass));
+    }
+
+    /**
+     * Create test cases for the provided {@code sourceClass} based on the provided {@code methodRules}, spreading them
+     * across shards of its test class so that no shard exceeds {@link GeneratorSettings#getMaxTestMethodsPerClass()}
+     * methods.
+     * <p>
+     * All test cases for a single source method are always placed in the same shard, and so are all constructors, so
+     * tests of delegating constructors can be pruned against their canonical constructor.
+     *
+     * @param sourceClass {@link PsiClass} for which test cases should be created. Cannot be {@code null} and must be
+     *                    contained in a valid {@link PsiJavaFile}.
+     * @param methodRules Mapping of {@link PsiMethod}s to test in the source class to {@link ParameterRule}s which
+     *                    indicate how each of the method's parameters should be tested. Cannot be {@code null}, and
+     *                    the list of {@link ParameterRule}s for each method is expected to contain exactly the number
+     *                    of parameters defined for the method in the correct order.
+     *
+     * @return The test cases which were written, across all shards. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if any method's list of {@link ParameterRule}s does not contain the same number
+     *                                  of rules as there are parameters in the method.
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException If there is a problem creating test cases.
+     */
+    @NotNull
+    ImmutableList<TestCase> generateTestCases(
+        @NotNull PsiClass sourceClass, @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+
+        return generateTestCases(sourceClass, methodRules, resolveTemplates(sourceClass));
+    }
+
+    /**
+     * Create test cases for the provided {@code sourceClass} as {@link #generateTestCases(PsiClass, ImmutableMap)}
+     * does, with templates which were already resolved for it.
+     *
+     * @param sourceClass {@link PsiClass} for which test cases should be created. Cannot be {@code null} and must be
+     *                    contained in a valid {@link PsiJavaFile}.
+     * @param methodRules Mapping of {@link PsiMethod}s to test in the source class to {@link ParameterRule}s which
+     *                    indicate how each of the method's parameters should be tested. Cannot be {@code null}.
+     * @param templates Templates resolved by {@link #resolveTemplates} for {@code sourceClass}. Cannot be
+     *                  {@code null}.
+     * @return The test cases which were written, across all shards. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if any method's list of {@link ParameterRule}s does not contain the same number
+     *                                  of rules as there are parameters in the method.
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException If there is a problem creating test cases.
+     */
+    @NotNull
+    ImmutableList<TestCase> generateTestCases(
+        @NotNull PsiClass sourceClass, @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+        @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+        checkMethodRules(methodRules);
+
+        TestShardTracker shardTracker = TestShardTracker.getInstance(project);
+        // Allocate every method before writing anything, then write each shard in one command.
+        Map<PsiClass, ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>>> shards = allocateShards(
+            sourceClass, methodRules, templates, (count, fixtureName) ->
+                shardTracker.allocate(sourceClass, count, fixtureName));
+        ImmutableList.Builder<TestCase> written = ImmutableList.builder();
+        for (Map.Entry<PsiClass, ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>>> shardEntry :
+            shards.entrySet())
+        {
+            written.addAll(createTestCases(shardEntry.getKey(), shardEntry.getValue().build(), templates));
+            shardTracker.written(shardEntry.getKey());
+        }
+        return written.build();
+    }
+
+    /**
+     * Plan how {@link #generateTestCases(PsiClass, ImmutableMap, TestTemplateCache.Templates)} would spread the test
+     * cases for the provided {@code methodRules} across shards of the test class, without creating anything or
+     * reserving any room in the shards. Must be called from within a read action.
+     *
+     * @param sourceClass {@link PsiClass} for which test cases would be created. Cannot be {@code null} and must be
+     *                    contained in a valid {@link PsiJavaFile}.
+     * @param methodRules Mapping of {@link PsiMethod}s to test in the source class to {@link ParameterRule}s which
+     *                    indicate how each of the method's parameters should be tested. Cannot be {@code null}.
+     * @param templates Templates resolved by {@link #resolveTemplates} for {@code sourceClass}. Cannot be
+     *                  {@code null}.
+     * @return The methods to test in each shard, mapped by the name of the shard, which may not exist yet. Never
+     *         {@code null}.
+     *
+     * @throws IllegalArgumentException if any method's list of {@link ParameterRule}s does not contain the same number
+     *                                  of rules as there are parameters in the method.
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException If there is a problem planning the test cases.
+     */
+    @NotNull
+    ImmutableMap<String, ImmutableMap<PsiMethod, ImmutableList<ParameterRule>>> planShards(
+        @NotNull PsiClass sourceClass, @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+        @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+        checkMethodRules(methodRules);
+
+        TestShardTracker.DryRun dryRun = TestShardTracker.getInstance(project).dryRun(sourceClass);
+        ImmutableMap.Builder<String, ImmutableMap<PsiMethod, ImmutableList<ParameterRule>>> plan =
+            ImmutableMap.builder();
+        allocateShards(sourceClass, methodRules, templates, dryRun::allocate)
+            .forEach((shardName, shardRules) -> plan.put(shardName, shardRules.build()));
+        return plan.build();
+    }
+
+    /**
+     * Allocates room for test methods in a shard of a test class.
+     *
+     * @param <S> Type identifying a shard.
+     */
+    @FunctionalInterface
+    private interface ShardAllocator<S>
+    {
+        /**
+         * Allocate room for {@code count} new test methods sharing the provided fixture method.
+         *
+         * @param count Number of test methods which will be added, not including the fixture method.
+         * @param fixtureName Name of the fixture method the new test methods share, or {@code null} if there is none.
+         * @return The shard which should receive the test methods. Never {@code null}.
+         *
+         * @throws TestGenerationException if the shard cannot be found or created.
+         */
+        @NotNull
+        S allocate(int count, @Nullable String fixtureName) throws TestGenerationException;
+    }
+
+    /**
+     * Spread the methods to test across shards using the provided {@link ShardAllocator}.
+     * <p>
+     * All constructors are allocated as one group, and every other method on its own, taking as many methods as it
+     * will have tests.
+     *
+     * @param sourceClass {@link PsiClass} for which test cases will be created. Cannot be {@code null}.
+     * @param methodRules Mapping of {@link PsiMethod}s to test in the source class to {@link ParameterRule}s. Cannot
+     *                    be {@code null}.
+     * @param templates Templates resolved by {@link #resolveTemplates} for {@code sourceClass}. Cannot be
+     *                  {@code null}.
+     * @param allocator Allocates room for each group of methods. Cannot be {@code null}.
+     * @param <S> Type identifying a shard.
+     * @return The methods to test in each shard, in allocation order. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if {@code allocator} throws it.
+     */
+    @NotNull
+    private <S> Map<S, ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>>> allocateShards(
+        @NotNull PsiClass sourceClass, @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+        @NotNull TestTemplateCache.Templates templates, @NotNull ShardAllocator<S> allocator)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+        Preconditions.checkNotNull(allocator, "allocator cannot be null.");
+
+        Map<S, ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>>> shards = Maps.newLinkedHashMap();
+        ImmutableMap.Builder<PsiMethod, ImmutableList<ParameterRule>> constructorRules = ImmutableMap.builder();
+        boolean anyConstructors = false;
+        int constructorTestCount = 0;
+        boolean testFactory = templates.isTestFactory();
+        boolean timeoutGuard = RuleConfigurationStore.getInstance(project).getTimeoutBudget(sourceClass) > 0;
+        for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> methodEntry : methodRules.entrySet())
+        {
+            if (methodEntry.getKey().isConstructor())
+            {
+                constructorRules.put(methodEntry);
+                constructorTestCount += countTestMethods(methodEntry.getKey(), methodRules, testFactory, timeoutGuard);
+                anyConstructors = true;
+            }
+        }
+        if (anyConstructors)
+        {
+            shards.put(allocator.allocate(constructorTestCount, null), constructorRules);
+        }
+        // Instance method tests share one receiver factory per shard, which only takes room in shards lacking it.
+        String factoryMethodName = ReceiverFixture.getFactoryMethodName(sourceClass);
+        for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> methodEntry : methodRules.entrySet())
+        {
+            PsiMethod method = methodEntry.getKey();
+            if (!method.isConstructor())
+            {
+                S shard = allocator.allocate(countTestMethods(method, methodRules, testFactory, timeoutGuard),
+                    method.hasModifierProperty(PsiModifier.STATIC) ? null : factoryMethodName);
+                shards.computeIfAbsent(shard, key -> ImmutableMap.builder()).put(methodEntry);
+            }
+        }
+        return shards;
+    }
+
     /**
      * Create test cases in the provided {@code testClass} based on the provided {@code methodRules}.
      *
@@ -87,190 +342,886 @@ class TestCaseGenerator
      *                    the list of {@link ParameterRule}s for each method is expected to contain exactly the number
      *                    of parameters defined for the method in the correct order. Providing the parameters out of
      *                    order will result in test code which does not compile.
+     * @param templates Templates resolved by {@link #resolveTemplates} for the source class. Cannot be {@code null}.
+     * @return The test cases which were written. Never {@code null}.
      *
      * @throws IllegalArgumentException if any method's list of {@link ParameterRule}s does not contain the same number
      *                                  of rules as there are parameters in the method.
      * @throws NullPointerException if any parameter is {@code null}.
      * @throws TestGenerationException If there is a problem creating test cases.
      */
-    void createTestCases(@NotNull PsiClass testClass,
-                         @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules)
+    @NotNull
+    ImmutableList<TestCase> createTestCases(@NotNull PsiClass testClass,
+                                            @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+                                            @NotNull TestTemplateCache.Templates templates)
         throws TestGenerationException
     {
         Preconditions.checkNotNull(testClass, "testClass cannot be null.");
+        checkMethodRules(methodRules);
+
+        ImmutableList<TestCase> testCases = renderTestCases(testClass, methodRules, templates);
+        writeTestCases(testClass, testCases, templates);
+        return testCases;
+    }
+
+    /**
+     * Write test cases which were rendered by {@link #renderTestCases} to the provided {@code testClass}, along with
+     * any imports they need.
+     * <p>
+     * The test cases must have been rendered against {@code testClass} in its current state (or against no class, if
+     * {@code testClass} is still empty), otherwise their names or fixtures may clash with its existing methods. Once
+     * written, the test cases are recorded in the {@link TestImpactManifest} of the test source root.
+     *
+     * @param testClass {@link PsiClass} to which test cases should be added. Cannot be {@code null} and must be
+     *                  contained in a valid {@link PsiJavaFile}.
+     * @param testCases Rendered test cases. Cannot be {@code null}.
+     * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException If there is a problem creating test cases.
+     */
+    void writeTestCases(@NotNull PsiClass testClass, @NotNull List<TestCase> testCases,
+                        @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(testClass, "testClass cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+
+        PsiJavaFile testFile = (PsiJavaFile) testClass.getContainingFile();
+        PsiImportList importList = testFile.getImportList();
+        if (importList == null)
+        {
+            throw new TestGenerationException("Unable to retrieve import list for " + testFile.getName());
+        }
+        ImmutableList<PsiElement> imports = getImports(testFile, testCases, templates);
+        // TODO: Only define variables once at the class level instead of in each and every method.
+        // Stream every rendered method into a single class body, so it is parsed once rather than once per method.
+        StringBuilder classBody = new StringBuilder();
+        for (TestCase testCase : testCases)
+        {
+            classBody.append(testCase.getText()).append('\n');
+        }
+        PsiClass parsed = psiElementFactory.createClassFromText(classBody.toString(), testClass);
+        // Keep fields as well, for the tables read by test factories.
+        ImmutableList<PsiElement> testMembers =
+            ImmutableList.copyOf(PsiTreeUtil.getChildrenOfTypeAsList(parsed, PsiMember.class));
+        PsiModifierList modifierList = testClass.getModifierList();
+        PsiAnnotation execution = templates.isConcurrentExecution() && modifierList != null &&
+            modifierList.findAnnotation(EXECUTION_ANNOTATION) == null ?
+            psiElementFactory.createAnnotationFromText("@" + EXECUTION_ANNOTATION + "(" + CONCURRENT_MODE + ")",
+                testClass) :
+            null;
+
+        // Insert, shorten and reformat in a single command, so it is undone as one step and only the inserted code is
+        // ever reformatted.
+        WriteCommandAction.runWriteCommandAction(
+            project,
+            () ->
+            {
+                List<PsiElement> inserted = Lists.newArrayList();
+                if (execution != null)
+                {
+                    inserted.add(modifierList.addBefore(execution, modifierList.getFirstChild()));
+                }
+                inserted.addAll(PsiUtility.addElements(importList, imports, null));
+                inserted.addAll(PsiUtility.addElements(testClass, testMembers, null));
+                PsiUtility.reformatInserted(testFile, inserted);
+            }
+        );
+        updateManifest(testFile, testClass, testCases);
+    }
+
+    /**
+     * Split test cases rendered for a brand-new test class into the shards {@link #generateTestCases} would have put
+     * them in, so writing them straight to disk respects {@link GeneratorSettings#getMaxTestMethodsPerClass()}.
+     * <p>
+     * As when allocating shards through the {@link TestShardTracker}, all constructor tests are kept together, the
+     * tests of each other method are kept together, groups larger than a whole shard get a shard of their own, and
+     * every shard holding instance method tests gets its own copy of the receiver factory.
+     *
+     * @param sourceClass {@link PsiClass} for which the test cases were rendered. Cannot be {@code null}.
+     * @param methodRules Mapping of {@link PsiMethod}s to the {@link ParameterRule}s the test cases were rendered
+     *                    with. Cannot be {@code null}.
+     * @param testCases Test cases rendered by {@link #renderTestCases} against no existing test class. Cannot be
+     *                  {@code null}.
+     * @return The test cases of each shard, starting at the first shard. Never {@code null}, and only empty if
+     *         {@code testCases} is.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    ImmutableList<ImmutableList<TestCase>> splitIntoShards(
+        @NotNull PsiClass sourceClass, @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+        @NotNull List<TestCase> testCases)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
         Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
-        for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> entry : methodRules.entrySet())
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        int maxMethods = GeneratorSettings.getInstance(project).getMaxTestMethodsPerClass();
+        if (maxMethods == 0 || testCases.size() <= maxMethods)
         {
-            Preconditions.checkArgument(
-                entry.getKey().getParameterList().getParametersCount() ==
-                entry.getValue().size(), "Invalid map of method rules. At least one method's list of parameter rules " +
-                    "does not match the method signature for that method.");
+            return testCases.isEmpty() ? ImmutableList.of() : ImmutableList.of(ImmutableList.copyOf(testCases));
         }
 
-        PsiJavaFile testFile = (PsiJavaFile) testClass.getContainingFile();
-        // TODO: These are all getting appended without any newline breaks
-        PsiUtility.addElements(testFile, getImports(), testFile.getPackageStatement());
-        // TODO: Only define variables once at the class level instead of in each and every method.
-        PsiUtility.addElements(testClass, generateTestCases(methodRules), null);
+        // Group the test cases by the method they test, with all constructors in a single group.
+        String constructors = "";
+        Map<String, String> groupsBySubject = Maps.newHashMap();
+        Set<String> instanceGroups = Sets.newHashSet();
+        for (PsiMethod method : methodRules.keySet())
+        {
+            String subject = getSubject(method);
+            groupsBySubject.put(subject, method.isConstructor() ? constructors : subject);
+            if (!method.isConstructor() && !method.hasModifierProperty(PsiModifier.STATIC))
+            {
+                instanceGroups.add(subject);
+            }
+        }
+        String factoryMethodName = ReceiverFixture.getFactoryMethodName(sourceClass);
+        TestCase factory = null;
+        Map<String, List<TestCase>> groups = Maps.newLinkedHashMap();
+        groups.put(constructors, Lists.newArrayList());
+        for (TestCase testCase : testCases)
+        {
+            String group = testCase.getSubject() != null ? groupsBySubject.get(testCase.getSubject()) : null;
+            if (group != null)
+            {
+                groups.computeIfAbsent(group, key -> Lists.newArrayList()).add(testCase);
+            }
+            else if (testCase.getName().equals(factoryMethodName))
+            {
+                factory = testCase;
+            }
+            else
+            {
+                // Helpers which are not attributed to any method stay in the first shard.
+                groups.get(constructors).add(testCase);
+            }
+        }
+
+        List<List<TestCase>> shards = Lists.newArrayList();
+        List<Boolean> shardsWithFactory = Lists.newArrayList();
+        for (Map.Entry<String, List<TestCase>> group : groups.entrySet())
+        {
+            List<TestCase> groupTestCases = group.getValue();
+            if (groupTestCases.isEmpty())
+            {
+                continue;
+            }
+            boolean needsFactory = factory != null && instanceGroups.contains(group.getKey());
+            int shard = 0;
+            while (true)
+            {
+                if (shard == shards.size())
+                {
+                    shards.add(Lists.newArrayList());
+                    shardsWithFactory.add(false);
+                }
+                boolean addFactory = needsFactory && !shardsWithFactory.get(shard);
+                int fill = shards.get(shard).size();
+                if (fill == 0 || fill + groupTestCases.size() + (addFactory ? 1 : 0) <= maxMethods)
+                {
+                    if (addFactory)
+                    {
+                        shards.get(shard).add(factory);
+                        shardsWithFactory.set(shard, true);
+                    }
+                    shards.get(shard).addAll(groupTestCases);
+                    break;
+                }
+                shard++;
+            }
+        }
+        ImmutableList.Builder<ImmutableList<TestCase>> result = ImmutableList.builder();
+        for (List<TestCase> shard : shards)
+        {
+            result.add(ImmutableList.copyOf(shard));
+        }
+        return result.build();
     }
 
     /**
-     * Generate test cases based on the provided {@code methodRules}.
+     * Render the complete source of a new test class containing the provided test cases, with its package, imports
+     * and class references shortened, formatted as the project's code style asks, without creating or modifying any
+     * physical {@link PsiElement}s.
      * <p>
-     * Note: This method currently only supports constructors. Providing non-constructor methods here will result in
-     *       undefined behavior.
+     * The source is parsed and formatted as a non-physical file, which neither fires PSI or VFS events nor triggers
+     * indexing, so it can be written straight to disk (see {@link BulkTestFileWriter}). Must be called from within a
+     * read action.
+     *
+     * @param sourceFile Source file for which tests are generated. Cannot be {@code null}.
+     * @param testClassName Name of the new test class. Cannot be {@code null}.
+     * @param testCases Test cases rendered against no existing test class. Cannot be {@code null}.
+     * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+     * @return The source of the test class. Never {@code null}.
      *
-     * TODO: Support non-constructor methods.
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if any required module is not added to the project's classpath.
+     */
+    @NotNull
+    String renderTestFile(@NotNull PsiJavaFile sourceFile, @NotNull String testClassName,
+                          @NotNull List<TestCase> testCases, @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+        Preconditions.checkNotNull(testClassName, "testClassName cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+
+        StringBuilder text = new StringBuilder();
+        if (!sourceFile.getPackageName().isEmpty())
+        {
+            text.append("package ").append(sourceFile.getPackageName()).append(";\n\n");
+        }
+        for (String importText : renderImports(null, testCases, templates))
+        {
+            text.append(importText).append('\n');
+        }
+        text.append('\n');
+        if (templates.isConcurrentExecution())
+        {
+            text.append('@').append(EXECUTION_ANNOTATION).append('(').append(CONCURRENT_MODE).append(")\n");
+        }
+        text.append("public class ").append(testClassName).append("\n{\n");
+        for (TestCase testCase : testCases)
+        {
+            text.append(testCase.getText()).append('\n');
+        }
+        text.append("}\n");
+
+        PsiFile testFile = PsiFileFactory.getInstance(project).createFileFromText(testClassName + ".java",
+            JavaFileType.INSTANCE, text);
+        // Unlike written test classes, nothing shortens the references once indexing has finished, but the fully
+        // qualified code is valid.
+        if (!DumbService.isDumb(project))
+        {
+            JavaCodeStyleManager.getInstance(project).shortenClassReferences(testFile);
+        }
+        return CodeStyleManager.getInstance(project).reformat(testFile).getText();
+    }
+
+    /**
+     * Render the test cases planned for the provided {@code methodRules} as source text, without creating or
+     * modifying any {@link PsiElement}s.
+     * <p>
+     * Constructors are invoked directly, static methods through their class, and instance methods on a receiver
+     * created by a shared factory method (see {@link ReceiverFixture}) which is rendered once, the first time it is
+     * needed, unless {@code testClass} already defines it.
+     * <p>
+     * If the templates render constructor tests as a test factory (see
+     * {@link TestTemplateCache.Templates#isTestFactory()}), the invalid argument tests of each constructor become the
+     * rows of a single {@link DynamicTestTable} instead of separate test methods. Constructors of classes with a
+     * time budget (see {@link RuleConfigurationStore#getTimeoutBudget}) also get a {@link TimeoutGuard} test, and
+     * methods taking arrays or collections a {@link ScalingGuard} test if a {@link ComplexityBound} is selected.
+     * Every method gets a seeded {@link PropertyTest} if the settings ask for property based cases.
      *
+     * @param testClass Existing test class to which test cases will be added. Can be {@code null} if it does not exist
+     *                  yet.
      * @param methodRules Mapping of {@link PsiMethod}s to test in the source class to {@link ParameterRule}s which
      *                    indicate how each of the method's parameters should be tested. Cannot be {@code null}, and
-     *                    the list of {@link ParameterRule}s for each method is assumed to contain exactly the number
+     *                    the list of {@link ParameterRule}s for each method is expected to contain exactly the number
      *                    of parameters defined for the method in the correct order. Providing the parameters out of
      *                    order will result in test code which does not compile.
-     * @return A list of {@link PsiMethod}s which define the generated test cases. Never {@code null}, but may be empty.
+     * @param templates Templates resolved by {@link #resolveTemplates} for the source class. Cannot be {@code null}.
+     * @return A list of the planned {@link TestCase}s. Never {@code null}, but may be empty.
      *
-     * @throws NullPointerException if {@code methodRules} is {@code null}.
-     * @throws TestGenerationException If there is a problem creating test cases.
+     * @throws IllegalArgumentException if any method's list of {@link ParameterRule}s does not contain the same number
+     *                                  of rules as there are parameters in the method.
+     * @throws NullPointerException if {@code methodRules} or {@code templates} is {@code null}.
+     * @throws TestGenerationException if a source method is not defined in a class.
      */
     @NotNull
-    private ImmutableList<PsiElement> generateTestCases(
-        @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules)
+    ImmutableList<TestCase> renderTestCases(
+        @Nullable PsiClass testClass, @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+        @NotNull TestTemplateCache.Templates templates)
         throws TestGenerationException
     {
-        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+        checkMethodRules(methodRules);
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
 
-        ImmutableList.Builder<PsiElement> testCases = ImmutableList.builder();
+        TestTemplate invalidArgumentTemplate = templates.getInvalidArgument();
+        TestTemplate validArgumentsTemplate = templates.getValidArguments();
+        List<TestCase> testCases = Lists.newArrayList();
+
+        // Reused for every test case, so rendering only appends.
+        CharSequence[] bindings = new CharSequence[TemplateVariable.values().length];
+        StringBuilder arrange = new StringBuilder();
+        StringBuilder invocation = new StringBuilder();
+        StringBuilder testCaseText = new StringBuilder();
+        TestNameIndex testNames = new TestNameIndex(testClass);
+        RuleConfigurationStore ruleConfigurations = RuleConfigurationStore.getInstance(project);
+        CoverageIndex coverage = CoverageIndex.getInstance(project);
+        GeneratorSettings settings = GeneratorSettings.getInstance(project);
+        ComplexityBound complexityBound = settings.getComplexityBound();
+        int scalingBaseSize = getScalingBaseSize();
+        int propertyCases = settings.getPropertyCases();
 
         for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> methodEntry : methodRules.entrySet())
         {
             PsiMethod method = methodEntry.getKey();
             ImmutableList<ParameterRule> parameterRules = methodEntry.getValue();
 
-            String methodNameBase = "constructor";
+            PsiClass sourceClass = method.getContainingClass();
+            if (sourceClass == null)
+            {
+                throw new TestGenerationException("Unable to retrieve containing class for " + method.getName());
+            }
 
-            for (ParameterRule ruleToTest : parameterRules)
+            String methodNameBase;
+            String invocationTarget;
+            if (method.isConstructor())
             {
+                methodNameBase = "constructor";
+                invocationTarget = "new " + method.getName();
+            }
+            else if (method.hasModifierProperty(PsiModifier.STATIC))
+            {
+                methodNameBase = method.getName();
+                invocationTarget = sourceClass.getName() + "." + method.getName();
+            }
+            else
+            {
+                methodNameBase = method.getName();
+                String factoryMethodName = ReceiverFixture.getFactoryMethodName(sourceClass);
+                invocationTarget = factoryMethodName + "()." + method.getName();
+                if (!testNames.contains(factoryMethodName))
+                {
+                    testCases.add(ReceiverFixture.render(sourceClass));
+                    testNames.reserve(factoryMethodName, method);
+                }
+            }
+            // Everything from here on tests this method, unlike the shared receiver factory above.
+            int firstTestCase = testCases.size();
+            bindings[TemplateVariable.CLASS_NAME.ordinal()] = sourceClass.getName();
+            int timeoutBudget = method.isConstructor() ? ruleConfigurations.getTimeoutBudget(sourceClass) : 0;
+
+            // Overloads which pass a parameter straight through this(...) to a selected canonical constructor would
+            // only re-verify the canonical constructor's checks, so those tests are replaced by a single smoke test.
+            Optional<ConstructorDelegation> delegation = ConstructorDelegation.analyze(method);
+            ImmutableList<ParameterRule> canonicalRules = delegation.isPresent() ?
+                methodRules.get(delegation.get().getCanonicalConstructor()) : null;
+            boolean pruned = false;
+            DynamicTestTable table = method.isConstructor() && templates.isTestFactory() ?
+                new DynamicTestTable(invocationTarget, parameterRules) : null;
+
+            for (int parameterIndex = 0; parameterIndex < parameterRules.size(); parameterIndex++)
+            {
+                ParameterRule ruleToTest = parameterRules.get(parameterIndex);
+                ParameterRule canonicalRule = null;
+                if (canonicalRules != null)
+                {
+                    int canonicalIndex = delegation.get().getCanonicalParameterIndex(parameterIndex);
+                    canonicalRule = canonicalIndex >= 0 ? canonicalRules.get(canonicalIndex) : null;
+                }
                 for (Map.Entry<ParameterInitializer, Class<? extends Exception>> invalidInitializerEntry :
                     ruleToTest.getInvalidInitializers().entrySet())
                 {
                     ParameterInitializer invalidInitializer = invalidInitializerEntry.getKey();
                     Class<? extends Exception> expectedException = invalidInitializerEntry.getValue();
-
-                    PsiMethod testCase = psiElementFactory.createMethod(
-                        methodNameBase + "_" + invalidInitializer.getDescription() +
-                            "_throws" + expectedException.getSimpleName(),
-                        PsiType.VOID
-                    );
-                    // TODO: Fix how this annotation is formatted (it's not putting a newline before the start
-                    //       of the method)
-                    testCase.addBefore(psiElementFactory.createAnnotationFromText(
-                        "@Test(expected = " + expectedException.getSimpleName() + ".class)", null),
-                        testCase.getModifierList());
-
-                    PsiCodeBlock body = testCase.getBody();
-                    if (body != null)
+                    if (canonicalRule != null && isCheckedBy(canonicalRule, invalidInitializer, expectedException))
                     {
-                        List<PsiElement> declaredVariables = Lists.newArrayList();
-                        for (ParameterRule rule : parameterRules)
-                        {
-                            if (ruleToTest.equals(rule))
-                            {
-                                // TODO: For parameters which are using null, just pass null directly to the method
-                                //       invocation instead of creating a new variable.
-                                PsiDeclarationStatement declarationStatement =
-                                    psiElementFactory.createVariableDeclarationStatement(ruleToTest.getName(),
-                                        ruleToTest.getType(),
-                                        psiElementFactory.createExpressionFromText(
-                                            invalidInitializer.getInitializerText(), null));
-                                declaredVariables.addAll(Arrays.asList(declarationStatement.getDeclaredElements()));
-                                body.add(declarationStatement);
-                            }
-                            else
-                            {
-                                PsiDeclarationStatement declarationStatement =
-                                    psiElementFactory.createVariableDeclarationStatement(rule.getName(),
-                                        rule.getType(),
-                                        psiElementFactory.createExpressionFromText(
-                                            // TODO: Will this always have at least 1 element?
-                                            rule.getValidInitializers().get(0).getInitializerText(), null));
-                                declaredVariables.addAll(Arrays.asList(declarationStatement.getDeclaredElements()));
-                                body.add(declarationStatement);
-                            }
-                        }
-
-                        StringBuilder invocationBuilder = new StringBuilder("new " + method.getName() + "(");
-                        boolean first = true;
-                        for (PsiElement element : declaredVariables)
-                        {
-                            if (element instanceof PsiLocalVariable)
-                            {
-                                PsiLocalVariable variable = (PsiLocalVariable) element;
-                                if (!first)
-                                {
-                                    invocationBuilder.append(", ");
-                                }
-                                invocationBuilder.append(variable.getName());
-                                first = false;
-                            }
-                        }
-                        invocationBuilder.append(");");
-                        body.add(
-                            psiElementFactory.createStatementFromText(invocationBuilder.toString(), null)
-                        );
-                        testCases.add(testCase);
+                        pruned = true;
+                        continue;
                     }
-                    else
+                    // Checks which the existing tests already drive down both branches need no generated test. The
+                    // report cannot tell which invalid value drove a check, so this is only known when the rule has
+                    // no other invalid value expecting the same exception.
+                    if (countExpecting(ruleToTest, expectedException) == 1 &&
+                        coverage.isCheckCovered(method, parameterIndex, expectedException))
                     {
-                        throw new TestGenerationException("Unable to retrieve body for " + testCase.getName());
+                        continue;
                     }
+
+                    String description = invalidInitializer.getDescription() + "_throws" +
+                        expectedException.getSimpleName();
+                    if (table != null)
+                    {
+                        table.addRow(description, ruleToTest, invalidInitializer, expectedException);
+                        continue;
+                    }
+
+                    String testCaseName = testNames.reserve(methodNameBase + "_" + description, method);
+                    renderInvocation(arrange, invocation, invocationTarget, parameterRules, ruleToTest,
+                        invalidInitializer);
+
+                    bindings[TemplateVariable.TEST_NAME.ordinal()] = testCaseName;
+                    bindings[TemplateVariable.EXCEPTION.ordinal()] = expectedException.getSimpleName();
+                    bindings[TemplateVariable.ARRANGE.ordinal()] = arrange;
+                    bindings[TemplateVariable.INVOCATION.ordinal()] = invocation;
+                    testCaseText.setLength(0);
+                    invalidArgumentTemplate.render(testCaseText, bindings);
+                    testCases.add(new TestCase(testCaseName, testCaseText.toString()));
                 }
             }
+
+            if (table != null && !table.isEmpty())
+            {
+                String factoryName = testNames.reserve(methodNameBase + "_invalidArguments", method);
+                testCases.add(table.render(factoryName,
+                    testNames.reserve(DynamicTestTable.getTableName(factoryName), method)));
+            }
+            if (method.isConstructor() && timeoutBudget > 0)
+            {
+                String testCaseName = testNames.reserve(methodNameBase + "_validArguments_withinTimeout", method);
+                renderInvocation(arrange, invocation, invocationTarget, parameterRules, null, null);
+                testCases.add(TimeoutGuard.render(testCaseName, arrange, invocation, timeoutBudget,
+                    templates.getTemplateSet() == TestTemplateSet.JUNIT5));
+            }
+            if (scalingBaseSize > 0 && ScalingGuard.canRender(parameterRules, scalingBaseSize))
+            {
+                String testCaseName = testNames.reserve(methodNameBase + "_" + complexityBound.getTestNameSuffix(),
+                    method);
+                testCases.add(ScalingGuard.render(testCaseName, invocationTarget, parameterRules, complexityBound,
+                    scalingBaseSize, method.isConstructor() || !PsiType.VOID.equals(method.getReturnType()),
+                    templates.getTemplateSet() == TestTemplateSet.JUNIT5));
+            }
+            if (propertyCases > 0)
+            {
+                String testCaseName = testNames.reserve(methodNameBase + "_validArguments_property", method);
+                testCases.add(PropertyTest.render(testCaseName, invocationTarget, parameterRules,
+                    getSeed(sourceClass, method), propertyCases,
+                    templates.getTemplateSet() == TestTemplateSet.JUNIT5));
+            }
+            if (pruned)
+            {
+                String testCaseName = testNames.reserve(methodNameBase + "_validArguments", method);
+                renderInvocation(arrange, invocation, invocationTarget, parameterRules, null, null);
+
+                bindings[TemplateVariable.TEST_NAME.ordinal()] = testCaseName;
+                bindings[TemplateVariable.EXCEPTION.ordinal()] = "";
+                bindings[TemplateVariable.ARRANGE.ordinal()] = arrange;
+                bindings[TemplateVariable.INVOCATION.ordinal()] = invocation;
+                testCaseText.setLength(0);
+                validArgumentsTemplate.render(testCaseText, bindings);
+                testCases.add(new TestCase(testCaseName, testCaseText.toString()));
+            }
+
+            String subject = getSubject(method);
+            for (int i = firstTestCase; i < testCases.size(); i++)
+            {
+                testCases.set(i, testCases.get(i).withSubject(subject));
+            }
         }
-        return testCases.build();
+        return ImmutableList.copyOf(testCases);
+    }
+
+    /**
+     * Render the import statements needed for our generated test cases which are not already present in the
+     * provided test file, without creating or modifying any {@link PsiElement}s.
+     *
+     * @param testFile {@link PsiJavaFile} to which test cases will be added. Can be {@code null} if the file does not
+     *                 exist yet, in which case all needed imports are returned.
+     * @param testCases Test cases which will be added. Cannot be {@code null}.
+     * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+     * @return An {@link ImmutableList} containing the text of each missing import statement. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code testCases} or {@code templates} is {@code null}.
+     * @throws TestGenerationException if any required module is not added to the project's classpath.
+     */
+    @NotNull
+    ImmutableList<String> renderImports(@Nullable PsiJavaFile testFile, @NotNull List<TestCase> testCases,
+                                        @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        ImmutableList.Builder<String> imports = ImmutableList.builder();
+        for (RequiredImport requiredImport : getRequiredImports(testCases, templates))
+        {
+            if (!requiredImport.isPresentIn(testFile))
+            {
+                // Resolve anyway, so missing libraries are reported before the user accepts the preview. This is
+                // not possible while indexing, in which case a missing library only shows up as a compile error.
+                if (!DumbService.isDumb(project))
+                {
+                    requiredImport.resolve(project);
+                }
+                imports.add(requiredImport.getText());
+            }
+        }
+        return imports.build();
     }
 
     /**
-     * Get the list of imports needed for our generated test cases.
+     * Render the declarations of the arguments for an invocation of the method under test, and the invocation itself.
+     *
+     * @param arrange Builder to which the argument declarations are written, after being cleared. Cannot be
+     *                {@code null}.
+     * @param invocation Builder to which the invocation is written, after being cleared. Cannot be {@code null}.
+     * @param invocationTarget Text preceding the argument list of the invocation, e.g. {@code new Foo}. Cannot be
+     *                         {@code null}.
+     * @param parameterRules {@link ParameterRule}s for each parameter of the method under test. Cannot be
+     *                       {@code null}.
+     * @param invalidRule Rule of the parameter which should receive {@code invalidInitializer}, or {@code null} if
+     *                    every parameter should receive a valid value.
+     * @param invalidInitializer Invalid value for {@code invalidRule}'s parameter. Can only be {@code null} if
+     *                           {@code invalidRule} is.
+     *
+     * @throws NullPointerException if {@code arrange}, {@code invocation}, {@code invocationTarget} or
+     *                              {@code parameterRules} is {@code null}.
+     */
+    private static void renderInvocation(@NotNull StringBuilder arrange, @NotNull StringBuilder invocation,
+                                         @NotNull String invocationTarget, @NotNull List<ParameterRule> parameterRules,
+                                         @Nullable ParameterRule invalidRule,
+                                         @Nullable ParameterInitializer invalidInitializer)
+    {
+        Preconditions.checkNotNull(arrange, "arrange cannot be null.");
+        Preconditions.checkNotNull(invocation, "invocation cannot be null.");
+        Preconditions.checkNotNull(invocationTarget, "invocationTarget cannot be null.");
+        Preconditions.checkNotNull(parameterRules, "parameterRules cannot be null.");
+
+        arrange.setLength(0);
+        invocation.setLength(0);
+        invocation.append(invocationTarget).append('(');
+        boolean first = true;
+        for (ParameterRule rule : parameterRules)
+        {
+            // TODO: For parameters which are using null, just pass null directly to the method
+            //       invocation instead of creating a new variable.
+            String initializerText = rule.equals(invalidRule) && invalidInitializer != null ?
+                invalidInitializer.getInitializerText() :
+                // TODO: Will this always have at least 1 element?
+                rule.getValidInitializers().get(0).getInitializerText();
+            arrange.append("    ").append(rule.getTypeText())
+                .append(' ').append(rule.getName())
+                .append(" = ").append(initializerText).append(";\n");
+
+            if (!first)
+            {
+                invocation.append(", ");
+            }
+            invocation.append(rule.getName());
+            first = false;
+        }
+        invocation.append(')');
+    }
+
+    /**
+     * Check whether the provided rule of a canonical constructor already tests the provided invalid value.
+     *
+     * @param canonicalRule Rule of the canonical constructor's parameter. Cannot be {@code null}.
+     * @param invalidInitializer Invalid value passed through to that parameter. Cannot be {@code null}.
+     * @param expectedException Exception expected for {@code invalidInitializer}. Cannot be {@code null}.
+     * @return {@code true} if {@code canonicalRule} tests the same value with the same expected exception,
+     *         {@code false} otherwise.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static boolean isCheckedBy(@NotNull ParameterRule canonicalRule,
+                                       @NotNull ParameterInitializer invalidInitializer,
+                                       @NotNull Class<? extends Exception> expectedException)
+    {
+        Preconditions.checkNotNull(canonicalRule, "canonicalRule cannot be null.");
+        Preconditions.checkNotNull(invalidInitializer, "invalidInitializer cannot be null.");
+        Preconditions.checkNotNull(expectedException, "expectedException cannot be null.");
+
+        for (Map.Entry<ParameterInitializer, Class<? extends Exception>> canonicalEntry :
+            canonicalRule.getInvalidInitializers().entrySet())
+        {
+            if (canonicalEntry.getKey().getInitializerText().equals(invalidInitializer.getInitializerText()) &&
+                canonicalEntry.getValue().equals(expectedException))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count the test methods which will be rendered for the provided method, including the smoke test replacing
+     * pruned constructor tests and the scaling and property based tests selected in the settings.
      * <p>
-     * This is currently just a static list containing {@code org.mockito.Mockito.mock} and {@code org.junit.Test}.
+     * The receiver factory which instance methods need is not included, as it is shared by every instance method
+     * in a test class and only rendered if the class does not have it yet.
      *
-     * TODO: Only add imports that aren't already present, and only add the ones that are needed.
+     * @param method {@link PsiMethod} under test. Cannot be {@code null}.
+     * @param methodRules Mapping of every {@link PsiMethod} being tested along with {@code method} to its
+     *                    {@link ParameterRule}s, needed to find constructor tests which are pruned. Cannot be
+     *                    {@code null} and must contain {@code method}.
+     * @param testFactory Whether constructor tests are rendered as a single test factory.
+     * @param timeoutGuard Whether a timeout guarded valid construction test is rendered for constructors.
+     * @return The number of test methods.
      *
-     * @return An {@link ImmutableList} containing the imports needed to support testing. Never {@code null}.
+     * @throws NullPointerException if {@code method} or {@code methodRules} is {@code null}.
+     */
+    private int countTestMethods(@NotNull PsiMethod method,
+                                 @NotNull Map<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+                                 boolean testFactory, boolean timeoutGuard)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+
+        ImmutableList<ParameterRule> parameterRules = methodRules.get(method);
+        int scalingBaseSize = getScalingBaseSize();
+        int count = scalingBaseSize > 0 && ScalingGuard.canRender(parameterRules, scalingBaseSize) ? 1 : 0;
+        count += GeneratorSettings.getInstance(project).getPropertyCases() > 0 ? 1 : 0;
+        count += method.isConstructor() && timeoutGuard ? 1 : 0;
+
+        // Mirrors the pruning in renderTestCases: checks made again by the canonical constructor are not tested.
+        Optional<ConstructorDelegation> delegation = ConstructorDelegation.analyze(method);
+        ImmutableList<ParameterRule> canonicalRules = delegation.isPresent() ?
+            methodRules.get(delegation.get().getCanonicalConstructor()) : null;
+        boolean pruned = false;
+        int invalidArguments = 0;
+        for (int parameterIndex = 0; parameterIndex < parameterRules.size(); parameterIndex++)
+        {
+            ParameterRule canonicalRule = null;
+            if (canonicalRules != null)
+            {
+                int canonicalIndex = delegation.get().getCanonicalParameterIndex(parameterIndex);
+                canonicalRule = canonicalIndex >= 0 ? canonicalRules.get(canonicalIndex) : null;
+            }
+            for (Map.Entry<ParameterInitializer, Class<? extends Exception>> invalidInitializerEntry :
+                parameterRules.get(parameterIndex).getInvalidInitializers().entrySet())
+            {
+                if (canonicalRule != null && isCheckedBy(canonicalRule, invalidInitializerEntry.getKey(),
+                    invalidInitializerEntry.getValue()))
+                {
+                    pruned = true;
+                }
+                else
+                {
+                    invalidArguments++;
+                }
+            }
+        }
+        // Pruned tests are replaced by a single smoke test with valid arguments.
+        count += pruned ? 1 : 0;
+        if (method.isConstructor() && testFactory)
+        {
+            return count + (invalidArguments > 0 ? 1 : 0);
+        }
+        return count + invalidArguments;
+    }
+
+    /**
+     * Count the invalid initializers of the provided rule which expect the provided exception.
      *
-     * @throws TestGenerationException if any required module is not added to the project's classpath.
+     * @param rule {@link ParameterRule} whose invalid initializers to count. Cannot be {@code null}.
+     * @param expectedException Exception expected by the counted initializers. Cannot be {@code null}.
+     * @return The number of invalid initializers expecting {@code expectedException}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static long countExpecting(@NotNull ParameterRule rule,
+                                       @NotNull Class<? extends Exception> expectedException)
+    {
+        Preconditions.checkNotNull(rule, "rule cannot be null.");
+        Preconditions.checkNotNull(expectedException, "expectedException cannot be null.");
+
+        return rule.getInvalidInitializers().values().stream().filter(expectedException::equals).count();
+    }
+
+    /**
+     * Get the seed of the property based test of the provided method, which only depends on the method's class and
+     * signature so regenerated tests draw the same cases.
+     *
+     * @param sourceClass {@link PsiClass} defining {@code method}. Cannot be {@code null}.
+     * @param method {@link PsiMethod} under test. Cannot be {@code null}.
+     * @return The seed of the property based test.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static long getSeed(@NotNull PsiClass sourceClass, @NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        return Hashing.murmur3_128()
+            .hashString(sourceClass.getQualifiedName() + "#" + PsiUtility.getSignature(method), Charsets.UTF_8)
+            .asLong();
+    }
+
+    /**
+     * Get the key under which tests of the provided method are recorded in the {@link TestImpactManifest}.
+     *
+     * @param method {@link PsiMethod} under test. Cannot be {@code null}.
+     * @return The key, e.g. {@code com/foo/Bar.java#Bar(int,java.lang.String)}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code method} is {@code null}.
      */
     @NotNull
-    private ImmutableList<PsiElement> getImports() throws TestGenerationException
+    private static String getSubject(@NotNull PsiMethod method)
     {
-        ImmutableList.Builder<PsiElement> imports = ImmutableList.builder();
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        PsiFile file = method.getContainingFile();
+        String packageName = file instanceof PsiJavaFile ? ((PsiJavaFile) file).getPackageName() : "";
+        return TestImpactManifest.getSubject(packageName, file.getName(), PsiUtility.getSignature(method));
+    }
 
-        PsiClass mockito = JavaPsiFacade.getInstance(project)
-            .findClass("org.mockito.Mockito", GlobalSearchScope.allScope(project));
-        if (mockito != null)
+    /**
+     * Record the provided test cases, which were just written to the provided test class, in the
+     * {@link TestImpactManifest} of the test class's source root.
+     * <p>
+     * Failing to update the manifest only makes CI run more tests than needed, so it never fails generation.
+     *
+     * @param testFile File containing the test class. Cannot be {@code null}.
+     * @param testClass Test class to which the test cases were written. Cannot be {@code null}.
+     * @param testCases Written test cases. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static void updateManifest(@NotNull PsiJavaFile testFile, @NotNull PsiClass testClass,
+                                       @NotNull List<TestCase> testCases)
+    {
+        Preconditions.checkNotNull(testFile, "testFile cannot be null.");
+        Preconditions.checkNotNull(testClass, "testClass cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        VirtualFile testRoot = testFile.getVirtualFile();
+        String testClassName = testClass.getQualifiedName();
+        if (testRoot == null || !testRoot.isInLocalFileSystem() || testClassName == null)
         {
-            imports.add(
-                psiElementFactory.createImportStaticStatement(mockito, "mock")
-            );
+            return;
         }
-        else
+        // Walk up from the file through its package directories, e.g. to src/test/java.
+        testRoot = testRoot.getParent();
+        String packageName = testFile.getPackageName();
+        int depth = packageName.isEmpty() ? 0 : packageName.split("\\.").length;
+        while (depth-- > 0 && testRoot != null)
         {
-            throw new TestGenerationException("Please add Mockito to the project's classpath before proceeding.");
+            testRoot = testRoot.getParent();
         }
+        if (testRoot != null)
+        {
+            updateManifest(Paths.get(testRoot.getPath()), testClassName, testCases);
+        }
+    }
 
-        PsiClass test = JavaPsiFacade.getInstance(project)
-            .findClass("org.junit.Test", GlobalSearchScope.allScope(project));
-        if (test != null)
+    /**
+     * Record the provided test cases, which were just written to the provided test class, in the
+     * {@link TestImpactManifest} of the provided test source root.
+     * <p>
+     * Failing to update the manifest only makes CI run more tests than needed, so it never fails generation.
+     *
+     * @param testRoot Test source root containing the test class, e.g. {@code src/test/java}. Cannot be
+     *                 {@code null}.
+     * @param testClassName Qualified name of the test class. Cannot be {@code null}.
+     * @param testCases Written test cases. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    static void updateManifest(@NotNull Path testRoot, @NotNull String testClassName,
+                               @NotNull List<TestCase> testCases)
+    {
+        Preconditions.checkNotNull(testRoot, "testRoot cannot be null.");
+        Preconditions.checkNotNull(testClassName, "testClassName cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        List<String> lines = Lists.newArrayListWithCapacity(testCases.size());
+        for (TestCase testCase : testCases)
+        {
+            if (testCase.getSubject() != null)
+            {
+                lines.add(TestImpactManifest.getLine(testCase.getSubject(), testClassName, testCase.getName()));
+            }
+        }
+        if (lines.isEmpty())
+        {
+            return;
+        }
+        Path manifest = testRoot.resolve(TestImpactManifest.FILE_NAME);
+        try
         {
-            imports.add(
-                psiElementFactory.createImportStatement(test)
-            );
+            TestImpactManifest.update(manifest, lines);
         }
-        else
+        catch (IOException e)
         {
-            throw new TestGenerationException("Please add JUnit to the project's classpath before proceeding.");
+            LOG.warn("Unable to update test impact manifest " + manifest, e);
         }
+    }
 
+    /**
+     * Get the smaller size of scaling tests, if any should be rendered.
+     *
+     * @return The smaller size of scaling tests, or {@code 0} if no {@link ComplexityBound} is selected.
+     */
+    private int getScalingBaseSize()
+    {
+        GeneratorSettings settings = GeneratorSettings.getInstance(project);
+        return settings.getComplexityBound() != ComplexityBound.NONE ? settings.getScalingBaseSize() : 0;
+    }
+
+    /**
+     * Check that the provided {@code methodRules} are well formed.
+     *
+     * @param methodRules Mapping of {@link PsiMethod}s to test to their {@link ParameterRule}s. Cannot be
+     *                    {@code null}.
+     *
+     * @throws IllegalArgumentException if any method's list of {@link ParameterRule}s does not contain the same number
+     *                                  of rules as there are parameters in the method.
+     * @throws NullPointerException if {@code methodRules} is {@code null}.
+     */
+    private static void checkMethodRules(@NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules)
+    {
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+        for (Map.Entry<PsiMethod, ImmutableList<ParameterRule>> entry : methodRules.entrySet())
+        {
+            Preconditions.checkArgument(
+                entry.getKey().getParameterList().getParametersCount() ==
+                entry.getValue().size(), "Invalid map of method rules. At least one method's list of parameter rules " +
+                    "does not match the method signature for that method.");
+        }
+    }
+
+    /**
+     * Get the list of imports needed for the provided test cases which are not already present in the provided test
+     * file.
+     *
+     * @param testFile {@link PsiJavaFile} to which test cases will be added. Cannot be {@code null}.
+     * @param testCases Test cases which will be added. Cannot be {@code null}.
+     * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+     * @return An {@link ImmutableList} containing the imports needed to support testing. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if any required module is not added to the project's classpath.
+     */
+    @NotNull
+    private ImmutableList<PsiElement> getImports(@NotNull PsiJavaFile testFile, @NotNull List<TestCase> testCases,
+                                                 @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(testFile, "testFile cannot be null.");
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+
+        ImmutableList.Builder<PsiElement> imports = ImmutableList.builder();
+        for (RequiredImport requiredImport : getRequiredImports(testCases, templates))
+        {
+            if (!requiredImport.isPresentIn(testFile))
+            {
+                imports.add(requiredImport.createStatement(project, psiElementFactory));
+            }
+        }
         return imports.build();
     }
+
+    /**
+     * Get all imports needed by the provided test cases: whatever the configured templates need, plus
+     * {@code org.mockito.Mockito.mock} if any parameter or receiver falls back to a mock.
+     * <p>
+     * Mockito is only needed, and only has to be on the classpath, when a test case actually calls {@code mock}.
+     *
+     * @param testCases Test cases which will be added. Cannot be {@code null}.
+     * @param templates Templates the test cases were rendered with. Cannot be {@code null}.
+     * @return The imports needed by the test cases. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    private static ImmutableSet<RequiredImport> getRequiredImports(@NotNull List<TestCase> testCases,
+                                                                   @NotNull TestTemplateCache.Templates templates)
+    {
+        Preconditions.checkNotNull(testCases, "testCases cannot be null.");
+        Preconditions.checkNotNull(templates, "templates cannot be null.");
+
+        ImmutableSet.Builder<RequiredImport> imports = ImmutableSet.builder();
+        if (testCases.stream().anyMatch(testCase -> MOCK_CALL.matcher(testCase.getText()).find()))
+        {
+            imports.add(MOCKITO_MOCK);
+        }
+        return imports.addAll(templates.getImports()).build();
+    }
+
 }
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.intellij.diff.DiffContentFactory;
+import com.intellij.diff.DiffDialogHints;
+import com.intellij.diff.DiffManager;
+import com.intellij.diff.chains.SimpleDiffRequestChain;
+import com.intellij.diff.requests.SimpleDiffRequest;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.psi.PsiPackageStatement;
+import com.rtoth.boilerplate.parameters.ParameterRule;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Shows the test cases the {@link TestCaseGenerator} would create as a diff against each existing shard of the test
+ * class, spread across the shards just as they would be generated.
+ * <p>
+ * The preview is rendered purely as text: no {@link PsiElement}s are created or modified, so previewing does not
+ * trigger any write actions, reparsing or reindexing.
+ */
+class TestCasePreview
+{
+    /** {@link Project} for which test cases are previewed. */
+    private final Project project;
+
+    /** Used to render the planned test cases. */
+    private final TestCaseGenerator generator;
+
+    /**
+     * Create a new {@link TestCasePreview} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which test cases are previewed. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    TestCasePreview(@NotNull Project project)
+    {
+        this.project = Preconditions.checkNotNull(project, "project cannot be null.");
+        this.generator = new TestCaseGenerator(project);
+    }
+
+    /**
+     * Show the test cases planned for the provided {@code methodRules} as a diff against each shard of the test class
+     * for {@code sourceClass} which would receive any. This blocks until the user closes the diff.
+     *
+     * @param sourceClass {@link PsiClass} for which test cases are previewed. Cannot be {@code null} and must be
+     *                    defined in a valid {@link PsiJavaFile}.
+     * @param methodRules Mapping of {@link PsiMethod}s to test in the source class to {@link ParameterRule}s which
+     *                    indicate how each of the method's parameters should be tested. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException If there is a problem rendering the test cases.
+     */
+    void show(@NotNull PsiClass sourceClass,
+              @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkNotNull(methodRules, "methodRules cannot be null.");
+
+        PsiJavaFile sourceFile = (PsiJavaFile) sourceClass.getContainingFile();
+        TestTemplateCache.Templates templates = generator.resolveTemplates(sourceClass);
+        Optional<PsiDirectory> testDirectory = PsiUtility.findTestDirectory(sourceFile);
+
+        DiffContentFactory contentFactory = DiffContentFactory.getInstance();
+        List<SimpleDiffRequest> requests = Lists.newArrayList();
+        for (Map.Entry<String, ImmutableMap<PsiMethod, ImmutableList<ParameterRule>>> shardEntry :
+            generator.planShards(sourceClass, methodRules, templates).entrySet())
+        {
+            String shardName = shardEntry.getKey();
+            Optional<PsiClass> testClass =
+                testDirectory.flatMap(directory -> PsiUtility.findTestClass(directory, shardName));
+            String currentText = testClass.map(c -> c.getContainingFile().getText()).orElse("");
+            String previewText = render(sourceFile, shardName, testClass.orElse(null), shardEntry.getValue(),
+                templates);
+            requests.add(new SimpleDiffRequest(
+                "Preview: " + shardName,
+                contentFactory.create(project, currentText, JavaFileType.INSTANCE),
+                contentFactory.create(project, previewText, JavaFileType.INSTANCE),
+                testClass.isPresent() ? "Current" : "Current (does not exist)",
+                "With Generated Test Cases"
+            ));
+        }
+        DiffManager.getInstance().showDiff(project, new SimpleDiffRequestChain(requests), DiffDialogHints.MODAL);
+    }
+
+    /**
+     * Render the full text of a shard of the test file as it would look after generating test cases.
+     *
+     * @param sourceFile File defining the class for which test cases are previewed. Cannot be {@code null}.
+     * @param shardName Name of the shard. Cannot be {@code null}.
+     * @param testClass Existing class of the shard. Can be {@code null} if it does not exist yet.
+     * @param methodRules Mapping of {@link PsiMethod}s to test in the shard to their {@link ParameterRule}s. Cannot be
+     *                    {@code null}.
+     * @param templates Templates resolved for the source class. Cannot be {@code null}.
+     * @return The full text of the shard. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code sourceFile}, {@code shardName}, {@code methodRules} or {@code templates}
+     *                              is {@code null}.
+     * @throws TestGenerationException If there is a problem rendering the test cases.
+     */
+    @NotNull
+    private String render(@NotNull PsiJavaFile sourceFile, @NotNull String shardName, @Nullable PsiClass testClass,
+                          @NotNull ImmutableMap<PsiMethod, ImmutableList<ParameterRule>> methodRules,
+                          @NotNull TestTemplateCache.Templates templates)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceFile, "sourceFile cannot be null.");
+        Preconditions.checkNotNull(shardName, "shardName cannot be null.");
+
+        PsiJavaFile testFile = testClass != null ? (PsiJavaFile) testClass.getContainingFile() : null;
+
+        ImmutableList<TestCase> testCases = generator.renderTestCases(testClass, methodRules, templates);
+        StringBuilder imports = new StringBuilder();
+        for (String importText : generator.renderImports(testFile, testCases, templates))
+        {
+            imports.append(importText).append('\n');
+        }
+        StringBuilder testMethods = new StringBuilder();
+        for (TestCase testCase : testCases)
+        {
+            testMethods.append('\n').append(indent(testCase.getText())).append('\n');
+        }
+
+        String execution = templates.isConcurrentExecution() ?
+            "@" + TestCaseGenerator.EXECUTION_ANNOTATION + "(" + TestCaseGenerator.CONCURRENT_MODE + ")\n" :
+            "";
+
+        if (testFile == null || testClass.getRBrace() == null)
+        {
+            String packageName = sourceFile.getPackageName();
+            StringBuilder text = new StringBuilder();
+            if (!packageName.isEmpty())
+            {
+                text.append("package ").append(packageName).append(";\n\n");
+            }
+            return text.append(imports)
+                .append('\n').append(execution)
+                .append("public class ").append(shardName).append("\n{")
+                .append(testMethods)
+                .append("}\n")
+                .toString();
+        }
+
+        // Insert from the end of the file backwards so earlier offsets stay valid.
+        StringBuilder text = new StringBuilder(testFile.getText());
+        text.insert(testClass.getRBrace().getTextRange().getStartOffset(), testMethods);
+        PsiModifierList modifierList = testClass.getModifierList();
+        if (!execution.isEmpty() && modifierList != null &&
+            modifierList.findAnnotation(TestCaseGenerator.EXECUTION_ANNOTATION) == null)
+        {
+            text.insert(modifierList.getTextRange().getStartOffset(), execution);
+        }
+        text.insert(getImportOffset(testFile), imports.length() > 0 ? "\n" + imports : "");
+        return text.toString();
+    }
+
+    /**
+     * Get the offset in the provided file at which new import statements should be inserted.
+     *
+     * @param testFile {@link PsiJavaFile} into which imports will be inserted. Cannot be {@code null}.
+     * @return The offset at which new import statements should be inserted.
+     *
+     * @throws NullPointerException if {@code testFile} is {@code null}.
+     */
+    private static int getImportOffset(@NotNull PsiJavaFile testFile)
+    {
+        Preconditions.checkNotNull(testFile, "testFile cannot be null.");
+
+        PsiImportList importList = testFile.getImportList();
+        if (importList != null && importList.getTextLength() > 0)
+        {
+            return importList.getTextRange().getEndOffset();
+        }
+        PsiPackageStatement packageStatement = testFile.getPackageStatement();
+        return packageStatement != null ? packageStatement.getTextRange().getEndOffset() : 0;
+    }
+
+    /**
+     * Indent each line of the provided text by one level.
+     *
+     * @param text Text to indent. Cannot be {@code null}.
+     * @return The indented text. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code text} is {@code null}.
+     */
+    @NotNull
+    private static String indent(@NotNull String text)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+
+        return "    " + text.replace("\n", "\n    ");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolder;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Chooses the built-in {@link TestTemplateSet} for {@link TestTemplateSet#AUTOMATIC} from what is on a module's test
+ * classpath: JUnit 5 if {@code org.junit.jupiter.api.Test} is available, JUnit 4 otherwise.
+ * <p>
+ * The result is cached per module (or per project, without a module) until the project's roots change, e.g. when a
+ * dependency is added. The last result is also remembered past that, for while the project is being indexed.
+ */
+final class TestFrameworkDetector
+{
+    /** Class whose presence identifies JUnit 5. */
+    private static final String JUPITER_TEST = "org.junit.jupiter.api.Test";
+
+    /** Last {@link TestTemplateSet} detected for a module, or for the project as a whole. */
+    private static final Key<TestTemplateSet> LAST_DETECTED = Key.create("boilerplate.lastDetectedTemplateSet");
+
+    /**
+     * Private constructor for utility class.
+     */
+    private TestFrameworkDetector()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Detect the {@link TestTemplateSet} to use for tests of the provided element.
+     * <p>
+     * While the project is being indexed the classpath cannot be searched, so the set last detected for the module is
+     * used instead, falling back to the set last detected for the whole project (which the
+     * {@link GeneratorWarmUpActivity} detects once indexing first finishes), and to JUnit 4 only if neither is known.
+     *
+     * @param project {@link Project} containing {@code context}. Cannot be {@code null}.
+     * @param context Element for which tests are generated, used to find its module. Can be {@code null}, in which
+     *                case the whole project's classpath is searched.
+     * @return {@link TestTemplateSet#JUNIT5} or {@link TestTemplateSet#JUNIT4}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    @NotNull
+    static TestTemplateSet detect(@NotNull Project project, @Nullable PsiElement context)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        Module module = context != null ? ModuleUtilCore.findModuleForPsiElement(context) : null;
+        UserDataHolder holder = module != null ? module : project;
+        if (DumbService.isDumb(project))
+        {
+            TestTemplateSet lastDetected = holder.getUserData(LAST_DETECTED);
+            if (lastDetected == null)
+            {
+                lastDetected = project.getUserData(LAST_DETECTED);
+            }
+            return lastDetected != null ? lastDetected : TestTemplateSet.JUNIT4;
+        }
+        CachedValuesManager cachedValuesManager = CachedValuesManager.getManager(project);
+        ProjectRootManager rootManager = ProjectRootManager.getInstance(project);
+        Boolean jupiter = module != null ?
+            cachedValuesManager.getCachedValue(module, () -> CachedValueProvider.Result.create(
+                hasJupiter(project, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope(module, true)),
+                rootManager)) :
+            cachedValuesManager.getCachedValue(project, () -> CachedValueProvider.Result.create(
+                hasJupiter(project, GlobalSearchScope.allScope(project)), rootManager));
+        TestTemplateSet detected = jupiter ? TestTemplateSet.JUNIT5 : TestTemplateSet.JUNIT4;
+        holder.putUserData(LAST_DETECTED, detected);
+        return detected;
+    }
+
+    /**
+     * Check whether JUnit 5 is available in the provided scope.
+     *
+     * @param project {@link Project} to search. Cannot be {@code null}.
+     * @param scope Scope to search. Cannot be {@code null}.
+     * @return {@code true} if {@code org.junit.jupiter.api.Test} is available, {@code false} otherwise.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static boolean hasJupiter(@NotNull Project project, @NotNull GlobalSearchScope scope)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+        Preconditions.checkNotNull(scope, "scope cannot be null.");
+
+        return JavaPsiFacade.getInstance(project).findClass(JUPITER_TEST, scope) != null;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Manifest linking source members to the generated tests which exercise them, so CI can run only the generated
+ * tests affected by a change.
+ * <p>
+ * The manifest is a sorted text file named {@value #FILE_NAME} in the test source root, e.g. {@code src/test/java},
+ * holding one line per generated test:
+ * <pre>
+ * com/foo/Bar.java#Bar(int,java.lang.String)&#9;com.foo.BarTest#constructor_nullName_throwsNullPointerException
+ * </pre>
+ * The generator only ever adds tests, so updating the manifest merges the new lines into the existing ones. Lines
+ * of tests which were deleted by hand remain until the manifest is deleted and the tests regenerated; selecting a
+ * test which no longer exists is harmless for the usual test runners.
+ * <p>
+ * This class only depends on the JDK, so it can be run on its own to select the tests for a list of changed files:
+ * <pre>
+ * git diff --name-only HEAD~1 | java -cp boilerplate.jar com.rtoth.boilerplate.TestImpactManifest \
+ *     src/test/java/boilerplate-test-impact.txt
+ * </pre>
+ * which prints one {@code TestClass#testMethod} per line. A changed file selects the tests of every member of the
+ * source class it contains, as well as the tests within it if it is a generated test class itself.
+ */
+public final class TestImpactManifest
+{
+    /** Name of the manifest file in the test source root. */
+    static final String FILE_NAME = "boilerplate-test-impact.txt";
+
+    /** First line of the manifest, identifying its format. */
+    private static final String HEADER = "# boilerplate-test-impact 1";
+
+    /** Separates the source member from the test on each line. */
+    private static final char COLUMN_SEPARATOR = '\t';
+
+    /** Separates the file or class from the member or method. */
+    private static final char MEMBER_SEPARATOR = '#';
+
+    private TestImpactManifest()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Get the key under which tests of the provided source member are recorded.
+     *
+     * @param packageName Package of the source file, e.g. {@code com.foo}. Cannot be {@code null}, but may be empty.
+     * @param fileName Name of the source file, e.g. {@code Bar.java}. Cannot be {@code null}.
+     * @param memberSignature Name and erased parameter types of the member, e.g. {@code Bar(int,java.lang.String)}.
+     *                        Cannot be {@code null}.
+     * @return The key, e.g. {@code com/foo/Bar.java#Bar(int,java.lang.String)}. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static String getSubject(@NotNull String packageName, @NotNull String fileName, @NotNull String memberSignature)
+    {
+        Objects.requireNonNull(packageName, "packageName cannot be null.");
+        Objects.requireNonNull(fileName, "fileName cannot be null.");
+        Objects.requireNonNull(memberSignature, "memberSignature cannot be null.");
+
+        String packagePath = packageName.replace('.', '/');
+        return (packagePath.isEmpty() ? fileName : packagePath + "/" + fileName) + MEMBER_SEPARATOR +
+            memberSignature;
+    }
+
+    /**
+     * Build the manifest line recording that the provided test exercises the provided source member.
+     *
+     * @param subject Key of the source member, as built by {@link #getSubject}. Cannot be {@code null}.
+     * @param testClassName Fully qualified name of the test class. Cannot be {@code null}.
+     * @param testMethodName Name of the test method. Cannot be {@code null}.
+     * @return The manifest line. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static String getLine(@NotNull String subject, @NotNull String testClassName, @NotNull String testMethodName)
+    {
+        Objects.requireNonNull(subject, "subject cannot be null.");
+        Objects.requireNonNull(testClassName, "testClassName cannot be null.");
+        Objects.requireNonNull(testMethodName, "testMethodName cannot be null.");
+
+        return subject + COLUMN_SEPARATOR + testClassName + MEMBER_SEPARATOR + testMethodName;
+    }
+
+    /**
+     * Merge the provided lines into the manifest, creating it if needed.
+     * <p>
+     * The manifest is only rewritten if any line is new, and is replaced atomically where the file system allows,
+     * so readers never see a partially written manifest. Concurrent updates, also from other processes, are
+     * serialized through a lock file in the temporary directory, so nothing but the manifest is left in the test root.
+     *
+     * @param manifest Path of the manifest. Cannot be {@code null}.
+     * @param lines Lines built by {@link #getLine} to merge into the manifest. Cannot be {@code null}.
+     *
+     * @throws IOException if the manifest cannot be read or written.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    static synchronized void update(@NotNull Path manifest, @NotNull Collection<String> lines) throws IOException
+    {
+        Objects.requireNonNull(manifest, "manifest cannot be null.");
+        Objects.requireNonNull(lines, "lines cannot be null.");
+
+        // Sharded generation runs several processes against the same test root, so lock across processes as well.
+        // The manifest itself is replaced rather than rewritten, so it cannot hold the lock.
+        Path lockFile = getLockFile(manifest);
+        try (FileChannel lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock())
+        {
+            SortedSet<String> merged = read(manifest);
+            if (!merged.addAll(lines))
+            {
+                return;
+            }
+            List<String> output = new ArrayList<>(merged.size() + 1);
+            output.add(HEADER);
+            output.addAll(merged);
+            Path temporary = Files.createTempFile(manifest.toAbsolutePath().getParent(),
+                manifest.getFileName().toString(), ".tmp");
+            Files.write(temporary, output, StandardCharsets.UTF_8);
+            try
+            {
+                Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e)
+            {
+                Files.move(temporary, manifest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Get the lock file serializing updates of the provided manifest, which is shared by every process updating it on
+     * this machine.
+     *
+     * @param manifest Path of the manifest. Cannot be {@code null}.
+     * @return Path of the lock file in the temporary directory. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code manifest} is {@code null}.
+     */
+    @NotNull
+    private static Path getLockFile(@NotNull Path manifest)
+    {
+        Objects.requireNonNull(manifest, "manifest cannot be null.");
+
+        // Manifests which share a hash only share a lock, which is harmless.
+        String manifestHash = Integer.toHexString(manifest.toAbsolutePath().normalize().toString().hashCode());
+        return Paths.get(System.getProperty("java.io.tmpdir"), FILE_NAME + "-" + manifestHash + ".lock");
+    }
+
+    /**
+     * Select the tests affected by the provided changed files.
+     *
+     * @param manifest Path of the manifest. Cannot be {@code null}.
+     * @param changedFiles Paths of the changed files, absolute or relative to any directory above the source roots.
+     *                     Cannot be {@code null}.
+     * @return The affected tests as {@code TestClass#testMethod}, sorted. Never {@code null}, but may be empty.
+     *
+     * @throws IOException if the manifest cannot be read.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static SortedSet<String> selectTests(@NotNull Path manifest, @NotNull Collection<String> changedFiles)
+        throws IOException
+    {
+        Objects.requireNonNull(manifest, "manifest cannot be null.");
+        Objects.requireNonNull(changedFiles, "changedFiles cannot be null.");
+
+        List<String> changed = new ArrayList<>(changedFiles.size());
+        for (String changedFile : changedFiles)
+        {
+            String normalized = changedFile.trim().replace('\\', '/');
+            if (!normalized.isEmpty())
+            {
+                changed.add(normalized.startsWith("/") ? normalized : "/" + normalized);
+            }
+        }
+
+        SortedSet<String> selected = new TreeSet<>();
+        for (String line : read(manifest))
+        {
+            int column = line.indexOf(COLUMN_SEPARATOR);
+            int member = line.lastIndexOf(MEMBER_SEPARATOR, column);
+            int method = line.lastIndexOf(MEMBER_SEPARATOR);
+            if (column < 0 || member < 0 || method < column)
+            {
+                continue;
+            }
+            String sourcePath = "/" + line.substring(0, member);
+            String test = line.substring(column + 1);
+            String testPath = "/" + test.substring(0, test.lastIndexOf(MEMBER_SEPARATOR)).replace('.', '/') + ".java";
+            for (String changedFile : changed)
+            {
+                if (changedFile.endsWith(sourcePath) || changedFile.endsWith(testPath))
+                {
+                    selected.add(test);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Print the tests affected by a list of changed files, one {@code TestClass#testMethod} per line.
+     *
+     * @param args Path of the manifest, followed by the changed files. If no changed files are given, they are read
+     *             from standard input, one per line.
+     *
+     * @throws IOException if the manifest or standard input cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: TestImpactManifest <manifest> [changed file ...]");
+            System.exit(2);
+        }
+
+        List<String> changedFiles = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            changedFiles.add(args[i]);
+        }
+        if (changedFiles.isEmpty())
+        {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                changedFiles.add(line);
+            }
+        }
+        for (String test : selectTests(Paths.get(args[0]), changedFiles))
+        {
+            System.out.println(test);
+        }
+    }
+
+    /**
+     * Read the lines of the manifest, without its header.
+     *
+     * @param manifest Path of the manifest. Cannot be {@code null}.
+     * @return The lines of the manifest, or an empty set if it does not exist. Never {@code null}.
+     *
+     * @throws IOException if the manifest cannot be read.
+     * @throws NullPointerException if {@code manifest} is {@code null}.
+     */
+    @NotNull
+    private static SortedSet<String> read(@NotNull Path manifest) throws IOException
+    {
+        Objects.requireNonNull(manifest, "manifest cannot be null.");
+
+        SortedSet<String> lines = new TreeSet<>();
+        if (Files.exists(manifest))
+        {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8))
+            {
+                if (!line.isEmpty() && !line.startsWith("#"))
+                {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.rtoth.boilerplate.parameters.SyntaxOnlyTypes;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * Index of the method and field names used in a test class, used to give each generated test method a unique name.
+ * <p>
+ * The index is built once from the test class, so checking a name is a hash lookup rather than a scan of the class,
+ * and every name handed out is added to it so test methods generated together never collide either.
+ */
+class TestNameIndex
+{
+    /** Names of all methods and fields in the test class, plus those reserved through {@link #reserve}. */
+    private final Set<String> usedNames;
+
+    /**
+     * Create a new {@link TestNameIndex} for the provided test class.
+     *
+     * @param testClass Test class to index. Can be {@code null} if it does not exist yet, in which case the index
+     *                  starts empty.
+     */
+    TestNameIndex(@Nullable PsiClass testClass)
+    {
+        if (testClass == null)
+        {
+            this.usedNames = Sets.newHashSet();
+        }
+        else
+        {
+            PsiMethod[] methods = testClass.getMethods();
+            PsiField[] fields = testClass.getFields();
+            this.usedNames = Sets.newHashSetWithExpectedSize((methods.length + fields.length) * 2);
+            for (PsiMethod method : methods)
+            {
+                usedNames.add(method.getName());
+            }
+            // Fields live in a separate namespace, but the tables of test factories are named after their method.
+            for (PsiField field : fields)
+            {
+                usedNames.add(field.getName());
+            }
+        }
+    }
+
+    /**
+     * Check whether the provided name is already used.
+     *
+     * @param name Name to check. Cannot be {@code null}.
+     * @return {@code true} if a method with the name exists or has been reserved, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code name} is {@code null}.
+     */
+    boolean contains(@NotNull String name)
+    {
+        Preconditions.checkNotNull(name, "name cannot be null.");
+
+        return usedNames.contains(name);
+    }
+
+    /**
+     * Reserve a unique name for a test of the provided method.
+     * <p>
+     * {@code baseName} is used as-is if it is free. Otherwise a discriminator made from the simple names of the
+     * tested method's parameter types is appended (e.g. {@code constructor_nullName_throwsNullPointerException_int}),
+     * and if that is taken as well, the first free numeric suffix starting at 2. The result therefore only depends
+     * on the existing test class and the order in which names are reserved.
+     *
+     * @param baseName Preferred name of the test. Cannot be {@code null}.
+     * @param testedMethod Method under test, used to build the discriminator. Cannot be {@code null}.
+     * @return The reserved name. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    String reserve(@NotNull String baseName, @NotNull PsiMethod testedMethod)
+    {
+        Preconditions.checkNotNull(baseName, "baseName cannot be null.");
+        Preconditions.checkNotNull(testedMethod, "testedMethod cannot be null.");
+
+        if (usedNames.add(baseName))
+        {
+            return baseName;
+        }
+        String discriminated = baseName + getDiscriminator(testedMethod);
+        if (usedNames.add(discriminated))
+        {
+            return discriminated;
+        }
+        int suffix = 2;
+        while (!usedNames.add(discriminated + "_" + suffix))
+        {
+            suffix++;
+        }
+        return discriminated + "_" + suffix;
+    }
+
+    /**
+     * Build a discriminator from the simple names of the provided method's parameter types, e.g. {@code _String_int}
+     * or {@code _intArray}.
+     *
+     * @param method Method for which to build the discriminator. Cannot be {@code null}.
+     * @return The discriminator, or {@code "_noArgs"} if the method has no parameters. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code method} is {@code null}.
+     */
+    @NotNull
+    private static String getDiscriminator(@NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        if (parameters.length == 0)
+        {
+            return "_noArgs";
+        }
+        StringBuilder discriminator = new StringBuilder();
+        for (PsiParameter parameter : parameters)
+        {
+            String typeName = SyntaxOnlyTypes.getErasedCanonicalText(parameter.getType())
+                .replace("...", "Array").replace("[]", "Array");
+            discriminator.append('_').append(typeName.substring(typeName.lastIndexOf('.') + 1));
+        }
+        return discriminator.toString();
+    }
+}
@@ -0,0 +1,566 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Tracks how full each shard of a generated test class is, so new test cases can be appended to the right shard
+ * without rescanning every shard.
+ * <p>
+ * Shards of the test class for {@code Foo} are named {@code FooTest}, {@code FooTest_2}, {@code FooTest_3}, ... and
+ * each holds at most {@link GeneratorSettings#getMaxTestMethodsPerClass()} methods. New methods go to the first shard
+ * with enough room, so room freed up in a lower shard, e.g. by deleting tests, is reused before adding another
+ * shard. The number of methods in a shard is only recounted if the shard's file has been modified since it was last
+ * counted, so passing over a full shard only costs looking up its file.
+ */
+public class TestShardTracker
+{
+    /** Modification stamp recorded for shards written straight to disk, which the VFS does not know yet. */
+    private static final long UNKNOWN_MODIFICATION_STAMP = -1;
+
+    /** Settings containing the maximum number of methods per shard. */
+    private final GeneratorSettings settings;
+
+    /** Known fill levels of shards mapped by the shard's file URL. */
+    private final Map<String, FillLevel> fillLevels = Maps.newHashMap();
+
+    /** Names of shared fixture methods reserved through {@link #allocate} but not written yet, mapped by file URL. */
+    private final Map<String, Set<String>> reservedFixtures = Maps.newHashMap();
+
+    /**
+     * Create a new {@link TestShardTracker}.
+     *
+     * @param project {@link Project} for which shards are tracked. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    public TestShardTracker(@NotNull Project project)
+    {
+        this.settings = GeneratorSettings.getInstance(
+            Preconditions.checkNotNull(project, "project cannot be null."));
+    }
+
+    /**
+     * Get the {@link TestShardTracker} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which to get the tracker. Cannot be {@code null}.
+     * @return The {@link TestShardTracker} for {@code project}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    @NotNull
+    static TestShardTracker getInstance(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        return ServiceManager.getService(project, TestShardTracker.class);
+    }
+
+    /**
+     * Get the name of the provided shard of the provided test class.
+     *
+     * @param baseTestClassName Name of the first shard, e.g. {@code FooTest}. Cannot be {@code null}.
+     * @param shard Index of the shard, starting at 1.
+     * @return The name of the shard. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code shard} is &lt; 1.
+     * @throws NullPointerException if {@code baseTestClassName} is {@code null}.
+     */
+    @NotNull
+    static String getShardName(@NotNull String baseTestClassName, int shard)
+    {
+        Preconditions.checkNotNull(baseTestClassName, "baseTestClassName cannot be null.");
+        Preconditions.checkArgument(shard >= 1, "shard must be >= 1.");
+
+        return shard == 1 ? baseTestClassName : baseTestClassName + "_" + shard;
+    }
+
+    /**
+     * Find or create the shard of the test class for {@code sourceClass} which should receive {@code count} new test
+     * methods, and reserve room for them in it.
+     * <p>
+     * Groups of methods larger than a whole shard are placed in an empty shard of their own. This must not be called
+     * from within a read action, as it may need to create directories or files.
+     *
+     * @param sourceClass Source class for which test cases are being generated. Cannot be {@code null} and must be
+     *                    defined in a valid {@link PsiJavaFile}.
+     * @param count Number of test methods which will be added.
+     * @return The shard which should receive the new test methods. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code count} is negative or {@code sourceClass} is not defined in a valid
+     *                                  {@link PsiJavaFile}.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     * @throws TestGenerationException if the test directory or class cannot be found or created.
+     */
+    @NotNull
+    PsiClass allocate(@NotNull PsiClass sourceClass, int count) throws TestGenerationException
+    {
+        return allocate(sourceClass, count, null);
+    }
+
+    /**
+     * Find or create the shard of the test class for {@code sourceClass} which should receive {@code count} new test
+     * methods sharing the provided fixture method, and reserve room for them in it.
+     * <p>
+     * The fixture method is only rendered once per shard, so it takes one more method only in a shard which neither
+     * defines it nor has it reserved already. Groups of methods larger than a whole shard are placed in an empty
+     * shard of their own. This must not be called from within a read action, as it may need to create directories or
+     * files.
+     *
+     * @param sourceClass Source class for which test cases are being generated. Cannot be {@code null} and must be
+     *                    defined in a valid {@link PsiJavaFile}.
+     * @param count Number of test methods which will be added, not including the fixture method.
+     * @param fixtureName Name of the fixture method the new test methods share, or {@code null} if there is none.
+     * @return The shard which should receive the new test methods. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code count} is negative or {@code sourceClass} is not defined in a valid
+     *                                  {@link PsiJavaFile}.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     * @throws TestGenerationException if the test directory or class cannot be found or created.
+     */
+    @NotNull
+    synchronized PsiClass allocate(@NotNull PsiClass sourceClass, int count, @Nullable String fixtureName)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        Preconditions.checkArgument(count >= 0, "count cannot be negative.");
+        PsiFile sourceFile = sourceClass.getContainingFile();
+        Preconditions.checkArgument(sourceFile instanceof PsiJavaFile,
+            "sourceClass must be defined in a valid java file.");
+
+        PsiDirectory testDirectory = PsiUtility.findOrCreateTestDirectory((PsiJavaFile) sourceFile)
+            .orElseThrow(() -> new TestGenerationException("Error finding or generating test directory for " +
+                sourceClass.getName()));
+        String shardName = findShard(testDirectory, sourceClass.getName() + "Test", count, fixtureName,
+            Collections.emptyMap(), Collections.emptyMap());
+        PsiClass shardClass = findOrCreateShard(testDirectory, shardName);
+        if (settings.getMaxTestMethodsPerClass() == 0)
+        {
+            return shardClass;
+        }
+
+        PsiFile file = shardClass.getContainingFile();
+        String url = file.getVirtualFile().getUrl();
+        int needed = getNeeded(file, shardName, count, fixtureName, Collections.emptyMap());
+        fillLevels.put(url, new FillLevel(file.getModificationStamp(), getFill(file) + needed));
+        if (needed > count)
+        {
+            reservedFixtures.computeIfAbsent(url, key -> Sets.newHashSet()).add(fixtureName);
+        }
+        return shardClass;
+    }
+
+    /**
+     * Start a dry run of allocations for the test class of the provided source class, which chooses the same shards
+     * as {@link #allocate} would, without creating any directories or files or reserving any room. Must be called
+     * from within a read action.
+     *
+     * @param sourceClass Source class for which test cases would be generated. Cannot be {@code null} and must be
+     *                    defined in a valid {@link PsiJavaFile}.
+     * @return The {@link DryRun}. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code sourceClass} is not defined in a valid {@link PsiJavaFile}.
+     * @throws NullPointerException if {@code sourceClass} is {@code null}.
+     */
+    @NotNull
+    DryRun dryRun(@NotNull PsiClass sourceClass)
+    {
+        Preconditions.checkNotNull(sourceClass, "sourceClass cannot be null.");
+        PsiFile sourceFile = sourceClass.getContainingFile();
+        Preconditions.checkArgument(sourceFile instanceof PsiJavaFile,
+            "sourceClass must be defined in a valid java file.");
+
+        return new DryRun(PsiUtility.findTestDirectory((PsiJavaFile) sourceFile).orElse(null),
+            sourceClass.getName() + "Test");
+    }
+
+    /**
+     * Find the shard which should receive {@code count} new test methods sharing the provided fixture method: the
+     * first one with room for them, or an empty one if they do not fit in any.
+     *
+     * @param testDirectory {@link PsiDirectory} containing the shards, or {@code null} if it does not exist yet.
+     * @param baseTestClassName Name of the first shard, e.g. {@code FooTest}. Cannot be {@code null}.
+     * @param count Number of test methods which will be added, not including the fixture method.
+     * @param fixtureName Name of the fixture method the new test methods share, or {@code null} if there is none.
+     * @param plannedFill Number of methods planned for each shard by a {@link DryRun}, mapped by shard name, on top of
+     *                    what the shard already holds. Cannot be {@code null}.
+     * @param plannedFixtures Names of fixture methods planned for each shard by a {@link DryRun}, mapped by shard
+     *                        name. Cannot be {@code null}.
+     * @return The name of the shard. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code baseTestClassName}, {@code plannedFill} or {@code plannedFixtures} is
+     *                              {@code null}.
+     */
+    @NotNull
+    private String findShard(@Nullable PsiDirectory testDirectory, @NotNull String baseTestClassName, int count,
+                             @Nullable String fixtureName, @NotNull Map<String, Integer> plannedFill,
+                             @NotNull Map<String, Set<String>> plannedFixtures)
+    {
+        Preconditions.checkNotNull(baseTestClassName, "baseTestClassName cannot be null.");
+        Preconditions.checkNotNull(plannedFill, "plannedFill cannot be null.");
+        Preconditions.checkNotNull(plannedFixtures, "plannedFixtures cannot be null.");
+
+        int maxMethods = settings.getMaxTestMethodsPerClass();
+        if (maxMethods == 0)
+        {
+            return baseTestClassName;
+        }
+
+        // Always start from the first shard, as any shard may have lost methods since it was last filled.
+        int shard = 1;
+        while (true)
+        {
+            String shardName = getShardName(baseTestClassName, shard);
+            PsiFile shardFile = testDirectory != null ? testDirectory.findFile(shardName + ".java") : null;
+            if (shardFile == null && testDirectory != null && isOnlyOnDisk(testDirectory, shardName))
+            {
+                // Written straight to disk, it cannot be modified through the PSI until the VFS picks it up.
+                shard++;
+                continue;
+            }
+            int fill = (shardFile != null ? getFill(shardFile) : 0) + plannedFill.getOrDefault(shardName, 0);
+            if (fill == 0 || fill + getNeeded(shardFile, shardName, count, fixtureName, plannedFixtures) <= maxMethods)
+            {
+                return shardName;
+            }
+            shard++;
+        }
+    }
+
+    /**
+     * Get the room {@code count} new test methods sharing the provided fixture method take in the provided shard,
+     * which is one more if the shard still needs the fixture method.
+     *
+     * @param shardFile File containing the shard, or {@code null} if it does not exist yet.
+     * @param shardName Name of the shard. Cannot be {@code null}.
+     * @param count Number of test methods which will be added, not including the fixture method.
+     * @param fixtureName Name of the fixture method the new test methods share, or {@code null} if there is none.
+     * @param plannedFixtures Names of fixture methods planned for each shard by a {@link DryRun}, mapped by shard
+     *                        name. Cannot be {@code null}.
+     * @return The number of methods the new test methods take.
+     *
+     * @throws NullPointerException if {@code shardName} or {@code plannedFixtures} is {@code null}.
+     */
+    private int getNeeded(@Nullable PsiFile shardFile, @NotNull String shardName, int count,
+                          @Nullable String fixtureName, @NotNull Map<String, Set<String>> plannedFixtures)
+    {
+        Preconditions.checkNotNull(shardName, "shardName cannot be null.");
+        Preconditions.checkNotNull(plannedFixtures, "plannedFixtures cannot be null.");
+
+        boolean needsFixture = fixtureName != null &&
+            !plannedFixtures.getOrDefault(shardName, Collections.emptySet()).contains(fixtureName) &&
+            !hasFixture(shardFile, fixtureName);
+        return count + (needsFixture ? 1 : 0);
+    }
+
+    /**
+     * Record that the methods reserved through {@link #allocate} have been written to the provided shard.
+     * <p>
+     * The shard is recounted right away, as fewer methods than were reserved may have been written, e.g. if some
+     * were already covered by existing tests, and the room they would have taken should stay available.
+     *
+     * @param shardClass Shard to which the methods were written. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code shardClass} is {@code null}.
+     */
+    synchronized void written(@NotNull PsiClass shardClass)
+    {
+        Preconditions.checkNotNull(shardClass, "shardClass cannot be null.");
+
+        PsiFile file = shardClass.getContainingFile();
+        String url = file.getVirtualFile().getUrl();
+        // Reserved fixtures are now part of the shard itself.
+        reservedFixtures.remove(url);
+        fillLevels.remove(url);
+        getFill(file);
+    }
+
+    /**
+     * Record that a shard was written straight to disk by a {@link BulkTestFileWriter}, so it is not allocated again
+     * before the VFS has picked it up.
+     *
+     * @param shardPath Path of the shard's file. Cannot be {@code null}.
+     * @param methodCount Number of methods in the shard.
+     *
+     * @throws NullPointerException if {@code shardPath} is {@code null}.
+     */
+    synchronized void writtenToDisk(@NotNull Path shardPath, int methodCount)
+    {
+        Preconditions.checkNotNull(shardPath, "shardPath cannot be null.");
+
+        // The file has no modification stamp yet, so it is recounted as soon as it shows up in the PSI.
+        fillLevels.put(VfsUtilCore.pathToUrl(FileUtil.toSystemIndependentName(shardPath.toString())),
+            new FillLevel(UNKNOWN_MODIFICATION_STAMP, methodCount));
+    }
+
+    /**
+     * Check whether the provided shard was written straight to disk and has not been picked up by the VFS yet.
+     *
+     * @param testDirectory {@link PsiDirectory} containing the shards. Cannot be {@code null}.
+     * @param shardName Name of the shard. Cannot be {@code null}.
+     * @return {@code true} if the shard's file exists on disk but cannot be found through the PSI yet, {@code false}
+     *         otherwise.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private boolean isOnlyOnDisk(@NotNull PsiDirectory testDirectory, @NotNull String shardName)
+    {
+        Preconditions.checkNotNull(testDirectory, "testDirectory cannot be null.");
+        Preconditions.checkNotNull(shardName, "shardName cannot be null.");
+
+        String url = testDirectory.getVirtualFile().getUrl() + "/" + shardName + ".java";
+        FillLevel fillLevel = fillLevels.get(url);
+        if (fillLevel == null || fillLevel.modificationStamp != UNKNOWN_MODIFICATION_STAMP)
+        {
+            return false;
+        }
+        if (new File(testDirectory.getVirtualFile().getPath(), shardName + ".java").exists())
+        {
+            return true;
+        }
+        // Deleted before the VFS picked it up.
+        fillLevels.remove(url);
+        return false;
+    }
+
+    /**
+     * Check whether the provided class name is the name of a shard of the provided test class.
+     *
+     * @param baseTestClassName Name of the first shard, e.g. {@code FooTest}. Cannot be {@code null}.
+     * @param className Class name to check. Cannot be {@code null}.
+     * @return {@code true} if {@code className} is {@code baseTestClassName} or the name of any later shard of it,
+     *         {@code false} otherwise.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    static boolean isShardName(@NotNull String baseTestClassName, @NotNull String className)
+    {
+        Preconditions.checkNotNull(baseTestClassName, "baseTestClassName cannot be null.");
+        Preconditions.checkNotNull(className, "className cannot be null.");
+
+        if (className.equals(baseTestClassName))
+        {
+            return true;
+        }
+        String prefix = baseTestClassName + "_";
+        if (!className.startsWith(prefix) || className.length() == prefix.length())
+        {
+            return false;
+        }
+        String index = className.substring(prefix.length());
+        return index.chars().allMatch(c -> c >= '0' && c <= '9') && index.charAt(0) != '0' && !index.equals("1");
+    }
+
+    /**
+     * Get the number of methods in the provided shard, counting them only if the shard has been modified since it
+     * was last counted.
+     *
+     * @param shardFile File containing the shard. Cannot be {@code null}.
+     * @return The number of methods in the shard.
+     *
+     * @throws NullPointerException if {@code shardFile} is {@code null}.
+     */
+    private int getFill(@NotNull PsiFile shardFile)
+    {
+        Preconditions.checkNotNull(shardFile, "shardFile cannot be null.");
+
+        String url = shardFile.getVirtualFile().getUrl();
+        FillLevel fillLevel = fillLevels.get(url);
+        if (fillLevel == null || fillLevel.modificationStamp != shardFile.getModificationStamp())
+        {
+            int methodCount = 0;
+            if (shardFile instanceof PsiJavaFile)
+            {
+                for (PsiClass psiClass : ((PsiJavaFile) shardFile).getClasses())
+                {
+                    methodCount += psiClass.getMethods().length;
+                }
+            }
+            fillLevel = new FillLevel(shardFile.getModificationStamp(), methodCount);
+            fillLevels.put(url, fillLevel);
+        }
+        return fillLevel.methodCount;
+    }
+
+    /**
+     * Check whether the provided shard defines the provided fixture method, or already has room reserved for it.
+     *
+     * @param shardFile File containing the shard, or {@code null} if it does not exist yet.
+     * @param fixtureName Name of the fixture method. Cannot be {@code null}.
+     * @return {@code true} if the shard does not need room for the fixture method, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code fixtureName} is {@code null}.
+     */
+    private boolean hasFixture(@Nullable PsiFile shardFile, @NotNull String fixtureName)
+    {
+        Preconditions.checkNotNull(fixtureName, "fixtureName cannot be null.");
+
+        if (!(shardFile instanceof PsiJavaFile))
+        {
+            return false;
+        }
+        Set<String> reserved = reservedFixtures.get(shardFile.getVirtualFile().getUrl());
+        if (reserved != null && reserved.contains(fixtureName))
+        {
+            return true;
+        }
+        for (PsiClass psiClass : ((PsiJavaFile) shardFile).getClasses())
+        {
+            if (psiClass.findMethodsByName(fixtureName, false).length > 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find or create the shard with the provided name.
+     *
+     * @param testDirectory {@link PsiDirectory} containing the shards. Cannot be {@code null}.
+     * @param shardName Name of the shard. Cannot be {@code null}.
+     * @return The shard. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if the shard cannot be found or created.
+     */
+    @NotNull
+    private static PsiClass findOrCreateShard(@NotNull PsiDirectory testDirectory, @NotNull String shardName)
+        throws TestGenerationException
+    {
+        Optional<PsiClass> shardClass = PsiUtility.findOrCreateTestClass(testDirectory, shardName);
+        if (!shardClass.isPresent())
+        {
+            throw new TestGenerationException("Error finding or generating test class " + shardName);
+        }
+        return shardClass.get();
+    }
+
+    /**
+     * Chooses shards as {@link #allocate} would, keeping track of its own choices without creating or reserving
+     * anything, e.g. to preview generation.
+     */
+    final class DryRun
+    {
+        /** {@link PsiDirectory} containing the shards, or {@code null} if it does not exist yet. */
+        private final PsiDirectory testDirectory;
+
+        /** Name of the first shard, e.g. {@code FooTest}. */
+        private final String baseTestClassName;
+
+        /** Number of methods planned for each shard, mapped by shard name. */
+        private final Map<String, Integer> plannedFill = Maps.newHashMap();
+
+        /** Names of fixture methods planned for each shard, mapped by shard name. */
+        private final Map<String, Set<String>> plannedFixtures = Maps.newHashMap();
+
+        /**
+         * Create a new {@link DryRun}.
+         *
+         * @param testDirectory {@link PsiDirectory} containing the shards, or {@code null} if it does not exist yet.
+         * @param baseTestClassName Name of the first shard, e.g. {@code FooTest}. Cannot be {@code null}.
+         *
+         * @throws NullPointerException if {@code baseTestClassName} is {@code null}.
+         */
+        private DryRun(@Nullable PsiDirectory testDirectory, @NotNull String baseTestClassName)
+        {
+            this.testDirectory = testDirectory;
+            this.baseTestClassName =
+                Preconditions.checkNotNull(baseTestClassName, "baseTestClassName cannot be null.");
+        }
+
+        /**
+         * Choose the shard which would receive {@code count} new test methods sharing the provided fixture method,
+         * and plan room for them in it.
+         *
+         * @param count Number of test methods which would be added, not including the fixture method.
+         * @param fixtureName Name of the fixture method the new test methods share, or {@code null} if there is none.
+         * @return The name of the shard, which may not exist yet. Never {@code null}.
+         *
+         * @throws IllegalArgumentException if {@code count} is negative.
+         */
+        @NotNull
+        String allocate(int count, @Nullable String fixtureName)
+        {
+            Preconditions.checkArgument(count >= 0, "count cannot be negative.");
+
+            synchronized (TestShardTracker.this)
+            {
+                String shardName = findShard(testDirectory, baseTestClassName, count, fixtureName, plannedFill,
+                    plannedFixtures);
+                PsiFile shardFile = testDirectory != null ? testDirectory.findFile(shardName + ".java") : null;
+                int needed = getNeeded(shardFile, shardName, count, fixtureName, plannedFixtures);
+                plannedFill.merge(shardName, needed, Integer::sum);
+                if (needed > count)
+                {
+                    plannedFixtures.computeIfAbsent(shardName, key -> Sets.newHashSet()).add(fixtureName);
+                }
+                return shardName;
+            }
+        }
+    }
+
+    /**
+     * Number of methods in a shard as of a given modification of its file.
+     */
+    private static final class FillLevel
+    {
+        /** Modification stamp of the shard's file when the methods were counted. */
+        private final long modificationStamp;
+
+        /** Number of methods in the shard, including any reserved through {@link #allocate}. */
+        private final int methodCount;
+
+        /**
+         * Create a new {@link FillLevel}.
+         *
+         * @param modificationStamp Modification stamp of the shard's file when the methods were counted.
+         * @param methodCount Number of methods in the shard.
+         */
+        private FillLevel(long modificationStamp, int methodCount)
+        {
+            this.modificationStamp = modificationStamp;
+            this.methodCount = methodCount;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.rtoth.boilerplate.templates.TestTemplate;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Project level cache of the {@link TestTemplate}s selected in the {@link GeneratorSettings}, so templates are only
+ * parsed once rather than for every generated test case.
+ */
+public class TestTemplateCache
+{
+    /** {@link Project} for which templates are cached. */
+    private final Project project;
+
+    /** Settings from which the templates are compiled. */
+    private final GeneratorSettings settings;
+
+    /** Compiled templates mapped by the {@link TestTemplateSet} they were compiled for. */
+    private final Map<TestTemplateSet, Templates> templates = new EnumMap<>(TestTemplateSet.class);
+
+    /** {@link GeneratorSettings#getModificationCount()} at the time {@link #templates} were compiled. */
+    private long compiledModificationCount = -1;
+
+    /**
+     * Create a new {@link TestTemplateCache}.
+     *
+     * @param project {@link Project} for which templates are cached. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    public TestTemplateCache(@NotNull Project project)
+    {
+        this.project = Preconditions.checkNotNull(project, "project cannot be null.");
+        this.settings = GeneratorSettings.getInstance(project);
+    }
+
+    /**
+     * Get the {@link TestTemplateCache} for the provided {@link Project}.
+     *
+     * @param project {@link Project} for which to get the cache. Cannot be {@code null}.
+     * @return The {@link TestTemplateCache} for {@code project}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code project} is {@code null}.
+     */
+    @NotNull
+    static TestTemplateCache getInstance(@NotNull Project project)
+    {
+        Preconditions.checkNotNull(project, "project cannot be null.");
+
+        return ServiceManager.getService(project, TestTemplateCache.class);
+    }
+
+    /**
+     * Get the compiled templates for the current settings, compiling them first if the settings have changed.
+     *
+     * @param context Element for which tests are generated, used to choose the templates for
+     *                {@link TestTemplateSet#AUTOMATIC}. Can be {@code null} to choose from the whole project.
+     * @return The compiled templates. Never {@code null}.
+     *
+     * @throws TestGenerationException if the user's custom templates or imports are malformed.
+     */
+    @NotNull
+    synchronized Templates getTemplates(@Nullable PsiElement context) throws TestGenerationException
+    {
+        long modificationCount = settings.getModificationCount();
+        if (compiledModificationCount != modificationCount)
+        {
+            templates.clear();
+            compiledModificationCount = modificationCount;
+        }
+        TestTemplateSet templateSet = resolveTemplateSet(context);
+        Templates compiled = templates.get(templateSet);
+        if (compiled == null)
+        {
+            compiled = compile(settings, templateSet);
+            templates.put(templateSet, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Get the {@link TestTemplateSet} used for tests of the provided element, resolving
+     * {@link TestTemplateSet#AUTOMATIC} to the test framework on its classpath.
+     *
+     * @param context Element for which tests are generated, used to choose the templates for
+     *                {@link TestTemplateSet#AUTOMATIC}. Can be {@code null} to choose from the whole project.
+     * @return The resolved {@link TestTemplateSet}, never {@link TestTemplateSet#AUTOMATIC}. Never {@code null}.
+     */
+    @NotNull
+    private TestTemplateSet resolveTemplateSet(@Nullable PsiElement context)
+    {
+        TestTemplateSet templateSet = settings.getTemplateSet();
+        return templateSet == TestTemplateSet.AUTOMATIC ? TestFrameworkDetector.detect(project, context) : templateSet;
+    }
+
+    /**
+     * Compile the templates selected in the provided settings.
+     *
+     * @param settings Settings from which to compile the templates. Cannot be {@code null}.
+     * @return The compiled templates. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code settings} is {@code null}.
+     * @throws TestGenerationException if the user's custom templates or imports are malformed.
+     */
+    @NotNull
+    static Templates compile(@NotNull GeneratorSettings settings) throws TestGenerationException
+    {
+        Preconditions.checkNotNull(settings, "settings cannot be null.");
+
+        return compile(settings, settings.getTemplateSet());
+    }
+
+    /**
+     * Compile the provided {@link TestTemplateSet}, using the provided settings for the user's custom templates.
+     *
+     * @param settings Settings containing the user's custom templates. Cannot be {@code null}.
+     * @param templateSet {@link TestTemplateSet} to compile. Cannot be {@code null}.
+     * @return The compiled templates. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     * @throws TestGenerationException if the user's custom templates or imports are malformed.
+     */
+    @NotNull
+    private static Templates compile(@NotNull GeneratorSettings settings, @NotNull TestTemplateSet templateSet)
+        throws TestGenerationException
+    {
+        Preconditions.checkNotNull(settings, "settings cannot be null.");
+        Preconditions.checkNotNull(templateSet, "templateSet cannot be null.");
+
+        boolean custom = templateSet == TestTemplateSet.CUSTOM;
+        Iterable<String> importTexts = custom ?
+            Splitter.on('\n').trimResults().omitEmptyStrings().split(settings.getCustomImports()) :
+            templateSet.getImports();
+        try
+        {
+            ImmutableList.Builder<RequiredImport> imports = ImmutableList.builder();
+            for (String importText : importTexts)
+            {
+                imports.add(RequiredImport.parse(importText));
+            }
+            return new Templates(
+                templateSet,
+                TestTemplate.compile(custom ?
+                    settings.getCustomInvalidArgumentTemplate() : templateSet.getInvalidArgumentTemplate()),
+                TestTemplate.compile(templateSet.getValidArgumentsTemplate()),
+                imports.build(),
+                templateSet == TestTemplateSet.JUNIT5 && settings.isConcurrentExecution(),
+                templateSet == TestTemplateSet.JUNIT5 && settings.isTestFactory()
+            );
+        }
+        catch (IllegalArgumentException iae)
+        {
+            throw new TestGenerationException("Invalid " + templateSet + " template: " + iae.getMessage(), iae);
+        }
+    }
+
+    /**
+     * Snapshot of compiled templates and the imports they need.
+     */
+    static final class Templates
+    {
+        /** {@link TestTemplateSet} which was compiled. */
+        private final TestTemplateSet templateSet;
+
+        /** Template for a test which expects an exception for an invalid argument. */
+        private final TestTemplate invalidArgument;
+
+        /** Template for a smoke test which only checks that the invocation succeeds with valid arguments. */
+        private final TestTemplate validArguments;
+
+        /** Imports needed by the templates. */
+        private final ImmutableList<RequiredImport> imports;
+
+        /** Whether test classes should be annotated to run their tests concurrently. */
+        private final boolean concurrentExecution;
+
+        /** Whether constructor tests are rendered as a {@code @TestFactory} streaming from a table. */
+        private final boolean testFactory;
+
+        /**
+         * Create a new {@link Templates}.
+         *
+         * @param templateSet {@link TestTemplateSet} which was compiled. Cannot be {@code null}.
+         * @param invalidArgument Template for a test which expects an exception for an invalid argument. Cannot be
+         *                        {@code null}.
+         * @param validArguments Template for a smoke test with valid arguments. Cannot be {@code null}.
+         * @param imports Imports needed by the templates. Cannot be {@code null}.
+         * @param concurrentExecution Whether test classes should be annotated to run their tests concurrently.
+         * @param testFactory Whether constructor tests are rendered as a {@code @TestFactory} streaming from a table.
+         *
+         * @throws NullPointerException if any parameter is {@code null}.
+         */
+        private Templates(@NotNull TestTemplateSet templateSet, @NotNull TestTemplate invalidArgument,
+                          @NotNull TestTemplate validArguments, @NotNull ImmutableList<RequiredImport> imports,
+                          boolean concurrentExecution, boolean testFactory)
+        {
+            this.templateSet = Preconditions.checkNotNull(templateSet, "templateSet cannot be null.");
+            this.invalidArgument = Preconditions.checkNotNull(invalidArgument, "invalidArgument cannot be null.");
+            this.validArguments = Preconditions.checkNotNull(validArguments, "validArguments cannot be null.");
+            this.imports = Preconditions.checkNotNull(imports, "imports cannot be null.");
+            this.concurrentExecution = concurrentExecution;
+            this.testFactory = testFactory;
+        }
+
+        /**
+         * Get the {@link TestTemplateSet} which was compiled. Templates returned by {@link #getTemplates} never use
+         * {@link TestTemplateSet#AUTOMATIC}, since it is resolved before compiling.
+         *
+         * @return The compiled {@link TestTemplateSet}. Never {@code null}.
+         */
+        @NotNull
+        TestTemplateSet getTemplateSet()
+        {
+            return templateSet;
+        }
+
+        /**
+         * Get the template for a test which expects an exception for an invalid argument.
+         *
+         * @return The template for a test which expects an exception for an invalid argument. Never {@code null}.
+         */
+        @NotNull
+        TestTemplate getInvalidArgument()
+        {
+            return invalidArgument;
+        }
+
+        /**
+         * Get the template for a smoke test which only checks that the invocation succeeds with valid arguments.
+         *
+         * @return The template for a smoke test with valid arguments. Never {@code null}.
+         */
+        @NotNull
+        TestTemplate getValidArguments()
+        {
+            return validArguments;
+        }
+
+        /**
+         * Get the imports needed by the templates.
+         *
+         * @return The imports needed by the templates. Never {@code null}.
+         */
+        @NotNull
+        ImmutableList<RequiredImport> getImports()
+        {
+            return imports;
+        }
+
+        /**
+         * Get whether test classes should be annotated with {@code @Execution(ExecutionMode.CONCURRENT)}.
+         * <p>
+         * Generated test methods only use local variables and static factory methods, so they share no mutable
+         * state and are safe to run concurrently.
+         *
+         * @return {@code true} if test classes should run their tests concurrently, {@code false} otherwise.
+         */
+        boolean isConcurrentExecution()
+        {
+            return concurrentExecution;
+        }
+
+        /**
+         * Get whether constructor tests are rendered as a single {@code @TestFactory} per constructor, which lazily
+         * streams a {@code DynamicTest} for each row of a static table of invalid arguments (see
+         * {@link DynamicTestTable}). Dynamic tests only exist in JUnit 5.
+         *
+         * @return {@code true} if constructor tests are rendered from a table, {@code false} otherwise.
+         */
+        boolean isTestFactory()
+        {
+            return testFactory;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sets of test method templates (and the imports they need) which can be selected by the user.
+ */
+enum TestTemplateSet
+{
+    /** JUnit 4 {@code @Test(expected = ...)}. */
+    JUNIT4(
+        "JUnit 4",
+        "@Test(expected = ${exception}.class)\n" +
+        "public void ${testName}()\n" +
+        "{\n" +
+        "${arrange}" +
+        "    ${invocation};\n" +
+        "}",
+        "@Test\n" +
+        "public void ${testName}()\n" +
+        "{\n" +
+        "${arrange}" +
+        "    ${invocation};\n" +
+        "}",
+        "org.junit.Test"
+    ),
+
+    /** JUnit 4 with AssertJ {@code assertThatThrownBy}. */
+    ASSERTJ(
+        "JUnit 4 + AssertJ",
+        "@Test\n" +
+        "public void ${testName}()\n" +
+        "{\n" +
+        "${arrange}" +
+        "    assertThatThrownBy(() -> ${invocation}).isInstanceOf(${exception}.class);\n" +
+        "}",
+        JUNIT4.validArgumentsTemplate,
+        "org.junit.Test",
+        "static org.assertj.core.api.Assertions.assertThatThrownBy"
+    ),
+
+    /** JUnit 5 {@code assertThrows}. */
+    JUNIT5(
+        "JUnit 5",
+        "@Test\n" +
+        "void ${testName}()\n" +
+        "{\n" +
+        "${arrange}" +
+        "    assertThrows(${exception}.class, () -> ${invocation});\n" +
+        "}",
+        "@Test\n" +
+        "void ${testName}()\n" +
+        "{\n" +
+        "${arrange}" +
+        "    ${invocation};\n" +
+        "}",
+        "org.junit.jupiter.api.Test",
+        "static org.junit.jupiter.api.Assertions.assertThrows"
+    ),
+
+    /**
+     * {@link #JUNIT5} if it is on the module's test classpath, {@link #JUNIT4} otherwise, see
+     * {@link TestFrameworkDetector}. The templates of this set itself are never used.
+     */
+    AUTOMATIC(
+        "Automatic (JUnit 5 if available, otherwise JUnit 4)",
+        JUNIT4.invalidArgumentTemplate,
+        JUNIT4.validArgumentsTemplate,
+        JUNIT4.imports.toArray(new String[0])
+    ),
+
+    /** Template and imports configured by the user. */
+    CUSTOM(
+        "Custom",
+        JUNIT4.invalidArgumentTemplate,
+        JUNIT4.validArgumentsTemplate,
+        JUNIT4.imports.toArray(new String[0])
+    );
+
+    /** Human readable name of this template set. */
+    private final String humanReadable;
+
+    /** Template for a test which expects an exception for an invalid argument. */
+    private final String invalidArgumentTemplate;
+
+    /** Template for a smoke test which only checks that the invocation succeeds with valid arguments. */
+    private final String validArgumentsTemplate;
+
+    /** Imports needed by the templates, in the text form accepted by {@link RequiredImport#parse}. */
+    private final ImmutableList<String> imports;
+
+    /**
+     * Create a new {@link TestTemplateSet}.
+     *
+     * @param humanReadable Human readable name of the template set. Cannot be {@code null}.
+     * @param invalidArgumentTemplate Template for a test which expects an exception for an invalid argument. Cannot
+     *                                be {@code null}.
+     * @param validArgumentsTemplate Template for a smoke test which only checks that the invocation succeeds with
+     *                               valid arguments. Cannot be {@code null}.
+     * @param imports Imports needed by the templates. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    TestTemplateSet(@NotNull String humanReadable, @NotNull String invalidArgumentTemplate,
+                    @NotNull String validArgumentsTemplate, @NotNull String... imports)
+    {
+        this.humanReadable = Preconditions.checkNotNull(humanReadable, "humanReadable cannot be null.");
+        this.invalidArgumentTemplate =
+            Preconditions.checkNotNull(invalidArgumentTemplate, "invalidArgumentTemplate cannot be null.");
+        this.validArgumentsTemplate =
+            Preconditions.checkNotNull(validArgumentsTemplate, "validArgumentsTemplate cannot be null.");
+        this.imports = ImmutableList.copyOf(Preconditions.checkNotNull(imports, "imports cannot be null."));
+    }
+
+    /**
+     * Get the template for a test which expects an exception for an invalid argument.
+     * <p>
+     * For {@link #CUSTOM} this is only the default the user starts from.
+     *
+     * @return The template for a test which expects an exception for an invalid argument. Never {@code null}.
+     */
+    @NotNull
+    String getInvalidArgumentTemplate()
+    {
+        return invalidArgumentTemplate;
+    }
+
+    /**
+     * Get the template for a smoke test which only checks that the invocation succeeds with valid arguments.
+     * <p>
+     * {@link #CUSTOM} always uses the JUnit 4 template, which relies on {@code org.junit.Test} being among the
+     * custom imports.
+     *
+     * @return The template for a smoke test with valid arguments. Never {@code null}.
+     */
+    @NotNull
+    String getValidArgumentsTemplate()
+    {
+        return validArgumentsTemplate;
+    }
+
+    /**
+     * Get the imports needed by the templates, in the text form accepted by {@link RequiredImport#parse}.
+     * <p>
+     * For {@link #CUSTOM} this is only the default the user starts from.
+     *
+     * @return The imports needed by the templates. Never {@code null}.
+     */
+    @NotNull
+    ImmutableList<String> getImports()
+    {
+        return imports;
+    }
+
+    @Override
+    public String toString()
+    {
+        return humanReadable;
+    }
+}
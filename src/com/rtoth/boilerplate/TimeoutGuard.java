@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.google.common.base.Preconditions;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Renders a test which constructs an instance from valid arguments within a time budget, so a constructor which
+ * suddenly becomes expensive (e.g. starts doing I/O) fails its tests, e.g. for JUnit 5
+ * <pre>
+ *     &#64;Test
+ *     void constructor_validArguments_withinTimeout()
+ *     {
+ *         String name = "test";
+ *         for (int i = 0; i &lt; 100; i++)
+ *         {
+ *             new Foo(name);
+ *         }
+ *         assertTimeoutPreemptively(Duration.ofMillis(50), () -&gt; new Foo(name));
+ *     }
+ * </pre>
+ * The constructor is warmed up first, so class loading and JIT compilation are not measured against the budget.
+ */
+final class TimeoutGuard
+{
+    /** Number of constructions run before the timed one. */
+    static final int WARM_UP_ITERATIONS = 100;
+
+    /**
+     * Private constructor for utility class.
+     */
+    private TimeoutGuard()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Render a test which runs the provided invocation within the provided budget.
+     * <p>
+     * Only the final invocation, after the warm-up, is held to the budget. JUnit 5 times it preemptively. JUnit 4 can
+     * only time a whole test method, so the final invocation is timed with {@link System#nanoTime()} instead, and the
+     * method's timeout, covering every invocation including the warm-up, only stops a constructor which hangs.
+     *
+     * @param testName Name of the test method. Cannot be {@code null}.
+     * @param arrange Declarations of the valid arguments, one per line. Cannot be {@code null}.
+     * @param invocation Invocation of the constructor under test. Cannot be {@code null}.
+     * @param budgetMillis Budget for a single invocation, in milliseconds. Must be positive.
+     * @param junit5 Whether to render a JUnit 5 test, or a JUnit 4 test otherwise.
+     * @return The rendered test case. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code budgetMillis} is not positive.
+     * @throws NullPointerException if {@code testName}, {@code arrange} or {@code invocation} is {@code null}.
+     */
+    @NotNull
+    static TestCase render(@NotNull String testName, @NotNull CharSequence arrange, @NotNull CharSequence invocation,
+                           int budgetMillis, boolean junit5)
+    {
+        Preconditions.checkNotNull(testName, "testName cannot be null.");
+        Preconditions.checkNotNull(arrange, "arrange cannot be null.");
+        Preconditions.checkNotNull(invocation, "invocation cannot be null.");
+        Preconditions.checkArgument(budgetMillis > 0, "budgetMillis must be positive.");
+
+        StringBuilder text = new StringBuilder(256);
+        if (junit5)
+        {
+            text.append("@org.junit.jupiter.api.Test\n")
+                .append("void ");
+        }
+        else
+        {
+            text.append("@org.junit.Test(timeout = ")
+                .append((long) budgetMillis * (WARM_UP_ITERATIONS + 1)).append("L)\n")
+                .append("public void ");
+        }
+        text.append(testName).append("()\n")
+            .append("{\n")
+            .append(arrange)
+            .append("    for (int i = 0; i < ").append(WARM_UP_ITERATIONS).append("; i++)\n")
+            .append("    {\n")
+            .append("        ").append(invocation).append(";\n")
+            .append("    }\n");
+        if (junit5)
+        {
+            text.append("    org.junit.jupiter.api.Assertions.assertTimeoutPreemptively(java.time.Duration.ofMillis(")
+                .append(budgetMillis).append("), () -> ").append(invocation).append(");\n");
+        }
+        else
+        {
+            text.append("    long start = System.nanoTime();\n")
+                .append("    ").append(invocation).append(";\n")
+                .append("    long elapsed = System.nanoTime() - start;\n")
+                .append("    if (elapsed > ").append(budgetMillis * 1_000_000L).append("L)\n")
+                .append("    {\n")
+                .append("        throw new AssertionError(\"Construction took \" + elapsed / 1_000_000 + ")
+                .append("\" ms, budget is ").append(budgetMillis).append(" ms\");\n")
+                .append("    }\n");
+        }
+        text.append('}');
+        return new TestCase(testName, text.toString());
+    }
+}
@@ -26,13 +26,20 @@ import com.intellij.psi.PsiType;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.function.Consumer;
+
+import javax.swing.JCheckBox;
+
 /**
  * Contains functionality common to all {@link ParameterRule}s.
  */
 abstract class AbstractParameterRule implements ParameterRule
 {
-    /** {@link PsiType} of the parameter for which this rule applies. */
-    private final PsiType type;
+    /** Canonical text of the type of the parameter for which this rule applies. */
+    private final String typeText;
+
+    /** Presentable text of the type of the parameter for which this rule applies, shown in its UI component. */
+    private final String presentableTypeText;
 
     /** Name of the parameter for which this rule applies. */
     private final String name;
@@ -49,16 +56,30 @@ abstract class AbstractParameterRule implements ParameterRule
      */
     AbstractParameterRule(@NotNull PsiType type, @NotNull String name)
     {
-        this.type = Preconditions.checkNotNull(type, "type cannot be null.");
+        Preconditions.checkNotNull(type, "type cannot be null.");
+        this.typeText = SyntaxOnlyTypes.getCanonicalText(type);
+        this.presentableTypeText = type.getPresentableText();
         this.name = Preconditions.checkNotNull(name, "name cannot be null.");
         Preconditions.checkArgument(name.length() >= 1, "name must be of length >= 1");
     }
 
     @NotNull
     @Override
-    public PsiType getType()
+    public String getTypeText()
+    {
+        return typeText;
+    }
+
+    /**
+     * Get the presentable text of the type of the parameter for which this rule applies, e.g.
+     * {@code List<String>}.
+     *
+     * @return The presentable text of the type of the parameter for which this rule applies. Never {@code null}.
+     */
+    @NotNull
+    String getPresentableTypeText()
     {
-        return type;
+        return presentableTypeText;
     }
 
     @NotNull
@@ -78,4 +99,26 @@ abstract class AbstractParameterRule implements ParameterRule
     {
         return name.substring(0, 1).toUpperCase() + name.substring(1);
     }
+
+    /**
+     * Create a check box showing the provided setting, which reports every change to the provided consumer.
+     *
+     * @param text Text of the check box. Cannot be {@code null}.
+     * @param selected Whether the check box starts out selected.
+     * @param onChange Consumer receiving whether the check box is selected after each change. Cannot be
+     *                 {@code null}.
+     * @return The new check box. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code text} or {@code onChange} is {@code null}.
+     */
+    @NotNull
+    static JCheckBox createCheckBox(@NotNull String text, boolean selected, @NotNull Consumer<Boolean> onChange)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+        Preconditions.checkNotNull(onChange, "onChange cannot be null.");
+
+        JCheckBox checkBox = new JCheckBox(text, selected);
+        checkBox.addItemListener(e -> onChange.accept(checkBox.isSelected()));
+        return checkBox;
+    }
 }
@@ -0,0 +1,680 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate.parameters;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.psi.PsiArrayType;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiWildcardType;
+import com.intellij.ui.DocumentAdapter;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Dimension;
+import java.awt.GridBagConstraints;
+import java.text.Format;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import javax.swing.JCheckBox;
+import javax.swing.JFormattedTextField;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.event.DocumentEvent;
+
+/**
+ * {@link ParameterRule} which can be used for arrays (including varargs, passed as arrays) and the {@code java.util}
+ * collection interfaces {@code Iterable}, {@code Collection}, {@code List}, {@code Set} and {@code Map}.
+ * <p>
+ * Besides {@code null}, it can test empty containers, containers holding a {@code null} element (or key) and
+ * containers just below a minimum or just above a maximum size. Containers of any size are rendered as a single
+ * generating expression, e.g. {@code new int[1000000]} or
+ * {@code new java.util.ArrayList<>(java.util.Collections.nCopies(1000000, "test"))}, so the generated source does
+ * not grow with the size limits.
+ * <p>
+ * Sets and maps need distinct elements (or keys) to reach a size above 1, which can only be generated for
+ * {@link Integer}, {@link Long} and {@link String} elements; size limits are not available for any other.
+ */
+public class ContainerParameterRule extends ObjectParameterRule
+{
+    /** Required {@link Format} for a size in a text field. */
+    private static final Format SIZE_FORMAT = NumberFormat.getIntegerInstance();
+
+    /** Marks a size limit whose input is invalid, as opposed to {@code null} for no limit. */
+    private static final int INVALID_SIZE = -1;
+
+    /** Configuration key for whether empty values are disallowed. */
+    private static final String DISALLOW_EMPTY_KEY = "disallowEmpty";
+
+    /** Configuration key for whether null elements are disallowed. */
+    private static final String DISALLOW_NULL_ELEMENTS_KEY = "disallowNullElements";
+
+    /** Configuration key for the minimum size. */
+    private static final String MIN_SIZE_KEY = "minSize";
+
+    /** Configuration key for the maximum size. */
+    private static final String MAX_SIZE_KEY = "maxSize";
+
+    /** Shapes of collection parameters mapped by the qualified name of their interface. */
+    private static final ImmutableMap<String, Shape> COLLECTION_SHAPES = ImmutableMap.<String, Shape>builder()
+        .put("java.lang.Iterable", Shape.LIST)
+        .put("java.util.Collection", Shape.LIST)
+        .put("java.util.List", Shape.LIST)
+        .put("java.util.Set", Shape.SET)
+        .put("java.util.Map", Shape.MAP)
+        .build();
+
+    /** Lambdas turning an {@code int} into a distinct element, mapped by the qualified name of the element type. */
+    private static final ImmutableMap<String, String> DISTINCT_ELEMENTS = ImmutableMap.of(
+        "java.lang.Integer", "i -> i",
+        "java.lang.Long", "i -> (long) i",
+        "java.lang.String", "i -> String.valueOf(i)"
+    );
+
+    /** Shape of the parameter. */
+    private final Shape shape;
+
+    /** Text of an expression creating a valid element (or map key). */
+    private final String elementText;
+
+    /** Text of an expression creating a valid map value, only used for maps. */
+    private final String valueText;
+
+    /** Lambda turning an {@code int} into a distinct element (or key), or {@code null} if there is none. */
+    @Nullable
+    private final String distinctElements;
+
+    /** Canonical text of the erased innermost component type of an array, or {@code null} if not an array. */
+    @Nullable
+    private final String arrayComponentText;
+
+    /** Number of dimensions of an array, or 0 if not an array. */
+    private final int arrayDimensions;
+
+    /** Whether the container can hold null elements (or map keys), which primitive arrays cannot. */
+    private final boolean nullElementsPossible;
+
+    /** Whether size limits are available, which needs distinct elements for sets and maps. */
+    private final boolean sizeLimits;
+
+    /** Whether empty values are disallowed for this parameter. */
+    private boolean disallowEmpty;
+
+    /** Whether null elements (or map keys) are disallowed for this parameter. */
+    private boolean disallowNullElements;
+
+    /** Minimum size, {@code null} if there is none, or {@link #INVALID_SIZE} if the input is invalid. */
+    @Nullable
+    private Integer minSize;
+
+    /** Maximum size, {@code null} if there is none, or {@link #INVALID_SIZE} if the input is invalid. */
+    @Nullable
+    private Integer maxSize;
+
+    /**
+     * Create a new {@link ContainerParameterRule}.
+     *
+     * @param type {@link PsiType} of the parameter for which this rule applies. Cannot be {@code null} and must be
+     *             supported, see {@link #isSupported(PsiType)}.
+     * @param name Name of the parameter for which this rule applies. Cannot be {@code null} and must have a length of
+     *             at least 1.
+     *
+     * @throws IllegalArgumentException if {@code type} is not supported or {@code name}'s length is &lt; 1.
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    public ContainerParameterRule(@NotNull PsiType type, @NotNull String name)
+    {
+        super(type, name);
+        Preconditions.checkArgument(isSupported(type), "type must be an array or collection.");
+
+        // Only the text of the types is kept, so the rule never holds on to the PSI it was built from.
+        PsiType elementType;
+        PsiType valueType;
+        if (type instanceof PsiArrayType)
+        {
+            PsiArrayType arrayType = (PsiArrayType) type;
+            this.shape = Shape.ARRAY;
+            this.arrayComponentText = SyntaxOnlyTypes.getErasedCanonicalText(arrayType.getDeepComponentType());
+            this.arrayDimensions = arrayType.getArrayDimensions();
+            elementType = arrayType.getComponentType();
+            valueType = null;
+        }
+        else
+        {
+            this.shape = COLLECTION_SHAPES.get(SyntaxOnlyTypes.getErasedCanonicalText(type));
+            this.arrayComponentText = null;
+            this.arrayDimensions = 0;
+            PsiType[] parameters = type instanceof PsiClassType ?
+                ((PsiClassType) type).getParameters() : PsiType.EMPTY_ARRAY;
+            elementType = parameters.length > 0 ? getBound(parameters[0]) : null;
+            valueType = shape == Shape.MAP && parameters.length > 1 ? getBound(parameters[1]) : null;
+        }
+        this.elementText = renderElement(elementType);
+        this.valueText = renderElement(valueType);
+        this.distinctElements = elementType != null ?
+            DISTINCT_ELEMENTS.get(SyntaxOnlyTypes.getErasedCanonicalText(elementType)) : null;
+
+        // Primitive arrays cannot hold null, and sizes above 1 need distinct elements for sets and maps.
+        this.nullElementsPossible = !(elementType instanceof PsiPrimitiveType);
+        this.sizeLimits = shape == Shape.ARRAY || shape == Shape.LIST || distinctElements != null;
+    }
+
+    @Override
+    void addUiComponents(@NotNull JPanel uiComponent)
+    {
+        super.addUiComponents(uiComponent);
+
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.anchor = GridBagConstraints.CENTER;
+        constraints.gridwidth = 2;
+        constraints.gridy = 0;
+        constraints.weightx = 0.5;
+        constraints.gridx = 4;
+        uiComponent.add(createCheckBox("Disallow empty", disallowEmpty, selected -> disallowEmpty = selected),
+            constraints);
+        constraints.gridx = 6;
+        JCheckBox nullElements = createCheckBox("Disallow null elements", disallowNullElements,
+            selected -> disallowNullElements = selected);
+        nullElements.setEnabled(nullElementsPossible);
+        uiComponent.add(nullElements, constraints);
+        constraints.gridwidth = 1;
+        constraints.gridx = 8;
+        uiComponent.add(new JLabel("Min size: "), constraints);
+        constraints.gridx = 9;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        uiComponent.add(createSizeField(minSize, size -> minSize = size), constraints);
+        constraints.gridx = 10;
+        constraints.fill = GridBagConstraints.NONE;
+        uiComponent.add(new JLabel("Max size: "), constraints);
+        constraints.gridx = 11;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        uiComponent.add(createSizeField(maxSize, size -> maxSize = size), constraints);
+    }
+
+    /**
+     * Check whether the provided type can be used with a {@link ContainerParameterRule}.
+     *
+     * @param type {@link PsiType} to check. Cannot be {@code null}.
+     * @return {@code true} if {@code type} is an array or one of the supported collection interfaces, {@code false}
+     *         otherwise.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    public static boolean isSupported(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        return type instanceof PsiArrayType ||
+            COLLECTION_SHAPES.containsKey(SyntaxOnlyTypes.getErasedCanonicalText(type));
+    }
+
+    /**
+     * Render an expression creating a new array of the provided type, e.g. {@code new int[10][]}.
+     *
+     * @param type Type of the array. Cannot be {@code null}.
+     * @param size Text of the size of the array. Cannot be {@code null}.
+     * @return The rendered expression. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    static String renderNewArray(@NotNull PsiArrayType type, @NotNull String size)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+        Preconditions.checkNotNull(size, "size cannot be null.");
+
+        // Generic arrays cannot be created, so the component type is always erased.
+        return renderNewArray(SyntaxOnlyTypes.getErasedCanonicalText(type.getDeepComponentType()),
+            type.getArrayDimensions(), size);
+    }
+
+    /**
+     * Render an expression creating a new array, e.g. {@code new int[10][]}.
+     *
+     * @param componentText Canonical text of the erased innermost component type of the array. Cannot be
+     *                      {@code null}.
+     * @param dimensions Number of dimensions of the array. Must be at least 1.
+     * @param size Text of the size of the array. Cannot be {@code null}.
+     * @return The rendered expression. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code componentText} or {@code size} is {@code null}.
+     */
+    @NotNull
+    private static String renderNewArray(@NotNull String componentText, int dimensions, @NotNull String size)
+    {
+        Preconditions.checkNotNull(componentText, "componentText cannot be null.");
+        Preconditions.checkNotNull(size, "size cannot be null.");
+
+        return "new " + componentText + "[" + size + "]" + Strings.repeat("[]", dimensions - 1);
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        return super.isValid() &&
+            !Objects.equals(minSize, INVALID_SIZE) &&
+            !Objects.equals(maxSize, INVALID_SIZE) &&
+            (minSize == null || maxSize == null || minSize <= maxSize);
+    }
+
+    @NotNull
+    @Override
+    public ImmutableList<ParameterInitializer> getValidInitializers()
+    {
+        Preconditions.checkArgument(isValid(), "Must be valid when getting initializers!");
+
+        int size = Math.max(minSize != null ? minSize : 0, disallowEmpty ? 1 : 0);
+        return ImmutableList.of(
+            new ParameterInitializer(
+                "valid" + getCapitalizedName(),
+                renderOfSize(size)
+            )
+        );
+    }
+
+    @NotNull
+    @Override
+    public ImmutableMap<ParameterInitializer, Class<? extends Exception>> getInvalidInitializers()
+    {
+        Preconditions.checkArgument(isValid(), "Must be valid when getting initializers!");
+
+        ImmutableMap.Builder<ParameterInitializer, Class<? extends Exception>> initializers = ImmutableMap.builder();
+        initializers.putAll(super.getInvalidInitializers());
+        Integer min = minSize;
+        Integer max = maxSize;
+        // A minimum of 1 already covers the empty case.
+        if (disallowEmpty && (min == null || min != 1))
+        {
+            initializers.put(
+                new ParameterInitializer(
+                    "empty" + getCapitalizedName(),
+                    renderOfSize(0)
+                ),
+                IllegalArgumentException.class
+            );
+        }
+        if (disallowNullElements && nullElementsPossible)
+        {
+            initializers.put(
+                new ParameterInitializer(
+                    "nullElementIn" + getCapitalizedName(),
+                    renderWithNullElement()
+                ),
+                NullPointerException.class
+            );
+        }
+        if (min != null && min > 0 && sizeLimits)
+        {
+            initializers.put(
+                new ParameterInitializer(
+                    getName() + "SizeLessThan" + min,
+                    renderOfSize(min - 1)
+                ),
+                IllegalArgumentException.class
+            );
+        }
+        if (max != null && max < Integer.MAX_VALUE && sizeLimits)
+        {
+            initializers.put(
+                new ParameterInitializer(
+                    getName() + "SizeGreaterThan" + max,
+                    renderOfSize(max + 1)
+                ),
+                IllegalArgumentException.class
+            );
+        }
+        return initializers.build();
+    }
+
+    @NotNull
+    @Override
+    public ImmutableMap<String, String> getConfiguration()
+    {
+        ImmutableMap.Builder<String, String> configuration = ImmutableMap.<String, String>builder()
+            .putAll(super.getConfiguration())
+            .put(DISALLOW_EMPTY_KEY, String.valueOf(disallowEmpty))
+            .put(DISALLOW_NULL_ELEMENTS_KEY, String.valueOf(disallowNullElements));
+        if (minSize != null && minSize != INVALID_SIZE)
+        {
+            configuration.put(MIN_SIZE_KEY, String.valueOf(minSize));
+        }
+        if (maxSize != null && maxSize != INVALID_SIZE)
+        {
+            configuration.put(MAX_SIZE_KEY, String.valueOf(maxSize));
+        }
+        return configuration.build();
+    }
+
+    @Override
+    public void applyConfiguration(@NotNull Map<String, String> configuration)
+    {
+        super.applyConfiguration(configuration);
+
+        String value = configuration.get(DISALLOW_EMPTY_KEY);
+        if (value != null)
+        {
+            disallowEmpty = Boolean.parseBoolean(value);
+        }
+        value = configuration.get(DISALLOW_NULL_ELEMENTS_KEY);
+        if (value != null)
+        {
+            disallowNullElements = Boolean.parseBoolean(value);
+        }
+        minSize = applySize(minSize, configuration.get(MIN_SIZE_KEY));
+        maxSize = applySize(maxSize, configuration.get(MAX_SIZE_KEY));
+    }
+
+    /**
+     * Check whether a container of the provided size is valid for the current configuration, and can be created.
+     *
+     * @param size Size to check.
+     * @return {@code true} if a container of {@code size} is valid and can be created, {@code false} otherwise.
+     */
+    public boolean isValidSize(int size)
+    {
+        return isValid() && size >= 0 &&
+            (size <= 1 || sizeLimits) &&
+            (size > 0 || !disallowEmpty) &&
+            (minSize == null || size >= minSize) &&
+            (maxSize == null || size <= maxSize);
+    }
+
+    /**
+     * Get the text of an expression creating a valid container of the provided size, holding valid elements.
+     *
+     * @param size Size of the container. Must be valid, see {@link #isValidSize(int)}.
+     * @return The text of the expression. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code size} is not valid.
+     */
+    @NotNull
+    public String getInitializerTextOfSize(int size)
+    {
+        Preconditions.checkArgument(isValidSize(size), "size must be valid.");
+
+        return renderOfSize(size);
+    }
+
+    /**
+     * Render an expression creating a container of the provided size.
+     *
+     * @param size Size of the container. Cannot be negative, and cannot be greater than 1 unless size limits are
+     *             available.
+     * @return The rendered expression. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code size} is negative.
+     */
+    @NotNull
+    private String renderOfSize(int size)
+    {
+        Preconditions.checkArgument(size >= 0, "size cannot be negative.");
+
+        switch (shape)
+        {
+            case ARRAY:
+            {
+                if (size == 0 || !nullElementsPossible)
+                {
+                    return renderNewArray(arrayComponentText, arrayDimensions, String.valueOf(size));
+                }
+                return "java.util.Collections.nCopies(" + size + ", " + elementText + ").toArray(" +
+                    renderNewArray(arrayComponentText, arrayDimensions, "0") + ")";
+            }
+            case LIST:
+            {
+                return size == 0 ?
+                    "new java.util.ArrayList<>()" :
+                    "new java.util.ArrayList<>(java.util.Collections.nCopies(" + size + ", " + elementText + "))";
+            }
+            case SET:
+            {
+                if (size == 0)
+                {
+                    return "new java.util.HashSet<>()";
+                }
+                return size == 1 || distinctElements == null ?
+                    "new java.util.HashSet<>(java.util.Collections.singleton(" + elementText + "))" :
+                    "java.util.stream.IntStream.range(0, " + size + ").mapToObj(" + distinctElements +
+                        ").collect(java.util.stream.Collectors.toCollection(java.util.HashSet::new))";
+            }
+            case MAP:
+            {
+                if (size == 0)
+                {
+                    return "new java.util.HashMap<>()";
+                }
+                return size == 1 || distinctElements == null ?
+                    "new java.util.HashMap<>(java.util.Collections.singletonMap(" + elementText + ", " + valueText +
+                        "))" :
+                    "java.util.stream.IntStream.range(0, " + size + ").mapToObj(" + distinctElements +
+                        ").collect(java.util.stream.Collectors.toMap(k -> k, k -> " + valueText +
+                        ", (a, b) -> a, java.util.HashMap::new))";
+            }
+            default:
+            {
+                throw new IllegalStateException("Unknown shape!: " + shape);
+            }
+        }
+    }
+
+    /**
+     * Render an expression creating a container holding a single {@code null} element (or key).
+     *
+     * @return The rendered expression. Never {@code null}.
+     */
+    @NotNull
+    private String renderWithNullElement()
+    {
+        switch (shape)
+        {
+            case ARRAY:
+            {
+                return renderNewArray(arrayComponentText, arrayDimensions, "1");
+            }
+            case LIST:
+            {
+                return "new java.util.ArrayList<>(java.util.Collections.singletonList(null))";
+            }
+            case SET:
+            {
+                return "new java.util.HashSet<>(java.util.Collections.singleton(null))";
+            }
+            case MAP:
+            {
+                return "new java.util.HashMap<>(java.util.Collections.singletonMap(null, " +
+                    valueText + "))";
+            }
+            default:
+            {
+                throw new IllegalStateException("Unknown shape!: " + shape);
+            }
+        }
+    }
+
+    /**
+     * Render an expression creating a valid element of the provided type.
+     *
+     * @param type Type of the element. Can be {@code null} if unknown.
+     * @return The rendered expression. Never {@code null}.
+     */
+    @NotNull
+    private static String renderElement(@Nullable PsiType type)
+    {
+        return type != null ? InstanceFactoryRegistry.getInstanceText(type) : "new java.lang.Object()";
+    }
+
+    /**
+     * Get the bound of the provided type argument, e.g. {@code Foo} for {@code ? extends Foo}.
+     *
+     * @param typeArgument Type argument of a collection. Cannot be {@code null}.
+     * @return The bound of {@code typeArgument}, or {@code null} if it is unbounded. Never a wildcard.
+     *
+     * @throws NullPointerException if {@code typeArgument} is {@code null}.
+     */
+    @Nullable
+    private static PsiType getBound(@NotNull PsiType typeArgument)
+    {
+        Preconditions.checkNotNull(typeArgument, "typeArgument cannot be null.");
+
+        if (typeArgument instanceof PsiWildcardType)
+        {
+            // Super bounds accept anything assignable to the bound, so the bound itself works either way.
+            return ((PsiWildcardType) typeArgument).getBound();
+        }
+        return typeArgument;
+    }
+
+    /**
+     * Create a text field editing a size limit, which reports every change to the provided consumer.
+     *
+     * @param size Size limit shown initially, {@code null} if there is none, or {@link #INVALID_SIZE}.
+     * @param onChange Consumer receiving the size limit after each change: {@code null} if there is none, or
+     *                 {@link #INVALID_SIZE} if the input is invalid. Cannot be {@code null}.
+     * @return The new text field, only enabled if size limits are available. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code onChange} is {@code null}.
+     */
+    @NotNull
+    private JFormattedTextField createSizeField(@Nullable Integer size, @NotNull Consumer<Integer> onChange)
+    {
+        Preconditions.checkNotNull(onChange, "onChange cannot be null.");
+
+        JFormattedTextField field = new JFormattedTextField(SIZE_FORMAT);
+        if (size != null && size != INVALID_SIZE)
+        {
+            field.setText(SIZE_FORMAT.format(size));
+        }
+        field.getDocument().addDocumentListener(new DocumentAdapter()
+        {
+            @Override
+            protected void textChanged(DocumentEvent e)
+            {
+                onChange.accept(parseSizeText(field.getText()));
+            }
+        });
+        field.setMinimumSize(new Dimension(80, (int) field.getPreferredSize().getHeight()));
+        field.setEnabled(sizeLimits);
+        return field;
+    }
+
+    /**
+     * Parse a size limit as shown in a size field, i.e. formatted by {@link #SIZE_FORMAT} for the default locale.
+     * <p>
+     * {@link #SIZE_FORMAT} is not thread safe, so this must be called from the event dispatch thread.
+     *
+     * @param text Text of the size limit. Cannot be {@code null}.
+     * @return The size limit, {@code null} if {@code text} is blank, or {@link #INVALID_SIZE} if it is invalid or
+     *         negative.
+     *
+     * @throws NullPointerException if {@code text} is {@code null}.
+     */
+    @Nullable
+    private static Integer parseSizeText(@NotNull String text)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+
+        String trimmed = text.trim();
+        if (trimmed.isEmpty())
+        {
+            return null;
+        }
+        // The whole text must be a number, e.g. "12abc" is not a size.
+        ParsePosition position = new ParsePosition(0);
+        Number size = (Number) SIZE_FORMAT.parseObject(trimmed, position);
+        if (size == null || position.getIndex() != trimmed.length() ||
+            size.longValue() < 0 || size.longValue() > Integer.MAX_VALUE)
+        {
+            return INVALID_SIZE;
+        }
+        return size.intValue();
+    }
+
+    /**
+     * Parse a size limit as stored in a configuration, which is never formatted.
+     *
+     * @param text Text of the size limit. Cannot be {@code null}.
+     * @return The size limit, or {@link #INVALID_SIZE} if {@code text} is invalid or negative.
+     *
+     * @throws NullPointerException if {@code text} is {@code null}.
+     */
+    private static int parseConfiguredSize(@NotNull String text)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+
+        int result;
+        try
+        {
+            result = Integer.parseInt(text);
+        }
+        catch (NumberFormatException nfe)
+        {
+            result = INVALID_SIZE;
+        }
+        return result >= 0 ? result : INVALID_SIZE;
+    }
+
+    /**
+     * Restore a size limit from a configuration.
+     *
+     * @param size Current size limit, {@code null} if there is none, or {@link #INVALID_SIZE}.
+     * @param configuredValue Configured size limit, or {@code null} if none was configured.
+     * @return The restored size limit, or {@code size} if none or an invalid one was configured.
+     */
+    @Nullable
+    private Integer applySize(@Nullable Integer size, @Nullable String configuredValue)
+    {
+        // Size limits which are not available stay blank.
+        if (configuredValue == null || !sizeLimits)
+        {
+            return size;
+        }
+        int configured = parseConfiguredSize(configuredValue);
+        return configured != INVALID_SIZE ? configured : size;
+    }
+
+    /**
+     * Shape of a container parameter, deciding how its values are created.
+     */
+    private enum Shape
+    {
+        /** An array, created with {@code new}. */
+        ARRAY,
+
+        /** An {@code Iterable}, {@code Collection} or {@code List}, created as an {@code ArrayList}. */
+        LIST,
+
+        /** A {@code Set}, created as a {@code HashSet}. */
+        SET,
+
+        /** A {@code Map}, created as a {@code HashMap}. */
+        MAP
+    }
+}
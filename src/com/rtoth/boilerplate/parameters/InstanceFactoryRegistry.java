@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate.parameters;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.intellij.psi.PsiArrayType;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiEnumConstant;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds cheap ways to construct real, valid instances of parameter types, so generated tests only fall back to
+ * {@code mock(Type.class)} when nothing better is available.
+ * <p>
+ * In order of preference, an instance is created from:
+ * <ol>
+ *     <li>a well known literal for primitives, their boxes, {@code java.time} types and collection interfaces, or
+ *     an empty array</li>
+ *     <li>the first constant of an enum</li>
+ *     <li>a public no-argument constructor</li>
+ *     <li>a public static no-argument factory method returning the type</li>
+ *     <li>a public static {@code builder()} whose builder has a no-argument {@code build()}</li>
+ *     <li>a public constructor taking only primitives, their boxes and {@link String}s</li>
+ * </ol>
+ * Non-static inner classes always fall back to a mock, as they need an instance of their enclosing class. What was
+ * discovered for each class is cached on the class itself until the project's Java structure changes. While the
+ * project is being indexed only well known literals are used.
+ */
+public final class InstanceFactoryRegistry
+{
+    /** Marks a class for which no real construction could be found, as cached values cannot be {@code null}. */
+    private static final String NO_FACTORY = "";
+
+    /** Well known literals for types which cannot (or should not) be discovered, mapped by qualified name. */
+    private static final ImmutableMap<String, String> KNOWN_LITERALS = ImmutableMap.<String, String>builder()
+        .put("java.lang.Object", "new java.lang.Object()")
+        .put("java.lang.String", "\"test\"")
+        .put("java.lang.CharSequence", "\"test\"")
+        .put("java.lang.Boolean", "false")
+        .put("java.lang.Character", "'a'")
+        .put("java.lang.Byte", "(byte) 0")
+        .put("java.lang.Short", "(short) 0")
+        .put("java.lang.Integer", "0")
+        .put("java.lang.Long", "0L")
+        .put("java.lang.Float", "0.0f")
+        .put("java.lang.Double", "0.0")
+        .put("java.math.BigDecimal", "java.math.BigDecimal.ZERO")
+        .put("java.math.BigInteger", "java.math.BigInteger.ZERO")
+        .put("java.util.UUID", "new java.util.UUID(0L, 0L)")
+        .put("java.util.Optional", "java.util.Optional.empty()")
+        .put("java.time.Clock", "java.time.Clock.systemUTC()")
+        .put("java.time.Duration", "java.time.Duration.ZERO")
+        .put("java.time.Instant", "java.time.Instant.EPOCH")
+        .put("java.time.LocalDate", "java.time.LocalDate.of(2000, 1, 1)")
+        .put("java.time.LocalDateTime", "java.time.LocalDateTime.of(2000, 1, 1, 0, 0)")
+        .put("java.time.LocalTime", "java.time.LocalTime.NOON")
+        .put("java.time.OffsetDateTime",
+            "java.time.OffsetDateTime.of(2000, 1, 1, 0, 0, 0, 0, java.time.ZoneOffset.UTC)")
+        .put("java.time.Period", "java.time.Period.ZERO")
+        .put("java.time.ZoneId", "java.time.ZoneOffset.UTC")
+        .put("java.time.ZoneOffset", "java.time.ZoneOffset.UTC")
+        .put("java.time.ZonedDateTime",
+            "java.time.ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, java.time.ZoneOffset.UTC)")
+        .put("java.lang.Iterable", "java.util.Collections.emptyList()")
+        .put("java.util.Collection", "java.util.Collections.emptyList()")
+        .put("java.util.List", "java.util.Collections.emptyList()")
+        .put("java.util.Set", "java.util.Collections.emptySet()")
+        .put("java.util.SortedSet", "new java.util.TreeSet<>()")
+        .put("java.util.NavigableSet", "new java.util.TreeSet<>()")
+        .put("java.util.Map", "java.util.Collections.emptyMap()")
+        .put("java.util.SortedMap", "new java.util.TreeMap<>()")
+        .put("java.util.NavigableMap", "new java.util.TreeMap<>()")
+        .put("java.util.Queue", "new java.util.ArrayDeque<>()")
+        .put("java.util.Deque", "new java.util.ArrayDeque<>()")
+        .build();
+
+    /**
+     * Private constructor for utility class.
+     */
+    private InstanceFactoryRegistry()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Get the text of an expression creating a valid instance of the provided type.
+     *
+     * @param type {@link PsiType} for which to get an instance. Cannot be {@code null}.
+     * @return The text of an expression creating an instance of {@code type}, which falls back to
+     *         {@code mock(Type.class)} if no cheaper construction is known. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @NotNull
+    public static String getInstanceText(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        String instanceText = findInstanceText(type);
+        return instanceText != null ?
+            instanceText : "mock(" + SyntaxOnlyTypes.getErasedCanonicalText(type) + ".class)";
+    }
+
+    /**
+     * Find the text of an expression creating a real, valid instance of the provided type.
+     *
+     * @param type {@link PsiType} for which to get an instance. Cannot be {@code null}.
+     * @return The text of an expression creating an instance of {@code type}, or {@code null} if no real
+     *         construction is known.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @Nullable
+    public static String findInstanceText(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        if (type instanceof PsiPrimitiveType)
+        {
+            return getPrimitiveLiteral((PsiPrimitiveType) type);
+        }
+        if (type instanceof PsiArrayType)
+        {
+            return ContainerParameterRule.renderNewArray((PsiArrayType) type, "0");
+        }
+
+        String knownLiteral = KNOWN_LITERALS.get(SyntaxOnlyTypes.getErasedCanonicalText(type));
+        if (knownLiteral != null)
+        {
+            return knownLiteral;
+        }
+        // Discovery needs to resolve the class and its members, which is not possible while indexing.
+        if (SyntaxOnlyTypes.isDumb(type))
+        {
+            return null;
+        }
+
+        PsiClass psiClass = type instanceof PsiClassType ? ((PsiClassType) type).resolve() : null;
+        if (psiClass == null)
+        {
+            return null;
+        }
+        String discovered = CachedValuesManager.getCachedValue(psiClass, () ->
+            CachedValueProvider.Result.create(discover(psiClass),
+                PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT)
+        );
+        return NO_FACTORY.equals(discovered) ? null : discovered;
+    }
+
+    /**
+     * Discover a cheap construction of the provided class, see {@link InstanceFactoryRegistry}.
+     *
+     * @param psiClass {@link PsiClass} for which to discover a construction. Cannot be {@code null}.
+     * @return The text of an expression creating an instance of {@code psiClass}, or {@link #NO_FACTORY}. Never
+     *         {@code null}.
+     *
+     * @throws NullPointerException if {@code psiClass} is {@code null}.
+     */
+    @NotNull
+    private static String discover(@NotNull PsiClass psiClass)
+    {
+        Preconditions.checkNotNull(psiClass, "psiClass cannot be null.");
+
+        String qualifiedName = psiClass.getQualifiedName();
+        if (qualifiedName == null)
+        {
+            return NO_FACTORY;
+        }
+
+        if (psiClass.isEnum())
+        {
+            for (PsiField field : psiClass.getFields())
+            {
+                if (field instanceof PsiEnumConstant)
+                {
+                    return qualifiedName + "." + field.getName();
+                }
+            }
+            return NO_FACTORY;
+        }
+        if (psiClass.isInterface() || psiClass.hasModifierProperty(PsiModifier.ABSTRACT))
+        {
+            return NO_FACTORY;
+        }
+        // Inner classes can only be created through an instance of their enclosing class.
+        if (psiClass.getContainingClass() != null && !psiClass.hasModifierProperty(PsiModifier.STATIC))
+        {
+            return NO_FACTORY;
+        }
+
+        String diamond = psiClass.hasTypeParameters() ? "<>" : "";
+        PsiMethod[] constructors = psiClass.getConstructors();
+        if (constructors.length == 0 && psiClass.hasModifierProperty(PsiModifier.PUBLIC))
+        {
+            return "new " + qualifiedName + diamond + "()";
+        }
+        for (PsiMethod constructor : constructors)
+        {
+            if (constructor.hasModifierProperty(PsiModifier.PUBLIC) &&
+                constructor.getParameterList().getParametersCount() == 0)
+            {
+                return "new " + qualifiedName + diamond + "()";
+            }
+        }
+
+        for (PsiMethod method : psiClass.getMethods())
+        {
+            if (isPublicStaticNoArgument(method) && returns(method, psiClass))
+            {
+                return qualifiedName + "." + method.getName() + "()";
+            }
+        }
+
+        for (PsiMethod method : psiClass.getMethods())
+        {
+            if (isPublicStaticNoArgument(method) &&
+                (method.getName().equals("builder") || method.getName().equals("newBuilder")))
+            {
+                PsiClass builderClass = PsiUtil.resolveClassInType(method.getReturnType());
+                if (builderClass != null)
+                {
+                    for (PsiMethod build : builderClass.findMethodsByName("build", true))
+                    {
+                        if (build.hasModifierProperty(PsiModifier.PUBLIC) &&
+                            build.getParameterList().getParametersCount() == 0 && returns(build, psiClass))
+                        {
+                            return qualifiedName + "." + method.getName() + "().build()";
+                        }
+                    }
+                }
+            }
+        }
+
+        for (PsiMethod constructor : constructors)
+        {
+            if (constructor.hasModifierProperty(PsiModifier.PUBLIC))
+            {
+                StringBuilder construction = new StringBuilder("new ").append(qualifiedName).append(diamond)
+                    .append('(');
+                boolean first = true;
+                boolean simple = true;
+                for (PsiParameter parameter : constructor.getParameterList().getParameters())
+                {
+                    String literal = getSimpleLiteral(parameter.getType());
+                    if (literal == null)
+                    {
+                        simple = false;
+                        break;
+                    }
+                    if (!first)
+                    {
+                        construction.append(", ");
+                    }
+                    construction.append(literal);
+                    first = false;
+                }
+                if (simple)
+                {
+                    return construction.append(')').toString();
+                }
+            }
+        }
+
+        return NO_FACTORY;
+    }
+
+    /**
+     * Get whether the provided method is public, static and takes no arguments.
+     *
+     * @param method {@link PsiMethod} to check. Cannot be {@code null}.
+     * @return {@code true} if {@code method} is public, static and takes no arguments, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code method} is {@code null}.
+     */
+    private static boolean isPublicStaticNoArgument(@NotNull PsiMethod method)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+
+        return method.hasModifierProperty(PsiModifier.PUBLIC) && method.hasModifierProperty(PsiModifier.STATIC) &&
+            method.getParameterList().getParametersCount() == 0;
+    }
+
+    /**
+     * Get whether the provided method returns an instance of exactly the provided class.
+     *
+     * @param method {@link PsiMethod} to check. Cannot be {@code null}.
+     * @param psiClass Expected {@link PsiClass} of the returned instance. Cannot be {@code null}.
+     * @return {@code true} if {@code method} returns an instance of {@code psiClass}, {@code false} otherwise.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static boolean returns(@NotNull PsiMethod method, @NotNull PsiClass psiClass)
+    {
+        Preconditions.checkNotNull(method, "method cannot be null.");
+        Preconditions.checkNotNull(psiClass, "psiClass cannot be null.");
+
+        PsiClass returnedClass = PsiUtil.resolveClassInType(method.getReturnType());
+        return returnedClass != null && psiClass.getManager().areElementsEquivalent(returnedClass, psiClass);
+    }
+
+    /**
+     * Get a literal for the provided type if it is a primitive, a boxed primitive or a {@link String}.
+     *
+     * @param type {@link PsiType} for which to get a literal. Cannot be {@code null}.
+     * @return The literal text, or {@code null} if {@code type} is not a simple type.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @Nullable
+    private static String getSimpleLiteral(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        if (type instanceof PsiPrimitiveType)
+        {
+            return getPrimitiveLiteral((PsiPrimitiveType) type);
+        }
+        if (type instanceof PsiArrayType)
+        {
+            return ContainerParameterRule.renderNewArray((PsiArrayType) type, "0");
+        }
+        String canonicalText = type.getCanonicalText();
+        return canonicalText.startsWith("java.lang.") ? KNOWN_LITERALS.get(canonicalText) : null;
+    }
+
+    /**
+     * Get a literal of the provided primitive type.
+     *
+     * @param type {@link PsiPrimitiveType} for which to get a literal. Cannot be {@code null}.
+     * @return The literal text, or {@code null} if {@code type} is {@code void}.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @Nullable
+    private static String getPrimitiveLiteral(@NotNull PsiPrimitiveType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        String boxedName = type.getBoxedTypeName();
+        return boxedName != null ? KNOWN_LITERALS.get(boxedName) : null;
+    }
+}
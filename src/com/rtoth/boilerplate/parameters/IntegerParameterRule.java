@@ -24,17 +24,23 @@ package com.rtoth.boilerplate.parameters;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.psi.PsiType;
+import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.JBColor;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.text.Format;
 import java.text.NumberFormat;
+import java.util.Map;
 
 import javax.swing.JFormattedTextField;
+import javax.swing.JPanel;
+import javax.swing.event.DocumentEvent;
 
 /**
  * {@link ParameterRule} which can be used for {@code int} values.
@@ -44,8 +50,12 @@ public class IntegerParameterRule extends NumericParameterRule
     /** Required {@link Format} for an integer in a text field. */
     private static final Format INTEGER_FORMAT = NumberFormat.getIntegerInstance();
 
-    /** Text field holding the current constraint value. */
-    private final JFormattedTextField value = new JFormattedTextField(INTEGER_FORMAT);
+    /** Configuration key for the constraint value. */
+    private static final String VALUE_KEY = "value";
+
+    /** Current constraint value, or {@code null} if there is no input, or it is invalid. */
+    @Nullable
+    private Integer value;
 
     /**
      * Create a new {@link IntegerParameterRule}.
@@ -59,6 +69,28 @@ public class IntegerParameterRule extends NumericParameterRule
     public IntegerParameterRule(@NotNull String name)
     {
         super(PsiType.INT, name);
+    }
+
+    @NotNull
+    @Override
+    ComboBox<NumericConstraint> addUiComponents(@NotNull JPanel uiComponent)
+    {
+        ComboBox<NumericConstraint> numericConstraint = super.addUiComponents(uiComponent);
+
+        JFormattedTextField valueField = new JFormattedTextField(INTEGER_FORMAT);
+        if (value != null)
+        {
+            valueField.setText(String.valueOf(value));
+        }
+        valueField.getDocument().addDocumentListener(new DocumentAdapter()
+        {
+            @Override
+            protected void textChanged(DocumentEvent e)
+            {
+                value = parseValue(valueField.getText());
+            }
+        });
+
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.anchor = GridBagConstraints.CENTER;
         constraints.gridwidth = 2;
@@ -66,37 +98,52 @@ public class IntegerParameterRule extends NumericParameterRule
         constraints.gridy = 0;
         constraints.weightx = 0.5;
         constraints.fill = GridBagConstraints.HORIZONTAL;
-        value.setMinimumSize(new Dimension(100, (int) value.getPreferredSize().getHeight()));
-        this.uiComponent.add(value, constraints);
+        valueField.setMinimumSize(new Dimension(100, (int) valueField.getPreferredSize().getHeight()));
+        uiComponent.add(valueField, constraints);
 
         // TODO: This class should probably not be using the comboBox directly, but how to do this generically?
-        numericConstraint.setSelectedItem(NumericConstraint.ANY);
-        value.setEnabled(false);
-        value.setEditable(false);
-        value.setBackground(JBColor.LIGHT_GRAY);
-
+        // Follow the combo box itself, its listeners may run before the one updating the constraint.
+        updateValueField(valueField, getConstraint());
         numericConstraint.addActionListener(e ->
-        {
-            if (getConstraint().equals(NumericConstraint.ANY))
-            {
-                value.setEnabled(false);
-                value.setEditable(false);
-                value.setBackground(JBColor.LIGHT_GRAY);
-            }
-            else
-            {
-                value.setEnabled(true);
-                value.setEditable(true);
-                value.setBackground(JBColor.background());
-            }
-        });
+            updateValueField(valueField, (NumericConstraint) numericConstraint.getSelectedItem()));
+        return numericConstraint;
+    }
+
+    /**
+     * Enable the provided value field only if the provided constraint needs a value.
+     *
+     * @param valueField Text field holding the constraint value. Cannot be {@code null}.
+     * @param constraint Selected constraint. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    private static void updateValueField(@NotNull JFormattedTextField valueField,
+                                         @NotNull NumericConstraint constraint)
+    {
+        Preconditions.checkNotNull(valueField, "valueField cannot be null.");
+        Preconditions.checkNotNull(constraint, "constraint cannot be null.");
+
+        boolean needsValue = !constraint.equals(NumericConstraint.ANY);
+        valueField.setEnabled(needsValue);
+        valueField.setEditable(needsValue);
+        valueField.setBackground(needsValue ? JBColor.background() : JBColor.LIGHT_GRAY);
     }
 
     @Override
     public boolean isValid()
     {
-        return super.isValid() &&
-            (getConstraint().equals(NumericConstraint.ANY) || checkedGetValue() != null);
+        if (!super.isValid())
+        {
+            return false;
+        }
+        if (getConstraint().equals(NumericConstraint.ANY))
+        {
+            return true;
+        }
+        // Nothing is less than the minimum or greater than the maximum int, which would leave no valid value.
+        return value != null &&
+            !(getConstraint().equals(NumericConstraint.LESS) && value == Integer.MIN_VALUE) &&
+            !(getConstraint().equals(NumericConstraint.GREATER) && value == Integer.MAX_VALUE);
     }
 
     @NotNull
@@ -106,7 +153,6 @@ public class IntegerParameterRule extends NumericParameterRule
         Preconditions.checkArgument(isValid(), "Must be valid when getting initializers!");
 
         ImmutableList.Builder<ParameterInitializer> initializers = ImmutableList.builder();
-        Integer value = checkedGetValue();
         // TODO: Convert numbers to words!
         switch (getConstraint())
         {
@@ -122,64 +168,29 @@ public class IntegerParameterRule extends NumericParameterRule
             }
             case LESS_EQUAL:
             {
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "LessThan" + String.valueOf(value),
-                        String.valueOf(value - 1)
-                    )
-                );
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "EqualTo" + String.valueOf(value),
-                        String.valueOf(value)
-                    )
-                );
+                addInitializer(initializers, "LessThan", -1);
+                addInitializer(initializers, "EqualTo", 0);
                 break;
             }
             case LESS:
             {
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "LessThan" + String.valueOf(value),
-                        String.valueOf(value - 1)
-                    )
-                );
+                addInitializer(initializers, "LessThan", -1);
                 break;
             }
             case EQUAL:
             {
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "EqualTo" + String.valueOf(value),
-                        String.valueOf(value)
-                    )
-                );
+                addInitializer(initializers, "EqualTo", 0);
                 break;
             }
             case GREATER:
             {
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "GreaterThan" + String.valueOf(value),
-                        String.valueOf(value + 1)
-                    )
-                );
+                addInitializer(initializers, "GreaterThan", 1);
                 break;
             }
             case GREATER_EQUAL:
             {
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "GreaterThan" + String.valueOf(value),
-                        String.valueOf(value + 1)
-                    )
-                );
-                initializers.add(
-                    new ParameterInitializer(
-                        getName() + "EqualTo" + String.valueOf(value),
-                        String.valueOf(value)
-                    )
-                );
+                addInitializer(initializers, "GreaterThan", 1);
+                addInitializer(initializers, "EqualTo", 0);
                 break;
             }
             default:
@@ -198,7 +209,6 @@ public class IntegerParameterRule extends NumericParameterRule
         Preconditions.checkArgument(isValid(), "Must be valid when getting initializers!");
 
         ImmutableMap.Builder<ParameterInitializer, Class<? extends Exception>> initializers = ImmutableMap.builder();
-        Integer value = checkedGetValue();
         // TODO: Convert numbers to words!
         switch (getConstraint())
         {
@@ -209,78 +219,30 @@ public class IntegerParameterRule extends NumericParameterRule
             }
             case LESS_EQUAL:
             {
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "GreaterThan" + String.valueOf(value),
-                        String.valueOf(value + 1)
-                    ),
-                    IllegalArgumentException.class
-                );
+                addInitializer(initializers, "GreaterThan", 1);
                 break;
             }
             case LESS:
             {
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "GreaterThan" + String.valueOf(value),
-                        String.valueOf(value + 1)
-                    ),
-                    IllegalArgumentException.class
-                );
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "EqualTo" + String.valueOf(value),
-                        String.valueOf(value)
-                    ),
-                    IllegalArgumentException.class
-                );
+                addInitializer(initializers, "GreaterThan", 1);
+                addInitializer(initializers, "EqualTo", 0);
                 break;
             }
             case EQUAL:
             {
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "LessThan" + String.valueOf(value),
-                        String.valueOf(value - 1)
-                    ),
-                    IllegalArgumentException.class
-                );
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "GreaterThan" + String.valueOf(value),
-                        String.valueOf(value + 1)
-                    ),
-                    IllegalArgumentException.class
-                );
+                addInitializer(initializers, "LessThan", -1);
+                addInitializer(initializers, "GreaterThan", 1);
                 break;
             }
             case GREATER:
             {
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "LessThan" + String.valueOf(value),
-                        String.valueOf(value - 1)
-                    ),
-                    IllegalArgumentException.class
-                );
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "EqualTo" + String.valueOf(value),
-                        String.valueOf(value)
-                    ),
-                    IllegalArgumentException.class
-                );
+                addInitializer(initializers, "LessThan", -1);
+                addInitializer(initializers, "EqualTo", 0);
                 break;
             }
             case GREATER_EQUAL:
             {
-                initializers.put(
-                    new ParameterInitializer(
-                        getName() + "LessThan" + String.valueOf(value),
-                        String.valueOf(value - 1)
-                    ),
-                    IllegalArgumentException.class
-                );
+                addInitializer(initializers, "LessThan", -1);
                 break;
             }
             default:
@@ -292,17 +254,170 @@ public class IntegerParameterRule extends NumericParameterRule
         return initializers.build();
     }
 
+    @NotNull
+    @Override
+    public String getValueGeneratorText(@NotNull String random)
+    {
+        Preconditions.checkNotNull(random, "random cannot be null.");
+        Preconditions.checkArgument(isValid(), "Must be valid when getting initializers!");
+
+        long min = Integer.MIN_VALUE;
+        long max = Integer.MAX_VALUE;
+        switch (getConstraint())
+        {
+            case ANY:
+            {
+                return random + ".nextInt()";
+            }
+            case LESS_EQUAL:
+            {
+                max = value;
+                break;
+            }
+            case LESS:
+            {
+                max = value - 1L;
+                break;
+            }
+            case EQUAL:
+            {
+                return String.valueOf(value);
+            }
+            case GREATER:
+            {
+                min = value + 1L;
+                break;
+            }
+            case GREATER_EQUAL:
+            {
+                min = value;
+                break;
+            }
+            default:
+            {
+                throw new IllegalStateException("Unknown constraint!: " + getConstraint());
+            }
+        }
+        // Scale a double rather than using nextInt(bound), since the range may not fit in an int.
+        return "(int) (" + min + "L + (long) (" + random + ".nextDouble() * " + (max - min + 1) + "L))";
+    }
+
+    @NotNull
+    @Override
+    public ImmutableMap<String, String> getConfiguration()
+    {
+        ImmutableMap.Builder<String, String> configuration = ImmutableMap.builder();
+        configuration.putAll(super.getConfiguration());
+        if (value != null)
+        {
+            configuration.put(VALUE_KEY, String.valueOf(value));
+        }
+        return configuration.build();
+    }
+
+    @Override
+    public void applyConfiguration(@NotNull Map<String, String> configuration)
+    {
+        super.applyConfiguration(configuration);
+
+        String configuredValue = configuration.get(VALUE_KEY);
+        // Invalid values leave the current value alone.
+        Integer parsed = configuredValue != null ? parseValue(configuredValue) : null;
+        if (parsed != null)
+        {
+            value = parsed;
+        }
+    }
+
+    /**
+     * Add an initializer of a valid value at the provided offset from the constraint value, unless that value is
+     * outside the range of an {@code int}, e.g. one less than {@link Integer#MIN_VALUE}.
+     *
+     * @param initializers Builder to which the initializer is added. Cannot be {@code null}.
+     * @param relation Relation of the initialized value to the constraint value, e.g. {@code LessThan}. Cannot be
+     *                 {@code null}.
+     * @param offset Offset of the initialized value from the constraint value.
+     *
+     * @throws NullPointerException if {@code initializers} or {@code relation} is {@code null}.
+     */
+    private void addInitializer(@NotNull ImmutableList.Builder<ParameterInitializer> initializers,
+                                @NotNull String relation, int offset)
+    {
+        Preconditions.checkNotNull(initializers, "initializers cannot be null.");
+
+        ParameterInitializer initializer = createInitializer(relation, offset);
+        if (initializer != null)
+        {
+            initializers.add(initializer);
+        }
+    }
+
     /**
-     * Get the current user input constraint value.
+     * Add an initializer of an invalid value at the provided offset from the constraint value, expecting an
+     * {@link IllegalArgumentException}, unless that value is outside the range of an {@code int}, e.g. one more than
+     * {@link Integer#MAX_VALUE}.
+     *
+     * @param initializers Builder to which the initializer is added. Cannot be {@code null}.
+     * @param relation Relation of the initialized value to the constraint value, e.g. {@code GreaterThan}. Cannot be
+     *                 {@code null}.
+     * @param offset Offset of the initialized value from the constraint value.
      *
-     * @return The current user input constraint value, or {@code null} if there is no input, or it is invalid.
+     * @throws NullPointerException if {@code initializers} or {@code relation} is {@code null}.
      */
-    private Integer checkedGetValue()
+    private void addInitializer(
+        @NotNull ImmutableMap.Builder<ParameterInitializer, Class<? extends Exception>> initializers,
+        @NotNull String relation, int offset)
     {
+        Preconditions.checkNotNull(initializers, "initializers cannot be null.");
+
+        ParameterInitializer initializer = createInitializer(relation, offset);
+        if (initializer != null)
+        {
+            initializers.put(initializer, IllegalArgumentException.class);
+        }
+    }
+
+    /**
+     * Create an initializer of the value at the provided offset from the constraint value, computed without
+     * overflowing.
+     *
+     * @param relation Relation of the initialized value to the constraint value, e.g. {@code LessThan}. Cannot be
+     *                 {@code null}.
+     * @param offset Offset of the initialized value from the constraint value.
+     * @return The initializer, or {@code null} if the value is outside the range of an {@code int}.
+     *
+     * @throws NullPointerException if {@code relation} is {@code null}.
+     */
+    @Nullable
+    private ParameterInitializer createInitializer(@NotNull String relation, int offset)
+    {
+        Preconditions.checkNotNull(relation, "relation cannot be null.");
+
+        long initialized = (long) value + offset;
+        if (initialized < Integer.MIN_VALUE || initialized > Integer.MAX_VALUE)
+        {
+            return null;
+        }
+        return new ParameterInitializer(getName() + relation + String.valueOf(value), String.valueOf(initialized));
+    }
+
+    /**
+     * Parse a constraint value.
+     *
+     * @param text Text of the constraint value. Cannot be {@code null}.
+     * @return The constraint value, or {@code null} if {@code text} is empty or invalid.
+     *
+     * @throws NullPointerException if {@code text} is {@code null}.
+     */
+    @Nullable
+    private static Integer parseValue(@NotNull String text)
+    {
+        Preconditions.checkNotNull(text, "text cannot be null.");
+
         Integer result;
         try
         {
-            result = Integer.parseInt(value.getText());
+            result = Integer.parseInt(text);
         }
         catch (NumberFormatException nfe)
         {
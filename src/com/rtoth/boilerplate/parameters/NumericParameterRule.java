@@ -22,6 +22,7 @@
 package com.rtoth.boilerplate.parameters;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.psi.PsiPrimitiveType;
 import com.intellij.psi.PsiType;
@@ -30,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.util.Map;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
@@ -42,12 +44,11 @@ import javax.swing.JPanel;
 // TODO: Support boxed primitives
 abstract class NumericParameterRule extends AbstractParameterRule
 {
-    /** UI component that can be used to configure this {@link ObjectParameterRule}. */
-    final JPanel uiComponent;
+    /** Configuration key for the selected {@link NumericConstraint}. */
+    private static final String CONSTRAINT_KEY = "constraint";
 
-    /** Combo box containing the current {@link NumericConstraint} selected by the user. */
-    final ComboBox<NumericConstraint> numericConstraint =
-        new ComboBox<>(NumericConstraint.values());
+    /** Current {@link NumericConstraint} selected by the user. */
+    private NumericConstraint constraint = NumericConstraint.ANY;
 
     /**
      * Create a new {@link AbstractParameterRule}.
@@ -65,46 +66,95 @@ abstract class NumericParameterRule extends AbstractParameterRule
     {
         super(type, name);
         Preconditions.checkArgument(type instanceof PsiPrimitiveType, "type must be a primitive type.");
+    }
+
+    /**
+     * Get the currently selected {@link NumericConstraint}.
+     *
+     * @return The currently selected {@link NumericConstraint}. Never {@code null}.
+     */
+    @NotNull
+    NumericConstraint getConstraint()
+    {
+        return constraint;
+    }
+
+    @Override
+    public boolean isValid()
+    {
+        return true;
+    }
 
+    @NotNull
+    @Override
+    public JComponent createUiComponent()
+    {
         // TODO: This layout sucks... fix this.
-        this.uiComponent = new JPanel(new GridBagLayout());
+        JPanel uiComponent = new JPanel(new GridBagLayout());
+        addUiComponents(uiComponent);
+        return uiComponent;
+    }
+
+    /**
+     * Add the components configuring this rule to the provided panel, which uses a {@link GridBagLayout}.
+     * <p>
+     * Subclasses add their own components after calling this method, starting at grid column 4 of row 0.
+     *
+     * @param uiComponent Panel to which the components are added. Cannot be {@code null}.
+     * @return The combo box selecting the {@link NumericConstraint}, so subclasses can follow its selection. Never
+     *         {@code null}.
+     *
+     * @throws NullPointerException if {@code uiComponent} is {@code null}.
+     */
+    @NotNull
+    ComboBox<NumericConstraint> addUiComponents(@NotNull JPanel uiComponent)
+    {
+        Preconditions.checkNotNull(uiComponent, "uiComponent cannot be null.");
+
+        ComboBox<NumericConstraint> numericConstraint = new ComboBox<>(NumericConstraint.values());
+        numericConstraint.setSelectedItem(constraint);
+        numericConstraint.addActionListener(e -> constraint = (NumericConstraint) numericConstraint.getSelectedItem());
+
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.anchor = GridBagConstraints.LINE_START;
         constraints.gridwidth = 3;
         constraints.gridx = 0;
         constraints.gridy = 0;
         constraints.weightx = 0.5;
-        uiComponent.add(new JLabel(type.getPresentableText() + " " + name + ": "), constraints);
+        uiComponent.add(new JLabel(getPresentableTypeText() + " " + getName() + ": "), constraints);
         constraints.anchor = GridBagConstraints.CENTER;
         constraints.gridwidth = 2;
         constraints.gridx = 2;
         constraints.gridy = 0;
         constraints.weightx = 0.5;
         uiComponent.add(numericConstraint, constraints);
+        return numericConstraint;
     }
 
-    /**
-     * Get the currently selected {@link NumericConstraint}.
-     *
-     * @return The currently selected {@link NumericConstraint}. Never {@code null}.
-     */
     @NotNull
-    NumericConstraint getConstraint()
-    {
-        return (NumericConstraint) numericConstraint.getSelectedItem();
-    }
-
     @Override
-    public boolean isValid()
+    public ImmutableMap<String, String> getConfiguration()
     {
-        return true;
+        return ImmutableMap.of(CONSTRAINT_KEY, getConstraint().name());
     }
 
-    @NotNull
     @Override
-    public JComponent getUiComponent()
+    public void applyConfiguration(@NotNull Map<String, String> configuration)
     {
-        return uiComponent;
+        Preconditions.checkNotNull(configuration, "configuration cannot be null.");
+
+        String value = configuration.get(CONSTRAINT_KEY);
+        if (value != null)
+        {
+            try
+            {
+                constraint = NumericConstraint.valueOf(value);
+            }
+            catch (IllegalArgumentException iae)
+            {
+                // Unknown constraint, leave the current selection alone.
+            }
+        }
     }
 
     /**
@@ -31,8 +31,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.util.Map;
 
-import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -42,11 +42,14 @@ import javax.swing.JPanel;
  */
 public class ObjectParameterRule extends AbstractParameterRule
 {
-    /** UI component that can be used to configure this {@link ObjectParameterRule}. */
-    final JPanel uiComponent;
+    /** Configuration key for whether null values are disallowed. */
+    private static final String DISALLOW_NULL_KEY = "disallowNull";
 
-    /** Check box containing whether null values should be allowed for this parameter. */
-    private final JCheckBox disallowNull = new JCheckBox("Disallow null");
+    /** Text of an expression creating a valid instance of the parameter's type. */
+    private final String instanceText;
+
+    /** Whether null values are disallowed for this parameter. */
+    private boolean disallowNull;
 
     /**
      * Create a new {@link AbstractParameterRule}.
@@ -65,21 +68,8 @@ public class ObjectParameterRule extends AbstractParameterRule
         super(type, name);
         Preconditions.checkArgument(!(type instanceof PsiPrimitiveType), "type cannot be a primitive type.");
 
-        // TODO: This layout sucks... fix this.
-        this.uiComponent = new JPanel(new GridBagLayout());
-        GridBagConstraints constraints = new GridBagConstraints();
-        constraints.anchor = GridBagConstraints.LINE_START;
-        constraints.gridwidth = 3;
-        constraints.gridx = 0;
-        constraints.gridy = 0;
-        constraints.weightx = 0.5;
-        uiComponent.add(new JLabel(type.getPresentableText() + " " + name + ": "), constraints);
-        constraints.anchor = GridBagConstraints.CENTER;
-        constraints.gridwidth = 2;
-        constraints.gridx = 2;
-        constraints.gridy = 0;
-        constraints.weightx = 0.5;
-        uiComponent.add(disallowNull, constraints);
+        // Prefer a real instance, mocks are slow to create and cannot be created for final classes.
+        this.instanceText = InstanceFactoryRegistry.getInstanceText(type);
     }
 
     @Override
@@ -90,20 +80,51 @@ public class ObjectParameterRule extends AbstractParameterRule
 
     @NotNull
     @Override
-    public JComponent getUiComponent()
+    public JComponent createUiComponent()
     {
+        // TODO: This layout sucks... fix this.
+        JPanel uiComponent = new JPanel(new GridBagLayout());
+        addUiComponents(uiComponent);
         return uiComponent;
     }
 
+    /**
+     * Add the components configuring this rule to the provided panel, which uses a {@link GridBagLayout}.
+     * <p>
+     * Subclasses add their own components after calling this method, starting at grid column 4 of row 0.
+     *
+     * @param uiComponent Panel to which the components are added. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code uiComponent} is {@code null}.
+     */
+    void addUiComponents(@NotNull JPanel uiComponent)
+    {
+        Preconditions.checkNotNull(uiComponent, "uiComponent cannot be null.");
+
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.anchor = GridBagConstraints.LINE_START;
+        constraints.gridwidth = 3;
+        constraints.gridx = 0;
+        constraints.gridy = 0;
+        constraints.weightx = 0.5;
+        uiComponent.add(new JLabel(getPresentableTypeText() + " " + getName() + ": "), constraints);
+        constraints.anchor = GridBagConstraints.CENTER;
+        constraints.gridwidth = 2;
+        constraints.gridx = 2;
+        constraints.gridy = 0;
+        constraints.weightx = 0.5;
+        uiComponent.add(createCheckBox("Disallow null", disallowNull, selected -> disallowNull = selected),
+            constraints);
+    }
+
     @NotNull
     @Override
     public ImmutableList<ParameterInitializer> getValidInitializers()
     {
-        // TODO: Do something else with final classes
         return ImmutableList.of(
             new ParameterInitializer(
                 "valid" + getCapitalizedName(),
-                "mock(" + getType().getPresentableText() + ".class)"
+                instanceText
             )
         );
     }
@@ -112,7 +133,7 @@ public class ObjectParameterRule extends AbstractParameterRule
     @Override
     public ImmutableMap<ParameterInitializer, Class<? extends Exception>> getInvalidInitializers()
     {
-        if (disallowNull.isSelected())
+        if (disallowNull)
         {
             return ImmutableMap.of(
                 new ParameterInitializer(
@@ -124,4 +145,23 @@ public class ObjectParameterRule extends AbstractParameterRule
         }
         return ImmutableMap.of();
     }
+
+    @NotNull
+    @Override
+    public ImmutableMap<String, String> getConfiguration()
+    {
+        return ImmutableMap.of(DISALLOW_NULL_KEY, String.valueOf(disallowNull));
+    }
+
+    @Override
+    public void applyConfiguration(@NotNull Map<String, String> configuration)
+    {
+        Preconditions.checkNotNull(configuration, "configuration cannot be null.");
+
+        String value = configuration.get(DISALLOW_NULL_KEY);
+        if (value != null)
+        {
+            disallowNull = Boolean.parseBoolean(value);
+        }
+    }
 }
@@ -23,39 +23,49 @@ package com.rtoth.boilerplate.parameters;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.intellij.psi.PsiType;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
+
 import javax.swing.JComponent;
 
 /**
  * Contains a configurable testing rule set for a single method parameter.
+ * <p>
+ * A rule only holds its configuration. UI components configuring it are created on demand, through
+ * {@link #createUiComponent()}, so rules can be built and used on any thread without touching Swing.
  */
 public interface ParameterRule
 {
     /**
-     * Get whether the current configuration (made through the UI component) is valid.
+     * Get whether the current configuration (made through a UI component or restored) is valid.
      *
      * @return {@code true} if the current configuration is valid, {@code false} otherwise.
      */
     boolean isValid();
 
     /**
-     * Get the UI component that can be used to configure this {@link ParameterRule}.
+     * Create a new UI component that can be used to configure this {@link ParameterRule}.
+     * <p>
+     * The component starts out showing the current configuration and writes every change made through it straight
+     * back to this rule, which never references the component. Must be called from the event dispatch thread.
      *
-     * @return The UI component that can be used to configure this {@link ParameterRule}. Never {@code null}.
+     * @return A new UI component that can be used to configure this {@link ParameterRule}. Never {@code null}.
      */
     @NotNull
-    JComponent getUiComponent();
+    JComponent createUiComponent();
 
     /**
-     * Get the {@link PsiType} of the parameter for which this rule applies.
+     * Get the canonical text of the type of the parameter for which this rule applies, e.g.
+     * {@code java.util.List<java.lang.String>}.
+     * <p>
+     * Rules only keep the text of the type, so they never hold on to the PSI of the method they were built for.
      *
-     * @return The {@link PsiType} of the parameter for which this rule applies. Never {@code null}.
+     * @return The canonical text of the type of the parameter for which this rule applies. Never {@code null}.
      */
     @NotNull
-    PsiType getType();
+    String getTypeText();
 
     /**
      * Get the name of the parameter for which this rule applies.
@@ -88,4 +98,43 @@ public interface ParameterRule
      */
     @NotNull
     ImmutableMap<ParameterInitializer, Class<? extends Exception>> getInvalidInitializers();
+
+    /**
+     * Get the text of an expression drawing a random valid value for this parameter, used by property based tests.
+     * <p>
+     * By default, this is the first of the {@link #getValidInitializers()}, i.e. always the same value.
+     *
+     * @param random Name of the {@link java.util.Random} variable to draw from. Cannot be {@code null}.
+     * @return The text of an expression drawing a valid value for this parameter. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code random} is {@code null}.
+     */
+    @NotNull
+    default String getValueGeneratorText(@NotNull String random)
+    {
+        return getValidInitializers().get(0).getInitializerText();
+    }
+
+    /**
+     * Get the current configuration (made through a UI component or restored) of this {@link ParameterRule} as a set
+     * of simple key/value pairs, suitable for persisting and later restoring through {@link #applyConfiguration(Map)}.
+     * <p>
+     * Keys and values only ever contain letters, digits, {@code '_'} and {@code '-'}.
+     *
+     * @return An {@link ImmutableMap} describing the current configuration of this {@link ParameterRule}. Never
+     *         {@code null}, but may be empty if there is nothing to configure.
+     */
+    @NotNull
+    ImmutableMap<String, String> getConfiguration();
+
+    /**
+     * Restore a configuration previously retrieved through {@link #getConfiguration()}.
+     * <p>
+     * Unknown keys and unparseable values are ignored, leaving the corresponding setting untouched.
+     *
+     * @param configuration Configuration to apply to this {@link ParameterRule}. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code configuration} is {@code null}.
+     */
+    void applyConfiguration(@NotNull Map<String, String> configuration);
 }
@@ -30,8 +30,9 @@ import com.intellij.psi.PsiType;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.GridBagConstraints;
+import java.util.Map;
 
-import javax.swing.JCheckBox;
+import javax.swing.JPanel;
 
 /**
  * {@link ParameterRule} which can be used for {@link String}s.
@@ -41,8 +42,11 @@ public class StringParameterRule extends ObjectParameterRule
     /** Canonical text for {@link String} {@link PsiType}. */
     private static final String STRING_CANONICAL_TEXT = "java.lang.String";
 
-    /** Check box containing whether blank values should be allowed for this parameter. */
-    private final JCheckBox disallowBlank = new JCheckBox("Disallow blank");
+    /** Configuration key for whether blank values are disallowed. */
+    private static final String DISALLOW_BLANK_KEY = "disallowBlank";
+
+    /** Whether blank values are disallowed for this parameter. */
+    private boolean disallowBlank;
 
     /**
      * Create a new {@link AbstractParameterRule}.
@@ -59,8 +63,14 @@ public class StringParameterRule extends ObjectParameterRule
     public StringParameterRule(@NotNull PsiType type, @NotNull String name)
     {
         super(type, name);
-        Preconditions.checkArgument(type.getCanonicalText().equals(STRING_CANONICAL_TEXT),
+        Preconditions.checkArgument(SyntaxOnlyTypes.getCanonicalText(type).equals(STRING_CANONICAL_TEXT),
             "type must be String.");
+    }
+
+    @Override
+    void addUiComponents(@NotNull JPanel uiComponent)
+    {
+        super.addUiComponents(uiComponent);
 
         GridBagConstraints constraints = new GridBagConstraints();
         constraints.anchor = GridBagConstraints.CENTER;
@@ -69,7 +79,8 @@ public class StringParameterRule extends ObjectParameterRule
         constraints.gridy = 0;
         constraints.weightx = 0.5;
         constraints.fill = GridBagConstraints.HORIZONTAL;
-        this.uiComponent.add(disallowBlank, constraints);
+        uiComponent.add(createCheckBox("Disallow blank", disallowBlank, selected -> disallowBlank = selected),
+            constraints);
     }
 
     @NotNull
@@ -90,7 +101,7 @@ public class StringParameterRule extends ObjectParameterRule
     {
         ImmutableMap.Builder<ParameterInitializer, Class<? extends Exception>> initializers = ImmutableMap.builder();
         initializers.putAll(super.getInvalidInitializers());
-        if (disallowBlank.isSelected())
+        if (disallowBlank)
         {
             initializers.put(
                 new ParameterInitializer(
@@ -102,4 +113,38 @@ public class StringParameterRule extends ObjectParameterRule
         }
         return initializers.build();
     }
+
+    @NotNull
+    @Override
+    public String getValueGeneratorText(@NotNull String random)
+    {
+        Preconditions.checkNotNull(random, "random cannot be null.");
+
+        // Up to 15 printable ASCII characters, which includes empty and blank strings.
+        String printable = random + ".ints(" + random + ".nextInt(16), 32, 127)" +
+            ".collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString()";
+        return disallowBlank ? "(char) ('a' + " + random + ".nextInt(26)) + " + printable : printable;
+    }
+
+    @NotNull
+    @Override
+    public ImmutableMap<String, String> getConfiguration()
+    {
+        return ImmutableMap.<String, String>builder()
+            .putAll(super.getConfiguration())
+            .put(DISALLOW_BLANK_KEY, String.valueOf(disallowBlank))
+            .build();
+    }
+
+    @Override
+    public void applyConfiguration(@NotNull Map<String, String> configuration)
+    {
+        super.applyConfiguration(configuration);
+
+        String value = configuration.get(DISALLOW_BLANK_KEY);
+        if (value != null)
+        {
+            disallowBlank = Boolean.parseBoolean(value);
+        }
+    }
 }
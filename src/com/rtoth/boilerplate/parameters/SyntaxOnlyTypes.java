@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate.parameters;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiImportList;
+import com.intellij.psi.PsiImportStatement;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiTypeParameter;
+import com.intellij.psi.impl.source.PsiClassReferenceType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.TypeConversionUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Gets the canonical text of parameter types without resolving them while the project is being indexed.
+ * <p>
+ * Outside of dumb mode this is exactly {@link PsiType#getCanonicalText()}. In dumb mode, resolving a reference may
+ * fail or block, so each name in the type as written in the source is qualified from syntax alone: as a class
+ * declared in the source file, by a matching single-type import, as a well known {@code java.lang} class, or
+ * otherwise as a class in the source file's own package. Names which syntax alone cannot place, because the source
+ * file has on-demand imports, are left as they are written, as are type parameters; generated code using them is
+ * bound to the classes they resolve to once indexing has finished.
+ */
+public final class SyntaxOnlyTypes
+{
+    /** Pattern matching a possibly qualified name within the text of a type. */
+    private static final Pattern NAME = Pattern.compile(
+        "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*(?:\\.\\p{javaJavaIdentifierStart}" +
+            "\\p{javaJavaIdentifierPart}*)*");
+
+    /** Names in the text of a type which are never qualified. */
+    private static final ImmutableSet<String> UNQUALIFIED_NAMES = ImmutableSet.of(
+        "boolean", "byte", "char", "short", "int", "long", "float", "double", "void", "extends", "super"
+    );
+
+    /** Commonly used classes in {@code java.lang}, which are visible without an import. */
+    private static final ImmutableSet<String> JAVA_LANG_NAMES = ImmutableSet.of(
+        "AutoCloseable", "Boolean", "Byte", "Character", "CharSequence", "Class", "Comparable", "Double", "Enum",
+        "Error", "Exception", "Float", "Integer", "Iterable", "Long", "Number", "Object", "Runnable",
+        "RuntimeException", "Short", "String", "StringBuilder", "Thread", "Throwable", "Void"
+    );
+
+    /**
+     * Private constructor for utility class.
+     */
+    private SyntaxOnlyTypes()
+    {
+        // Nothing to see here.
+    }
+
+    /**
+     * Check whether the provided type was written in a project which is currently being indexed.
+     *
+     * @param type {@link PsiType} to check. Cannot be {@code null}.
+     * @return {@code true} if references in {@code type} should not be resolved right now, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    public static boolean isDumb(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        PsiJavaFile context = findContextFile(type);
+        return context != null && DumbService.isDumb(context.getProject());
+    }
+
+    /**
+     * Get the canonical text of the provided type, e.g. {@code java.util.List<java.lang.String>}.
+     *
+     * @param type {@link PsiType} for which to get the canonical text. Cannot be {@code null}.
+     * @return The canonical text of {@code type}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @NotNull
+    public static String getCanonicalText(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        PsiJavaFile context = findContextFile(type);
+        if (context == null || !DumbService.isDumb(context.getProject()))
+        {
+            return type.getCanonicalText();
+        }
+        return qualify(type.getPresentableText(), context);
+    }
+
+    /**
+     * Get the canonical text of the erasure of the provided type, e.g. {@code java.util.List}.
+     *
+     * @param type {@link PsiType} for which to get the canonical text. Cannot be {@code null}.
+     * @return The canonical text of the erasure of {@code type}. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @NotNull
+    public static String getErasedCanonicalText(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        if (!isDumb(type))
+        {
+            return TypeConversionUtil.erasure(type).getCanonicalText();
+        }
+        // Drop every (possibly nested) type argument list.
+        String canonicalText = getCanonicalText(type);
+        StringBuilder erased = new StringBuilder(canonicalText.length());
+        int depth = 0;
+        for (int i = 0; i < canonicalText.length(); i++)
+        {
+            char c = canonicalText.charAt(i);
+            if (c == '<')
+            {
+                depth++;
+            }
+            else if (c == '>')
+            {
+                depth--;
+            }
+            else if (depth == 0)
+            {
+                erased.append(c);
+            }
+        }
+        return erased.toString();
+    }
+
+    /**
+     * Qualify every name in the provided type text using only the syntax of the provided file.
+     * <p>
+     * A qualified name such as {@code Map.Entry} is qualified by its first segment, unless that looks like a package.
+     * Names which could come from an on-demand import are left as they are.
+     *
+     * @param typeText Text of a type as written in {@code context}. Cannot be {@code null}.
+     * @param context File in which the type was written. Cannot be {@code null}.
+     * @return The type text with every name qualified as far as syntax allows. Never {@code null}.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @NotNull
+    private static String qualify(@NotNull String typeText, @NotNull PsiJavaFile context)
+    {
+        Preconditions.checkNotNull(typeText, "typeText cannot be null.");
+        Preconditions.checkNotNull(context, "context cannot be null.");
+
+        Set<String> typeParameterNames = PsiTreeUtil.findChildrenOfType(context, PsiTypeParameter.class).stream()
+            .map(PsiTypeParameter::getName)
+            .filter(name -> name != null)
+            .collect(Collectors.toSet());
+
+        boolean onDemandImports = hasOnDemandImports(context);
+
+        StringBuffer qualified = new StringBuffer(typeText.length() * 2);
+        Matcher matcher = NAME.matcher(typeText);
+        while (matcher.find())
+        {
+            String name = matcher.group();
+            int dot = name.indexOf('.');
+            String firstName = dot < 0 ? name : name.substring(0, dot);
+            String replacement = name;
+            if (!UNQUALIFIED_NAMES.contains(firstName) && !typeParameterNames.contains(firstName) &&
+                !Character.isLowerCase(firstName.charAt(0)))
+            {
+                // Classes declared in the file shadow imported classes of the same name.
+                String qualifiedFirstName = findDeclaredClass(context, firstName);
+                if (qualifiedFirstName == null)
+                {
+                    qualifiedFirstName = findSingleTypeImport(context, firstName);
+                }
+                if (qualifiedFirstName == null && JAVA_LANG_NAMES.contains(firstName))
+                {
+                    qualifiedFirstName = "java.lang." + firstName;
+                }
+                if (qualifiedFirstName == null && !onDemandImports && !context.getPackageName().isEmpty())
+                {
+                    qualifiedFirstName = context.getPackageName() + "." + firstName;
+                }
+                if (qualifiedFirstName != null)
+                {
+                    replacement = qualifiedFirstName + name.substring(firstName.length());
+                }
+            }
+            matcher.appendReplacement(qualified, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(qualified);
+        return qualified.toString();
+    }
+
+    /**
+     * Find the single-type import of the provided simple name in the provided file, by its text alone.
+     *
+     * @param file File whose imports are searched. Cannot be {@code null}.
+     * @param simpleName Simple name of the imported class. Cannot be {@code null}.
+     * @return The qualified name of the imported class, or {@code null} if it is not imported by name.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @Nullable
+    private static String findSingleTypeImport(@NotNull PsiJavaFile file, @NotNull String simpleName)
+    {
+        Preconditions.checkNotNull(file, "file cannot be null.");
+        Preconditions.checkNotNull(simpleName, "simpleName cannot be null.");
+
+        PsiImportList importList = file.getImportList();
+        if (importList == null)
+        {
+            return null;
+        }
+        for (PsiImportStatement statement : importList.getImportStatements())
+        {
+            PsiJavaCodeReferenceElement reference = statement.getImportReference();
+            if (!statement.isOnDemand() && reference != null)
+            {
+                String importedName = reference.getText().replaceAll("\\s", "");
+                if (importedName.endsWith("." + simpleName))
+                {
+                    return importedName;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the class with the provided simple name which is declared in the provided file, at any depth, by its
+     * syntax alone.
+     *
+     * @param file File whose classes are searched. Cannot be {@code null}.
+     * @param simpleName Simple name of the class. Cannot be {@code null}.
+     * @return The qualified name of the declared class, or {@code null} if the file declares no such class.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    @Nullable
+    private static String findDeclaredClass(@NotNull PsiJavaFile file, @NotNull String simpleName)
+    {
+        Preconditions.checkNotNull(file, "file cannot be null.");
+        Preconditions.checkNotNull(simpleName, "simpleName cannot be null.");
+
+        for (PsiClass declared : PsiTreeUtil.findChildrenOfType(file, PsiClass.class))
+        {
+            if (simpleName.equals(declared.getName()) && declared.getQualifiedName() != null)
+            {
+                return declared.getQualifiedName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the provided file imports any classes on demand, e.g. {@code import java.util.*;}, in which case
+     * the package of a name which is not imported by name cannot be known from syntax alone.
+     *
+     * @param file File whose imports are checked. Cannot be {@code null}.
+     * @return {@code true} if the file has an on-demand import of classes, {@code false} otherwise.
+     *
+     * @throws NullPointerException if {@code file} is {@code null}.
+     */
+    private static boolean hasOnDemandImports(@NotNull PsiJavaFile file)
+    {
+        Preconditions.checkNotNull(file, "file cannot be null.");
+
+        PsiImportList importList = file.getImportList();
+        if (importList == null)
+        {
+            return false;
+        }
+        for (PsiImportStatement statement : importList.getImportStatements())
+        {
+            if (statement.isOnDemand())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the Java file in which the provided type was written.
+     *
+     * @param type {@link PsiType} for which to find the file. Cannot be {@code null}.
+     * @return The file, or {@code null} if {@code type} was not written in a Java file (e.g. it is a primitive).
+     *
+     * @throws NullPointerException if {@code type} is {@code null}.
+     */
+    @Nullable
+    private static PsiJavaFile findContextFile(@NotNull PsiType type)
+    {
+        Preconditions.checkNotNull(type, "type cannot be null.");
+
+        PsiType componentType = type.getDeepComponentType();
+        if (componentType instanceof PsiClassReferenceType)
+        {
+            PsiFile file = ((PsiClassReferenceType) componentType).getReference().getContainingFile();
+            return file instanceof PsiJavaFile ? (PsiJavaFile) file : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate.templates;
+
+import com.google.common.base.Preconditions;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+
+/**
+ * Variables which can be referenced from a {@link TestTemplate} as {@code ${name}}.
+ */
+public enum TemplateVariable
+{
+    /** Name of the generated test method. */
+    TEST_NAME("testName"),
+
+    /** Name of the class under test. */
+    CLASS_NAME("className"),
+
+    /** Simple name of the exception expected to be thrown. */
+    EXCEPTION("exception"),
+
+    /** Local variable declarations for each parameter, one indented line per parameter. */
+    ARRANGE("arrange"),
+
+    /** Invocation of the method under test, without a trailing semi-colon, e.g. {@code new Foo(a, b)}. */
+    INVOCATION("invocation");
+
+    /** Name used to reference this variable from a template. */
+    private final String templateName;
+
+    /**
+     * Create a new {@link TemplateVariable}.
+     *
+     * @param templateName Name used to reference this variable from a template. Cannot be {@code null}.
+     *
+     * @throws NullPointerException if {@code templateName} is {@code null}.
+     */
+    TemplateVariable(@NotNull String templateName)
+    {
+        this.templateName = Preconditions.checkNotNull(templateName, "templateName cannot be null.");
+    }
+
+    /**
+     * Get the name used to reference this variable from a template.
+     *
+     * @return The name used to reference this variable from a template. Never {@code null}.
+     */
+    @NotNull
+    public String getTemplateName()
+    {
+        return templateName;
+    }
+
+    /**
+     * Find the {@link TemplateVariable} referenced by the provided name.
+     *
+     * @param templateName Name used to reference the variable from a template. Cannot be {@code null}.
+     * @return {@link Optional} containing the referenced {@link TemplateVariable}, or {@link Optional#empty()} if
+     *         there is no such variable. Never {@code null}.
+     *
+     * @throws NullPointerException if {@code templateName} is {@code null}.
+     */
+    @NotNull
+    static Optional<TemplateVariable> forTemplateName(@NotNull String templateName)
+    {
+        Preconditions.checkNotNull(templateName, "templateName cannot be null.");
+
+        for (TemplateVariable variable : values())
+        {
+            if (variable.templateName.equals(templateName))
+            {
+                return Optional.of(variable);
+            }
+        }
+        return Optional.empty();
+    }
+}
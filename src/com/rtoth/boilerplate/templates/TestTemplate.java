@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate.templates;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A test method template which has been parsed once into a flat sequence of literal text and
+ * {@link TemplateVariable} references.
+ * <p>
+ * Templates reference variables as {@code ${name}}, see {@link TemplateVariable} for the available names. A literal
+ * {@code $} can be written as {@code $$}. Rendering a compiled template only appends to a {@link StringBuilder}, so
+ * the same instance can be rendered many times with minimal overhead.
+ */
+public final class TestTemplate
+{
+    /** Literal text segments; {@code literals[i]} is appended before {@code variables[i]}. */
+    private final String[] literals;
+
+    /** Variables referenced by the template, in order. Contains one fewer element than {@link #literals}. */
+    private final TemplateVariable[] variables;
+
+    /** Text the template was compiled from. */
+    private final String source;
+
+    /**
+     * Create a new {@link TestTemplate}.
+     *
+     * @param literals Literal text segments. Cannot be {@code null}.
+     * @param variables Variables referenced by the template. Cannot be {@code null} and must contain one fewer
+     *                  element than {@code literals}.
+     * @param source Text the template was compiled from. Cannot be {@code null}.
+     */
+    private TestTemplate(@NotNull String[] literals, @NotNull TemplateVariable[] variables, @NotNull String source)
+    {
+        this.literals = literals;
+        this.variables = variables;
+        this.source = source;
+    }
+
+    /**
+     * Compile the provided template text.
+     *
+     * @param source Template text to compile. Cannot be {@code null}.
+     * @return The compiled {@link TestTemplate}. Never {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code source} is malformed or references an unknown variable.
+     * @throws NullPointerException if {@code source} is {@code null}.
+     */
+    @NotNull
+    public static TestTemplate compile(@NotNull String source)
+    {
+        Preconditions.checkNotNull(source, "source cannot be null.");
+
+        List<String> literals = Lists.newArrayList();
+        List<TemplateVariable> variables = Lists.newArrayList();
+        StringBuilder literal = new StringBuilder();
+        int index = 0;
+        while (index < source.length())
+        {
+            char current = source.charAt(index);
+            if (current != '$')
+            {
+                literal.append(current);
+                index++;
+            }
+            else if (index + 1 < source.length() && source.charAt(index + 1) == '$')
+            {
+                literal.append('$');
+                index += 2;
+            }
+            else if (index + 1 < source.length() && source.charAt(index + 1) == '{')
+            {
+                int end = source.indexOf('}', index + 2);
+                Preconditions.checkArgument(end >= 0, "Unterminated variable at offset %s.", index);
+                String name = source.substring(index + 2, end).trim();
+                Optional<TemplateVariable> variable = TemplateVariable.forTemplateName(name);
+                Preconditions.checkArgument(variable.isPresent(), "Unknown template variable: %s", name);
+
+                literals.add(literal.toString());
+                literal.setLength(0);
+                variables.add(variable.get());
+                index = end + 1;
+            }
+            else
+            {
+                throw new IllegalArgumentException(
+                    "Unescaped '$' at offset " + index + ", use '$$' for a literal '$'.");
+            }
+        }
+        literals.add(literal.toString());
+
+        return new TestTemplate(literals.toArray(new String[literals.size()]),
+            variables.toArray(new TemplateVariable[variables.size()]), source);
+    }
+
+    /**
+     * Render this template into the provided {@link StringBuilder}.
+     *
+     * @param out {@link StringBuilder} to which the rendered text is appended. Cannot be {@code null}.
+     * @param values Values of each {@link TemplateVariable}, indexed by {@link TemplateVariable#ordinal()}. Cannot be
+     *               {@code null}. Variables without a value are rendered as empty text.
+     *
+     * @throws NullPointerException if any parameter is {@code null}.
+     */
+    public void render(@NotNull StringBuilder out, @NotNull CharSequence[] values)
+    {
+        Preconditions.checkNotNull(out, "out cannot be null.");
+        Preconditions.checkNotNull(values, "values cannot be null.");
+
+        for (int i = 0; i < variables.length; i++)
+        {
+            out.append(literals[i]);
+            CharSequence value = values[variables[i].ordinal()];
+            if (value != null)
+            {
+                out.append(value);
+            }
+        }
+        out.append(literals[variables.length]);
+    }
+
+    /**
+     * Get the text this template was compiled from.
+     *
+     * @return The text this template was compiled from. Never {@code null}.
+     */
+    @NotNull
+    public String getSource()
+    {
+        return source;
+    }
+}
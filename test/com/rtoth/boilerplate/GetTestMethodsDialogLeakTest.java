@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016 Robert Toth
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.rtoth.boilerplate;
+
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.psi.PsiClass;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Checks that a closed {@link GetTestMethodsDialog} can be garbage collected, i.e. that nothing (such as the parameter
+ * rules or their UI components) keeps it reachable once it is closed.
+ */
+public class GetTestMethodsDialogLeakTest extends LightCodeInsightFixtureTestCase
+{
+    /** Maximum number of garbage collections to wait for a closed dialog to be collected. */
+    private static final int GC_ATTEMPTS = 10;
+
+    /** Source class configured through the dialog, with a method for each kind of parameter rule. */
+    private static final String SOURCE_CLASS_TEXT =
+        "package leak;\n" +
+        "public class Source {\n" +
+        "    public void object(Object value) {}\n" +
+        "    public void string(String value) {}\n" +
+        "    public void integer(int value) {}\n" +
+        "    public void list(java.util.List<String> values) {}\n" +
+        "    public void array(long[] values) {}\n" +
+        "}\n";
+
+    public void testClosedDialogIsCollectable()
+    {
+        PsiClass sourceClass = myFixture.addClass(SOURCE_CLASS_TEXT);
+        // The first dialog fills one-time caches, which may legitimately hold on to it.
+        openAndClose(sourceClass);
+
+        WeakReference<GetTestMethodsDialog> dialog = new WeakReference<>(openAndClose(sourceClass));
+
+        assertTrue("A closed dialog is still reachable.", isCollected(dialog));
+    }
+
+    /**
+     * Open and close a new {@link GetTestMethodsDialog} for the provided class.
+     *
+     * @param sourceClass {@link PsiClass} for which the dialog is opened.
+     * @return The closed dialog.
+     */
+    private static GetTestMethodsDialog openAndClose(PsiClass sourceClass)
+    {
+        // Creating the dialog builds its whole content, including every rule's UI component.
+        GetTestMethodsDialog dialog = new GetTestMethodsDialog(sourceClass);
+        dialog.close(DialogWrapper.CANCEL_EXIT_CODE);
+        return dialog;
+    }
+
+    /**
+     * Collect garbage until the provided reference is cleared, or give up after {@link #GC_ATTEMPTS} collections.
+     *
+     * @param reference Reference to the object which should be collected.
+     * @return {@code true} if the object was collected, {@code false} if it is still reachable.
+     */
+    private static boolean isCollected(WeakReference<?> reference)
+    {
+        for (int i = 0; i < GC_ATTEMPTS && reference.get() != null; i++)
+        {
+            System.gc();
+            System.runFinalization();
+        }
+        return reference.get() == null;
+    }
+}